@@ -0,0 +1,55 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+/**
+ * Runs the checks of PollSchedulerTest with 50000 items, as many as a large
+ * SensorPoller. It is only run with the benchmark profile:
+ * <code>mvn -Pbenchmark test -Dtest=*LoadTest</code>.
+ *
+ * @author alfiva
+ *
+ */
+public class PollSchedulerLoadTest extends PollSchedulerTest {
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.utilities.api.context.top.PollSchedulerTest#getItems()
+	 */
+	@Override
+	protected int getItems() {
+		return 50000;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.utilities.api.context.top.PollSchedulerTest#getInterval()
+	 */
+	@Override
+	protected long getInterval() {
+		return 1000;
+	}
+
+}
@@ -0,0 +1,150 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.mid;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.universAAL.middleware.bus.junit.BusTestCase;
+import org.universAAL.middleware.owl.OntologyManagement;
+import org.universAAL.middleware.service.owls.profile.ServiceProfile;
+import org.universAAL.ontology.device.Actuator;
+import org.universAAL.ontology.device.DeviceOntology;
+import org.universAAL.ontology.location.LocationOntology;
+import org.universAAL.ontology.phThing.DeviceService;
+import org.universAAL.ontology.phThing.PhThingOntology;
+import org.universAAL.ontology.shape.ShapeOntology;
+
+/**
+ * Measures the start of many actuator callees: the time to get the profiles
+ * of all of them from an empty ProfileCache, one after the other as the
+ * callees are created, with and without prefetching them first. Run with
+ * <code>mvn -Pbenchmark test-compile exec:exec</code>.
+ *
+ * @author alfiva
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProfileCacheBenchmark {
+
+	/**
+	 * Namespace of the callees.
+	 */
+	private static final String NS = "http://ontology.universAAL.org/Benchmark.owl#";
+
+	/**
+	 * Number of actuators.
+	 */
+	@Param({ "100", "1000", "5000" })
+	public int devices;
+
+	/**
+	 * Whether all the profiles are prefetched before getting them.
+	 */
+	@Param({ "false", "true" })
+	public boolean prefetch;
+
+	/**
+	 * The actuators.
+	 */
+	private Actuator[] actuators;
+
+	/**
+	 * Start the middleware and create the actuators.
+	 *
+	 * @throws Exception
+	 *             if the middleware could not be started.
+	 */
+	@Setup
+	public void setUp() throws Exception {
+		new Bus().start();
+		actuators = new Actuator[devices];
+		for (int i = 0; i < devices; i++) {
+			actuators[i] = new Actuator(NS + "actuator" + i);
+		}
+	}
+
+	/**
+	 * Empty the cache before each start.
+	 */
+	@Setup(Level.Invocation)
+	public void clear() {
+		ProfileCache.clear();
+	}
+
+	/**
+	 * Get the profiles of all the actuators.
+	 *
+	 * @return The last profiles, so that they are not optimized away.
+	 * @throws InvalidOntologyUtilException
+	 *             if the profiles could not be built.
+	 */
+	@Benchmark
+	public ServiceProfile[] boot() throws InvalidOntologyUtilException {
+		if (prefetch) {
+			for (int i = 0; i < actuators.length; i++) {
+				ProfileCache.prefetchActuator(NS, DeviceService.MY_URI, actuators[i]);
+			}
+		}
+		ServiceProfile[] last = null;
+		for (int i = 0; i < actuators.length; i++) {
+			last = ProfileCache.getActuatorProfiles(NS, DeviceService.MY_URI, actuators[i]);
+		}
+		return last;
+	}
+
+	/**
+	 * The test bus, with the ontologies of the actuators.
+	 */
+	private static final class Bus extends BusTestCase {
+		/**
+		 * Start the middleware and register the ontologies.
+		 *
+		 * @throws Exception
+		 *             if the middleware could not be started.
+		 */
+		void start() throws Exception {
+			setUp();
+			OntologyManagement.getInstance().register(mc, new LocationOntology());
+			OntologyManagement.getInstance().register(mc, new ShapeOntology());
+			OntologyManagement.getInstance().register(mc, new PhThingOntology());
+			OntologyManagement.getInstance().register(mc, new DeviceOntology());
+		}
+	}
+
+}
@@ -0,0 +1,285 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.top;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.universAAL.middleware.bus.junit.BusTestCase;
+import org.universAAL.middleware.container.ModuleContext;
+import org.universAAL.middleware.owl.OntologyManagement;
+import org.universAAL.middleware.rdf.Resource;
+import org.universAAL.ontology.location.LocationOntology;
+import org.universAAL.ontology.phThing.Device;
+import org.universAAL.ontology.phThing.DeviceService;
+import org.universAAL.ontology.phThing.PhThingOntology;
+import org.universAAL.ontology.shape.ShapeOntology;
+
+/**
+ * Measures MemoryEditorCallee under mixed loads of GET, ADD and CHANGE, with
+ * an indexed property, at 1, 4, 16 and 64 threads. The share of reads is a
+ * parameter. Of the writes, one in four replaces a Resource of the thread
+ * (REMOVE and ADD), and the rest CHANGE the indexed value of a shared
+ * Resource. Run with <code>mvn -Pbenchmark test-compile exec:exec</code>.
+ *
+ * @author alfiva
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoryEditorCalleeBenchmark {
+
+	/**
+	 * Namespace of the callee and the Resources.
+	 */
+	private static final String NS = "http://ontology.universAAL.org/Benchmark.owl#";
+
+	/**
+	 * The indexed property.
+	 */
+	private static final String PROP = NS + "value";
+
+	/**
+	 * Number of shared Resources.
+	 */
+	private static final int SHARED = 4096;
+
+	/**
+	 * Number of different values of the indexed property.
+	 */
+	private static final int VALUES = 64;
+
+	/**
+	 * Percentage of the operations that are GETs.
+	 */
+	@Param({ "0", "50", "90", "99" })
+	public int reads;
+
+	/**
+	 * The callee, shared by all threads.
+	 */
+	private MemoryEditorCallee callee;
+
+	/**
+	 * URIs of the shared Resources, to GET them.
+	 */
+	private Resource[] probes;
+
+	/**
+	 * Start the middleware and fill the callee with the shared Resources.
+	 *
+	 * @throws Exception
+	 *             if the middleware could not be started.
+	 */
+	@Setup
+	public void setUp() throws Exception {
+		callee = new MemoryEditorCallee(Bus.start(), NS, DeviceService.MY_URI,
+				new String[] { DeviceService.PROP_CONTROLS }, Device.MY_URI, new String[] { PROP });
+		probes = new Resource[SHARED];
+		for (int i = 0; i < SHARED; i++) {
+			probes[i] = new Resource(NS + "shared" + i);
+			callee.executeAdd(resource(probes[i].getURI(), i % VALUES));
+		}
+	}
+
+	/**
+	 * Unregister the callee.
+	 */
+	@TearDown
+	public void tearDown() {
+		callee.close();
+	}
+
+	/**
+	 * The operations of a thread.
+	 */
+	@State(Scope.Thread)
+	public static class Worker {
+		/**
+		 * Number of Resources replaced by each thread.
+		 */
+		private static final int OWN = 1024;
+		/**
+		 * The Resources replaced by the thread.
+		 */
+		private Resource[] own = new Resource[OWN];
+		/**
+		 * Two versions of each shared Resource, with different values, so
+		 * that every CHANGE moves it in the index. Built ahead so that
+		 * building them is not measured.
+		 */
+		private Resource[][] changes = new Resource[2][SHARED];
+		/**
+		 * Number of operations done.
+		 */
+		private int ops;
+		/**
+		 * Number of writes done.
+		 */
+		private int writes;
+
+		/**
+		 * Build the Resources of the thread, and add its own ones.
+		 *
+		 * @param bench
+		 *            The benchmark, with the callee
+		 */
+		@Setup
+		public void setUp(MemoryEditorCalleeBenchmark bench) {
+			String prefix = NS + System.identityHashCode(this) + '_';
+			for (int i = 0; i < OWN; i++) {
+				own[i] = resource(prefix + i, i % VALUES);
+				bench.callee.executeAdd(own[i]);
+			}
+			for (int i = 0; i < SHARED; i++) {
+				changes[0][i] = resource(NS + "shared" + i, i % VALUES);
+				changes[1][i] = resource(NS + "shared" + i, (i + 1) % VALUES);
+			}
+		}
+	}
+
+	/**
+	 * Mixed load at 1 thread.
+	 *
+	 * @param worker
+	 *            The operations of the thread
+	 * @return The result of the operation
+	 */
+	@Benchmark
+	@Threads(1)
+	public Object threads1(Worker worker) {
+		return operate(worker);
+	}
+
+	/**
+	 * Mixed load at 4 threads.
+	 *
+	 * @param worker
+	 *            The operations of the thread
+	 * @return The result of the operation
+	 */
+	@Benchmark
+	@Threads(4)
+	public Object threads4(Worker worker) {
+		return operate(worker);
+	}
+
+	/**
+	 * Mixed load at 16 threads.
+	 *
+	 * @param worker
+	 *            The operations of the thread
+	 * @return The result of the operation
+	 */
+	@Benchmark
+	@Threads(16)
+	public Object threads16(Worker worker) {
+		return operate(worker);
+	}
+
+	/**
+	 * Mixed load at 64 threads.
+	 *
+	 * @param worker
+	 *            The operations of the thread
+	 * @return The result of the operation
+	 */
+	@Benchmark
+	@Threads(64)
+	public Object threads64(Worker worker) {
+		return operate(worker);
+	}
+
+	/**
+	 * Do the next operation of a thread: a GET, a CHANGE, or a REMOVE and ADD,
+	 * in the proportion given by reads.
+	 *
+	 * @param worker
+	 *            The operations of the thread
+	 * @return The result of the operation
+	 */
+	private Object operate(Worker worker) {
+		int op = worker.ops++;
+		if ((op * 37) % 100 < reads) {
+			return callee.executeGet(probes[op % SHARED]);
+		}
+		int write = worker.writes++;
+		if (write % 4 == 0) {
+			Resource own = worker.own[(write / 4) % Worker.OWN];
+			callee.executeRemove(own);
+			return Boolean.valueOf(callee.executeAdd(own));
+		}
+		return Boolean.valueOf(callee.executeChange(worker.changes[(write / SHARED) % 2][write % SHARED]));
+	}
+
+	/**
+	 * Build a Resource with a value of the indexed property.
+	 *
+	 * @param uri
+	 *            The URI of the Resource
+	 * @param value
+	 *            The value
+	 * @return The Resource
+	 */
+	private static Resource resource(String uri, int value) {
+		Resource r = new Resource(uri);
+		r.setProperty(PROP, Integer.valueOf(value));
+		return r;
+	}
+
+	/**
+	 * The test bus, with the ontologies of the edited Resources.
+	 */
+	private static final class Bus extends BusTestCase {
+		/**
+		 * Start the middleware and register the ontologies.
+		 *
+		 * @return The module context of the test bus.
+		 * @throws Exception
+		 *             if the middleware could not be started.
+		 */
+		static ModuleContext start() throws Exception {
+			new Bus().setUp();
+			OntologyManagement.getInstance().register(mc, new LocationOntology());
+			OntologyManagement.getInstance().register(mc, new ShapeOntology());
+			OntologyManagement.getInstance().register(mc, new PhThingOntology());
+			return mc;
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api;
+
+import java.util.List;
+
+import org.universAAL.middleware.context.ContextEvent;
+
+/**
+ * Implementations of this interface act like a Context Subscriber that
+ * receives the events in batches: When events match a pattern associated to
+ * it by universAAL helper, they are gathered and passed together to its
+ * handleContextEvents method, once there are enough of them or the oldest has
+ * waited long enough. This allows amortising the handling of many events,
+ * like inserting them in a database at once.
+ *
+ * @author alfiva
+ *
+ */
+public interface ICBatchListener {
+	/**
+	 * When a batch of events matching a pattern associated to this listener is
+	 * ready, this method is called and is passed the events, in the order they
+	 * were received. It is never called concurrently for the same listener.
+	 *
+	 * @param events
+	 *            The received Context Events. The list is reused for later
+	 *            batches once this method returns, so it must not be kept.
+	 */
+	void handleContextEvents(List<ContextEvent> events);
+}
@@ -0,0 +1,70 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api;
+
+import org.universAAL.middleware.context.ContextEvent;
+
+/**
+ * Implementations of this interface receive Context Events only when they ask
+ * for them, through the {@link ICSubscription} they are given. This allows
+ * streaming consumers to control how many events they get, instead of having
+ * to buffer whatever arrives to an {@link ICListener}. It follows the same
+ * rules as the Subscriber of Reactive Streams: the methods are never called
+ * concurrently, onSubscribe is called first, and onError or onComplete are
+ * called at most once, the last.
+ *
+ * @author alfiva
+ *
+ */
+public interface ICStreamListener {
+	/**
+	 * Called once, before any other method, with the subscription that must
+	 * be used to request events.
+	 *
+	 * @param subscription
+	 *            The subscription.
+	 */
+	void onSubscribe(ICSubscription subscription);
+
+	/**
+	 * Called for each event, never more times than requested.
+	 *
+	 * @param event
+	 *            The received Context Event.
+	 */
+	void onNext(ContextEvent event);
+
+	/**
+	 * Called if the source fails, or if this listener failed handling an
+	 * event. No more events are received after it.
+	 *
+	 * @param error
+	 *            The cause.
+	 */
+	void onError(Throwable error);
+
+	/**
+	 * Called when the source ends, like when the helper is terminated. No more
+	 * events are received after it.
+	 */
+	void onComplete();
+}
@@ -0,0 +1,49 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api;
+
+/**
+ * The link between a source of Context Events and an {@link ICStreamListener}
+ * . The listener uses it to tell how many more events it is ready to receive,
+ * and to stop receiving them. It follows the same rules as the Subscription of
+ * Reactive Streams, so that adapting it is straightforward.
+ *
+ * @author alfiva
+ *
+ */
+public interface ICSubscription {
+	/**
+	 * Ask for more events. The source will not pass more events to the
+	 * listener than the total requested so far. It can be called from within
+	 * the listener methods.
+	 *
+	 * @param n
+	 *            How many more events can be received. Must be positive.
+	 */
+	void request(long n);
+
+	/**
+	 * Stop receiving events. Events already buffered are discarded. It can be
+	 * called more than once.
+	 */
+	void cancel();
+}
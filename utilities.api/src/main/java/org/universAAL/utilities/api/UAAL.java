@@ -23,6 +23,8 @@ package org.universAAL.utilities.api;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.universAAL.middleware.container.ModuleContext;
 import org.universAAL.middleware.context.ContextEvent;
@@ -36,7 +38,11 @@ import org.universAAL.middleware.service.ServiceRequest;
 import org.universAAL.middleware.service.ServiceResponse;
 import org.universAAL.middleware.service.owls.profile.ServiceProfile;
 import org.universAAL.middleware.ui.UIRequest;
+import org.universAAL.utilities.api.context.Pattern;
+import org.universAAL.utilities.api.context.mid.EventBatcher;
+import org.universAAL.utilities.api.context.mid.StaleFilter;
 import org.universAAL.utilities.api.context.mid.UtilPublisher;
+import org.universAAL.utilities.api.context.mid.UtilSink;
 
 /**
  * This is a central helper class that allows you to interact with universAAL
@@ -102,6 +108,26 @@ public class UAAL {
 	 * pattern and the handling to perform associated to it.
 	 */
 	private ArrayList<WrapperC> subscribers;
+	/**
+	 * A list of all Context Subscriber universAAL wrapper classes used by this
+	 * class to pass subscribed Context Events on demand to stream listeners.
+	 * Streams are removed from it as they end, from any thread.
+	 */
+	private List<WrapperStream> streams;
+	/**
+	 * The single Context Subscriber universAAL wrapper class shared by the
+	 * subscriptions that are merged, if merging is enabled.
+	 */
+	private WrapperM merged;
+	/**
+	 * Whether subscriptions made only of Patterns are merged.
+	 */
+	private boolean merging;
+	/**
+	 * A list of the batchers gathering the events of batch subscriptions, so
+	 * that their pending events are passed on <code>terminate()</code>.
+	 */
+	private ArrayList<EventBatcher> batchers;
 	/**
 	 * The single Service Caller universAAL wrapper class used by this class to call
 	 * all Service Requests.
@@ -278,7 +304,9 @@ public class UAAL {
 	 * Since every call to this method creates a new subscriber, you should be
 	 * careful with how many times you call this method. Usually, a limited
 	 * number of subscriptions is needed. Remember that you can combine
-	 * different patterns to be handled by a single listener.
+	 * different patterns to be handled by a single listener. If merging is
+	 * enabled with <code>setMergingC(true)</code>, subscriptions made only of
+	 * {@link Pattern}s share a single subscriber instead.
 	 * <p>
 	 * Remember that the simplified API in this library (
 	 * <code>org.universAAL.utilities.api.context</code> packages) can assist
@@ -293,12 +321,185 @@ public class UAAL {
 	 * @see org.universAAL.utilities.api.context.Pattern
 	 */
 	public void subscribeC(ContextEventPattern[] p, ICListener l) {
+		if (merging && isMergeable(p)) {
+			Pattern[] patterns = new Pattern[p.length];
+			System.arraycopy(p, 0, patterns, 0, p.length);
+			if (merged == null) {
+				merged = new WrapperM(context, patterns, l);
+			} else {
+				merged.add(patterns, l);
+			}
+			return;
+		}
 		if (subscribers == null) {
 			subscribers = new ArrayList<WrapperC>(5);
 		}
 		subscribers.add(new WrapperC(context, p, l));
 	}
 
+	/**
+	 * Enables or disables the merging of subscriptions.
+	 * <p>
+	 * When enabled, the following calls to <code>subscribeC()</code> with
+	 * only {@link Pattern}s do not create a new subscriber. Instead, a single
+	 * shared subscriber registers in the bus only the Patterns that are not
+	 * already covered by other Patterns registered, and evaluates each
+	 * received event locally against the Patterns of each listener. Every
+	 * listener still receives exactly the events matching its own Patterns.
+	 * This reduces the registrations in the bus when many subscriptions
+	 * overlap, like one per type of device plus some catch-all. Subscriptions
+	 * with other kinds of patterns, or with Patterns extended with the native
+	 * API, keep their own subscriber. Subscriptions already made are not
+	 * affected.
+	 *
+	 * @param merge
+	 *            <code>true</code> to merge the following subscriptions.
+	 */
+	public void setMergingC(boolean merge) {
+		merging = merge;
+	}
+
+	/**
+	 * Tells how many registrations of patterns in the bus have been saved by
+	 * merging subscriptions.
+	 *
+	 * @return The number of Patterns of the merged subscriptions that did not
+	 *         need to be registered because others cover them.
+	 */
+	public int getSavedRegistrationsC() {
+		return merged == null ? 0 : merged.getSavedRegistrations();
+	}
+
+	/**
+	 * Subscribes for Context Events and specifies how the events would be
+	 * handled, skipping those that are too old.
+	 * <p>
+	 * This works as the other <code>subscribeC</code>, but events whose
+	 * timestamp is older than <code>maxAge</code> are not passed to the
+	 * listener. If <code>conflate</code> is true, events are queued and handled
+	 * by a separate thread, and an event still waiting is replaced by a newer
+	 * one of the same subject and predicate, so that after a burst the
+	 * listener only handles the latest values. This is useful for readings of
+	 * sensors, where only the current value matters.
+	 *
+	 * @param p
+	 *            An array of Context Event Patterns describing the Context
+	 *            Events that will be handled by the listener.
+	 * @param l
+	 *            The listener that will handle the received event that matches
+	 *            the patterns.
+	 * @param maxAge
+	 *            Maximum age of the events, in milliseconds. 0 for no limit.
+	 * @param conflate
+	 *            Whether events waiting to be handled are replaced by newer
+	 *            ones of the same subject and predicate.
+	 * @return The filter of the subscription, which tells how many events have
+	 *         been skipped.
+	 * @see org.universAAL.utilities.api.context.Pattern
+	 */
+	public StaleFilter subscribeC(ContextEventPattern[] p, ICListener l, long maxAge, boolean conflate) {
+		if (subscribers == null) {
+			subscribers = new ArrayList<WrapperC>(5);
+		}
+		WrapperC wrapper = new WrapperC(context, p, l, maxAge, conflate);
+		subscribers.add(wrapper);
+		return wrapper.getFilter();
+	}
+
+	/**
+	 * Subscribes for Context Events and specifies how the events would be
+	 * handled in batches.
+	 * <p>
+	 * This works as the other <code>subscribeC</code>, but the events are
+	 * gathered and passed to the {@link ICBatchListener} together, when there
+	 * are <code>maxSize</code> of them or the first one has waited
+	 * <code>maxLatency</code> milliseconds. On <code>terminate()</code>, the
+	 * events still waiting are passed to the listener before closing.
+	 *
+	 * @param p
+	 *            An array of Context Event Patterns describing the Context
+	 *            Events that will be handled by the listener.
+	 * @param l
+	 *            The listener that will handle the batches of received events.
+	 * @param maxSize
+	 *            Maximum number of events in a batch.
+	 * @param maxLatency
+	 *            Maximum time, in milliseconds, that an event waits before
+	 *            its batch is passed. 0 to wait until the batch is full.
+	 * @see org.universAAL.utilities.api.context.Pattern
+	 */
+	public void subscribeC(ContextEventPattern[] p, ICBatchListener l, int maxSize, long maxLatency) {
+		if (subscribers == null) {
+			subscribers = new ArrayList<WrapperC>(5);
+		}
+		if (batchers == null) {
+			batchers = new ArrayList<EventBatcher>(5);
+		}
+		EventBatcher batcher = new EventBatcher(l, maxSize, maxLatency);
+		batchers.add(batcher);
+		subscribers.add(new WrapperC(context, p, batcher));
+	}
+
+	/**
+	 * Subscribes for Context Events that will be passed to a listener only as
+	 * it requests them.
+	 * <p>
+	 * universAAL helper automatically creates a new own internal Context
+	 * Subscriber each time this method is called, as with the other
+	 * <code>subscribeC</code>. Before returning, the <code>onSubscribe</code>
+	 * method of the listener is called with the subscription it must use to
+	 * request events. Events matching the patterns that arrive while the
+	 * listener has not requested any are kept in a buffer of the given size,
+	 * where the oldest are dropped to make room for new ones, since the bus
+	 * cannot be held back. The subscription remains active until it is
+	 * cancelled or <code>terminate()</code> is called, which calls the
+	 * <code>onComplete</code> method of the listener.
+	 *
+	 * @param p
+	 *            An array of Context Event Patterns describing the Context
+	 *            Events that will be passed to the listener.
+	 * @param l
+	 *            The listener that will request and receive the events.
+	 * @param bufferSize
+	 *            How many events can wait for the listener to request them.
+	 * @return The subscription, also passed to the listener.
+	 * @see org.universAAL.utilities.api.context.Pattern
+	 */
+	public ICSubscription subscribeC(ContextEventPattern[] p, ICStreamListener l, int bufferSize) {
+		if (streams == null) {
+			streams = new CopyOnWriteArrayList<WrapperStream>();
+		}
+		final List<WrapperStream> owner = streams;
+		WrapperStream stream = new WrapperStream(context, p, l, bufferSize) {
+			@Override
+			protected void ended() {
+				owner.remove(this);
+			}
+		};
+		streams.add(stream);
+		l.onSubscribe(stream);
+		return stream;
+	}
+
+	/**
+	 * Creates a stream listener that sends the Context Events it receives, the
+	 * same way as <code>sendC()</code>. It requests events from its source in
+	 * batches, and only asks for more once the previous ones have been sent,
+	 * so that the source does not go faster than the bus.
+	 *
+	 * @param batch
+	 *            How many events are requested at a time.
+	 * @return The listener, to be subscribed to the source of events.
+	 */
+	public UtilSink sinkC(int batch) {
+		return new UtilSink(null, batch) {
+			@Override
+			protected void publish(ContextEvent event) {
+				sendC(event);
+			}
+		};
+	}
+
 	/**
 	 * Registers Service Profiles and specifies how the calls to these profiles
 	 * would be handled.
@@ -363,6 +564,29 @@ public class UAAL {
 			subscribers = null;
 		}
 
+		if (batchers != null) {
+			Iterator<EventBatcher> iter = batchers.iterator();
+			while (iter.hasNext()) {
+				iter.next().close();
+			}
+			batchers.clear();
+			batchers = null;
+		}
+
+		if (merged != null) {
+			merged.close();
+			merged = null;
+		}
+
+		if (streams != null) {
+			Iterator<WrapperStream> iter = streams.iterator();
+			while (iter.hasNext()) {
+				iter.next().complete();
+			}
+			streams.clear();
+			streams = null;
+		}
+
 		if (callees != null) {
 			Iterator<WrapperS> iter = callees.iterator();
 			while (iter.hasNext()) {
@@ -373,4 +597,25 @@ public class UAAL {
 		}
 	}
 
+	/**
+	 * Checks whether the patterns of a subscription can be merged with
+	 * others.
+	 *
+	 * @param p
+	 *            The patterns of the subscription.
+	 * @return <code>true</code> if they are all Patterns with no additional
+	 *         restrictions.
+	 */
+	private static boolean isMergeable(ContextEventPattern[] p) {
+		if (p == null || p.length == 0) {
+			return false;
+		}
+		for (int i = 0; i < p.length; i++) {
+			if (!(p[i] instanceof Pattern) || ((Pattern) p[i]).isExtended()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 }
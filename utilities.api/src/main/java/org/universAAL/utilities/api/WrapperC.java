@@ -25,11 +25,12 @@ import org.universAAL.middleware.container.ModuleContext;
 import org.universAAL.middleware.context.ContextEvent;
 import org.universAAL.middleware.context.ContextEventPattern;
 import org.universAAL.middleware.context.ContextSubscriber;
+import org.universAAL.utilities.api.context.mid.StaleFilter;
 
 /**
  * This class is for internal use by the utility API only. It is just a Context
  * Subscriber that associates calls to its handleContextEvent method to an
- * associated ICListener.
+ * associated ICListener, optionally through a StaleFilter.
  *
  * @author alfiva
  *
@@ -41,6 +42,11 @@ public class WrapperC extends ContextSubscriber {
 	 */
 	private ICListener listener;
 
+	/**
+	 * The filter of stale events, if any.
+	 */
+	private StaleFilter filter;
+
 	/**
 	 * Constructor that takes the listener to associate.
 	 *
@@ -56,6 +62,38 @@ public class WrapperC extends ContextSubscriber {
 		listener = l;
 	}
 
+	/**
+	 * Constructor that takes the listener to associate, which will only
+	 * receive the events that are still fresh.
+	 *
+	 * @param context
+	 *            The universAAL Module Context.
+	 * @param initialSubscriptions
+	 *            Event Patterns to subscriber to.
+	 * @param l
+	 *            The associated ICListener.
+	 * @param maxAge
+	 *            Maximum age of the events, in milliseconds. 0 for no limit.
+	 * @param conflate
+	 *            Whether events waiting to be handled are replaced by newer
+	 *            ones of the same subject and predicate.
+	 */
+	protected WrapperC(ModuleContext context, ContextEventPattern[] initialSubscriptions, ICListener l,
+			long maxAge, boolean conflate) {
+		super(context, initialSubscriptions);
+		filter = new StaleFilter(l, maxAge, conflate);
+		listener = filter;
+	}
+
+	/**
+	 * Get the filter of stale events.
+	 *
+	 * @return The filter, or null if events are not filtered.
+	 */
+	public StaleFilter getFilter() {
+		return filter;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -79,4 +117,17 @@ public class WrapperC extends ContextSubscriber {
 	public void handleContextEvent(ContextEvent event) {
 		listener.handleContextEvent(event);
 	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.context.ContextSubscriber#close()
+	 */
+	@Override
+	public void close() {
+		if (filter != null) {
+			filter.close();
+		}
+		super.close();
+	}
 }
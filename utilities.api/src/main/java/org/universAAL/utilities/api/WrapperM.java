@@ -0,0 +1,305 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.universAAL.middleware.container.ModuleContext;
+import org.universAAL.middleware.context.ContextEvent;
+import org.universAAL.middleware.context.ContextEventPattern;
+import org.universAAL.middleware.context.ContextSubscriber;
+import org.universAAL.utilities.api.context.Pattern;
+import org.universAAL.utilities.api.context.PatternAnalyser;
+
+/**
+ * This class is for internal use by the utility API only. It is a single
+ * Context Subscriber shared by several ICListeners, each associated to its own
+ * Patterns. Only the Patterns not covered by others are registered in the bus,
+ * and each received event is evaluated locally against the Patterns of each
+ * listener, so that every listener gets exactly the events it would get with
+ * its own subscriber.
+ *
+ * @author alfiva
+ *
+ */
+public class WrapperM extends ContextSubscriber {
+
+	/**
+	 * A Pattern of a listener.
+	 */
+	private static final class Entry {
+		/**
+		 * The Pattern.
+		 */
+		Pattern pattern;
+		/**
+		 * The listener.
+		 */
+		ICListener listener;
+	}
+
+	/**
+	 * A listener with its Patterns that can match an event of some predicate.
+	 */
+	private static final class Target {
+		/**
+		 * The listener.
+		 */
+		ICListener listener;
+		/**
+		 * Its Patterns.
+		 */
+		Pattern[] patterns;
+	}
+
+	/**
+	 * Entries by predicate, for the Patterns with a predicate.
+	 */
+	private HashMap<String, Entry[]> byPredicate = new HashMap<String, Entry[]>();
+
+	/**
+	 * Entries of the Patterns without predicate.
+	 */
+	private Entry[] anyPredicate = new Entry[0];
+
+	/**
+	 * Listeners to evaluate for the events of each predicate with Patterns,
+	 * including those of the Patterns without predicate. Replaced, not
+	 * modified, when listeners are added.
+	 */
+	private volatile HashMap<String, Target[]> targets;
+
+	/**
+	 * Listeners to evaluate for the events of any other predicate.
+	 */
+	private volatile Target[] anyTargets;
+
+	/**
+	 * The Patterns registered in the bus.
+	 */
+	private ArrayList<Pattern> registered = new ArrayList<Pattern>();
+
+	/**
+	 * Number of Patterns requested by all listeners.
+	 */
+	private int requested;
+
+	/**
+	 * Constructor that takes the first listener to associate.
+	 *
+	 * @param context
+	 *            The universAAL Module Context.
+	 * @param p
+	 *            Patterns of the listener.
+	 * @param l
+	 *            The listener.
+	 */
+	protected WrapperM(ModuleContext context, Pattern[] p, ICListener l) {
+		super(context, PatternAnalyser.reduce(p));
+		ContextEventPattern[] reduced = PatternAnalyser.reduce(p);
+		synchronized (this) {
+			for (int i = 0; i < reduced.length; i++) {
+				registered.add((Pattern) reduced[i]);
+			}
+			index(p, l);
+		}
+	}
+
+	/**
+	 * Associate another listener. Its Patterns are registered in the bus only
+	 * if not covered by those already registered, and those they cover are
+	 * unregistered.
+	 *
+	 * @param p
+	 *            Patterns of the listener.
+	 * @param l
+	 *            The listener.
+	 */
+	protected synchronized void add(Pattern[] p, ICListener l) {
+		ContextEventPattern[] reduced = PatternAnalyser.reduce(p);
+		for (int i = 0; i < reduced.length; i++) {
+			Pattern candidate = (Pattern) reduced[i];
+			boolean covered = false;
+			for (int j = 0; j < registered.size() && !covered; j++) {
+				covered = PatternAnalyser.covers(registered.get(j), candidate);
+			}
+			if (covered) {
+				continue;
+			}
+			ArrayList<Pattern> redundant = new ArrayList<Pattern>();
+			for (int j = 0; j < registered.size(); j++) {
+				if (PatternAnalyser.covers(candidate, registered.get(j))) {
+					redundant.add(registered.get(j));
+				}
+			}
+			// Register the wider one before removing, so nothing is missed
+			addNewRegParams(new ContextEventPattern[] { candidate });
+			registered.add(candidate);
+			if (!redundant.isEmpty()) {
+				removeMatchingRegParams(redundant.toArray(new ContextEventPattern[redundant.size()]));
+				registered.removeAll(redundant);
+			}
+		}
+		index(p, l);
+	}
+
+	/**
+	 * Get how many registrations of Patterns in the bus are being saved, by
+	 * not registering those covered by others.
+	 *
+	 * @return The number of Patterns requested by the listeners minus the
+	 *         number of Patterns registered.
+	 */
+	public synchronized int getSavedRegistrations() {
+		return requested - registered.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.context.ContextSubscriber#
+	 * communicationChannelBroken()
+	 */
+	@Override
+	public void communicationChannelBroken() {
+		// Nothing to do: ICListener has no way to be told, as in WrapperC
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.middleware.context.ContextSubscriber#handleContextEvent
+	 * (org.universAAL.middleware.context.ContextEvent)
+	 */
+	@Override
+	public void handleContextEvent(ContextEvent event) {
+		HashMap<String, Target[]> predicates = targets;
+		Target[] any = anyTargets;
+		if (predicates == null || any == null) {
+			return; // Not ready yet
+		}
+		Target[] candidates = predicates.get(event.getRDFPredicate());
+		if (candidates == null) {
+			candidates = any;
+		}
+		for (int i = 0; i < candidates.length; i++) {
+			Target t = candidates[i];
+			Pattern[] patterns = t.patterns;
+			for (int j = 0; j < patterns.length; j++) {
+				if (patterns[j].matches(event)) {
+					t.listener.handleContextEvent(event);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add the Patterns of a listener to the local dispatching. The listeners
+	 * to evaluate are replaced, not modified, so that events being dispatched
+	 * are not affected. Must be called holding the lock.
+	 *
+	 * @param p
+	 *            Patterns of the listener.
+	 * @param l
+	 *            The listener.
+	 */
+	private void index(Pattern[] p, ICListener l) {
+		HashMap<String, Entry[]> predicates = new HashMap<String, Entry[]>(byPredicate);
+		Entry[] any = anyPredicate;
+		for (int i = 0; i < p.length; i++) {
+			Entry e = new Entry();
+			e.pattern = p[i];
+			e.listener = l;
+			String predicate = p[i].getPredicate();
+			if (predicate == null) {
+				any = append(any, e);
+			} else {
+				Entry[] list = predicates.get(predicate);
+				predicates.put(predicate, append(list == null ? new Entry[0] : list, e));
+			}
+		}
+		requested += p.length;
+		byPredicate = predicates;
+		anyPredicate = any;
+		HashMap<String, Target[]> t = new HashMap<String, Target[]>();
+		for (Map.Entry<String, Entry[]> entry : predicates.entrySet()) {
+			t.put(entry.getKey(), group(entry.getValue(), any));
+		}
+		anyTargets = group(new Entry[0], any);
+		targets = t;
+	}
+
+	/**
+	 * Group the Patterns of some entries by listener, so that each listener is
+	 * evaluated once per event.
+	 *
+	 * @param specific
+	 *            Entries of the Patterns with a predicate.
+	 * @param any
+	 *            Entries of the Patterns without predicate.
+	 * @return The listeners with their Patterns, in order of first entry.
+	 */
+	private static Target[] group(Entry[] specific, Entry[] any) {
+		LinkedHashMap<ICListener, ArrayList<Pattern>> grouped = new LinkedHashMap<ICListener, ArrayList<Pattern>>();
+		Entry[][] all = new Entry[][] { specific, any };
+		for (int i = 0; i < all.length; i++) {
+			for (int j = 0; j < all[i].length; j++) {
+				ArrayList<Pattern> patterns = grouped.get(all[i][j].listener);
+				if (patterns == null) {
+					patterns = new ArrayList<Pattern>(2);
+					grouped.put(all[i][j].listener, patterns);
+				}
+				patterns.add(all[i][j].pattern);
+			}
+		}
+		Target[] result = new Target[grouped.size()];
+		int n = 0;
+		for (Map.Entry<ICListener, ArrayList<Pattern>> entry : grouped.entrySet()) {
+			Target t = new Target();
+			t.listener = entry.getKey();
+			t.patterns = entry.getValue().toArray(new Pattern[entry.getValue().size()]);
+			result[n++] = t;
+		}
+		return result;
+	}
+
+	/**
+	 * Copy an array of entries adding one at the end.
+	 *
+	 * @param entries
+	 *            The entries.
+	 * @param e
+	 *            The entry to add.
+	 * @return The new array.
+	 */
+	private static Entry[] append(Entry[] entries, Entry e) {
+		Entry[] result = new Entry[entries.length + 1];
+		System.arraycopy(entries, 0, result, 0, entries.length);
+		result[entries.length] = e;
+		return result;
+	}
+}
@@ -0,0 +1,290 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api;
+
+import org.universAAL.middleware.container.ModuleContext;
+import org.universAAL.middleware.context.ContextEvent;
+import org.universAAL.middleware.context.ContextEventPattern;
+import org.universAAL.middleware.context.ContextSubscriber;
+
+/**
+ * This class is for internal use by the utility API only. It is a Context
+ * Subscriber that passes the events to an associated ICStreamListener only as
+ * they are requested. Since the bus cannot be slowed down, events received
+ * while there is no demand are kept in a bounded buffer, which drops the
+ * oldest ones when full. The end of the subscription is also delivered by the
+ * thread delivering events, after the last one, so that the listener is never
+ * called concurrently.
+ *
+ * @author alfiva
+ *
+ */
+public class WrapperStream extends ContextSubscriber implements ICSubscription {
+
+	/**
+	 * The associated ICStreamListener.
+	 */
+	private ICStreamListener listener;
+
+	/**
+	 * Events waiting for demand, as a ring.
+	 */
+	private ContextEvent[] buffer;
+
+	/**
+	 * Position of the oldest buffered event.
+	 */
+	private int head;
+
+	/**
+	 * Number of buffered events.
+	 */
+	private int size;
+
+	/**
+	 * Events requested and not yet delivered.
+	 */
+	private long demand;
+
+	/**
+	 * Whether a thread is delivering events.
+	 */
+	private boolean draining;
+
+	/**
+	 * Whether the subscription has ended.
+	 */
+	private boolean cancelled;
+
+	/**
+	 * Whether the end must still be told to the listener.
+	 */
+	private boolean signal;
+
+	/**
+	 * The error that ended the subscription, or null if it completed.
+	 */
+	private Throwable failure;
+
+	/**
+	 * Number of events dropped because the buffer was full.
+	 */
+	private long dropped;
+
+	/**
+	 * Constructor that takes the listener to associate.
+	 *
+	 * @param context
+	 *            The universAAL Module Context.
+	 * @param initialSubscriptions
+	 *            Event Patterns to subscriber to.
+	 * @param l
+	 *            The associated ICStreamListener.
+	 * @param bufferSize
+	 *            How many events can wait for demand.
+	 */
+	protected WrapperStream(ModuleContext context, ContextEventPattern[] initialSubscriptions, ICStreamListener l,
+			int bufferSize) {
+		super(context, initialSubscriptions);
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("The buffer size must be positive");
+		}
+		synchronized (this) {
+			listener = l;
+			buffer = new ContextEvent[bufferSize];
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.context.ContextSubscriber#
+	 * communicationChannelBroken()
+	 */
+	@Override
+	public void communicationChannelBroken() {
+		stop(true, new IllegalStateException("Communication channel broken"));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.middleware.context.ContextSubscriber#handleContextEvent
+	 * (org.universAAL.middleware.context.ContextEvent)
+	 */
+	@Override
+	public void handleContextEvent(ContextEvent event) {
+		synchronized (this) {
+			if (buffer == null || cancelled) {
+				return; // Not ready yet, or already ended
+			}
+			if (size == buffer.length) {
+				buffer[head] = null;
+				head = (head + 1) % buffer.length;
+				size--;
+				dropped++;
+			}
+			buffer[(head + size) % buffer.length] = event;
+			size++;
+		}
+		drain();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.utilities.api.ICSubscription#request(long)
+	 */
+	public void request(long n) {
+		if (n <= 0) {
+			stop(true, new IllegalArgumentException("Requested events must be positive"));
+			return;
+		}
+		synchronized (this) {
+			demand += n;
+			if (demand < 0) {
+				demand = Long.MAX_VALUE; // Unbounded
+			}
+		}
+		drain();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.utilities.api.ICSubscription#cancel()
+	 */
+	public void cancel() {
+		stop(false, null);
+	}
+
+	/**
+	 * End the subscription because the helper is terminated, telling the
+	 * listener.
+	 */
+	protected void complete() {
+		stop(true, null);
+	}
+
+	/**
+	 * Called once when the subscription ends, whatever the reason, after
+	 * unregistering from the bus.
+	 */
+	protected void ended() {
+		// Nothing by default
+	}
+
+	/**
+	 * Get how many events were dropped because there was no demand and the
+	 * buffer was full.
+	 *
+	 * @return The number of dropped events.
+	 */
+	public synchronized long getDroppedCount() {
+		return dropped;
+	}
+
+	/**
+	 * End the subscription, discarding the buffered events and unregistering
+	 * from the bus. If the listener must be told, it is done by the thread
+	 * delivering events, or by this one if there is none.
+	 *
+	 * @param tell
+	 *            Whether to tell the listener.
+	 * @param error
+	 *            The error to tell, or null to tell it completed.
+	 */
+	private void stop(boolean tell, Throwable error) {
+		synchronized (this) {
+			if (cancelled) {
+				return;
+			}
+			cancelled = true;
+			signal = tell;
+			failure = error;
+			if (buffer != null) {
+				for (int i = 0; i < buffer.length; i++) {
+					buffer[i] = null;
+				}
+			}
+			size = 0;
+		}
+		close();
+		ended();
+		drain();
+	}
+
+	/**
+	 * Deliver buffered events while there is demand, and then the end of the
+	 * subscription if it has ended. Only one thread delivers at a time, so
+	 * that the listener is never called concurrently, and calls to request
+	 * from the listener do not recurse.
+	 */
+	private void drain() {
+		synchronized (this) {
+			if (draining || listener == null) {
+				return; // Already delivering, or not ready yet
+			}
+			draining = true;
+		}
+		while (true) {
+			ContextEvent event;
+			Throwable error;
+			synchronized (this) {
+				if (cancelled && signal) {
+					signal = false;
+					event = null;
+					error = failure;
+					failure = null;
+				} else if (cancelled || demand == 0 || size == 0) {
+					draining = false;
+					return;
+				} else {
+					error = null;
+					event = buffer[head];
+					buffer[head] = null;
+					head = (head + 1) % buffer.length;
+					size--;
+					if (demand != Long.MAX_VALUE) {
+						demand--;
+					}
+				}
+			}
+			try {
+				if (event != null) {
+					listener.onNext(event);
+				} else if (error != null) {
+					listener.onError(error);
+				} else {
+					listener.onComplete();
+				}
+			} catch (RuntimeException e) {
+				if (event != null) {
+					stop(true, e);
+				} else {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+}
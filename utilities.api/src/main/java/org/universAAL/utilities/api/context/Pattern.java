@@ -21,6 +21,8 @@
  */
 package org.universAAL.utilities.api.context;
 
+import java.util.ArrayList;
+
 import org.universAAL.middleware.context.ContextEvent;
 import org.universAAL.middleware.context.ContextEventPattern;
 import org.universAAL.middleware.owl.ManagedIndividual;
@@ -36,6 +38,11 @@ import org.universAAL.middleware.rdf.Resource;
  * class extends ContextEventPattern it can be used as well in the native API,
  * and the other way around to use the native API to apply further restrictions
  * over the Pattern.
+ * <p>
+ * A Pattern also remembers what it was built with, so that it can be inspected
+ * (see the getters) and evaluated locally against an event without going
+ * through the bus (see <code>matches(ContextEvent)</code>). Only the
+ * restrictions created by the constructors are taken into account for that.
  *
  * @author alfiva
  *
@@ -56,6 +63,34 @@ public class Pattern extends ContextEventPattern {
 	 */
 	private static final String MSG_INST = "---SIMPLE UTILS TIP: You must "
 			+ "pass a valid ManagedIndivdual or DataType to this " + "UtilSubscriber constructor, or null.";
+	/**
+	 * The type URI that the event subject must have, if set.
+	 */
+	private String subjectTypeURI;
+	/**
+	 * The exact instance that the event subject must equal, if set.
+	 */
+	private ManagedIndividual subject;
+	/**
+	 * The exact predicate that the event must equal, if set.
+	 */
+	private String predicate;
+	/**
+	 * The type URI that the event object must have, if set.
+	 */
+	private String objectTypeURI;
+	/**
+	 * The exact instance that the event object must equal, if set.
+	 */
+	private Object object;
+	/**
+	 * The restrictions added by the constructors, kept for local evaluation.
+	 */
+	private ArrayList<MergedRestriction> restrictions = new ArrayList<MergedRestriction>(3);
+	/**
+	 * Whether restrictions have been added through the native API.
+	 */
+	private boolean extended;
 
 	/**
 	 * Simple constructor to create a Context Event Pattern with restrictions on
@@ -73,24 +108,24 @@ public class Pattern extends ContextEventPattern {
 		super();
 		if (subjTypeURI != null) {
 			if (Resource.isQualifiedName(subjTypeURI)) {
-				this.addRestriction(
-						MergedRestriction.getAllValuesRestriction(ContextEvent.PROP_RDF_SUBJECT, subjTypeURI));
+				this.subjectTypeURI = subjTypeURI;
+				restrict(MergedRestriction.getAllValuesRestriction(ContextEvent.PROP_RDF_SUBJECT, subjTypeURI));
 			} else {
 				System.out.println(MSG_STR);
 			}
 		}
 		if (predicate != null) {
 			if (Resource.isQualifiedName(predicate)) {
-				this.addRestriction(
-						MergedRestriction.getFixedValueRestriction(ContextEvent.PROP_RDF_PREDICATE, predicate));
+				this.predicate = predicate;
+				restrict(MergedRestriction.getFixedValueRestriction(ContextEvent.PROP_RDF_PREDICATE, predicate));
 			} else {
 				System.out.println(MSG_PRED);
 			}
 		}
 		if (objTypeURI != null) {
 			if (Resource.isQualifiedName(objTypeURI)) {
-				this.addRestriction(
-						MergedRestriction.getAllValuesRestriction(ContextEvent.PROP_RDF_OBJECT, objTypeURI));
+				this.objectTypeURI = objTypeURI;
+				restrict(MergedRestriction.getAllValuesRestriction(ContextEvent.PROP_RDF_OBJECT, objTypeURI));
 			} else {
 				System.out.println(MSG_STR);
 			}
@@ -114,16 +149,16 @@ public class Pattern extends ContextEventPattern {
 		super();
 		if (subjTypeURI != null) {
 			if (Resource.isQualifiedName(subjTypeURI)) {
-				this.addRestriction(
-						MergedRestriction.getAllValuesRestriction(ContextEvent.PROP_RDF_SUBJECT, subjTypeURI));
+				this.subjectTypeURI = subjTypeURI;
+				restrict(MergedRestriction.getAllValuesRestriction(ContextEvent.PROP_RDF_SUBJECT, subjTypeURI));
 			} else {
 				System.out.println(MSG_STR);
 			}
 		}
 		if (predicate != null) {
 			if (Resource.isQualifiedName(predicate)) {
-				this.addRestriction(
-						MergedRestriction.getFixedValueRestriction(ContextEvent.PROP_RDF_PREDICATE, predicate));
+				this.predicate = predicate;
+				restrict(MergedRestriction.getFixedValueRestriction(ContextEvent.PROP_RDF_PREDICATE, predicate));
 			} else {
 				System.out.println(MSG_PRED);
 			}
@@ -131,7 +166,8 @@ public class Pattern extends ContextEventPattern {
 		if (obj != null) {
 			String uri = ManagedIndividual.getTypeURI(obj);
 			if (uri != null && Resource.isQualifiedName(uri)) {
-				this.addRestriction(MergedRestriction.getFixedValueRestriction(ContextEvent.PROP_RDF_OBJECT, obj));
+				this.object = obj;
+				restrict(MergedRestriction.getFixedValueRestriction(ContextEvent.PROP_RDF_OBJECT, obj));
 			} else {
 				System.out.println(MSG_INST);
 			}
@@ -156,23 +192,24 @@ public class Pattern extends ContextEventPattern {
 		if (subj != null) {
 			String uri = ManagedIndividual.getTypeURI(subj);
 			if (uri != null && Resource.isQualifiedName(uri)) {
-				this.addRestriction(MergedRestriction.getFixedValueRestriction(ContextEvent.PROP_RDF_SUBJECT, subj));
+				this.subject = subj;
+				restrict(MergedRestriction.getFixedValueRestriction(ContextEvent.PROP_RDF_SUBJECT, subj));
 			} else {
 				System.out.println(MSG_INST);
 			}
 		}
 		if (predicate != null) {
 			if (Resource.isQualifiedName(predicate)) {
-				this.addRestriction(
-						MergedRestriction.getFixedValueRestriction(ContextEvent.PROP_RDF_PREDICATE, predicate));
+				this.predicate = predicate;
+				restrict(MergedRestriction.getFixedValueRestriction(ContextEvent.PROP_RDF_PREDICATE, predicate));
 			} else {
 				System.out.println(MSG_PRED);
 			}
 		}
 		if (objTypeURI != null) {
 			if (Resource.isQualifiedName(objTypeURI)) {
-				this.addRestriction(
-						MergedRestriction.getAllValuesRestriction(ContextEvent.PROP_RDF_OBJECT, objTypeURI));
+				this.objectTypeURI = objTypeURI;
+				restrict(MergedRestriction.getAllValuesRestriction(ContextEvent.PROP_RDF_OBJECT, objTypeURI));
 			} else {
 				System.out.println(MSG_STR);
 			}
@@ -198,15 +235,16 @@ public class Pattern extends ContextEventPattern {
 		if (subj != null) {
 			String uri = ManagedIndividual.getTypeURI(subj);
 			if (uri != null && Resource.isQualifiedName(uri)) {
-				this.addRestriction(MergedRestriction.getFixedValueRestriction(ContextEvent.PROP_RDF_SUBJECT, subj));
+				this.subject = subj;
+				restrict(MergedRestriction.getFixedValueRestriction(ContextEvent.PROP_RDF_SUBJECT, subj));
 			} else {
 				System.out.println(MSG_INST);
 			}
 		}
 		if (predicate != null) {
 			if (Resource.isQualifiedName(predicate)) {
-				this.addRestriction(
-						MergedRestriction.getFixedValueRestriction(ContextEvent.PROP_RDF_PREDICATE, predicate));
+				this.predicate = predicate;
+				restrict(MergedRestriction.getFixedValueRestriction(ContextEvent.PROP_RDF_PREDICATE, predicate));
 			} else {
 				System.out.println(MSG_PRED);
 			}
@@ -214,10 +252,125 @@ public class Pattern extends ContextEventPattern {
 		if (obj != null) {
 			String uri = ManagedIndividual.getTypeURI(obj);
 			if (uri != null && Resource.isQualifiedName(uri)) {
-				this.addRestriction(MergedRestriction.getFixedValueRestriction(ContextEvent.PROP_RDF_OBJECT, obj));
+				this.object = obj;
+				restrict(MergedRestriction.getFixedValueRestriction(ContextEvent.PROP_RDF_OBJECT, obj));
 			} else {
 				System.out.println(MSG_INST);
 			}
 		}
 	}
+
+	/**
+	 * Adds a restriction to the underlying Context Event Pattern and keeps it
+	 * for local evaluation.
+	 *
+	 * @param r
+	 *            The restriction to add.
+	 */
+	private void restrict(MergedRestriction r) {
+		restrictions.add(r);
+		this.addRestriction(r);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.middleware.context.ContextEventPattern#addRestriction(org
+	 * .universAAL.middleware.owl.MergedRestriction)
+	 */
+	@Override
+	public boolean addRestriction(MergedRestriction r) {
+		if (restrictions != null && !restrictions.contains(r)) {
+			extended = true;
+		}
+		return super.addRestriction(r);
+	}
+
+	/**
+	 * Tells whether restrictions have been added to this Pattern through the
+	 * native API, after its construction. If so, the getters and
+	 * <code>matches(ContextEvent)</code> do not describe it completely.
+	 *
+	 * @return <code>true</code> if it has other restrictions than the ones
+	 *         given in the constructor.
+	 */
+	public boolean isExtended() {
+		return extended;
+	}
+
+	/**
+	 * Evaluates this Pattern locally against an event, without involving the
+	 * bus. Exact subject and predicate are compared first, so that most
+	 * non-matching events are discarded without evaluating the restrictions.
+	 * Restrictions added afterwards through the native API are not taken into
+	 * account.
+	 *
+	 * @param event
+	 *            The event to evaluate.
+	 * @return <code>true</code> if the event satisfies all the restrictions
+	 *         given in the constructor.
+	 */
+	public boolean matches(ContextEvent event) {
+		if (event == null) {
+			return false;
+		}
+		if (predicate != null && !predicate.equals(event.getRDFPredicate())) {
+			return false;
+		}
+		if (subject != null && !subject.getURI().equals(event.getSubjectURI())) {
+			return false;
+		}
+		for (int i = 0; i < restrictions.size(); i++) {
+			if (!restrictions.get(i).hasMember(event)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the type URI that the event subject must have.
+	 *
+	 * @return The type URI, or null if not restricted by type.
+	 */
+	public String getSubjectTypeURI() {
+		return subjectTypeURI;
+	}
+
+	/**
+	 * Get the exact instance that the event subject must equal.
+	 *
+	 * @return The subject, or null if not restricted to an instance.
+	 */
+	public ManagedIndividual getSubject() {
+		return subject;
+	}
+
+	/**
+	 * Get the exact predicate that the event must equal.
+	 *
+	 * @return The predicate URI, or null for any.
+	 */
+	public String getPredicate() {
+		return predicate;
+	}
+
+	/**
+	 * Get the type URI that the event object must have.
+	 *
+	 * @return The type URI, or null if not restricted by type.
+	 */
+	public String getObjectTypeURI() {
+		return objectTypeURI;
+	}
+
+	/**
+	 * Get the exact instance that the event object must equal.
+	 *
+	 * @return The object, or null if not restricted to an instance.
+	 */
+	public Object getObject() {
+		return object;
+	}
 }
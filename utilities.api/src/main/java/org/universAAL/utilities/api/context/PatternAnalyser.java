@@ -0,0 +1,209 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context;
+
+import java.util.ArrayList;
+
+import org.universAAL.middleware.context.ContextEventPattern;
+import org.universAAL.middleware.owl.ManagedIndividual;
+import org.universAAL.middleware.owl.OntologyManagement;
+import org.universAAL.middleware.rdf.Resource;
+import org.universAAL.middleware.rdf.TypeMapper;
+
+/**
+ * Analyses {@link Pattern}s to find those that are already covered by others,
+ * that is, those whose events are all matched as well by another Pattern. A
+ * Pattern covers another if, for each of subject, predicate and object, it
+ * either has no restriction, or the same one, or a wider one: a type that is
+ * equal or a superclass of the type of the other, or of the type of its exact
+ * instance.
+ * <p>
+ * Only what Patterns were built with is analysed. Any other kind of Context
+ * Event Pattern is never considered to cover, nor be covered by, others, and
+ * neither are Patterns extended with the native API considered to cover
+ * others.
+ *
+ * @author alfiva
+ *
+ */
+public class PatternAnalyser {
+
+	/**
+	 * Not to be instantiated.
+	 */
+	private PatternAnalyser() {
+	}
+
+	/**
+	 * Check whether all the events matched by a Pattern are also matched by
+	 * another.
+	 *
+	 * @param wide
+	 *            The Pattern that may cover the other.
+	 * @param narrow
+	 *            The Pattern that may be covered.
+	 * @return <code>true</code> if <code>wide</code> covers
+	 *         <code>narrow</code>.
+	 */
+	public static boolean covers(Pattern wide, Pattern narrow) {
+		if (wide == narrow) {
+			return true;
+		}
+		if (wide.isExtended()) {
+			return false;
+		}
+		if (wide.getPredicate() != null && !wide.getPredicate().equals(narrow.getPredicate())) {
+			return false;
+		}
+		if (wide.getSubject() != null
+				&& (narrow.getSubject() == null || !wide.getSubject().getURI().equals(narrow.getSubject().getURI()))) {
+			return false;
+		}
+		if (wide.getSubjectTypeURI() != null
+				&& !isSubType(typeOf(narrow.getSubject(), narrow.getSubjectTypeURI()), wide.getSubjectTypeURI())) {
+			return false;
+		}
+		if (wide.getObject() != null && !sameValue(wide.getObject(), narrow.getObject())) {
+			return false;
+		}
+		if (wide.getObjectTypeURI() != null
+				&& !isSubType(typeOf(narrow.getObject(), narrow.getObjectTypeURI()), wide.getObjectTypeURI())) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Remove from an array of patterns the Patterns covered by others in it.
+	 * Since a subscriber receives the events matching any of its patterns, the
+	 * result can be used instead of the original without changing which events
+	 * are received, while the bus has less patterns to evaluate.
+	 *
+	 * @param patterns
+	 *            The patterns.
+	 * @return The patterns that are not covered by others, in the same order.
+	 *         Of several equivalent Patterns, the first is kept. The same
+	 *         array is returned if none is covered.
+	 */
+	public static ContextEventPattern[] reduce(ContextEventPattern[] patterns) {
+		if (patterns == null || patterns.length < 2) {
+			return patterns;
+		}
+		ArrayList<ContextEventPattern> kept = new ArrayList<ContextEventPattern>(patterns.length);
+		for (int i = 0; i < patterns.length; i++) {
+			if (!isCovered(patterns, i)) {
+				kept.add(patterns[i]);
+			}
+		}
+		if (kept.size() == patterns.length) {
+			return patterns;
+		}
+		return kept.toArray(new ContextEventPattern[kept.size()]);
+	}
+
+	/**
+	 * Check whether a pattern of an array is covered by another one of it.
+	 *
+	 * @param patterns
+	 *            The patterns.
+	 * @param i
+	 *            The index of the pattern to check.
+	 * @return <code>true</code> if it is covered by another that is kept.
+	 */
+	private static boolean isCovered(ContextEventPattern[] patterns, int i) {
+		if (!(patterns[i] instanceof Pattern)) {
+			return false;
+		}
+		Pattern narrow = (Pattern) patterns[i];
+		for (int j = 0; j < patterns.length; j++) {
+			if (j == i || !(patterns[j] instanceof Pattern)) {
+				continue;
+			}
+			Pattern wide = (Pattern) patterns[j];
+			// Equivalent patterns cover each other: only the first is kept
+			if (covers(wide, narrow) && (j < i || !covers(narrow, wide))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get the type a Pattern restricts a member of the event to.
+	 *
+	 * @param instance
+	 *            The exact instance, if set.
+	 * @param typeURI
+	 *            The type, if set.
+	 * @return The type URI, or null if it is not restricted.
+	 */
+	private static String typeOf(Object instance, String typeURI) {
+		if (instance instanceof ManagedIndividual) {
+			return ((ManagedIndividual) instance).getClassURI();
+		}
+		if (instance != null) {
+			return TypeMapper.getDatatypeURI(instance);
+		}
+		return typeURI;
+	}
+
+	/**
+	 * Check whether a type is equal or a subclass of another.
+	 *
+	 * @param sub
+	 *            The possible subclass. Null for any type.
+	 * @param sup
+	 *            The possible superclass.
+	 * @return <code>true</code> if it is.
+	 */
+	private static boolean isSubType(String sub, String sup) {
+		if (sub == null) {
+			return false;
+		}
+		if (sub.equals(sup)) {
+			return true;
+		}
+		OntologyManagement om = OntologyManagement.getInstance();
+		return om != null && om.isEqualOrSubClass(sub, sup);
+	}
+
+	/**
+	 * Check whether two exact values are the same.
+	 *
+	 * @param a
+	 *            A value.
+	 * @param b
+	 *            Another value, or null.
+	 * @return <code>true</code> if they are equal, or are resources with the
+	 *         same URI.
+	 */
+	private static boolean sameValue(Object a, Object b) {
+		if (b == null) {
+			return false;
+		}
+		if (a instanceof Resource && b instanceof Resource && !((Resource) a).isAnon()) {
+			return ((Resource) a).getURI().equals(((Resource) b).getURI());
+		}
+		return a.equals(b);
+	}
+
+}
@@ -0,0 +1,240 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.mid;
+
+import java.util.ArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.universAAL.middleware.context.ContextEvent;
+import org.universAAL.utilities.api.ICBatchListener;
+import org.universAAL.utilities.api.ICListener;
+
+/**
+ * Gathers the events it receives one by one as an {@link ICListener} and
+ * passes them in batches to an {@link ICBatchListener}. A batch is passed when
+ * it reaches a maximum size, or when its first event has waited a maximum
+ * latency, whatever happens first. Two lists are used alternately, so that
+ * events keep being gathered in one while the other is being handled, and no
+ * list is created per batch.
+ * <p/>
+ * Latency is enforced by a timer thread shared by all batchers, which also
+ * passes the batches that are due by time. Listeners should therefore be
+ * quick, or hand the work over to other threads.
+ *
+ * @author alfiva
+ *
+ */
+public class EventBatcher implements ICListener {
+
+	/**
+	 * Timer shared by all open batchers.
+	 */
+	private static volatile ScheduledExecutorService timer;
+
+	/**
+	 * Number of open batchers using the timer.
+	 */
+	private static int timerUsers;
+
+	/**
+	 * The listener receiving the batches.
+	 */
+	private ICBatchListener listener;
+
+	/**
+	 * Maximum number of events in a batch.
+	 */
+	private int maxSize;
+
+	/**
+	 * Maximum time an event waits, in milliseconds. 0 for no limit.
+	 */
+	private long maxLatency;
+
+	/**
+	 * The list where events are being gathered.
+	 */
+	private ArrayList<ContextEvent> filling;
+
+	/**
+	 * The other list, when not being handled by the listener.
+	 */
+	private ArrayList<ContextEvent> spare;
+
+	/**
+	 * Lock that serializes the calls to the listener.
+	 */
+	private final Object flushLock = new Object();
+
+	/**
+	 * Timed flush of the batch being gathered, if any.
+	 */
+	private ScheduledFuture<?> timed;
+
+	/**
+	 * Task of the timed flushes.
+	 */
+	private Runnable timedFlush = new Runnable() {
+		public void run() {
+			flush();
+		}
+	};
+
+	/**
+	 * Whether it has been closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Create a batcher.
+	 *
+	 * @param listener
+	 *            The listener that will receive the batches.
+	 * @param maxSize
+	 *            Maximum number of events in a batch.
+	 * @param maxLatency
+	 *            Maximum time, in milliseconds, that an event waits before
+	 *            its batch is passed. 0 to wait until the batch is full.
+	 */
+	public EventBatcher(ICBatchListener listener, int maxSize, long maxLatency) {
+		if (maxSize < 1 || maxLatency < 0) {
+			throw new IllegalArgumentException("Invalid batch size or latency");
+		}
+		this.listener = listener;
+		this.maxSize = maxSize;
+		this.maxLatency = maxLatency;
+		int capacity = Math.min(maxSize, 1024);
+		filling = new ArrayList<ContextEvent>(capacity);
+		spare = new ArrayList<ContextEvent>(capacity);
+		if (maxLatency > 0) {
+			acquireTimer();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.utilities.api.ICListener#handleContextEvent(org.universAAL
+	 * .middleware.context.ContextEvent)
+	 */
+	public void handleContextEvent(ContextEvent event) {
+		boolean full;
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			filling.add(event);
+			if (filling.size() == 1 && maxLatency > 0) {
+				timed = timer.schedule(timedFlush, maxLatency, TimeUnit.MILLISECONDS);
+			}
+			full = filling.size() >= maxSize;
+		}
+		if (full) {
+			flush();
+		}
+	}
+
+	/**
+	 * Pass the events gathered so far to the listener, if there are any.
+	 */
+	public void flush() {
+		synchronized (flushLock) {
+			ArrayList<ContextEvent> batch;
+			synchronized (this) {
+				if (filling.isEmpty()) {
+					return;
+				}
+				batch = filling;
+				filling = spare;
+				spare = null;
+				if (timed != null) {
+					timed.cancel(false);
+					timed = null;
+				}
+			}
+			try {
+				listener.handleContextEvents(batch);
+			} finally {
+				batch.clear();
+				synchronized (this) {
+					spare = batch;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Pass the pending events to the listener and stop accepting new ones.
+	 */
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		flush();
+		if (maxLatency > 0) {
+			releaseTimer();
+		}
+	}
+
+	/**
+	 * Get the number of events waiting to be passed.
+	 *
+	 * @return The number of events.
+	 */
+	public synchronized int getPendingCount() {
+		return filling.size();
+	}
+
+	/**
+	 * Start using the shared timer, creating it if needed.
+	 */
+	private static synchronized void acquireTimer() {
+		if (timerUsers++ == 0) {
+			timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "EventBatcher timer");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Stop using the shared timer, stopping it if no one else uses it.
+	 */
+	private static synchronized void releaseTimer() {
+		if (--timerUsers == 0) {
+			timer.shutdown();
+			timer = null;
+		}
+	}
+
+}
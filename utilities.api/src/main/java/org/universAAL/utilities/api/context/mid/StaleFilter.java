@@ -0,0 +1,231 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.mid;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.universAAL.middleware.context.ContextEvent;
+import org.universAAL.utilities.api.ICListener;
+
+/**
+ * Passes to an {@link ICListener} only the events that are still fresh. Events
+ * whose timestamp is older than a maximum age are skipped. Optionally, events
+ * can also be conflated: they are queued by subject and predicate, and a newer
+ * event replaces the one of the same subject and predicate still waiting, so
+ * the listener only gets the latest value of each. In that case the listener
+ * is called from a worker thread of this filter, which frees the bus threads
+ * immediately, and the queue never holds more than one event per subject and
+ * predicate. The age is checked again right before passing an event.
+ * <p/>
+ * The number of skipped events of each kind can be queried, to know how much
+ * the node is behind.
+ *
+ * @author alfiva
+ *
+ */
+public class StaleFilter implements ICListener {
+
+	/**
+	 * The listener receiving the fresh events.
+	 */
+	private ICListener listener;
+
+	/**
+	 * Maximum age of the events, in milliseconds. 0 for no limit.
+	 */
+	private long maxAge;
+
+	/**
+	 * Events waiting to be passed, by subject and predicate. Null if not
+	 * conflating.
+	 */
+	private LinkedHashMap<String, ContextEvent> latest;
+
+	/**
+	 * Whether it has been closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Number of events skipped for being too old.
+	 */
+	private AtomicLong skippedStale = new AtomicLong();
+
+	/**
+	 * Number of events replaced by a newer one.
+	 */
+	private AtomicLong skippedReplaced = new AtomicLong();
+
+	/**
+	 * Create a filter.
+	 *
+	 * @param listener
+	 *            The listener that will receive the fresh events.
+	 * @param maxAge
+	 *            Maximum age of the events, in milliseconds, according to
+	 *            their timestamp. 0 for no limit.
+	 * @param conflate
+	 *            Whether to queue the events and replace those waiting with
+	 *            newer ones of the same subject and predicate.
+	 */
+	public StaleFilter(ICListener listener, long maxAge, boolean conflate) {
+		if (maxAge < 0) {
+			throw new IllegalArgumentException("The maximum age must not be negative");
+		}
+		this.listener = listener;
+		this.maxAge = maxAge;
+		if (conflate) {
+			latest = new LinkedHashMap<String, ContextEvent>();
+			Thread worker = new Thread(new Runnable() {
+				public void run() {
+					drain();
+				}
+			}, "StaleFilter worker");
+			worker.setDaemon(true);
+			worker.start();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.utilities.api.ICListener#handleContextEvent(org.universAAL
+	 * .middleware.context.ContextEvent)
+	 */
+	public void handleContextEvent(ContextEvent event) {
+		if (isStale(event, System.currentTimeMillis())) {
+			skippedStale.incrementAndGet();
+			return;
+		}
+		if (latest == null) {
+			listener.handleContextEvent(event);
+			return;
+		}
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			// A replaced key keeps its place, so subjects are not starved
+			if (latest.put(event.getSubjectURI() + ' ' + event.getRDFPredicate(), event) != null) {
+				skippedReplaced.incrementAndGet();
+			} else if (latest.size() == 1) {
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Stop passing events. Events still waiting are discarded.
+	 */
+	public synchronized void close() {
+		closed = true;
+		if (latest != null) {
+			latest.clear();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Get the number of events skipped because they were older than the
+	 * maximum age.
+	 *
+	 * @return The number of events.
+	 */
+	public long getSkippedStaleCount() {
+		return skippedStale.get();
+	}
+
+	/**
+	 * Get the number of events skipped because a newer one for the same
+	 * subject and predicate arrived before they were passed.
+	 *
+	 * @return The number of events.
+	 */
+	public long getSkippedReplacedCount() {
+		return skippedReplaced.get();
+	}
+
+	/**
+	 * Get the number of events waiting to be passed.
+	 *
+	 * @return The number of events.
+	 */
+	public synchronized int getPendingCount() {
+		return latest == null ? 0 : latest.size();
+	}
+
+	/**
+	 * Check whether an event is older than the maximum age.
+	 *
+	 * @param event
+	 *            The event.
+	 * @param now
+	 *            The current time.
+	 * @return <code>true</code> if it is too old. Events without timestamp
+	 *         are never too old.
+	 */
+	private boolean isStale(ContextEvent event, long now) {
+		if (maxAge == 0) {
+			return false;
+		}
+		Long timestamp = event.getTimestamp();
+		return timestamp != null && now - timestamp.longValue() > maxAge;
+	}
+
+	/**
+	 * Pass the queued events to the listener, oldest first, until closed.
+	 */
+	private void drain() {
+		while (true) {
+			ContextEvent event;
+			synchronized (this) {
+				while (latest.isEmpty() && !closed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (closed) {
+					return;
+				}
+				Iterator<Map.Entry<String, ContextEvent>> it = latest.entrySet().iterator();
+				event = it.next().getValue();
+				it.remove();
+			}
+			if (isStale(event, System.currentTimeMillis())) {
+				skippedStale.incrementAndGet();
+				continue;
+			}
+			try {
+				listener.handleContextEvent(event);
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+}
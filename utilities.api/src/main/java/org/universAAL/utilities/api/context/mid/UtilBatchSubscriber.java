@@ -0,0 +1,114 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.mid;
+
+import org.universAAL.middleware.container.ModuleContext;
+import org.universAAL.middleware.context.ContextEvent;
+import org.universAAL.middleware.context.ContextEventPattern;
+import org.universAAL.utilities.api.ICBatchListener;
+
+/**
+ * This abstract class can be extended to create a simple Context Subscriber
+ * that receives the events in batches. Like {@link UtilSubscriber}, it allows
+ * specifying everything it needs in its constructor. Your class that extends
+ * this will receive the specified events in the handleContextEvents method,
+ * once there are enough of them or the oldest has waited long enough.
+ * <p/>
+ * Example: A subscriber that stores the readings of all sensors in batches of
+ * up to 500, waiting at most 2 seconds.
+ * <code>
+ * <p/>subscriber = new BatchExample(context, new ContextEventPattern[] {
+ * <p/>		new Pattern(Sensor.MY_URI, null, null) }, 500, 2000);
+ * </code>
+ * <p/>
+ *
+ * @author alfiva
+ *
+ */
+public abstract class UtilBatchSubscriber extends UtilSubscriber implements ICBatchListener {
+
+	/**
+	 * The batcher gathering the events.
+	 */
+	private EventBatcher batcher;
+
+	/**
+	 * Create a simple Context Subscriber that will receive in batches the
+	 * events matching any of the given patterns.
+	 *
+	 * @param context
+	 *            The universAAL module context.
+	 * @param patterns
+	 *            Array of Patterns describing the events to listen to.
+	 * @param maxSize
+	 *            Maximum number of events in a batch.
+	 * @param maxLatency
+	 *            Maximum time, in milliseconds, that an event waits before
+	 *            its batch is passed. 0 to wait until the batch is full.
+	 */
+	protected UtilBatchSubscriber(ModuleContext context, ContextEventPattern[] patterns, int maxSize,
+			long maxLatency) {
+		super(context, patterns);
+		EventBatcher b = new EventBatcher(this, maxSize, maxLatency);
+		synchronized (this) {
+			batcher = b;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.middleware.context.ContextSubscriber#handleContextEvent
+	 * (org.universAAL.middleware.context.ContextEvent)
+	 */
+	@Override
+	public final void handleContextEvent(ContextEvent event) {
+		EventBatcher b;
+		synchronized (this) {
+			b = batcher;
+		}
+		if (b != null) {
+			b.handleContextEvent(event);
+		}
+	}
+
+	/**
+	 * Pass the events gathered so far to handleContextEvents, without waiting
+	 * for the batch to be full.
+	 */
+	public void flush() {
+		batcher.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.context.ContextSubscriber#close()
+	 */
+	@Override
+	public void close() {
+		batcher.close();
+		super.close();
+	}
+
+}
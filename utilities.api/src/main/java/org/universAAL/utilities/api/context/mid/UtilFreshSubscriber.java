@@ -0,0 +1,140 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.mid;
+
+import org.universAAL.middleware.container.ModuleContext;
+import org.universAAL.middleware.context.ContextEvent;
+import org.universAAL.middleware.context.ContextEventPattern;
+import org.universAAL.utilities.api.ICListener;
+
+/**
+ * This abstract class can be extended to create a simple Context Subscriber
+ * that skips the events that are too old. Like {@link UtilSubscriber}, it
+ * allows specifying everything it needs in its constructor. Your class that
+ * extends this will receive the fresh events in the handleFreshEvent method.
+ * Optionally, events can be conflated, so that an event waiting to be handled
+ * is replaced by a newer one of the same subject and predicate. This helps
+ * catching up after a burst of events.
+ * <p/>
+ * Example: A subscriber that only handles temperatures of the last 30
+ * seconds, keeping only the latest of each sensor.
+ * <code>
+ * <p/>subscriber = new FreshExample(context, new ContextEventPattern[] {
+ * <p/>		new Pattern(TempSensor.MY_URI, TempSensor.PROP_HAS_VALUE, null) }, 30000, true);
+ * </code>
+ * <p/>
+ *
+ * @author alfiva
+ *
+ */
+public abstract class UtilFreshSubscriber extends UtilSubscriber {
+
+	/**
+	 * The filter of stale events.
+	 */
+	private StaleFilter filter;
+
+	/**
+	 * Create a simple Context Subscriber that will receive the fresh events
+	 * matching any of the given patterns.
+	 *
+	 * @param context
+	 *            The universAAL module context.
+	 * @param patterns
+	 *            Array of Patterns describing the events to listen to.
+	 * @param maxAge
+	 *            Maximum age of the events, in milliseconds, according to
+	 *            their timestamp. 0 for no limit.
+	 * @param conflate
+	 *            Whether events waiting to be handled are replaced by newer
+	 *            ones of the same subject and predicate.
+	 */
+	protected UtilFreshSubscriber(ModuleContext context, ContextEventPattern[] patterns, long maxAge,
+			boolean conflate) {
+		super(context, patterns);
+		StaleFilter f = new StaleFilter(new ICListener() {
+			public void handleContextEvent(ContextEvent event) {
+				handleFreshEvent(event);
+			}
+		}, maxAge, conflate);
+		synchronized (this) {
+			filter = f;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.middleware.context.ContextSubscriber#handleContextEvent
+	 * (org.universAAL.middleware.context.ContextEvent)
+	 */
+	@Override
+	public final void handleContextEvent(ContextEvent event) {
+		StaleFilter f;
+		synchronized (this) {
+			f = filter;
+		}
+		if (f != null) {
+			f.handleContextEvent(event);
+		}
+	}
+
+	/**
+	 * Called with the events that are still fresh.
+	 *
+	 * @param event
+	 *            The received event.
+	 */
+	public abstract void handleFreshEvent(ContextEvent event);
+
+	/**
+	 * Get the number of events skipped because they were too old.
+	 *
+	 * @return The number of events.
+	 */
+	public long getSkippedStaleCount() {
+		return filter.getSkippedStaleCount();
+	}
+
+	/**
+	 * Get the number of events skipped because a newer one for the same
+	 * subject and predicate arrived before they were handled.
+	 *
+	 * @return The number of events.
+	 */
+	public long getSkippedReplacedCount() {
+		return filter.getSkippedReplacedCount();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.context.ContextSubscriber#close()
+	 */
+	@Override
+	public void close() {
+		filter.close();
+		super.close();
+	}
+
+}
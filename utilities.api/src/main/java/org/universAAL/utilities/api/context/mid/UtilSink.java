@@ -0,0 +1,221 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.mid;
+
+import org.universAAL.middleware.context.ContextEvent;
+import org.universAAL.middleware.context.ContextPublisher;
+import org.universAAL.utilities.api.ICStreamListener;
+import org.universAAL.utilities.api.ICSubscription;
+
+/**
+ * An {@link ICStreamListener} that publishes the events it receives through a
+ * Context Publisher, like a {@link UtilPublisher}. It requests events in
+ * batches, and only asks for more once those received have been published, so
+ * the source is never ahead of the bus by more than a batch.
+ * <p/>
+ * Example: Publishing the events produced by a streaming source.
+ * <code>
+ * <p/>source.subscribe(new UtilSink(new UtilPublisher(context, ...)));
+ * </code>
+ * <p/>
+ *
+ * @author alfiva
+ *
+ */
+public class UtilSink implements ICStreamListener {
+
+	/**
+	 * Default number of events requested at a time.
+	 */
+	public static final int DEFAULT_BATCH = 64;
+
+	/**
+	 * The publisher used to send events. Null if publish is overridden.
+	 */
+	private ContextPublisher publisher;
+
+	/**
+	 * Number of events requested at a time.
+	 */
+	private int batch;
+
+	/**
+	 * The subscription to the source.
+	 */
+	private ICSubscription subscription;
+
+	/**
+	 * Events requested and not yet received.
+	 */
+	private int pending;
+
+	/**
+	 * Number of events published.
+	 */
+	private volatile long published;
+
+	/**
+	 * Whether the source has ended.
+	 */
+	private volatile boolean done;
+
+	/**
+	 * The error that ended the source, if any.
+	 */
+	private volatile Throwable error;
+
+	/**
+	 * Create a sink that requests events in batches of the default size.
+	 *
+	 * @param publisher
+	 *            The publisher used to send the events.
+	 */
+	public UtilSink(ContextPublisher publisher) {
+		this(publisher, DEFAULT_BATCH);
+	}
+
+	/**
+	 * Create a sink.
+	 *
+	 * @param publisher
+	 *            The publisher used to send the events. It can be null if
+	 *            <code>publish</code> is overridden.
+	 * @param batch
+	 *            Number of events requested at a time.
+	 */
+	public UtilSink(ContextPublisher publisher, int batch) {
+		if (batch < 1) {
+			throw new IllegalArgumentException("The batch must be positive");
+		}
+		this.publisher = publisher;
+		this.batch = batch;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.utilities.api.ICStreamListener#onSubscribe(org.universAAL
+	 * .utilities.api.ICSubscription)
+	 */
+	public void onSubscribe(ICSubscription s) {
+		synchronized (this) {
+			if (subscription != null) {
+				s.cancel(); // Only one source at a time
+				return;
+			}
+			subscription = s;
+			pending = batch;
+		}
+		s.request(batch);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.utilities.api.ICStreamListener#onNext(org.universAAL.
+	 * middleware.context.ContextEvent)
+	 */
+	public void onNext(ContextEvent event) {
+		publish(event);
+		published++;
+		if (--pending <= batch / 2) {
+			int more = batch - pending;
+			pending = batch;
+			subscription.request(more);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.utilities.api.ICStreamListener#onError(java.lang.Throwable
+	 * )
+	 */
+	public void onError(Throwable t) {
+		error = t;
+		done = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.utilities.api.ICStreamListener#onComplete()
+	 */
+	public void onComplete() {
+		done = true;
+	}
+
+	/**
+	 * Stop receiving events from the source.
+	 */
+	public void cancel() {
+		ICSubscription s;
+		synchronized (this) {
+			s = subscription;
+		}
+		if (s != null) {
+			s.cancel();
+		}
+		done = true;
+	}
+
+	/**
+	 * Publish a received event. Override it to send events by other means.
+	 *
+	 * @param event
+	 *            The event to publish.
+	 */
+	protected void publish(ContextEvent event) {
+		publisher.publish(event);
+	}
+
+	/**
+	 * Get how many events have been published.
+	 *
+	 * @return The number of events.
+	 */
+	public long getPublishedCount() {
+		return published;
+	}
+
+	/**
+	 * Check whether the source has ended, or the sink has been cancelled.
+	 *
+	 * @return <code>true</code> if no more events will be received.
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Get the error that ended the source.
+	 *
+	 * @return The error, or null if there was none.
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+}
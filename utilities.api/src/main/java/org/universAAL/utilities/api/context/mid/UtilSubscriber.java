@@ -26,6 +26,7 @@ import org.universAAL.middleware.context.ContextEventPattern;
 import org.universAAL.middleware.context.ContextSubscriber;
 import org.universAAL.middleware.owl.ManagedIndividual;
 import org.universAAL.utilities.api.context.Pattern;
+import org.universAAL.utilities.api.context.PatternAnalyser;
 
 /**
  * This abstract class can be extended to create a simple Context Subscriber.
@@ -124,4 +125,21 @@ public abstract class UtilSubscriber extends ContextSubscriber {
 		super(context, new ContextEventPattern[] { new Pattern(subjTypeURI, predicate, obj) });
 	}
 
+	/**
+	 * Create a simple Context Subscriber that will listen to the events
+	 * matching any of the given patterns. This is useful for subscribers that
+	 * combine several Patterns, like the ones that detect sequences of events.
+	 * Patterns already covered by others in the array are not registered,
+	 * since they would not change which events are received.
+	 *
+	 * @param context
+	 *            The universAAL module context.
+	 * @param patterns
+	 *            Array of Patterns describing the events to listen to, as
+	 *            normally used in the native API.
+	 */
+	protected UtilSubscriber(ModuleContext context, ContextEventPattern[] patterns) {
+		super(context, PatternAnalyser.reduce(patterns));
+	}
+
 }
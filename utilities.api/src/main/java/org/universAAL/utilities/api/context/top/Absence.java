@@ -0,0 +1,81 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+import org.universAAL.utilities.api.context.Pattern;
+
+/**
+ * Rule that fires when an event matching a first pattern is NOT followed, for
+ * the same subject, by an event matching a second pattern within a time
+ * window. Example: "no C within 10 min after A". The rule fires when the window
+ * expires, so there is no event associated to the firing.
+ *
+ * @author alfiva
+ *
+ */
+public class Absence extends Rule {
+
+	/**
+	 * Create an absence rule.
+	 *
+	 * @param first
+	 *            Pattern of the event that starts waiting.
+	 * @param missing
+	 *            Pattern of the event that is expected to happen.
+	 * @param within
+	 *            Time to wait for the expected event, in milliseconds.
+	 */
+	public Absence(Pattern first, Pattern missing, long within) {
+		super(new Pattern[] { first, missing }, within);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.utilities.api.context.top.Rule#onEvent(int,
+	 * java.lang.String, long, org.universAAL.utilities.api.context.top.TimerWheel)
+	 */
+	@Override
+	boolean onEvent(int matched, String subject, long time, TimerWheel wheel) {
+		if ((matched & 2) != 0) {
+			partials.remove(subject);
+		} else if ((matched & 1) != 0 && !partials.containsKey(subject)) {
+			// Only the first event starts waiting, repetitions do not extend it
+			long[] state = new long[] { time + window };
+			partials.put(subject, state);
+			wheel.schedule(this, subject, state);
+		}
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.utilities.api.context.top.Rule#onExpiry(java.lang.
+	 * String, long[], long, org.universAAL.utilities.api.context.top.TimerWheel)
+	 */
+	@Override
+	boolean onExpiry(String subject, long[] state, long now, TimerWheel wheel) {
+		return expire(subject, state, now, wheel);
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+import org.universAAL.utilities.api.context.Pattern;
+
+/**
+ * Rule that fires when at least a number of events matching a pattern happen,
+ * for the same subject, within a time window. Example: "5 or more D in 1 min".
+ * After firing, counting starts again from zero.
+ *
+ * @author alfiva
+ *
+ */
+public class Count extends Rule {
+
+	/**
+	 * Minimum number of events that must happen.
+	 */
+	private int times;
+
+	/**
+	 * Create a counting rule.
+	 *
+	 * @param pattern
+	 *            Pattern of the events to count.
+	 * @param times
+	 *            Minimum number of events that must happen.
+	 * @param within
+	 *            Time window in which they must happen, in milliseconds.
+	 */
+	public Count(Pattern pattern, int times, long within) {
+		super(new Pattern[] { pattern }, within);
+		if (times < 1) {
+			throw new IllegalArgumentException("The number of events of a counting rule must be positive");
+		}
+		this.times = times;
+	}
+
+	/**
+	 * Get the minimum number of events that must happen.
+	 *
+	 * @return The number of events.
+	 */
+	public int getTimes() {
+		return times;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.utilities.api.context.top.Rule#onEvent(int,
+	 * java.lang.String, long, org.universAAL.utilities.api.context.top.TimerWheel)
+	 */
+	@Override
+	boolean onEvent(int matched, String subject, long time, TimerWheel wheel) {
+		if (times == 1) {
+			return true;
+		}
+		// State: [0] deadline of the newest event, [1] events held, [2] next
+		// slot, and then a ring with the times of the last events
+		long[] state = partials.get(subject);
+		if (state == null) {
+			state = new long[3 + times];
+			state[0] = time + window;
+			partials.put(subject, state);
+			wheel.schedule(this, subject, state);
+		}
+		int slot = (int) state[2];
+		state[3 + slot] = time;
+		state[2] = (slot + 1) % times;
+		if (state[1] < times) {
+			state[1]++;
+		}
+		state[0] = time + window;
+		// When full, the next slot holds the oldest of the last events
+		if (state[1] == times && time - state[3 + (int) state[2]] <= window) {
+			partials.remove(subject);
+			return true;
+		}
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.utilities.api.context.top.Rule#onExpiry(java.lang.
+	 * String, long[], long, org.universAAL.utilities.api.context.top.TimerWheel)
+	 */
+	@Override
+	boolean onExpiry(String subject, long[] state, long now, TimerWheel wheel) {
+		expire(subject, state, now, wheel);
+		return false;
+	}
+
+}
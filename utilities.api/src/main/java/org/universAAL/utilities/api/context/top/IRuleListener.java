@@ -0,0 +1,47 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+import org.universAAL.middleware.context.ContextEvent;
+
+/**
+ * Implementations of this interface receive the firings of the rules added to
+ * a {@link UtilDetector}.
+ *
+ * @author alfiva
+ *
+ */
+public interface IRuleListener {
+	/**
+	 * When a rule fires for a subject, this method is called. It is called
+	 * while the detector holds its lock, so it should return quickly.
+	 *
+	 * @param rule
+	 *            The rule that fired.
+	 * @param subjectURI
+	 *            The URI of the subject for which the rule fired.
+	 * @param event
+	 *            The event that completed the rule, or null if the rule fired
+	 *            because a time window expired (like in {@link Absence}).
+	 */
+	void handleRule(Rule rule, String subjectURI, ContextEvent event);
+}
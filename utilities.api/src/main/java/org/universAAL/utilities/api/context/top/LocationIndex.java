@@ -0,0 +1,356 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import org.universAAL.ontology.location.Location;
+import org.universAAL.ontology.location.position.Point;
+
+/**
+ * Index of the known locations of subjects, used to decide quickly whether a
+ * subject lies inside a {@link Region}. Locations given as coordinates (
+ * <code>Point</code>) are kept in a uniform grid, so that finding the subjects
+ * of an area only visits the cells it overlaps. Locations given as places,
+ * like a Room, are kept by URI, together with the places that contain them.
+ * Asking whether a single subject is inside a region is a hash lookup plus a
+ * few comparisons.
+ * <p/>
+ * The index is thread safe, and can be shared by several
+ * {@link UtilLocationSubscriber}s, which keep it updated with the events they
+ * receive. It can also be fed directly with <code>update</code>.
+ *
+ * @author alfiva
+ *
+ */
+public class LocationIndex {
+
+	/**
+	 * Default size of the cells of the grid, in the units of the coordinates.
+	 */
+	public static final double DEFAULT_CELL = 1.0;
+
+	/**
+	 * Maximum number of containing places followed from a location.
+	 */
+	private static final int MAX_CONTAINERS = 8;
+
+	/**
+	 * Known location of a subject.
+	 */
+	private static final class Known {
+		/**
+		 * X coordinate, if known.
+		 */
+		double x;
+		/**
+		 * Y coordinate, if known.
+		 */
+		double y;
+		/**
+		 * Whether coordinates are known.
+		 */
+		boolean hasPoint;
+		/**
+		 * Key of the grid cell, if coordinates are known.
+		 */
+		long cell;
+		/**
+		 * URIs of the places the subject is in, if known.
+		 */
+		String[] places;
+	}
+
+	/**
+	 * Size of the cells of the grid.
+	 */
+	private double cellSize;
+
+	/**
+	 * Known locations by subject URI.
+	 */
+	private HashMap<String, Known> subjects = new HashMap<String, Known>();
+
+	/**
+	 * Subject URIs by grid cell.
+	 */
+	private HashMap<Long, HashSet<String>> cells = new HashMap<Long, HashSet<String>>();
+
+	/**
+	 * Subject URIs by place URI.
+	 */
+	private HashMap<String, HashSet<String>> places = new HashMap<String, HashSet<String>>();
+
+	/**
+	 * Create an index with the default cell size.
+	 */
+	public LocationIndex() {
+		this(DEFAULT_CELL);
+	}
+
+	/**
+	 * Create an index.
+	 *
+	 * @param cellSize
+	 *            Size of the cells of the grid, in the units of the
+	 *            coordinates. It should be similar to the size of the regions
+	 *            that are queried.
+	 */
+	public LocationIndex(double cellSize) {
+		if (cellSize <= 0) {
+			throw new IllegalArgumentException("The cell size must be positive");
+		}
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * Set the current location of a subject, replacing the previous one.
+	 *
+	 * @param subjectURI
+	 *            The URI of the subject.
+	 * @param location
+	 *            Its location. If it is a Point, its coordinates are indexed.
+	 *            If it is a named place, its URI and the URIs of the places
+	 *            containing it are indexed. Null to forget the subject.
+	 */
+	public synchronized void update(String subjectURI, Location location) {
+		remove(subjectURI);
+		if (location == null) {
+			return;
+		}
+		Known k = new Known();
+		if (location instanceof Point) {
+			Point p = (Point) location;
+			k.x = p.getX();
+			k.y = p.getY();
+			k.hasPoint = true;
+			k.cell = cellKey(cell(k.x), cell(k.y));
+			HashSet<String> set = cells.get(k.cell);
+			if (set == null) {
+				set = new HashSet<String>();
+				cells.put(k.cell, set);
+			}
+			set.add(subjectURI);
+		}
+		ArrayList<String> containers = new ArrayList<String>(2);
+		Object place = location;
+		while (place instanceof Location && containers.size() < MAX_CONTAINERS) {
+			Location l = (Location) place;
+			if (!l.isAnon() && !containers.contains(l.getURI())) {
+				containers.add(l.getURI());
+			}
+			place = l.getProperty(Location.PROP_IS_CONTAINED_IN);
+		}
+		k.places = containers.toArray(new String[containers.size()]);
+		for (int i = 0; i < k.places.length; i++) {
+			HashSet<String> set = places.get(k.places[i]);
+			if (set == null) {
+				set = new HashSet<String>();
+				places.put(k.places[i], set);
+			}
+			set.add(subjectURI);
+		}
+		subjects.put(subjectURI, k);
+	}
+
+	/**
+	 * Forget the location of a subject.
+	 *
+	 * @param subjectURI
+	 *            The URI of the subject.
+	 */
+	public synchronized void remove(String subjectURI) {
+		Known k = subjects.remove(subjectURI);
+		if (k == null) {
+			return;
+		}
+		if (k.hasPoint) {
+			HashSet<String> set = cells.get(k.cell);
+			set.remove(subjectURI);
+			if (set.isEmpty()) {
+				cells.remove(k.cell);
+			}
+		}
+		for (int i = 0; i < k.places.length; i++) {
+			HashSet<String> set = places.get(k.places[i]);
+			set.remove(subjectURI);
+			if (set.isEmpty()) {
+				places.remove(k.places[i]);
+			}
+		}
+	}
+
+	/**
+	 * Check whether the known location of a subject is inside an area.
+	 *
+	 * @param subjectURI
+	 *            The URI of the subject.
+	 * @param minX
+	 *            Lower X bound of the area, inclusive.
+	 * @param minY
+	 *            Lower Y bound of the area, inclusive.
+	 * @param maxX
+	 *            Upper X bound of the area, inclusive.
+	 * @param maxY
+	 *            Upper Y bound of the area, inclusive.
+	 * @return <code>true</code> if the subject has known coordinates inside
+	 *         the area.
+	 */
+	public synchronized boolean isInArea(String subjectURI, double minX, double minY, double maxX, double maxY) {
+		Known k = subjects.get(subjectURI);
+		return k != null && k.hasPoint && k.x >= minX && k.x <= maxX && k.y >= minY && k.y <= maxY;
+	}
+
+	/**
+	 * Check whether the known location of a subject is a place or inside it.
+	 *
+	 * @param subjectURI
+	 *            The URI of the subject.
+	 * @param placeURI
+	 *            The URI of the place, like a Room.
+	 * @return <code>true</code> if the subject is known to be in the place.
+	 */
+	public synchronized boolean isInPlace(String subjectURI, String placeURI) {
+		HashSet<String> set = places.get(placeURI);
+		return set != null && set.contains(subjectURI);
+	}
+
+	/**
+	 * Find the subjects which known coordinates are inside an area.
+	 *
+	 * @param minX
+	 *            Lower X bound of the area, inclusive.
+	 * @param minY
+	 *            Lower Y bound of the area, inclusive.
+	 * @param maxX
+	 *            Upper X bound of the area, inclusive.
+	 * @param maxY
+	 *            Upper Y bound of the area, inclusive.
+	 * @param result
+	 *            Where the URIs of the found subjects are added.
+	 */
+	public synchronized void findInArea(double minX, double minY, double maxX, double maxY,
+			Collection<String> result) {
+		long x0 = cell(minX);
+		long x1 = cell(maxX);
+		long y0 = cell(minY);
+		long y1 = cell(maxY);
+		long width = x1 - x0 + 1;
+		long height = y1 - y0 + 1;
+		int populated = cells.size();
+		// Checked one by one, so that the product cannot overflow
+		if (width <= 0 || height <= 0 || width > populated || height > populated
+				|| width * height > populated) {
+			// Big area compared to the populated cells: visit these instead
+			for (HashSet<String> set : cells.values()) {
+				collect(set, minX, minY, maxX, maxY, result);
+			}
+			return;
+		}
+		for (long x = x0; x <= x1; x++) {
+			for (long y = y0; y <= y1; y++) {
+				HashSet<String> set = cells.get(cellKey(x, y));
+				if (set != null) {
+					collect(set, minX, minY, maxX, maxY, result);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find the subjects known to be in a place or inside it.
+	 *
+	 * @param placeURI
+	 *            The URI of the place, like a Room.
+	 * @param result
+	 *            Where the URIs of the found subjects are added.
+	 */
+	public synchronized void findInPlace(String placeURI, Collection<String> result) {
+		HashSet<String> set = places.get(placeURI);
+		if (set != null) {
+			result.addAll(set);
+		}
+	}
+
+	/**
+	 * Get how many subjects have a known location.
+	 *
+	 * @return The number of subjects.
+	 */
+	public synchronized int size() {
+		return subjects.size();
+	}
+
+	/**
+	 * Add the subjects of a cell that are inside an area.
+	 *
+	 * @param set
+	 *            The subjects of the cell.
+	 * @param minX
+	 *            Lower X bound of the area.
+	 * @param minY
+	 *            Lower Y bound of the area.
+	 * @param maxX
+	 *            Upper X bound of the area.
+	 * @param maxY
+	 *            Upper Y bound of the area.
+	 * @param result
+	 *            Where the URIs of the found subjects are added.
+	 */
+	private void collect(HashSet<String> set, double minX, double minY, double maxX, double maxY,
+			Collection<String> result) {
+		for (String uri : set) {
+			Known k = subjects.get(uri);
+			if (k.x >= minX && k.x <= maxX && k.y >= minY && k.y <= maxY) {
+				result.add(uri);
+			}
+		}
+	}
+
+	/**
+	 * Get the grid coordinate of a coordinate.
+	 *
+	 * @param v
+	 *            The coordinate.
+	 * @return The grid coordinate.
+	 */
+	private long cell(double v) {
+		return (long) Math.floor(v / cellSize);
+	}
+
+	/**
+	 * Combine two grid coordinates in a single key.
+	 *
+	 * @param x
+	 *            X grid coordinate.
+	 * @param y
+	 *            Y grid coordinate.
+	 * @return The key.
+	 */
+	private static long cellKey(long x, long y) {
+		return (x << 32) ^ (y & 0xFFFFFFFFL);
+	}
+
+}
@@ -0,0 +1,430 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is for internal use of the SensorPoller only. It polls many items
+ * periodically, each with its own interval: they are scheduled in a hashed
+ * timer wheel advanced by a timer, and polled in a bounded pool of threads.
+ * The items of the same driver can be limited to a number of polls at the
+ * same time: those that exceed it are polled in the next tick.
+ *
+ * @param <T>
+ *            The type of the polled items.
+ *
+ * @author alfiva
+ *
+ */
+abstract class PollScheduler<T> {
+
+	/**
+	 * Number of slots of the wheel.
+	 */
+	private static final int WHEEL_SLOTS = 4096;
+
+	/**
+	 * Permits of a driver without limit. Large enough to never run out, and
+	 * small enough to reduce and add back without overflow.
+	 */
+	private static final int UNLIMITED = Integer.MAX_VALUE / 2;
+
+	/**
+	 * Pool where items are polled.
+	 */
+	private ExecutorService pool;
+
+	/**
+	 * Timer advancing the wheel.
+	 */
+	private ScheduledExecutorService timer;
+
+	/**
+	 * Duration of each slot, in milliseconds.
+	 */
+	private long tick;
+
+	/**
+	 * The slots of the wheel, each a linked list of items. Also the lock of
+	 * the wheel.
+	 */
+	private Polled[] slots;
+
+	/**
+	 * Mask to get the slot of a tick number.
+	 */
+	private int mask;
+
+	/**
+	 * The next tick number to be processed.
+	 */
+	private long current;
+
+	/**
+	 * The polled items, by key.
+	 */
+	private Map<String, Polled> items = new ConcurrentHashMap<String, Polled>();
+
+	/**
+	 * The limits of polls at the same time, by driver. A limit is kept once
+	 * set, so that the polls in progress are always counted in it.
+	 */
+	private ConcurrentHashMap<String, Limit> drivers = new ConcurrentHashMap<String, Limit>();
+
+	/**
+	 * Source of the start times.
+	 */
+	private Random random = new Random();
+
+	/**
+	 * Whether it is still polling.
+	 */
+	private volatile boolean running = true;
+
+	/**
+	 * Create a scheduler and start its timer.
+	 *
+	 * @param threads
+	 *            Maximum number of items polled at the same time.
+	 * @param tick
+	 *            Duration of each tick, in milliseconds. This is the precision
+	 *            of the intervals.
+	 */
+	@SuppressWarnings("unchecked")
+	PollScheduler(int threads, long tick) {
+		this.tick = tick;
+		this.slots = (Polled[]) new PollScheduler.Polled[WHEEL_SLOTS];
+		this.mask = WHEEL_SLOTS - 1;
+		this.current = System.currentTimeMillis() / tick;
+		this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "SensorPoller read");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "SensorPoller tick");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		timer.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				advance(System.currentTimeMillis());
+			}
+		}, tick, tick, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Start polling an item, at a random point of its interval. If there was
+	 * already one with the same key, it is replaced.
+	 *
+	 * @param key
+	 *            The key of the item.
+	 * @param item
+	 *            The item, which is given to poll.
+	 * @param driver
+	 *            Name of the driver of the item, for the limits. Null for none.
+	 * @param interval
+	 *            Milliseconds between polls of the item.
+	 */
+	void add(String key, T item, String driver, long interval) {
+		Polled p = new Polled(item, driver, Math.max(interval, tick));
+		Polled previous = items.put(key, p);
+		if (previous != null) {
+			previous.removed = true;
+		}
+		schedule(p, System.currentTimeMillis() + (long) (random.nextDouble() * p.interval));
+	}
+
+	/**
+	 * Stop polling an item.
+	 *
+	 * @param key
+	 *            The key of the item.
+	 */
+	void remove(String key) {
+		Polled p = items.remove(key);
+		if (p != null) {
+			p.removed = true;
+		}
+	}
+
+	/**
+	 * Get how many items are polled.
+	 *
+	 * @return The number of items.
+	 */
+	int size() {
+		return items.size();
+	}
+
+	/**
+	 * Limit how many items of a driver are polled at the same time. If there
+	 * was already a limit, it is resized, so that the polls in progress keep
+	 * counting in it.
+	 *
+	 * @param driver
+	 *            Name of the driver, as given to add.
+	 * @param max
+	 *            Maximum number of polls at the same time. If 0 or less, there
+	 *            is no limit.
+	 */
+	void setDriverLimit(String driver, int max) {
+		int permits = max > 0 ? Math.min(max, UNLIMITED) : UNLIMITED;
+		Limit limit = drivers.get(driver);
+		if (limit == null) {
+			if (max <= 0) {
+				return;
+			}
+			limit = new Limit();
+			Limit existing = drivers.putIfAbsent(driver, limit);
+			if (existing != null) {
+				limit = existing;
+			}
+		}
+		limit.resize(permits);
+	}
+
+	/**
+	 * Stop polling all the items.
+	 */
+	void close() {
+		running = false;
+		timer.shutdownNow();
+		pool.shutdownNow();
+		items.clear();
+	}
+
+	/**
+	 * When an item is due, this method is called from one of the threads of
+	 * the pool. The polls of the same item never overlap.
+	 *
+	 * @param item
+	 *            The item to poll.
+	 */
+	abstract void poll(T item);
+
+	/**
+	 * Schedule the next poll of an item.
+	 *
+	 * @param p
+	 *            The item.
+	 * @param deadline
+	 *            When it is due.
+	 */
+	private void schedule(Polled p, long deadline) {
+		synchronized (slots) {
+			p.deadline = deadline;
+			long t = deadline / tick;
+			if (t < current) {
+				t = current;
+			}
+			int i = (int) (t & mask);
+			p.next = slots[i];
+			slots[i] = p;
+		}
+	}
+
+	/**
+	 * Advance the wheel over the ticks that have fully elapsed at the given
+	 * time and start polling the items that are due. The items whose deadline
+	 * belongs to a later turn of the wheel stay in their slot. The tick in
+	 * progress is not processed, since some of its items may not be due yet.
+	 *
+	 * @param now
+	 *            The current time.
+	 */
+	private void advance(long now) {
+		Polled due = null;
+		synchronized (slots) {
+			long last = now / tick - 1;
+			if (last - current >= slots.length) {
+				current = last - slots.length + 1;
+			}
+			for (; current <= last; current++) {
+				int i = (int) (current & mask);
+				Polled keep = null;
+				Polled p = slots[i];
+				while (p != null) {
+					Polled next = p.next;
+					if (p.deadline <= now) {
+						p.next = due;
+						due = p;
+					} else {
+						p.next = keep;
+						keep = p;
+					}
+					p = next;
+				}
+				slots[i] = keep;
+			}
+		}
+		while (due != null) {
+			Polled p = due;
+			due = p.next;
+			p.next = null;
+			if (p.removed || !running) {
+				continue;
+			}
+			Semaphore limit = p.driver == null ? null : drivers.get(p.driver);
+			if (limit != null && !limit.tryAcquire()) {
+				schedule(p, now + tick);
+				continue;
+			}
+			p.held = limit;
+			try {
+				pool.execute(p);
+			} catch (RejectedExecutionException e) {
+				if (limit != null) {
+					limit.release();
+				}
+			}
+		}
+	}
+
+	/**
+	 * The limit of polls at the same time of a driver, which can be resized
+	 * while polls hold it.
+	 */
+	private static final class Limit extends Semaphore {
+		/**
+		 * Serial version.
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The current maximum. Guarded by this.
+		 */
+		private int max;
+
+		/**
+		 * Create a limit without permits, to be resized.
+		 */
+		Limit() {
+			super(0);
+		}
+
+		/**
+		 * Change the maximum. If it is reduced below the polls in progress,
+		 * no more are started until enough of them finish.
+		 *
+		 * @param permits
+		 *            The new maximum.
+		 */
+		synchronized void resize(int permits) {
+			int delta = permits - max;
+			max = permits;
+			if (delta > 0) {
+				release(delta);
+			} else if (delta < 0) {
+				reducePermits(-delta);
+			}
+		}
+	}
+
+	/**
+	 * A polled item, which is also its entry in the wheel and its poll.
+	 */
+	private final class Polled implements Runnable {
+		/**
+		 * The item.
+		 */
+		private final T item;
+		/**
+		 * The name of its driver, or null.
+		 */
+		private final String driver;
+		/**
+		 * Milliseconds between polls.
+		 */
+		private final long interval;
+		/**
+		 * When the next poll is due.
+		 */
+		private long deadline;
+		/**
+		 * The next item in the same slot, or in the list of due items.
+		 */
+		private Polled next;
+		/**
+		 * The limit acquired for the poll in progress, if any.
+		 */
+		private Semaphore held;
+		/**
+		 * Whether it is no longer polled.
+		 */
+		private volatile boolean removed;
+
+		/**
+		 * Create a polled item.
+		 *
+		 * @param item
+		 *            The item
+		 * @param driver
+		 *            The name of its driver, or null
+		 * @param interval
+		 *            Milliseconds between polls
+		 */
+		Polled(T item, String driver, long interval) {
+			this.item = item;
+			this.driver = driver;
+			this.interval = interval;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run() {
+			try {
+				if (!removed) {
+					poll(item);
+				}
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			} finally {
+				Semaphore limit = held;
+				held = null;
+				if (limit != null) {
+					limit.release();
+				}
+			}
+			if (!removed && running) {
+				schedule(this, System.currentTimeMillis() + interval);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+import java.util.Collection;
+
+/**
+ * Describes where the subject of an event must be to be of interest for a
+ * {@link UtilLocationSubscriber}. It can be either an area, given by the bounds
+ * of the X and Y coordinates, or a place, like a Room, given by its URI. In
+ * the latter case anything located in a place contained in it is also inside.
+ * <p/>
+ * Example: A region covering the kitchen, and one covering a part of it.
+ * <code>
+ * <p/>Region kitchen = new Region("http://ontology.universAAL.org/Home.owl#kitchen");
+ * <p/>Region sink = new Region(0.0, 0.0, 1.5, 2.0);
+ * </code>
+ * <p/>
+ *
+ * @author alfiva
+ *
+ */
+public class Region {
+
+	/**
+	 * URI of the place, or null if this is an area.
+	 */
+	private String placeURI;
+
+	/**
+	 * Bounds of the area.
+	 */
+	private double minX, minY, maxX, maxY;
+
+	/**
+	 * Create a region covering a rectangular area. The order of the corners
+	 * does not matter.
+	 *
+	 * @param x1
+	 *            X coordinate of a corner.
+	 * @param y1
+	 *            Y coordinate of a corner.
+	 * @param x2
+	 *            X coordinate of the opposite corner.
+	 * @param y2
+	 *            Y coordinate of the opposite corner.
+	 */
+	public Region(double x1, double y1, double x2, double y2) {
+		this.minX = Math.min(x1, x2);
+		this.minY = Math.min(y1, y2);
+		this.maxX = Math.max(x1, x2);
+		this.maxY = Math.max(y1, y2);
+	}
+
+	/**
+	 * Create a region covering a place, and the places it contains.
+	 *
+	 * @param placeURI
+	 *            The URI of the place, like a Room.
+	 */
+	public Region(String placeURI) {
+		if (placeURI == null) {
+			throw new IllegalArgumentException("The place URI must not be null");
+		}
+		this.placeURI = placeURI;
+	}
+
+	/**
+	 * Check whether a subject is inside this region, according to its
+	 * location known by an index.
+	 *
+	 * @param index
+	 *            The index of known locations.
+	 * @param subjectURI
+	 *            The URI of the subject.
+	 * @return <code>true</code> if it is inside.
+	 */
+	public boolean contains(LocationIndex index, String subjectURI) {
+		if (placeURI != null) {
+			return index.isInPlace(subjectURI, placeURI);
+		}
+		return index.isInArea(subjectURI, minX, minY, maxX, maxY);
+	}
+
+	/**
+	 * Find all the subjects inside this region, according to their locations
+	 * known by an index.
+	 *
+	 * @param index
+	 *            The index of known locations.
+	 * @param result
+	 *            Where the URIs of the found subjects are added.
+	 */
+	public void findIn(LocationIndex index, Collection<String> result) {
+		if (placeURI != null) {
+			index.findInPlace(placeURI, result);
+		} else {
+			index.findInArea(minX, minY, maxX, maxY, result);
+		}
+	}
+
+	/**
+	 * Get the URI of the place covered by this region.
+	 *
+	 * @return The URI, or null if this region is an area.
+	 */
+	public String getPlaceURI() {
+		return placeURI;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		if (placeURI != null) {
+			return "Region[" + placeURI + "]";
+		}
+		return "Region[" + minX + "," + minY + " - " + maxX + "," + maxY + "]";
+	}
+
+}
@@ -0,0 +1,167 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+/**
+ * Summary of the samples of a time series in an interval, as returned by the
+ * rollup of a {@link TimeSeriesStore}.
+ *
+ * @author alfiva
+ *
+ */
+public class Rollup {
+
+	/**
+	 * Start of the interval, inclusive.
+	 */
+	private long start;
+
+	/**
+	 * End of the interval, exclusive.
+	 */
+	private long end;
+
+	/**
+	 * Number of samples.
+	 */
+	private int count;
+
+	/**
+	 * Minimum value.
+	 */
+	private double min = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Maximum value.
+	 */
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Sum of values.
+	 */
+	private double sum;
+
+	/**
+	 * Create an empty summary.
+	 *
+	 * @param start
+	 *            Start of the interval, inclusive.
+	 * @param end
+	 *            End of the interval, exclusive.
+	 */
+	Rollup(long start, long end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Add a value to the summary.
+	 *
+	 * @param value
+	 *            The value.
+	 */
+	void add(double value) {
+		count++;
+		sum += value;
+		if (value < min) {
+			min = value;
+		}
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	/**
+	 * Get the start of the interval.
+	 *
+	 * @return The time, inclusive.
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * Get the end of the interval.
+	 *
+	 * @return The time, exclusive.
+	 */
+	public long getEnd() {
+		return end;
+	}
+
+	/**
+	 * Get the number of samples in the interval.
+	 *
+	 * @return The number of samples.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Get the minimum value in the interval.
+	 *
+	 * @return The minimum.
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * Get the maximum value in the interval.
+	 *
+	 * @return The maximum.
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * Get the sum of the values in the interval.
+	 *
+	 * @return The sum.
+	 */
+	public double getSum() {
+		return sum;
+	}
+
+	/**
+	 * Get the average of the values in the interval.
+	 *
+	 * @return The average, or NaN if there are no samples.
+	 */
+	public double getAvg() {
+		return count == 0 ? Double.NaN : sum / count;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "Rollup[" + start + "-" + end + ": count=" + count + ", min=" + min + ", max=" + max + ", avg="
+				+ getAvg() + "]";
+	}
+
+}
@@ -0,0 +1,223 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+import java.util.HashMap;
+
+import org.universAAL.utilities.api.context.Pattern;
+
+/**
+ * Abstract class representing a time-window rule over Context Events, to be
+ * evaluated by a {@link UtilDetector}. Rules are evaluated separately for each
+ * subject: only events about the same subject make progress in the same
+ * partial match. The typical rules can be created with the static methods of
+ * this class:
+ * <p/>
+ * Example: Detect that a door was opened and then the motion sensor of the
+ * same room fired within 30 seconds, that a fridge door was opened and not
+ * closed in 10 minutes, and that any user fell 5 times in a minute <code>
+ * <p/>Rule r1=Rule.sequence(new Pattern(Room.MY_URI, PROP_DOOR, OPEN), new Pattern(Room.MY_URI, PROP_MOTION, null), 30000);
+ * <p/>Rule r2=Rule.absence(new Pattern(Fridge.MY_URI, PROP_DOOR, OPEN), new Pattern(Fridge.MY_URI, PROP_DOOR, CLOSED), 600000);
+ * <p/>Rule r3=Rule.count(new Pattern(User.MY_URI, PROP_FALL, null), 5, 60000);
+ * </code>
+ * <p/>
+ * A Rule keeps the partial matches of all subjects in a compact form (an array
+ * of timestamps per subject), so the same instance must not be added to more
+ * than one detector.
+ *
+ * @author alfiva
+ *
+ */
+public abstract class Rule {
+
+	/**
+	 * The patterns that make progress in this rule, in order.
+	 */
+	protected Pattern[] patterns;
+
+	/**
+	 * The time window of the rule, in milliseconds.
+	 */
+	protected long window;
+
+	/**
+	 * Partial matches of this rule, per subject URI. Only accessed by the
+	 * detector, while holding its lock.
+	 */
+	HashMap<String, long[]> partials = new HashMap<String, long[]>();
+
+	/**
+	 * Stamp of the last event that evaluated this rule, used by the detector
+	 * to evaluate each rule only once per event.
+	 */
+	long stamp = -1;
+
+	/**
+	 * Constructor for the rule types of this package.
+	 *
+	 * @param patterns
+	 *            The patterns that make progress in this rule, in order.
+	 * @param window
+	 *            The time window of the rule, in milliseconds.
+	 */
+	Rule(Pattern[] patterns, long window) {
+		if (window <= 0) {
+			throw new IllegalArgumentException("The time window of a rule must be positive");
+		}
+		this.patterns = patterns;
+		this.window = window;
+	}
+
+	/**
+	 * Equivalent to new Sequence(first, then, within);.
+	 *
+	 * @param first
+	 *            Pattern of the event that starts the sequence.
+	 * @param then
+	 *            Pattern of the event that completes the sequence.
+	 * @param within
+	 *            Maximum time between both events, in milliseconds.
+	 * @return The rule.
+	 */
+	public static Sequence sequence(Pattern first, Pattern then, long within) {
+		return new Sequence(first, then, within);
+	}
+
+	/**
+	 * Equivalent to new Absence(first, missing, within);.
+	 *
+	 * @param first
+	 *            Pattern of the event that starts waiting.
+	 * @param missing
+	 *            Pattern of the event that is expected to happen.
+	 * @param within
+	 *            Time to wait for the expected event, in milliseconds.
+	 * @return The rule.
+	 */
+	public static Absence absence(Pattern first, Pattern missing, long within) {
+		return new Absence(first, missing, within);
+	}
+
+	/**
+	 * Equivalent to new Count(pattern, times, within);.
+	 *
+	 * @param pattern
+	 *            Pattern of the events to count.
+	 * @param times
+	 *            Minimum number of events that must happen.
+	 * @param within
+	 *            Time window in which they must happen, in milliseconds.
+	 * @return The rule.
+	 */
+	public static Count count(Pattern pattern, int times, long within) {
+		return new Count(pattern, times, within);
+	}
+
+	/**
+	 * Get the patterns that make progress in this rule.
+	 *
+	 * @return The patterns, in order.
+	 */
+	public Pattern[] getPatterns() {
+		return patterns;
+	}
+
+	/**
+	 * Get the time window of this rule.
+	 *
+	 * @return The time window, in milliseconds.
+	 */
+	public long getWindow() {
+		return window;
+	}
+
+	/**
+	 * Get how many subjects currently have a partial match of this rule.
+	 *
+	 * @return The number of partial matches.
+	 */
+	public int getPartialCount() {
+		return partials.size();
+	}
+
+	/**
+	 * Called by the detector when an event about a subject matches some of the
+	 * patterns of this rule.
+	 *
+	 * @param matched
+	 *            Bit mask of the indexes of the patterns matched by the event.
+	 * @param subject
+	 *            The URI of the subject of the event.
+	 * @param time
+	 *            The time of the event.
+	 * @param wheel
+	 *            The timer wheel where expiry of partial matches is
+	 *            scheduled.
+	 * @return <code>true</code> if the rule fired with this event.
+	 */
+	abstract boolean onEvent(int matched, String subject, long time, TimerWheel wheel);
+
+	/**
+	 * Called by the detector when a scheduled expiry of a subject is due.
+	 *
+	 * @param subject
+	 *            The URI of the subject.
+	 * @param state
+	 *            The partial match for which the expiry was scheduled.
+	 * @param now
+	 *            The current time.
+	 * @param wheel
+	 *            The timer wheel, to reschedule if the partial match was
+	 *            extended after being scheduled.
+	 * @return <code>true</code> if the rule fired because of the expiry.
+	 */
+	abstract boolean onExpiry(String subject, long[] state, long now, TimerWheel wheel);
+
+	/**
+	 * Removes the partial match of a subject if its deadline, held in the first
+	 * position of its state, has passed, or reschedules it otherwise. Each
+	 * partial match is scheduled only once, so if it was already completed or
+	 * replaced by a new one, nothing is done.
+	 *
+	 * @param subject
+	 *            The URI of the subject.
+	 * @param state
+	 *            The partial match for which the expiry was scheduled.
+	 * @param now
+	 *            The current time.
+	 * @param wheel
+	 *            The timer wheel.
+	 * @return <code>true</code> if the partial match was removed.
+	 */
+	boolean expire(String subject, long[] state, long now, TimerWheel wheel) {
+		if (partials.get(subject) != state) {
+			return false;
+		}
+		if (state[0] > now) {
+			wheel.schedule(this, subject, state);
+			return false;
+		}
+		partials.remove(subject);
+		return true;
+	}
+
+}
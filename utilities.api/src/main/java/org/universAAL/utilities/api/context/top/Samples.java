@@ -0,0 +1,115 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+/**
+ * The samples returned by a query to a {@link TimeSeriesStore}, in increasing
+ * order of time. They are kept in primitive arrays.
+ *
+ * @author alfiva
+ *
+ */
+public class Samples {
+
+	/**
+	 * Times of the samples.
+	 */
+	private long[] times;
+
+	/**
+	 * Values of the samples.
+	 */
+	private double[] values;
+
+	/**
+	 * Number of samples.
+	 */
+	private int size;
+
+	/**
+	 * Create an empty set of samples.
+	 */
+	Samples() {
+		times = new long[16];
+		values = new double[16];
+	}
+
+	/**
+	 * Add a sample.
+	 *
+	 * @param time
+	 *            Time of the sample.
+	 * @param value
+	 *            Value of the sample.
+	 */
+	void add(long time, double value) {
+		if (size == times.length) {
+			long[] t = new long[size << 1];
+			double[] v = new double[size << 1];
+			System.arraycopy(times, 0, t, 0, size);
+			System.arraycopy(values, 0, v, 0, size);
+			times = t;
+			values = v;
+		}
+		times[size] = time;
+		values[size] = value;
+		size++;
+	}
+
+	/**
+	 * Get the number of samples.
+	 *
+	 * @return The number of samples.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the time of a sample.
+	 *
+	 * @param i
+	 *            Index of the sample.
+	 * @return Its time, in milliseconds.
+	 */
+	public long getTime(int i) {
+		if (i >= size) {
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+		}
+		return times[i];
+	}
+
+	/**
+	 * Get the value of a sample.
+	 *
+	 * @param i
+	 *            Index of the sample.
+	 * @return Its value.
+	 */
+	public double getValue(int i) {
+		if (i >= size) {
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+		}
+		return values[i];
+	}
+
+}
@@ -0,0 +1,226 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+import org.universAAL.middleware.container.ModuleContext;
+import org.universAAL.middleware.context.ContextEvent;
+import org.universAAL.middleware.context.owl.ContextProviderType;
+import org.universAAL.ontology.device.Sensor;
+import org.universAAL.ontology.device.StatusValue;
+import org.universAAL.ontology.device.ValueDevice;
+import org.universAAL.utilities.api.context.mid.UtilPublisher;
+
+/**
+ * This abstract class can be extended to read many on/off sensors
+ * periodically and publish their changes of status as context events, so that
+ * clients can subscribe to them instead of calling the sensor services again
+ * and again. Your class that extends this reads each sensor in the read
+ * method, in the same way a UtilSensorCallee does in executeGet.
+ * <p/>
+ * Each sensor is read with its own interval, starting at a random point of it
+ * so that sensors added together are not read together. Reads are scheduled
+ * in a hashed timer wheel, so that it scales to tens of thousands of sensors,
+ * and run in a bounded pool of threads. The sensors of the same driver can be
+ * limited to a number of reads at the same time with setDriverLimit: those
+ * that exceed it are read in the next tick. The limit can be changed at any
+ * time, and the reads already in progress count in the new one.
+ * <p/>
+ * An event is published when the status of a sensor is first read and each
+ * time it changes. Its subject is the sensor, the predicate
+ * <code>ValueDevice.PROP_HAS_VALUE</code> and the object a StatusValue.
+ * <p/>
+ * Example: Polling a motion sensor every 5 seconds. <code>
+ * <p/>poller = new PollerExample(context, PROVIDER_URI);
+ * <p/>poller.add(new MotionSensor(SENSOR_URI), DRIVER_NAME, 5000);
+ * </code>
+ *
+ * @author alfiva
+ *
+ */
+public abstract class SensorPoller {
+
+	/**
+	 * Default duration of each tick, in milliseconds.
+	 */
+	private static final long DEFAULT_TICK = 100;
+
+	/**
+	 * The publisher of the events.
+	 */
+	private UtilPublisher publisher;
+
+	/**
+	 * The scheduler of the reads.
+	 */
+	private PollScheduler<Watched> scheduler;
+
+	/**
+	 * Create a poller with a default tick of 100 ms and a pool of twice as many
+	 * threads as processors, at least 4.
+	 *
+	 * @param context
+	 *            The universAAL module context.
+	 * @param providerURI
+	 *            The URI that identifies the Context Provider of the events.
+	 */
+	protected SensorPoller(ModuleContext context, String providerURI) {
+		this(context, providerURI, Math.max(4, 2 * Runtime.getRuntime().availableProcessors()), DEFAULT_TICK);
+	}
+
+	/**
+	 * Create a poller.
+	 *
+	 * @param context
+	 *            The universAAL module context.
+	 * @param providerURI
+	 *            The URI that identifies the Context Provider of the events.
+	 * @param threads
+	 *            Maximum number of sensors read at the same time.
+	 * @param tick
+	 *            Duration of each tick, in milliseconds. This is the precision
+	 *            of the intervals.
+	 */
+	protected SensorPoller(ModuleContext context, String providerURI, int threads, long tick) {
+		this.publisher = new UtilPublisher(context, providerURI, ContextProviderType.gauge, (String) null,
+				ValueDevice.PROP_HAS_VALUE, StatusValue.MY_URI);
+		this.scheduler = new PollScheduler<Watched>(threads, tick) {
+			void poll(Watched w) {
+				Boolean status = Boolean.valueOf(read(w.sensor));
+				if (!status.equals(w.last)) {
+					w.last = status;
+					publish(w.sensor, status.booleanValue());
+				}
+			}
+		};
+	}
+
+	/**
+	 * Start polling a sensor. If it was already polled, it is replaced.
+	 *
+	 * @param sensor
+	 *            The sensor, which is given to read.
+	 * @param driver
+	 *            Name of the driver the sensor is read through, for the limits
+	 *            set with setDriverLimit. Null for none.
+	 * @param interval
+	 *            Milliseconds between reads of the sensor.
+	 */
+	public void add(Sensor sensor, String driver, long interval) {
+		scheduler.add(sensor.getURI(), new Watched(sensor), driver, interval);
+	}
+
+	/**
+	 * Stop polling a sensor.
+	 *
+	 * @param uri
+	 *            The URI of the sensor.
+	 */
+	public void remove(String uri) {
+		scheduler.remove(uri);
+	}
+
+	/**
+	 * Get how many sensors are polled.
+	 *
+	 * @return The number of sensors.
+	 */
+	public int size() {
+		return scheduler.size();
+	}
+
+	/**
+	 * Limit how many sensors of a driver are read at the same time. It can be
+	 * called again to change the limit: the reads in progress count in the
+	 * new one, so no more are started until they are below it.
+	 *
+	 * @param driver
+	 *            Name of the driver, as given to add.
+	 * @param max
+	 *            Maximum number of reads at the same time. If 0 or less, there
+	 *            is no limit.
+	 */
+	public void setDriverLimit(String driver, int max) {
+		scheduler.setDriverLimit(driver, max);
+	}
+
+	/**
+	 * Stop polling all the sensors and publishing.
+	 */
+	public void close() {
+		scheduler.close();
+		publisher.close();
+	}
+
+	/**
+	 * When a sensor is due, this method is called automatically from one of
+	 * the threads of the pool.
+	 *
+	 * @param sensor
+	 *            The sensor to read.
+	 * @return The Boolean value representing the measured value property of the
+	 *         sensor.
+	 */
+	public abstract boolean read(Sensor sensor);
+
+	/**
+	 * Publish the status of a sensor.
+	 *
+	 * @param sensor
+	 *            The sensor.
+	 * @param status
+	 *            Its status.
+	 */
+	private void publish(Sensor sensor, boolean status) {
+		try {
+			publisher.publish(ContextEvent.constructSimpleEvent(sensor.getURI(), sensor.getClassURI(),
+					ValueDevice.PROP_HAS_VALUE, status ? StatusValue.Activated : StatusValue.NotActivated));
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * A polled sensor and its last status.
+	 */
+	private static final class Watched {
+		/**
+		 * The sensor.
+		 */
+		private final Sensor sensor;
+		/**
+		 * The last status read, or null if none yet. Only used by the read of
+		 * the sensor, and reads of the same sensor never overlap.
+		 */
+		private Boolean last;
+
+		/**
+		 * Create a polled sensor.
+		 *
+		 * @param sensor
+		 *            The sensor
+		 */
+		Watched(Sensor sensor) {
+			this.sensor = sensor;
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+import org.universAAL.utilities.api.context.Pattern;
+
+/**
+ * Rule that fires when an event matching a first pattern is followed, for the
+ * same subject, by an event matching a second pattern within a time window.
+ * Example: "A then B within 30 s". If the first event repeats before the second
+ * arrives, the window starts again from the last one.
+ *
+ * @author alfiva
+ *
+ */
+public class Sequence extends Rule {
+
+	/**
+	 * Create a sequence rule.
+	 *
+	 * @param first
+	 *            Pattern of the event that starts the sequence.
+	 * @param then
+	 *            Pattern of the event that completes the sequence.
+	 * @param within
+	 *            Maximum time between both events, in milliseconds.
+	 */
+	public Sequence(Pattern first, Pattern then, long within) {
+		super(new Pattern[] { first, then }, within);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.utilities.api.context.top.Rule#onEvent(int,
+	 * java.lang.String, long, org.universAAL.utilities.api.context.top.TimerWheel)
+	 */
+	@Override
+	boolean onEvent(int matched, String subject, long time, TimerWheel wheel) {
+		long[] state = partials.get(subject);
+		// Completing is checked before starting, in case both patterns match
+		if ((matched & 2) != 0 && state != null && time <= state[0]) {
+			partials.remove(subject);
+			return true;
+		}
+		if ((matched & 1) != 0) {
+			if (state == null) {
+				state = new long[] { time + window };
+				partials.put(subject, state);
+				wheel.schedule(this, subject, state);
+			} else {
+				state[0] = time + window;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.utilities.api.context.top.Rule#onExpiry(java.lang.
+	 * String, long[], long, org.universAAL.utilities.api.context.top.TimerWheel)
+	 */
+	@Override
+	boolean onExpiry(String subject, long[] state, long now, TimerWheel wheel) {
+		expire(subject, state, now, wheel);
+		return false;
+	}
+
+}
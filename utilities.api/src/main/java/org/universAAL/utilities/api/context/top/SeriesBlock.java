@@ -0,0 +1,333 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+/**
+ * A block of consecutive samples of a single time series, compressed in a bit
+ * buffer backed by a primitive array. Timestamps are stored as the difference
+ * between consecutive deltas, which is zero for regular sampling, and values
+ * are stored as the XOR with the previous value, keeping only the meaningful
+ * bits. Most samples of a regular sensor take between 2 and 20 bits.
+ * <p/>
+ * Samples must be appended in increasing order of time. A block is not thread
+ * safe.
+ *
+ * @author alfiva
+ *
+ */
+final class SeriesBlock {
+
+	/**
+	 * The compressed bits.
+	 */
+	private long[] words = new long[4];
+
+	/**
+	 * Number of bits written.
+	 */
+	private int bits;
+
+	/**
+	 * Time of the first sample.
+	 */
+	private long start;
+
+	/**
+	 * Time of the last sample.
+	 */
+	private long last;
+
+	/**
+	 * Number of samples.
+	 */
+	private int count;
+
+	/**
+	 * Difference between the last two timestamps.
+	 */
+	private long lastDelta;
+
+	/**
+	 * Bits of the last value.
+	 */
+	private long lastValue;
+
+	/**
+	 * Leading zeros of the last meaningful XOR, -1 if none yet.
+	 */
+	private int lastLeading = -1;
+
+	/**
+	 * Trailing zeros of the last meaningful XOR.
+	 */
+	private int lastTrailing;
+
+	/**
+	 * Start a block with its first sample.
+	 *
+	 * @param time
+	 *            Time of the sample.
+	 * @param value
+	 *            Value of the sample.
+	 */
+	SeriesBlock(long time, double value) {
+		start = time;
+		last = time;
+		lastValue = Double.doubleToRawLongBits(value);
+		write(time, 64);
+		write(lastValue, 64);
+		count = 1;
+	}
+
+	/**
+	 * Append a sample.
+	 *
+	 * @param time
+	 *            Time of the sample, not before the last one.
+	 * @param value
+	 *            Value of the sample.
+	 */
+	void append(long time, double value) {
+		long delta = time - last;
+		long dod = delta - lastDelta;
+		if (dod == 0) {
+			write(0, 1);
+		} else if (dod >= -63 && dod <= 64) {
+			write(2, 2);
+			write(dod, 7);
+		} else if (dod >= -255 && dod <= 256) {
+			write(6, 3);
+			write(dod, 9);
+		} else if (dod >= -2047 && dod <= 2048) {
+			write(14, 4);
+			write(dod, 12);
+		} else {
+			write(15, 4);
+			write(dod, 64);
+		}
+		last = time;
+		lastDelta = delta;
+
+		long v = Double.doubleToRawLongBits(value);
+		long xor = v ^ lastValue;
+		if (xor == 0) {
+			write(0, 1);
+		} else {
+			int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+			int trailing = Long.numberOfTrailingZeros(xor);
+			if (lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing) {
+				write(2, 2);
+				write(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+			} else {
+				int length = 64 - leading - trailing;
+				write(3, 2);
+				write(leading, 5);
+				write(length & 63, 6); // 64 is written as 0
+				write(xor >>> trailing, length);
+				lastLeading = leading;
+				lastTrailing = trailing;
+			}
+		}
+		lastValue = v;
+		count++;
+	}
+
+	/**
+	 * Release the unused part of the buffer, once no more samples will be
+	 * appended.
+	 */
+	void seal() {
+		int used = (bits + 63) >>> 6;
+		if (used < words.length) {
+			long[] trimmed = new long[used];
+			System.arraycopy(words, 0, trimmed, 0, used);
+			words = trimmed;
+		}
+	}
+
+	/**
+	 * Decode the samples in a range of time.
+	 *
+	 * @param from
+	 *            Start of the range, inclusive.
+	 * @param to
+	 *            End of the range, inclusive.
+	 * @param result
+	 *            Where the samples are added.
+	 */
+	void scan(long from, long to, Samples result) {
+		if (from > last || to < start) {
+			return;
+		}
+		long time = words[0];
+		long value = words[1];
+		int pos = 128;
+		long delta = 0;
+		int leading = 0;
+		int trailing = 0;
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				long dod;
+				if (read(pos++, 1) == 0) {
+					dod = 0;
+				} else if (read(pos++, 1) == 0) {
+					dod = signed(read(pos, 7), 7);
+					pos += 7;
+				} else if (read(pos++, 1) == 0) {
+					dod = signed(read(pos, 9), 9);
+					pos += 9;
+				} else if (read(pos++, 1) == 0) {
+					dod = signed(read(pos, 12), 12);
+					pos += 12;
+				} else {
+					dod = read(pos, 64);
+					pos += 64;
+				}
+				delta += dod;
+				time += delta;
+				if (time > to) {
+					return;
+				}
+				if (read(pos++, 1) != 0) {
+					if (read(pos++, 1) != 0) {
+						leading = (int) read(pos, 5);
+						int length = (int) read(pos + 5, 6);
+						pos += 11;
+						if (length == 0) {
+							length = 64;
+						}
+						trailing = 64 - leading - length;
+					}
+					int length = 64 - leading - trailing;
+					value ^= read(pos, length) << trailing;
+					pos += length;
+				}
+			}
+			if (time >= from) {
+				result.add(time, Double.longBitsToDouble(value));
+			}
+		}
+	}
+
+	/**
+	 * Get the time of the first sample.
+	 *
+	 * @return The time.
+	 */
+	long getStart() {
+		return start;
+	}
+
+	/**
+	 * Get the time of the last sample.
+	 *
+	 * @return The time.
+	 */
+	long getLast() {
+		return last;
+	}
+
+	/**
+	 * Get the number of samples.
+	 *
+	 * @return The number.
+	 */
+	int getCount() {
+		return count;
+	}
+
+	/**
+	 * Get the approximate memory used by this block.
+	 *
+	 * @return The size in bytes.
+	 */
+	long getSize() {
+		return 8L * words.length + 80;
+	}
+
+	/**
+	 * Write the lowest bits of a value.
+	 *
+	 * @param value
+	 *            The value.
+	 * @param n
+	 *            Number of bits, 1 to 64.
+	 */
+	private void write(long value, int n) {
+		if (bits + n > words.length << 6) {
+			long[] grown = new long[words.length << 1];
+			System.arraycopy(words, 0, grown, 0, words.length);
+			words = grown;
+		}
+		if (n < 64) {
+			value &= (1L << n) - 1;
+		}
+		int index = bits >>> 6;
+		int free = 64 - (bits & 63);
+		if (n <= free) {
+			words[index] |= value << (free - n);
+		} else {
+			words[index] |= value >>> (n - free);
+			words[index + 1] |= value << (64 - (n - free));
+		}
+		bits += n;
+	}
+
+	/**
+	 * Read bits.
+	 *
+	 * @param pos
+	 *            Position of the first bit.
+	 * @param n
+	 *            Number of bits, 1 to 64.
+	 * @return The bits, in the lowest positions.
+	 */
+	private long read(int pos, int n) {
+		int index = pos >>> 6;
+		int free = 64 - (pos & 63);
+		long value;
+		if (n <= free) {
+			value = words[index] >>> (free - n);
+		} else {
+			int rest = n - free;
+			value = (words[index] << rest) | (words[index + 1] >>> (64 - rest));
+		}
+		if (n < 64) {
+			value &= (1L << n) - 1;
+		}
+		return value;
+	}
+
+	/**
+	 * Convert the bits of a difference back to its signed value.
+	 *
+	 * @param value
+	 *            The bits.
+	 * @param n
+	 *            Number of bits.
+	 * @return The signed value.
+	 */
+	private static long signed(long value, int n) {
+		return value > (1L << (n - 1)) ? value - (1L << n) : value;
+	}
+
+}
@@ -0,0 +1,392 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.universAAL.middleware.context.ContextEvent;
+import org.universAAL.utilities.api.ICListener;
+
+/**
+ * In-memory store of the history of numeric context values. It keeps a time
+ * series for each pair of subject and predicate, compressed in blocks of
+ * primitive bit buffers, so that a sample takes around two bytes instead of
+ * the tens of bytes of boxed objects in lists. Samples older than the
+ * retention period are discarded by whole blocks.
+ * <p/>
+ * It can be fed with events whose object is a number, either directly, as an
+ * {@link ICListener} registered with the helper, or with a
+ * {@link UtilTimeSeriesSubscriber}. Samples of a series must arrive in
+ * increasing order of time: older samples than the last one are rejected.
+ * <p/>
+ * Example: Keeping the temperatures of the last day, and getting hourly
+ * averages.
+ * <code>
+ * <p/>TimeSeriesStore store = new TimeSeriesStore();
+ * <p/>new UtilTimeSeriesSubscriber(context, new Pattern(TempSensor.MY_URI, TempSensor.PROP_HAS_VALUE, null), store);
+ * <p/>Rollup[] hourly = store.rollup(sensorURI, TempSensor.PROP_HAS_VALUE, from, to, 3600000);
+ * </code>
+ * <p/>
+ *
+ * @author alfiva
+ *
+ */
+public class TimeSeriesStore implements ICListener {
+
+	/**
+	 * Default retention period: 24 hours.
+	 */
+	public static final long DEFAULT_RETENTION = 24 * 3600 * 1000L;
+
+	/**
+	 * Default duration of a compressed block: 2 hours.
+	 */
+	public static final long DEFAULT_BLOCK = 2 * 3600 * 1000L;
+
+	/**
+	 * The time series of a subject and predicate.
+	 */
+	private static final class Series {
+		/**
+		 * Full blocks, oldest first.
+		 */
+		ArrayList<SeriesBlock> blocks = new ArrayList<SeriesBlock>(4);
+		/**
+		 * Block being appended to.
+		 */
+		SeriesBlock head;
+		/**
+		 * Whether it was purged from the store, so samples must go to a new
+		 * one.
+		 */
+		boolean removed;
+	}
+
+	/**
+	 * Time series by subject and predicate.
+	 */
+	private ConcurrentHashMap<String, Series> series = new ConcurrentHashMap<String, Series>();
+
+	/**
+	 * Retention period.
+	 */
+	private long retention;
+
+	/**
+	 * Duration of a block.
+	 */
+	private long block;
+
+	/**
+	 * Number of samples rejected for being out of order.
+	 */
+	private AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * Create a store with the default retention of 24 hours.
+	 */
+	public TimeSeriesStore() {
+		this(DEFAULT_RETENTION, DEFAULT_BLOCK);
+	}
+
+	/**
+	 * Create a store.
+	 *
+	 * @param retention
+	 *            How long samples are kept, in milliseconds.
+	 * @param block
+	 *            Duration of the compressed blocks, in milliseconds. It is the
+	 *            granularity of the retention. Longer blocks compress better
+	 *            but keep more samples beyond the retention.
+	 */
+	public TimeSeriesStore(long retention, long block) {
+		if (retention <= 0 || block <= 0) {
+			throw new IllegalArgumentException("Retention and block must be positive");
+		}
+		this.retention = retention;
+		this.block = block;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.utilities.api.ICListener#handleContextEvent(org.universAAL
+	 * .middleware.context.ContextEvent)
+	 */
+	public void handleContextEvent(ContextEvent event) {
+		add(event);
+	}
+
+	/**
+	 * Store the value of an event, if it is a number. The time is the
+	 * timestamp of the event, or the current time if it has none.
+	 *
+	 * @param event
+	 *            The event.
+	 * @return <code>true</code> if the value was stored.
+	 */
+	public boolean add(ContextEvent event) {
+		Object obj = event.getRDFObject();
+		if (!(obj instanceof Number)) {
+			return false;
+		}
+		Long timestamp = event.getTimestamp();
+		long time = timestamp == null ? System.currentTimeMillis() : timestamp.longValue();
+		return add(event.getSubjectURI(), event.getRDFPredicate(), time, ((Number) obj).doubleValue());
+	}
+
+	/**
+	 * Store a sample.
+	 *
+	 * @param subjectURI
+	 *            The URI of the subject.
+	 * @param predicate
+	 *            The predicate.
+	 * @param time
+	 *            The time of the sample, in milliseconds.
+	 * @param value
+	 *            The value.
+	 * @return <code>true</code> if it was stored, <code>false</code> if it is
+	 *         older than the last sample of its series.
+	 */
+	public boolean add(String subjectURI, String predicate, long time, double value) {
+		String key = key(subjectURI, predicate);
+		while (true) {
+			Series s = series.get(key);
+			if (s == null) {
+				Series created = new Series();
+				s = series.putIfAbsent(key, created);
+				if (s == null) {
+					s = created;
+				}
+			}
+			synchronized (s) {
+				if (!s.removed) {
+					return append(s, time, value);
+				}
+			}
+			// Purged meanwhile, try again with a new series
+		}
+	}
+
+	/**
+	 * Append a sample to a series. Must be called holding its lock.
+	 *
+	 * @param s
+	 *            The series.
+	 * @param time
+	 *            The time of the sample, in milliseconds.
+	 * @param value
+	 *            The value.
+	 * @return <code>true</code> if it was stored, <code>false</code> if it is
+	 *         older than the last sample of its series.
+	 */
+	private boolean append(Series s, long time, double value) {
+		if (s.head != null) {
+			if (time < s.head.getLast()) {
+				rejected.incrementAndGet();
+				return false;
+			}
+			if (time - s.head.getStart() < block) {
+				s.head.append(time, value);
+				return true;
+			}
+			s.head.seal();
+			s.blocks.add(s.head);
+		}
+		s.head = new SeriesBlock(time, value);
+		expire(s, time - retention);
+		return true;
+	}
+
+	/**
+	 * Get the samples of a series in a range of time.
+	 *
+	 * @param subjectURI
+	 *            The URI of the subject.
+	 * @param predicate
+	 *            The predicate.
+	 * @param from
+	 *            Start of the range, inclusive.
+	 * @param to
+	 *            End of the range, inclusive.
+	 * @return The samples, in increasing order of time. Empty if there are
+	 *         none.
+	 */
+	public Samples query(String subjectURI, String predicate, long from, long to) {
+		Samples result = new Samples();
+		Series s = series.get(key(subjectURI, predicate));
+		if (s == null) {
+			return result;
+		}
+		synchronized (s) {
+			for (int i = 0; i < s.blocks.size(); i++) {
+				s.blocks.get(i).scan(from, to, result);
+			}
+			if (s.head != null) {
+				s.head.scan(from, to, result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Summarize the samples of a series in a range of time, by consecutive
+	 * intervals of the same duration. This is used for downsampling.
+	 *
+	 * @param subjectURI
+	 *            The URI of the subject.
+	 * @param predicate
+	 *            The predicate.
+	 * @param from
+	 *            Start of the range, inclusive. Intervals start here.
+	 * @param to
+	 *            End of the range, inclusive.
+	 * @param step
+	 *            Duration of the intervals, in milliseconds.
+	 * @return The summary of each interval that has samples, in increasing
+	 *         order of time.
+	 */
+	public Rollup[] rollup(String subjectURI, String predicate, long from, long to, long step) {
+		if (step <= 0) {
+			throw new IllegalArgumentException("The step must be positive");
+		}
+		Samples samples = query(subjectURI, predicate, from, to);
+		ArrayList<Rollup> result = new ArrayList<Rollup>();
+		Rollup current = null;
+		for (int i = 0; i < samples.size(); i++) {
+			long time = samples.getTime(i);
+			if (current == null || time >= current.getEnd()) {
+				long start = from + ((time - from) / step) * step;
+				current = new Rollup(start, start + step);
+				result.add(current);
+			}
+			current.add(samples.getValue(i));
+		}
+		return result.toArray(new Rollup[result.size()]);
+	}
+
+	/**
+	 * Discard the samples older than the retention period, counting from the
+	 * given time. Series that receive samples are already cleaned as they
+	 * grow. This removes the ones that stopped receiving them.
+	 *
+	 * @param now
+	 *            The current time, in milliseconds.
+	 */
+	public void purge(long now) {
+		long limit = now - retention;
+		Iterator<Map.Entry<String, Series>> it = series.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Series> entry = it.next();
+			Series s = entry.getValue();
+			synchronized (s) {
+				expire(s, limit);
+				if (s.head != null && s.head.getLast() < limit) {
+					s.head = null;
+				}
+				if (s.head == null && s.blocks.isEmpty()) {
+					// Marked under its lock, so add() does not use it again
+					s.removed = true;
+					series.remove(entry.getKey(), s);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the number of series in the store.
+	 *
+	 * @return The number of series.
+	 */
+	public int getSeriesCount() {
+		return series.size();
+	}
+
+	/**
+	 * Get the number of samples rejected for arriving older than the last one
+	 * of their series.
+	 *
+	 * @return The number of rejected samples.
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * Get an estimation of the memory used by the stored samples.
+	 *
+	 * @return The size in bytes.
+	 */
+	public long getMemoryUsage() {
+		long size = 0;
+		for (Series s : series.values()) {
+			synchronized (s) {
+				for (int i = 0; i < s.blocks.size(); i++) {
+					size += s.blocks.get(i).getSize();
+				}
+				if (s.head != null) {
+					size += s.head.getSize();
+				}
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Discard the full blocks of a series which samples are all older than a
+	 * time.
+	 *
+	 * @param s
+	 *            The series.
+	 * @param limit
+	 *            The time.
+	 */
+	private static void expire(Series s, long limit) {
+		int old = 0;
+		while (old < s.blocks.size() && s.blocks.get(old).getLast() < limit) {
+			old++;
+		}
+		if (old > 0) {
+			s.blocks.subList(0, old).clear();
+		}
+	}
+
+	/**
+	 * Build the key of a series.
+	 *
+	 * @param subjectURI
+	 *            The URI of the subject.
+	 * @param predicate
+	 *            The predicate.
+	 * @return The key.
+	 */
+	private static String key(String subjectURI, String predicate) {
+		return subjectURI + ' ' + predicate;
+	}
+
+}
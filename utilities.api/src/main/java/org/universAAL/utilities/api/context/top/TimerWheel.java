@@ -0,0 +1,201 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+/**
+ * This class is for internal use of the detectors only. It is a hashed timer
+ * wheel where the expiry of partial matches of rules is scheduled. Scheduling
+ * and expiring are constant time, regardless of how many partial matches are
+ * pending, and entries are recycled so that scheduling does not allocate once
+ * the wheel is warm. It is not thread safe: the detector must hold its lock.
+ *
+ * @author alfiva
+ *
+ */
+class TimerWheel {
+
+	/**
+	 * An entry in the wheel.
+	 */
+	static final class Entry {
+		/**
+		 * The rule of the partial match.
+		 */
+		Rule rule;
+		/**
+		 * The subject of the partial match.
+		 */
+		String subject;
+		/**
+		 * The partial match, which holds its deadline in the first position.
+		 */
+		long[] state;
+		/**
+		 * The deadline at the time of scheduling.
+		 */
+		long deadline;
+		/**
+		 * The next entry in the same slot, or in the list of due entries.
+		 */
+		Entry next;
+	}
+
+	/**
+	 * Duration of each slot, in milliseconds.
+	 */
+	private long tick;
+	/**
+	 * The slots of the wheel, each a linked list of entries.
+	 */
+	private Entry[] slots;
+	/**
+	 * Mask to get the slot of a tick number.
+	 */
+	private int mask;
+	/**
+	 * The next tick number to be processed.
+	 */
+	private long current;
+	/**
+	 * Recycled entries.
+	 */
+	private Entry free;
+	/**
+	 * Number of scheduled entries.
+	 */
+	private int size;
+
+	/**
+	 * Create a timer wheel.
+	 *
+	 * @param tick
+	 *            Duration of each slot, in milliseconds. This is the precision
+	 *            of the expiry.
+	 * @param slots
+	 *            Number of slots. It is rounded up to a power of two.
+	 * @param now
+	 *            The current time.
+	 */
+	TimerWheel(long tick, int slots, long now) {
+		int n = 1;
+		while (n < slots) {
+			n <<= 1;
+		}
+		this.tick = tick;
+		this.slots = new Entry[n];
+		this.mask = n - 1;
+		this.current = now / tick;
+	}
+
+	/**
+	 * Schedule the expiry of a partial match at its current deadline.
+	 *
+	 * @param rule
+	 *            The rule of the partial match.
+	 * @param subject
+	 *            The subject of the partial match.
+	 * @param state
+	 *            The partial match, which holds its deadline in the first
+	 *            position.
+	 */
+	void schedule(Rule rule, String subject, long[] state) {
+		Entry e = free;
+		if (e != null) {
+			free = e.next;
+		} else {
+			e = new Entry();
+		}
+		e.rule = rule;
+		e.subject = subject;
+		e.state = state;
+		e.deadline = state[0];
+		long t = e.deadline / tick;
+		if (t < current) {
+			t = current;
+		}
+		int i = (int) (t & mask);
+		e.next = slots[i];
+		slots[i] = e;
+		size++;
+	}
+
+	/**
+	 * Advance the wheel up to the given time and detach the entries that are
+	 * due. The entries whose deadline belongs to a later turn of the wheel
+	 * stay in their slot.
+	 *
+	 * @param now
+	 *            The current time.
+	 * @return The due entries, linked through <code>next</code>, or null.
+	 */
+	Entry advance(long now) {
+		long last = now / tick;
+		if (last - current >= slots.length) {
+			current = last - slots.length + 1;
+		}
+		Entry due = null;
+		for (; current <= last; current++) {
+			int i = (int) (current & mask);
+			Entry keep = null;
+			Entry e = slots[i];
+			while (e != null) {
+				Entry next = e.next;
+				if (e.deadline <= now) {
+					e.next = due;
+					due = e;
+					size--;
+				} else {
+					e.next = keep;
+					keep = e;
+				}
+				e = next;
+			}
+			slots[i] = keep;
+		}
+		return due;
+	}
+
+	/**
+	 * Give back an entry returned by <code>advance</code> once it has been
+	 * processed, so that it can be reused.
+	 *
+	 * @param e
+	 *            The entry.
+	 */
+	void recycle(Entry e) {
+		e.rule = null;
+		e.subject = null;
+		e.state = null;
+		e.next = free;
+		free = e;
+	}
+
+	/**
+	 * Get how many entries are scheduled.
+	 *
+	 * @return The number of entries.
+	 */
+	int size() {
+		return size;
+	}
+
+}
@@ -0,0 +1,327 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.universAAL.middleware.container.ModuleContext;
+import org.universAAL.middleware.context.ContextEvent;
+import org.universAAL.middleware.context.ContextEventPattern;
+import org.universAAL.utilities.api.context.Pattern;
+import org.universAAL.utilities.api.context.mid.UtilSubscriber;
+
+/**
+ * A Context Subscriber that evaluates time-window rules (see {@link Rule}) over
+ * the events it receives, and notifies an {@link IRuleListener} when any of
+ * them fires. It subscribes to the Patterns of all its rules, so there is no
+ * need to write listener code that keeps its own maps of pending events.
+ * <p/>
+ * Example: Detect that the fridge door was left open for 10 minutes. <code>
+ * <p/>detector = new UtilDetector(context, new Rule[] {
+ * <p/>		Rule.absence(new Pattern(Fridge.MY_URI, PROP_DOOR, OPEN), new Pattern(Fridge.MY_URI, PROP_DOOR, CLOSED), 600000) },
+ * <p/>		listener);
+ * </code>
+ * <p/>
+ * Rules are indexed by the predicate of their Patterns, so an event is only
+ * evaluated against the rules that can possibly match it. Partial matches are
+ * kept per rule and subject, and their expiry is handled by a timer wheel
+ * that is advanced every tick by an internal thread. Call
+ * <code>close()</code> to release that thread.
+ *
+ * @author alfiva
+ *
+ */
+public class UtilDetector extends UtilSubscriber {
+
+	/**
+	 * Default precision of the expiry of time windows, in milliseconds.
+	 */
+	public static final long DEFAULT_TICK = 100;
+
+	/**
+	 * Number of slots of the timer wheel. With the default tick, a turn of
+	 * the wheel lasts almost 7 minutes. Longer windows just take more turns.
+	 */
+	private static final int WHEEL_SLOTS = 4096;
+
+	/**
+	 * The listener notified of the firings.
+	 */
+	private IRuleListener listener;
+
+	/**
+	 * Rules indexed by the predicates of their patterns.
+	 */
+	private HashMap<String, ArrayList<Rule>> byPredicate = new HashMap<String, ArrayList<Rule>>();
+
+	/**
+	 * Rules with some pattern that does not restrict the predicate.
+	 */
+	private ArrayList<Rule> anyPredicate = new ArrayList<Rule>();
+
+	/**
+	 * Where the expiry of partial matches is scheduled.
+	 */
+	private TimerWheel wheel;
+
+	/**
+	 * The thread that advances the wheel.
+	 */
+	private ScheduledExecutorService timer;
+
+	/**
+	 * Counter of received events, used to evaluate each rule once per event.
+	 */
+	private long stamp;
+
+	/**
+	 * Whether the detector is fully built. Set last, so that events received
+	 * while the constructor registers are ignored.
+	 */
+	private volatile boolean ready;
+
+	/**
+	 * Create a detector with the default tick.
+	 *
+	 * @param context
+	 *            The universAAL module context.
+	 * @param rules
+	 *            The rules to evaluate. Each rule instance must be used by
+	 *            only one detector.
+	 * @param listener
+	 *            The listener notified when any rule fires.
+	 */
+	public UtilDetector(ModuleContext context, Rule[] rules, IRuleListener listener) {
+		this(context, rules, listener, DEFAULT_TICK);
+	}
+
+	/**
+	 * Create a detector.
+	 *
+	 * @param context
+	 *            The universAAL module context.
+	 * @param rules
+	 *            The rules to evaluate. Each rule instance must be used by
+	 *            only one detector.
+	 * @param listener
+	 *            The listener notified when any rule fires.
+	 * @param tick
+	 *            The precision of the expiry of time windows, in milliseconds.
+	 */
+	public UtilDetector(ModuleContext context, Rule[] rules, IRuleListener listener, long tick) {
+		super(context, getPatterns(rules));
+		this.listener = listener;
+		this.wheel = new TimerWheel(tick, WHEEL_SLOTS, System.currentTimeMillis());
+		index(rules);
+		timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "UtilDetector timer");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		timer.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				expire(System.currentTimeMillis());
+			}
+		}, tick, tick, TimeUnit.MILLISECONDS);
+		ready = true;
+	}
+
+	/**
+	 * Add more rules to the detector, and subscribe to their Patterns.
+	 *
+	 * @param rules
+	 *            The rules to add. Each rule instance must be used by only one
+	 *            detector.
+	 */
+	public void addRules(Rule[] rules) {
+		synchronized (this) {
+			index(rules);
+		}
+		addNewRegParams(getPatterns(rules));
+	}
+
+	/**
+	 * Get how many partial matches are pending expiry, in all rules.
+	 *
+	 * @return The number of partial matches.
+	 */
+	public synchronized int getPendingCount() {
+		return wheel.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.context.ContextSubscriber#
+	 * communicationChannelBroken()
+	 */
+	@Override
+	public void communicationChannelBroken() {
+		// Nothing to do
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.middleware.context.ContextSubscriber#handleContextEvent
+	 * (org.universAAL.middleware.context.ContextEvent)
+	 */
+	@Override
+	public void handleContextEvent(ContextEvent event) {
+		if (!ready) {
+			return; // Not ready yet
+		}
+		String subject = event.getSubjectURI();
+		if (subject == null) {
+			return;
+		}
+		Long timestamp = event.getTimestamp();
+		long time = timestamp != null ? timestamp.longValue() : System.currentTimeMillis();
+		synchronized (this) {
+			stamp++;
+			String predicate = event.getRDFPredicate();
+			if (predicate != null) {
+				evaluate(byPredicate.get(predicate), event, subject, time);
+			}
+			evaluate(anyPredicate, event, subject, time);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.context.ContextSubscriber#close()
+	 */
+	@Override
+	public void close() {
+		timer.shutdownNow();
+		super.close();
+	}
+
+	/**
+	 * Evaluate an event against a list of rules.
+	 *
+	 * @param rules
+	 *            The rules, can be null.
+	 * @param event
+	 *            The event.
+	 * @param subject
+	 *            The URI of the subject of the event.
+	 * @param time
+	 *            The time of the event.
+	 */
+	private void evaluate(ArrayList<Rule> rules, ContextEvent event, String subject, long time) {
+		if (rules == null) {
+			return;
+		}
+		for (int i = 0; i < rules.size(); i++) {
+			Rule rule = rules.get(i);
+			if (rule.stamp == stamp) {
+				continue;
+			}
+			rule.stamp = stamp;
+			int matched = 0;
+			for (int j = 0; j < rule.patterns.length; j++) {
+				if (rule.patterns[j].matches(event)) {
+					matched |= 1 << j;
+				}
+			}
+			if (matched != 0 && rule.onEvent(matched, subject, time, wheel)) {
+				listener.handleRule(rule, subject, event);
+			}
+		}
+	}
+
+	/**
+	 * Process the partial matches whose time window has expired.
+	 *
+	 * @param now
+	 *            The current time.
+	 */
+	private synchronized void expire(long now) {
+		TimerWheel.Entry e = wheel.advance(now);
+		while (e != null) {
+			TimerWheel.Entry next = e.next;
+			if (e.rule.onExpiry(e.subject, e.state, now, wheel)) {
+				listener.handleRule(e.rule, e.subject, null);
+			}
+			wheel.recycle(e);
+			e = next;
+		}
+	}
+
+	/**
+	 * Index rules by the predicates of their patterns.
+	 *
+	 * @param rules
+	 *            The rules.
+	 */
+	private void index(Rule[] rules) {
+		for (int i = 0; i < rules.length; i++) {
+			Pattern[] patterns = rules[i].patterns;
+			for (int j = 0; j < patterns.length; j++) {
+				String predicate = patterns[j].getPredicate();
+				ArrayList<Rule> list;
+				if (predicate == null) {
+					list = anyPredicate;
+				} else {
+					list = byPredicate.get(predicate);
+					if (list == null) {
+						list = new ArrayList<Rule>();
+						byPredicate.put(predicate, list);
+					}
+				}
+				if (list.isEmpty() || list.get(list.size() - 1) != rules[i]) {
+					list.add(rules[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the distinct Patterns of a set of rules, to subscribe to them.
+	 *
+	 * @param rules
+	 *            The rules.
+	 * @return The Patterns.
+	 */
+	private static ContextEventPattern[] getPatterns(Rule[] rules) {
+		IdentityHashMap<Pattern, Pattern> distinct = new IdentityHashMap<Pattern, Pattern>();
+		for (int i = 0; i < rules.length; i++) {
+			Pattern[] patterns = rules[i].patterns;
+			for (int j = 0; j < patterns.length; j++) {
+				distinct.put(patterns[j], patterns[j]);
+			}
+		}
+		return distinct.keySet().toArray(new ContextEventPattern[distinct.size()]);
+	}
+
+}
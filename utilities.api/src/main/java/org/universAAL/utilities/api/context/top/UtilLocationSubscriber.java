@@ -0,0 +1,188 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+import org.universAAL.middleware.container.ModuleContext;
+import org.universAAL.middleware.context.ContextEvent;
+import org.universAAL.middleware.context.ContextEventPattern;
+import org.universAAL.middleware.rdf.Resource;
+import org.universAAL.ontology.location.Location;
+import org.universAAL.ontology.phThing.PhysicalThing;
+import org.universAAL.utilities.api.context.Pattern;
+import org.universAAL.utilities.api.context.mid.UtilSubscriber;
+
+/**
+ * This abstract class can be extended to create a Context Subscriber that
+ * only receives the events whose subject is inside a {@link Region}. Besides
+ * the given Patterns, it listens to the changes of location of any physical
+ * thing, and keeps with them a {@link LocationIndex} of where the subjects
+ * are. Events whose subject carries its location are also used to update it.
+ * Events matching the Patterns are passed to handleLocatedEvent only if their
+ * subject is inside the region at that moment, which is checked with a hash
+ * lookup in the index.
+ * <p/>
+ * Several subscribers can share the same index, so that they all benefit from
+ * the location updates any of them receives.
+ * <p/>
+ * Example: A subscriber for the status of the lamps in the kitchen.
+ * <code>
+ * <p/>subscriber = new LocatedExample(context, new Pattern[] { new Pattern(LightActuator.MY_URI,
+ * <p/>		LightActuator.PROP_STATUS, null) }, new Region(KITCHEN_URI), index);
+ * </code>
+ * <p/>
+ *
+ * @author alfiva
+ *
+ */
+public abstract class UtilLocationSubscriber extends UtilSubscriber {
+
+	/**
+	 * The patterns requested by the user.
+	 */
+	private Pattern[] patterns;
+
+	/**
+	 * The region the subjects must be in.
+	 */
+	private Region region;
+
+	/**
+	 * The index of known locations. Assigned last, so that events received
+	 * before the constructor ends are ignored.
+	 */
+	private volatile LocationIndex index;
+
+	/**
+	 * Create a Context Subscriber that will listen to the events matching the
+	 * given Patterns whose subject is inside a region, with its own index of
+	 * locations.
+	 *
+	 * @param context
+	 *            The universAAL module context.
+	 * @param patterns
+	 *            The Patterns describing the events to listen to.
+	 * @param region
+	 *            The region the subject of the events must be in.
+	 */
+	protected UtilLocationSubscriber(ModuleContext context, Pattern[] patterns, Region region) {
+		this(context, patterns, region, new LocationIndex());
+	}
+
+	/**
+	 * Create a Context Subscriber that will listen to the events matching the
+	 * given Patterns whose subject is inside a region.
+	 *
+	 * @param context
+	 *            The universAAL module context.
+	 * @param patterns
+	 *            The Patterns describing the events to listen to.
+	 * @param region
+	 *            The region the subject of the events must be in.
+	 * @param index
+	 *            The index of known locations, which can be shared with other
+	 *            subscribers. It is updated with the events received.
+	 */
+	protected UtilLocationSubscriber(ModuleContext context, Pattern[] patterns, Region region, LocationIndex index) {
+		super(context, withLocations(patterns));
+		this.patterns = patterns;
+		this.region = region;
+		this.index = index;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.middleware.context.ContextSubscriber#handleContextEvent(
+	 * org.universAAL.middleware.context.ContextEvent)
+	 */
+	@Override
+	public final void handleContextEvent(ContextEvent event) {
+		LocationIndex index = this.index;
+		if (index == null) {
+			return; // Not ready yet
+		}
+		String subject = event.getSubjectURI();
+		if (PhysicalThing.PROP_PHYSICAL_LOCATION.equals(event.getRDFPredicate())) {
+			Object loc = event.getRDFObject();
+			if (loc instanceof Location) {
+				index.update(subject, (Location) loc);
+			}
+		} else {
+			Resource subj = event.getRDFSubject();
+			Object loc = subj == null ? null : subj.getProperty(PhysicalThing.PROP_PHYSICAL_LOCATION);
+			if (loc instanceof Location) {
+				index.update(subject, (Location) loc);
+			}
+		}
+		for (int i = 0; i < patterns.length; i++) {
+			if (patterns[i].matches(event)) {
+				if (region.contains(index, subject)) {
+					handleLocatedEvent(event);
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Called when an event matching the Patterns is received and its subject
+	 * is inside the region.
+	 *
+	 * @param event
+	 *            The received event.
+	 */
+	public abstract void handleLocatedEvent(ContextEvent event);
+
+	/**
+	 * Get the region the subjects must be in.
+	 *
+	 * @return The region.
+	 */
+	public Region getRegion() {
+		return region;
+	}
+
+	/**
+	 * Get the index of known locations used by this subscriber.
+	 *
+	 * @return The index.
+	 */
+	public LocationIndex getLocationIndex() {
+		return index;
+	}
+
+	/**
+	 * Add to the given Patterns another one for the changes of location.
+	 *
+	 * @param patterns
+	 *            The Patterns of the user.
+	 * @return The Patterns to register.
+	 */
+	private static ContextEventPattern[] withLocations(Pattern[] patterns) {
+		ContextEventPattern[] all = new ContextEventPattern[patterns.length + 1];
+		System.arraycopy(patterns, 0, all, 0, patterns.length);
+		all[patterns.length] = new Pattern((String) null, PhysicalThing.PROP_PHYSICAL_LOCATION, (String) null);
+		return all;
+	}
+
+}
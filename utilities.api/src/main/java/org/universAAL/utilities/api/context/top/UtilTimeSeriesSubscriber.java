@@ -0,0 +1,120 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+import org.universAAL.middleware.container.ModuleContext;
+import org.universAAL.middleware.context.ContextEvent;
+import org.universAAL.middleware.context.ContextEventPattern;
+import org.universAAL.utilities.api.context.mid.UtilSubscriber;
+
+/**
+ * A Context Subscriber that stores the numeric values of the events it
+ * receives in a {@link TimeSeriesStore}. Events whose object is not a number
+ * are ignored.
+ * <p/>
+ * Example: Keeping the history of all temperature sensors.
+ * <code>
+ * <p/>TimeSeriesStore store = new TimeSeriesStore();
+ * <p/>subscriber = new UtilTimeSeriesSubscriber(context, new Pattern(TempSensor.MY_URI,
+ * <p/>		TempSensor.PROP_HAS_VALUE, null), store);
+ * </code>
+ * <p/>
+ *
+ * @author alfiva
+ *
+ */
+public class UtilTimeSeriesSubscriber extends UtilSubscriber {
+
+	/**
+	 * The store where values are kept. Assigned after registering, so that
+	 * events received before the constructor ends are ignored.
+	 */
+	private volatile TimeSeriesStore store;
+
+	/**
+	 * Create a Context Subscriber that stores the values of the events
+	 * matching a pattern.
+	 *
+	 * @param context
+	 *            The universAAL module context.
+	 * @param pattern
+	 *            The Pattern describing the events to store.
+	 * @param store
+	 *            The store where values are kept.
+	 */
+	public UtilTimeSeriesSubscriber(ModuleContext context, ContextEventPattern pattern, TimeSeriesStore store) {
+		this(context, new ContextEventPattern[] { pattern }, store);
+	}
+
+	/**
+	 * Create a Context Subscriber that stores the values of the events
+	 * matching any of several patterns.
+	 *
+	 * @param context
+	 *            The universAAL module context.
+	 * @param patterns
+	 *            The Patterns describing the events to store.
+	 * @param store
+	 *            The store where values are kept.
+	 */
+	public UtilTimeSeriesSubscriber(ModuleContext context, ContextEventPattern[] patterns, TimeSeriesStore store) {
+		super(context, patterns);
+		this.store = store;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.context.ContextSubscriber#
+	 * communicationChannelBroken()
+	 */
+	@Override
+	public void communicationChannelBroken() {
+		// Nothing to do
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.middleware.context.ContextSubscriber#handleContextEvent
+	 * (org.universAAL.middleware.context.ContextEvent)
+	 */
+	@Override
+	public void handleContextEvent(ContextEvent event) {
+		TimeSeriesStore store = this.store;
+		if (store == null) {
+			return; // Not ready yet
+		}
+		store.add(event);
+	}
+
+	/**
+	 * Get the store where values are kept.
+	 *
+	 * @return The store.
+	 */
+	public TimeSeriesStore getStore() {
+		return store;
+	}
+
+}
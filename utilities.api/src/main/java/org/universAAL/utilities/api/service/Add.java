@@ -21,10 +21,6 @@
  */
 package org.universAAL.utilities.api.service;
 
-import org.universAAL.middleware.owl.ManagedIndividual;
-import org.universAAL.middleware.rdf.Resource;
-import org.universAAL.middleware.rdf.TypeMapper;
-
 /**
  * Class representing an Add-type argument in a service request. Arguments are
  * the "leaf" objects at the end of a property path and can be of several types
@@ -55,7 +51,7 @@ public class Add extends Value {
 	public Add(Object byValue) {
 		this.isByURI = false;
 		this.value = byValue;
-		this.uri = ManagedIndividual.getTypeURI(byValue);
+		this.uri = typeOf(byValue);
 	}
 
 	/**
@@ -69,19 +65,10 @@ public class Add extends Value {
 	 *            as if it used the "byValue" constructor instead.
 	 */
 	public Add(String byTypeURI) {
-		this.isByURI = true;
-		this.uri = byTypeURI;
-		this.value = Resource.getResource(byTypeURI, Resource.generateAnonURI());
-		if (this.value == null) {
-			if (TypeMapper.isRegisteredDatatypeURI(byTypeURI)) {
-				this.value = createEmptyInstance(byTypeURI);
-			} else {
-				// An arbitrary String, not an URI, intended use is like byValue
-				this.isByURI = false;
-				this.uri = TypeMapper.getDatatypeURI(String.class);
-				this.value = byTypeURI;
-			}
-		}
+		Resolved r = resolve(byTypeURI);
+		this.isByURI = r.byURI();
+		this.uri = r.getURI();
+		this.value = r.newValue();
 	}
 
 	/**
@@ -21,7 +21,6 @@
  */
 package org.universAAL.utilities.api.service;
 
-import org.universAAL.middleware.owl.ManagedIndividual;
 import org.universAAL.middleware.rdf.Resource;
 
 /**
@@ -83,7 +82,7 @@ public class Output extends Value {
 	 */
 	@Deprecated
 	public Output(Object byValue) {
-		this.uri = ManagedIndividual.getTypeURI(byValue);
+		this.uri = typeOf(byValue);
 	}
 
 	/**
@@ -38,15 +38,36 @@ package org.universAAL.utilities.api.service;
  * <p/>caller.call(req);
  * </code>
  * <p/>
+ * Paths are immutable: <code>to()</code> returns a new Path that shares the
+ * steps of the one it extends, so extending a Path is cheap and the original
+ * can be safely reused, for instance kept in a constant to build several
+ * longer paths from it. Paths with the same steps are equal.
+ * <p/>
  *
  * @author alfiva
  *
  */
 public class Path {
 	/**
-	 * Holds the value of the path.
+	 * The path without its last step, or null if it has only one.
+	 */
+	private final Path parent;
+	/**
+	 * The last step of the path.
+	 */
+	private final String step;
+	/**
+	 * The number of steps.
+	 */
+	private final int length;
+	/**
+	 * The hash code, computed on creation.
+	 */
+	private final int hash;
+	/**
+	 * The steps as an array, built when first needed.
 	 */
-	public String[] path;
+	private volatile String[] array;
 
 	/**
 	 * Main constructor. It can be used to type
@@ -57,19 +78,40 @@ public class Path {
 	 *            The first property of the path, coming from the service root
 	 */
 	public Path(String path) {
-		this.path = new String[] { path };
+		this(null, path);
 	}
 
 	/**
 	 * Additional constructor if you already have a property path but want to
 	 * turn it into a Path object. You can add more steps to the path
-	 * afterwards.
+	 * afterwards. The array is copied.
 	 *
 	 * @param path
 	 *            The property path, coming from the service root
 	 */
 	public Path(String[] path) {
-		this.path = path;
+		this(prefix(path), path[path.length - 1]);
+		String[] copy = new String[path.length];
+		System.arraycopy(path, 0, copy, 0, path.length);
+		this.array = copy;
+	}
+
+	/**
+	 * Constructor of a path extending another.
+	 *
+	 * @param parent
+	 *            The path to extend, or null.
+	 * @param step
+	 *            The next property.
+	 */
+	private Path(Path parent, String step) {
+		if (step == null) {
+			throw new IllegalArgumentException("The steps of a Path cannot be null");
+		}
+		this.parent = parent;
+		this.step = step;
+		this.length = parent == null ? 1 : parent.length + 1;
+		this.hash = (parent == null ? 0 : parent.hash * 31) + step.hashCode();
 	}
 
 	/**
@@ -96,22 +138,17 @@ public class Path {
 	}
 
 	/**
-	 * Puts a new step (a new property) in the branch path. Allows successive
-	 * calls to add further properties.
+	 * Gives a new Path with a new step (a new property) after the steps of
+	 * this one, which is not modified. Allows successive calls to add further
+	 * properties.
 	 *
 	 * @param to
 	 *            The next property in the path, coming from a previous call to
-	 *            .start
-	 * @return Itself
+	 *            .at
+	 * @return A new Path, with one more step
 	 */
 	public Path to(String to) {
-		String[] obj = new String[this.path.length + 1];
-		for (int i = 0; i < this.path.length; i++) {
-			obj[i] = this.path[i];
-		}
-		obj[obj.length - 1] = to;
-		this.path = obj;
-		return this;
+		return new Path(this, to);
 	}
 
 	/**
@@ -136,4 +173,118 @@ public class Path {
 		return new Path(path);
 	}
 
+	/**
+	 * Get the property path as an array, as used by the native API. Each call
+	 * returns a new copy, which the caller can keep or modify.
+	 *
+	 * @return The property path
+	 */
+	public String[] getPath() {
+		String[] steps = getSteps();
+		String[] copy = new String[steps.length];
+		System.arraycopy(steps, 0, copy, 0, steps.length);
+		return copy;
+	}
+
+	/**
+	 * Get the steps as an array, building it only once. The same array is
+	 * returned every time, so it must not be modified nor given away.
+	 *
+	 * @return The steps
+	 */
+	private String[] getSteps() {
+		String[] result = array;
+		if (result == null) {
+			result = new String[length];
+			Path p = this;
+			for (int i = length - 1; i >= 0; i--) {
+				result[i] = p.step;
+				p = p.parent;
+			}
+			array = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Get the number of steps of the path.
+	 *
+	 * @return The number of properties
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Get the last step of the path.
+	 *
+	 * @return The last property
+	 */
+	public String last() {
+		return step;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof Path)) {
+			return false;
+		}
+		Path a = this;
+		Path b = (Path) obj;
+		if (a.hash != b.hash || a.length != b.length) {
+			return false;
+		}
+		while (a != b) { // Shared parents end the comparison early
+			if (!a.step.equals(b.step)) {
+				return false;
+			}
+			a = a.parent;
+			b = b.parent;
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return parent == null ? step : parent.toString() + " " + step;
+	}
+
+	/**
+	 * Build the Path of all the steps of an array but the last.
+	 *
+	 * @param path
+	 *            The property path
+	 * @return The Path of the prefix, or null if there is only one step
+	 */
+	private static Path prefix(String[] path) {
+		if (path.length == 0) {
+			throw new IllegalArgumentException("A Path must have at least one step");
+		}
+		Path p = null;
+		for (int i = 0; i < path.length - 1; i++) {
+			p = new Path(p, path[i]);
+		}
+		return p;
+	}
+
 }
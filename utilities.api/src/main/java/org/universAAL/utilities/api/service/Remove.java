@@ -21,10 +21,6 @@
  */
 package org.universAAL.utilities.api.service;
 
-import org.universAAL.middleware.owl.ManagedIndividual;
-import org.universAAL.middleware.rdf.Resource;
-import org.universAAL.middleware.rdf.TypeMapper;
-
 /**
  * Class representing a Remove-type argument in a service request. Arguments are
  * the "leaf" objects at the end of a property path and can be of several types
@@ -54,7 +50,7 @@ public class Remove extends Value {
 	public Remove(Object byValue) {
 		this.isByURI = false;
 		this.value = byValue;
-		this.uri = ManagedIndividual.getTypeURI(byValue);
+		this.uri = typeOf(byValue);
 	}
 
 	/**
@@ -68,19 +64,10 @@ public class Remove extends Value {
 	 *            String, as if it used the "byValue" constructor instead.
 	 */
 	public Remove(String byTypeURI) {
-		this.isByURI = true;
-		this.uri = byTypeURI;
-		this.value = Resource.getResource(byTypeURI, Resource.generateAnonURI());
-		if (this.value == null) {
-			if (TypeMapper.isRegisteredDatatypeURI(byTypeURI)) {
-				this.value = createEmptyInstance(byTypeURI);
-			} else {
-				// An arbitrary String, not an URI, intended use is like byValue
-				this.isByURI = false;
-				this.uri = TypeMapper.getDatatypeURI(String.class);
-				this.value = byTypeURI;
-			}
-		}
+		Resolved r = resolve(byTypeURI);
+		this.isByURI = r.byURI();
+		this.uri = r.getURI();
+		this.value = r.newValue();
 	}
 
 	/**
@@ -21,7 +21,6 @@
  */
 package org.universAAL.utilities.api.service;
 
-import org.universAAL.middleware.owl.ManagedIndividual;
 import org.universAAL.middleware.rdf.Resource;
 
 /**
@@ -69,7 +68,7 @@ public class Typematch extends Value {
 	 */
 	@Deprecated
 	public Typematch(Object byValue) {
-		this.uri = ManagedIndividual.getTypeURI(byValue);
+		this.uri = typeOf(byValue);
 	}
 
 	/**
@@ -22,11 +22,17 @@
 package org.universAAL.utilities.api.service;
 
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.Duration;
 import javax.xml.datatype.XMLGregorianCalendar;
 
+import org.universAAL.middleware.owl.ManagedIndividual;
+import org.universAAL.middleware.owl.OntClassInfo;
+import org.universAAL.middleware.owl.OntologyManagement;
+import org.universAAL.middleware.rdf.Resource;
+import org.universAAL.middleware.rdf.ResourceFactory;
 import org.universAAL.middleware.rdf.TypeMapper;
 import org.universAAL.middleware.xsd.NonNegativeInteger;
 
@@ -48,6 +54,106 @@ public abstract class Value {
 	 */
 	protected boolean isByURI = true;
 
+	/**
+	 * Maximum number of entries kept in each of the caches of arguments.
+	 */
+	static final int MAX_CACHED = 1024;
+
+	/**
+	 * Resolved type URIs of the arguments built by type.
+	 */
+	private static final ConcurrentHashMap<String, Resolved> TYPES = new ConcurrentHashMap<String, Resolved>();
+
+	/**
+	 * Type URIs of the arguments built by value, by the class of the value,
+	 * for values that are not Resources.
+	 */
+	private static final ConcurrentHashMap<Class<?>, String> DATATYPES = new ConcurrentHashMap<Class<?>, String>();
+
+	/**
+	 * Resolve the type URI of an argument built by type. Whether the URI is an
+	 * ontology class or a datatype is looked up only once, and the factory of
+	 * the class or the empty value of the datatype are kept: each argument
+	 * gets its own new value from the result. URIs that are neither are
+	 * understood as an instance of a String. They are kept too, but looked up
+	 * again once their class is registered.
+	 *
+	 * @param byTypeURI
+	 *            A type URI of a ManagedIndividual or native type, or an
+	 *            arbitrary String.
+	 * @return The resolved type.
+	 */
+	static Resolved resolve(String byTypeURI) {
+		Resolved r = TYPES.get(byTypeURI);
+		OntClassInfo info = null;
+		if (r != null) {
+			if (r.byURI()) {
+				return r;
+			}
+			info = classOf(byTypeURI); // Registered since it was kept?
+			if (info == null) {
+				return r;
+			}
+		} else {
+			info = classOf(byTypeURI);
+		}
+		Resolved resolved;
+		if (info != null) {
+			resolved = new Resolved(byTypeURI, info.getFactory(), info.getFactoryIndex());
+		} else if (TypeMapper.isRegisteredDatatypeURI(byTypeURI)) {
+			resolved = new Resolved(byTypeURI, createEmptyInstance(byTypeURI));
+		} else {
+			// An arbitrary String, not an URI, intended use is like byValue
+			resolved = new Resolved(byTypeURI);
+		}
+		if (r != null) {
+			TYPES.replace(byTypeURI, r, resolved);
+		} else if (TYPES.size() < MAX_CACHED) {
+			Resolved previous = TYPES.putIfAbsent(byTypeURI, resolved);
+			if (previous != null) {
+				return previous;
+			}
+		}
+		return resolved;
+	}
+
+	/**
+	 * Get the registered ontology class of a type URI, if it can be
+	 * instantiated.
+	 *
+	 * @param uri
+	 *            The type URI
+	 * @return The class information, or <code>null</code> if it is not a
+	 *         registered class, or it is abstract.
+	 */
+	private static OntClassInfo classOf(String uri) {
+		OntClassInfo info = OntologyManagement.getInstance().getOntClassInfo(uri);
+		return info == null || info.getFactory() == null ? null : info;
+	}
+
+	/**
+	 * Get the type URI of the value of an argument built by value. The type of
+	 * values that are not Resources is looked up only once for each class.
+	 *
+	 * @param byValue
+	 *            An instance of a ManagedIndividual or native type.
+	 * @return The type URI.
+	 */
+	protected static String typeOf(Object byValue) {
+		if (byValue == null || byValue instanceof Resource) {
+			return ManagedIndividual.getTypeURI(byValue);
+		}
+		Class<?> c = byValue.getClass();
+		String type = DATATYPES.get(c);
+		if (type == null) {
+			type = ManagedIndividual.getTypeURI(byValue);
+			if (type != null && DATATYPES.size() < MAX_CACHED) {
+				DATATYPES.putIfAbsent(c, type);
+			}
+		}
+		return type;
+	}
+
 	protected static Object createEmptyInstance(String uri) {
 		try {
 			Class c = TypeMapper.getJavaClass(uri);
@@ -86,4 +192,131 @@ public abstract class Value {
 		return isByURI;
 	}
 
+	/**
+	 * The result of resolving the type URI of an argument built by type. It
+	 * holds no value that can be modified, so it can be shared: each argument
+	 * gets a new one.
+	 */
+	static final class Resolved {
+		/**
+		 * The URI is an ontology class.
+		 */
+		static final int CLASS = 0;
+		/**
+		 * The URI is a datatype.
+		 */
+		static final int DATATYPE = 1;
+		/**
+		 * The URI is not a type, but a String value.
+		 */
+		static final int STRING = 2;
+
+		/**
+		 * What the URI is.
+		 */
+		private final int kind;
+		/**
+		 * The URI given to the argument.
+		 */
+		private final String name;
+		/**
+		 * The factory of the class, for CLASS.
+		 */
+		private final ResourceFactory factory;
+		/**
+		 * The index of the class in its factory, for CLASS.
+		 */
+		private final int factoryIndex;
+		/**
+		 * The empty value of an immutable datatype, given to every argument,
+		 * or null to create one for each, for DATATYPE.
+		 */
+		private final Object empty;
+
+		/**
+		 * Create the result of an ontology class.
+		 *
+		 * @param name
+		 *            The URI given to the argument
+		 * @param factory
+		 *            The factory of the class
+		 * @param factoryIndex
+		 *            The index of the class in its factory
+		 */
+		Resolved(String name, ResourceFactory factory, int factoryIndex) {
+			this.kind = CLASS;
+			this.name = name;
+			this.factory = factory;
+			this.factoryIndex = factoryIndex;
+			this.empty = null;
+		}
+
+		/**
+		 * Create the result of a datatype.
+		 *
+		 * @param name
+		 *            The URI given to the argument
+		 * @param empty
+		 *            An empty value of the datatype
+		 */
+		Resolved(String name, Object empty) {
+			this.kind = DATATYPE;
+			this.name = name;
+			this.factory = null;
+			this.factoryIndex = 0;
+			boolean immutable = empty instanceof Boolean || empty instanceof Number || empty instanceof String
+					|| empty instanceof Duration || empty instanceof Locale;
+			this.empty = immutable ? empty : null;
+		}
+
+		/**
+		 * Create the result of a String value.
+		 *
+		 * @param name
+		 *            The String given to the argument
+		 */
+		Resolved(String name) {
+			this.kind = STRING;
+			this.name = name;
+			this.factory = null;
+			this.factoryIndex = 0;
+			this.empty = null;
+		}
+
+		/**
+		 * Whether the URI was a type URI.
+		 *
+		 * @return true if it was a type URI, false if it is a String value.
+		 */
+		boolean byURI() {
+			return kind != STRING;
+		}
+
+		/**
+		 * Get the type URI of the argument.
+		 *
+		 * @return The type URI.
+		 */
+		String getURI() {
+			return kind == STRING ? TypeMapper.getDatatypeURI(String.class) : name;
+		}
+
+		/**
+		 * Build a new value for an argument. Each call returns a different
+		 * instance, except for immutable values.
+		 *
+		 * @return The value.
+		 */
+		Object newValue() {
+			switch (kind) {
+			case CLASS:
+				return factory.createInstance(name, Resource.generateAnonURI(), factoryIndex);
+			case DATATYPE:
+				return empty != null ? empty : createEmptyInstance(name);
+			default:
+				return name;
+			}
+		}
+	}
+
 }
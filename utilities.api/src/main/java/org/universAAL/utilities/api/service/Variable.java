@@ -21,10 +21,6 @@
  */
 package org.universAAL.utilities.api.service;
 
-import org.universAAL.middleware.owl.ManagedIndividual;
-import org.universAAL.middleware.rdf.Resource;
-import org.universAAL.middleware.rdf.TypeMapper;
-
 /**
  * Class representing a Variable-Input-type argument in a service request.
  * Arguments are the "leaf" objects at the end of a property path and can be of
@@ -56,7 +52,7 @@ public class Variable extends Value {
 	public Variable(Object byValue) {
 		this.isByURI = false;
 		this.value = byValue;
-		this.uri = ManagedIndividual.getTypeURI(byValue);
+		this.uri = typeOf(byValue);
 	}
 
 	/**
@@ -71,20 +67,10 @@ public class Variable extends Value {
 	 *            "byValue" constructor instead.
 	 */
 	public Variable(String byTypeURI) {
-		this.isByURI = true;
-		this.uri = byTypeURI;
-		this.value = Resource.getResource(byTypeURI, Resource.generateAnonURI());
-
-		if (this.value == null) {
-			if (TypeMapper.isRegisteredDatatypeURI(byTypeURI)) {
-				this.value = createEmptyInstance(byTypeURI);
-			} else {
-				// An arbitrary String, not an URI, intended use is like byValue
-				this.isByURI = false;
-				this.uri = TypeMapper.getDatatypeURI(String.class);
-				this.value = byTypeURI;
-			}
-		}
+		Resolved r = resolve(byTypeURI);
+		this.isByURI = r.byURI();
+		this.uri = r.getURI();
+		this.value = r.newValue();
 	}
 
 	/**
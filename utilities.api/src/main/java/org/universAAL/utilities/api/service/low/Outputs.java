@@ -0,0 +1,487 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.low;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.universAAL.middleware.service.CallStatus;
+import org.universAAL.middleware.service.ServiceResponse;
+import org.universAAL.middleware.service.owls.process.ProcessOutput;
+import org.universAAL.utilities.api.service.Output;
+
+/**
+ * Helper class to get the outputs of a ServiceResponse, typed and without
+ * intermediate copies. Unlike Request.recoverOutputs, the values are read
+ * straight from the outputs of the response into what the caller gives: a
+ * collection, a handler, or the return value for single outputs. Values that
+ * are not of the expected class are skipped. Instead of printing the
+ * failures, they are described in the returned Result. The first methods only
+ * return the value: use firstOf to also know why there is none.
+ * <p/>
+ * Example: Getting the users returned by a profiling service. <code>
+ * <p/>List&lt;User&gt; users = new ArrayList&lt;User&gt;();
+ * <p/>Outputs.Result res = Outputs.into(sr, OUT_USERS, User.class, users);
+ * <p/>if (!res.isOk()) log(res.getReason());
+ * </code>
+ *
+ * @author alfiva
+ *
+ */
+public final class Outputs {
+
+	/**
+	 * Result of a successful extraction.
+	 */
+	public static final int OK = 0;
+
+	/**
+	 * The service call did not succeed.
+	 */
+	public static final int CALL_FAILED = 1;
+
+	/**
+	 * The response has no outputs at all.
+	 */
+	public static final int NO_OUTPUTS = 2;
+
+	/**
+	 * The response has no output with the given URI.
+	 */
+	public static final int NO_SUCH_OUTPUT = 3;
+
+	/**
+	 * Handler that stops at the first value, which is kept in the Result.
+	 */
+	private static final Handler<Object> FIRST = new Handler<Object>() {
+		public boolean handle(Object value) {
+			return false;
+		}
+	};
+
+	/**
+	 * Receives the values of an output, one by one.
+	 *
+	 * @param <T>
+	 *            The class of the values.
+	 */
+	public interface Handler<T> {
+		/**
+		 * Called for each value of the output.
+		 *
+		 * @param value
+		 *            The value.
+		 * @return <code>false</code> to stop receiving values.
+		 */
+		boolean handle(T value);
+	}
+
+	/**
+	 * Describes how an extraction went.
+	 */
+	public static final class Result {
+		/**
+		 * One of the constants of Outputs.
+		 */
+		private final int code;
+		/**
+		 * The status of the call.
+		 */
+		private final CallStatus status;
+		/**
+		 * Number of values extracted.
+		 */
+		private final int count;
+		/**
+		 * Number of values skipped because of their class.
+		 */
+		private final int skipped;
+		/**
+		 * The first value extracted, or null.
+		 */
+		private final Object first;
+
+		/**
+		 * Create a result.
+		 *
+		 * @param code
+		 *            One of the constants of Outputs
+		 * @param status
+		 *            The status of the call
+		 * @param count
+		 *            Number of values extracted
+		 * @param skipped
+		 *            Number of values skipped because of their class
+		 * @param first
+		 *            The first value extracted, or null
+		 */
+		Result(int code, CallStatus status, int count, int skipped, Object first) {
+			this.code = code;
+			this.status = status;
+			this.count = count;
+			this.skipped = skipped;
+			this.first = first;
+		}
+
+		/**
+		 * Whether the output was found in a successful response.
+		 *
+		 * @return <code>true</code> if found, even with no values of the
+		 *         expected class.
+		 */
+		public boolean isOk() {
+			return code == OK;
+		}
+
+		/**
+		 * Get why the values could not be extracted.
+		 *
+		 * @return One of the constants of Outputs.
+		 */
+		public int getCode() {
+			return code;
+		}
+
+		/**
+		 * Get the status of the service call.
+		 *
+		 * @return The status, or <code>null</code> if there was no response.
+		 */
+		public CallStatus getCallStatus() {
+			return status;
+		}
+
+		/**
+		 * Get how many values were extracted.
+		 *
+		 * @return The number of values.
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Get how many values were skipped because they were not of the
+		 * expected class.
+		 *
+		 * @return The number of values.
+		 */
+		public int getSkipped() {
+			return skipped;
+		}
+
+		/**
+		 * Get the first value extracted.
+		 *
+		 * @param type
+		 *            The class of the value
+		 * @return The value, or <code>null</code> if none was extracted or
+		 *         it is not of the class.
+		 */
+		public <T> T getFirst(Class<T> type) {
+			return type.isInstance(first) ? type.cast(first) : null;
+		}
+
+		/**
+		 * Get a description of why the values could not be extracted.
+		 *
+		 * @return The description, or <code>null</code> if they could.
+		 */
+		public String getReason() {
+			switch (code) {
+			case CALL_FAILED:
+				return status == null ? "Service call failed: no response" : "Service call failed: " + status;
+			case NO_OUTPUTS:
+				return "No outputs in the response";
+			case NO_SUCH_OUTPUT:
+				return "No outputs with this URI in the response";
+			default:
+				return null;
+			}
+		}
+	}
+
+	private Outputs() {
+		// Disallow instantiating
+	}
+
+	/**
+	 * Get the first value of an output.
+	 *
+	 * @param sr
+	 *            The ServiceResponse returned by the .call method
+	 * @param outputURI
+	 *            The URI (the ID) you used to refer to the output when building
+	 *            the request
+	 * @param type
+	 *            The class of the value
+	 * @return The first value of the class, or <code>null</code> if there is
+	 *         none or the call failed.
+	 */
+	public static <T> T first(ServiceResponse sr, String outputURI, Class<T> type) {
+		return firstOf(sr, outputURI, type).getFirst(type);
+	}
+
+	/**
+	 * Equivalent to first(ServiceResponse sr, String outputURI, Class type).
+	 *
+	 * @param sr
+	 *            The ServiceResponse returned by the .call method
+	 * @param output
+	 *            The Output you used when building the request
+	 * @param type
+	 *            The class of the value
+	 * @return The first value of the class, or <code>null</code> if there is
+	 *         none or the call failed.
+	 */
+	public static <T> T first(ServiceResponse sr, Output output, Class<T> type) {
+		return first(sr, output.getURI(), type);
+	}
+
+	/**
+	 * Get the first value of an output, and how the extraction went.
+	 *
+	 * @param sr
+	 *            The ServiceResponse returned by the .call method
+	 * @param outputURI
+	 *            The URI (the ID) you used to refer to the output when building
+	 *            the request
+	 * @param type
+	 *            The class of the value
+	 * @return How the extraction went. The value is in its getFirst.
+	 */
+	public static <T> Result firstOf(ServiceResponse sr, String outputURI, Class<T> type) {
+		return extract(sr, outputURI, type, FIRST);
+	}
+
+	/**
+	 * Equivalent to firstOf(ServiceResponse sr, String outputURI, Class type).
+	 *
+	 * @param sr
+	 *            The ServiceResponse returned by the .call method
+	 * @param output
+	 *            The Output you used when building the request
+	 * @param type
+	 *            The class of the value
+	 * @return How the extraction went. The value is in its getFirst.
+	 */
+	public static <T> Result firstOf(ServiceResponse sr, Output output, Class<T> type) {
+		return firstOf(sr, output.getURI(), type);
+	}
+
+	/**
+	 * Get the first value of a numeric output as an int.
+	 *
+	 * @param sr
+	 *            The ServiceResponse returned by the .call method
+	 * @param outputURI
+	 *            The URI (the ID) you used to refer to the output when building
+	 *            the request
+	 * @param otherwise
+	 *            The value to return if there is none or the call failed
+	 * @return The value.
+	 */
+	public static int firstInt(ServiceResponse sr, String outputURI, int otherwise) {
+		Number n = first(sr, outputURI, Number.class);
+		return n == null ? otherwise : n.intValue();
+	}
+
+	/**
+	 * Get the first value of a numeric output as a long.
+	 *
+	 * @param sr
+	 *            The ServiceResponse returned by the .call method
+	 * @param outputURI
+	 *            The URI (the ID) you used to refer to the output when building
+	 *            the request
+	 * @param otherwise
+	 *            The value to return if there is none or the call failed
+	 * @return The value.
+	 */
+	public static long firstLong(ServiceResponse sr, String outputURI, long otherwise) {
+		Number n = first(sr, outputURI, Number.class);
+		return n == null ? otherwise : n.longValue();
+	}
+
+	/**
+	 * Get the first value of a numeric output as a double.
+	 *
+	 * @param sr
+	 *            The ServiceResponse returned by the .call method
+	 * @param outputURI
+	 *            The URI (the ID) you used to refer to the output when building
+	 *            the request
+	 * @param otherwise
+	 *            The value to return if there is none or the call failed
+	 * @return The value.
+	 */
+	public static double firstDouble(ServiceResponse sr, String outputURI, double otherwise) {
+		Number n = first(sr, outputURI, Number.class);
+		return n == null ? otherwise : n.doubleValue();
+	}
+
+	/**
+	 * Get the first value of a boolean output.
+	 *
+	 * @param sr
+	 *            The ServiceResponse returned by the .call method
+	 * @param outputURI
+	 *            The URI (the ID) you used to refer to the output when building
+	 *            the request
+	 * @param otherwise
+	 *            The value to return if there is none or the call failed
+	 * @return The value.
+	 */
+	public static boolean firstBoolean(ServiceResponse sr, String outputURI, boolean otherwise) {
+		Boolean b = first(sr, outputURI, Boolean.class);
+		return b == null ? otherwise : b.booleanValue();
+	}
+
+	/**
+	 * Add the values of an output to a collection.
+	 *
+	 * @param sr
+	 *            The ServiceResponse returned by the .call method
+	 * @param outputURI
+	 *            The URI (the ID) you used to refer to the output when building
+	 *            the request
+	 * @param type
+	 *            The class of the values. Others are skipped.
+	 * @param target
+	 *            Where to add the values
+	 * @return How the extraction went.
+	 */
+	public static <T> Result into(ServiceResponse sr, String outputURI, Class<T> type,
+			final Collection<? super T> target) {
+		return extract(sr, outputURI, type, new Handler<T>() {
+			public boolean handle(T value) {
+				target.add(value);
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * Equivalent to into(ServiceResponse sr, String outputURI, Class type,
+	 * Collection target).
+	 *
+	 * @param sr
+	 *            The ServiceResponse returned by the .call method
+	 * @param output
+	 *            The Output you used when building the request
+	 * @param type
+	 *            The class of the values. Others are skipped.
+	 * @param target
+	 *            Where to add the values
+	 * @return How the extraction went.
+	 */
+	public static <T> Result into(ServiceResponse sr, Output output, Class<T> type, Collection<? super T> target) {
+		return into(sr, output.getURI(), type, target);
+	}
+
+	/**
+	 * Give the values of an output to a handler, one by one, until it returns
+	 * <code>false</code>.
+	 *
+	 * @param sr
+	 *            The ServiceResponse returned by the .call method
+	 * @param outputURI
+	 *            The URI (the ID) you used to refer to the output when building
+	 *            the request
+	 * @param type
+	 *            The class of the values. Others are skipped.
+	 * @param handler
+	 *            What receives the values
+	 * @return How the extraction went.
+	 */
+	public static <T> Result forEach(ServiceResponse sr, String outputURI, Class<T> type, Handler<? super T> handler) {
+		return extract(sr, outputURI, type, handler);
+	}
+
+	/**
+	 * Give the values of an output to a handler. Outputs with several values
+	 * are walked in place, instead of being merged in a new list.
+	 *
+	 * @param sr
+	 *            The ServiceResponse, or null if there was none
+	 * @param outputURI
+	 *            The URI of the output
+	 * @param type
+	 *            The class of the values
+	 * @param handler
+	 *            What receives the values
+	 * @return How the extraction went.
+	 */
+	private static <T> Result extract(ServiceResponse sr, String outputURI, Class<T> type,
+			Handler<? super T> handler) {
+		if (sr == null) {
+			return new Result(CALL_FAILED, null, 0, 0, null);
+		}
+		CallStatus status = sr.getCallStatus();
+		if (status != CallStatus.succeeded) {
+			return new Result(CALL_FAILED, status, 0, 0, null);
+		}
+		List<?> outs = sr.getOutputs();
+		if (outs == null || outs.isEmpty()) {
+			return new Result(NO_OUTPUTS, status, 0, 0, null);
+		}
+		boolean found = false;
+		int count = 0;
+		int skipped = 0;
+		Object first = null;
+		for (int i = 0; i < outs.size(); i++) {
+			Object o = outs.get(i);
+			if (!(o instanceof ProcessOutput) || !outputURI.equals(((ProcessOutput) o).getURI())) {
+				continue;
+			}
+			found = true;
+			Object value = ((ProcessOutput) o).getParameterValue();
+			if (value instanceof List) {
+				List<?> values = (List<?>) value;
+				for (int j = 0; j < values.size(); j++) {
+					Object v = values.get(j);
+					if (type.isInstance(v)) {
+						if (count++ == 0) {
+							first = v;
+						}
+						if (!handler.handle(type.cast(v))) {
+							return new Result(OK, status, count, skipped, first);
+						}
+					} else {
+						skipped++;
+					}
+				}
+			} else if (type.isInstance(value)) {
+				if (count++ == 0) {
+					first = value;
+				}
+				if (!handler.handle(type.cast(value))) {
+					return new Result(OK, status, count, skipped, first);
+				}
+			} else if (value != null) {
+				skipped++;
+			}
+		}
+		return new Result(found ? OK : NO_SUCH_OUTPUT, status, count, skipped, first);
+	}
+
+}
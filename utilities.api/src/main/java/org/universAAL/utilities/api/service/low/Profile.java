@@ -132,7 +132,7 @@ public class Profile {
 	 *            end of the branch
 	 */
 	public void put(Path branch, Typematch leaf) {
-		put(branch.path, leaf);
+		put(branch.getPath(), leaf);
 	}
 
 	/**
@@ -158,7 +158,7 @@ public class Profile {
 	 */
 	public void put(Path branch, Typematch leaf, int minCard, int maxCard) {
 		this.service.addInstanceLevelRestriction(MergedRestriction.getAllValuesRestrictionWithCardinality(
-				branch.path[branch.path.length - 1], leaf.getURI(), maxCard, maxCard), branch.path);
+				branch.last(), leaf.getURI(), maxCard, maxCard), branch.getPath());
 	}
 
 	/**
@@ -236,7 +236,7 @@ public class Profile {
 	 *         generated.
 	 */
 	public String put(Path branch, Variable leaf, String uriID) {
-		return put(branch.path, leaf, uriID);
+		return put(branch.getPath(), leaf, uriID);
 	}
 
 	/**
@@ -279,12 +279,12 @@ public class Profile {
 		input.setCardinality(maxCard, minCard);
 		MergedRestriction restr;
 		if (leaf.byURI()) {
-			restr = MergedRestriction.getFixedValueRestriction(branch.path[branch.path.length - 1],
+			restr = MergedRestriction.getFixedValueRestriction(branch.last(),
 					input.asVariableReference());
 		} else {
-			restr = MergedRestriction.getFixedValueRestriction(branch.path[branch.path.length - 1], leaf.getObject());
+			restr = MergedRestriction.getFixedValueRestriction(branch.last(), leaf.getObject());
 		}
-		this.service.addInstanceLevelRestriction(restr, branch.path);
+		this.service.addInstanceLevelRestriction(restr, branch.getPath());
 		this.service.getProfile().addInput(input);
 		return uriID;
 	}
@@ -349,7 +349,7 @@ public class Profile {
 	 *         generated.
 	 */
 	public String put(Path branch, Output leaf, String uriID) {
-		return put(branch.path, leaf, uriID);
+		return put(branch.getPath(), leaf, uriID);
 	}
 
 	/**
@@ -388,7 +388,7 @@ public class Profile {
 		output.setParameterType(leaf.getURI());
 		output.setCardinality(maxCard, minCard);
 		this.service.getProfile().addOutput(output);
-		this.service.getProfile().addSimpleOutputBinding(output, branch.path);
+		this.service.getProfile().addSimpleOutputBinding(output, branch.getPath());
 		return uriID;
 	}
 
@@ -463,7 +463,7 @@ public class Profile {
 	 *         generated.
 	 */
 	public String put(Path branch, Add leaf, String uriID) {
-		return put(branch.path, leaf, uriID);
+		return put(branch.getPath(), leaf, uriID);
 	}
 
 	/**
@@ -505,9 +505,9 @@ public class Profile {
 		input.setCardinality(maxCard, minCard);
 		this.service.getProfile().addInput(input);
 		if (leaf.byURI()) {
-			this.service.getProfile().addAddEffect(branch.path, input.asVariableReference());
+			this.service.getProfile().addAddEffect(branch.getPath(), input.asVariableReference());
 		} else {
-			this.service.getProfile().addAddEffect(branch.path, leaf.getObject());
+			this.service.getProfile().addAddEffect(branch.getPath(), leaf.getObject());
 		}
 		return uriID;
 	}
@@ -588,7 +588,7 @@ public class Profile {
 	 *         generated.
 	 */
 	public String put(Path branch, Remove leaf, String uriID) {
-		return put(branch.path, leaf, uriID);
+		return put(branch.getPath(), leaf, uriID);
 	}
 
 	/**
@@ -632,13 +632,14 @@ public class Profile {
 		this.service.getProfile().addInput(input);
 		MergedRestriction restr;
 		if (leaf.byURI()) {
-			restr = MergedRestriction.getFixedValueRestriction(branch.path[branch.path.length - 1],
+			restr = MergedRestriction.getFixedValueRestriction(branch.last(),
 					input.asVariableReference());
 		} else {
-			restr = MergedRestriction.getFixedValueRestriction(branch.path[branch.path.length - 1], leaf.getObject());
+			restr = MergedRestriction.getFixedValueRestriction(branch.last(), leaf.getObject());
 		}
-		this.service.addInstanceLevelRestriction(restr, branch.path);
-		this.service.getProfile().addRemoveEffect(branch.path);
+		String[] path = branch.getPath();
+		this.service.addInstanceLevelRestriction(restr, path);
+		this.service.getProfile().addRemoveEffect(path);
 		return uriID;
 	}
 
@@ -713,7 +714,7 @@ public class Profile {
 	 *         generated.
 	 */
 	public String put(Path branch, Change leaf, String uriID) {
-		return put(branch.path, leaf, uriID);
+		return put(branch.getPath(), leaf, uriID);
 	}
 
 	/**
@@ -756,9 +757,9 @@ public class Profile {
 		input.setCardinality(maxCard, minCard);
 		this.service.getProfile().addInput(input);
 		if (leaf.byURI()) {
-			this.service.getProfile().addChangeEffect(branch.path, input.asVariableReference());
+			this.service.getProfile().addChangeEffect(branch.getPath(), input.asVariableReference());
 		} else {
-			this.service.getProfile().addChangeEffect(branch.path, leaf.getObject());
+			this.service.getProfile().addChangeEffect(branch.getPath(), leaf.getObject());
 		}
 		return uriID;
 	}
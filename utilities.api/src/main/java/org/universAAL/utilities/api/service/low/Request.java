@@ -113,7 +113,7 @@ public class Request extends ServiceRequest {
 	 *            end of the branch
 	 */
 	public void put(Path branch, Typematch leaf) {
-		put(branch.path, leaf);
+		put(branch.getPath(), leaf);
 	}
 
 	/**
@@ -148,7 +148,7 @@ public class Request extends ServiceRequest {
 	 *            variable input to the service
 	 */
 	public void put(Path branch, Variable leaf) {
-		put(branch.path, leaf);
+		put(branch.getPath(), leaf);
 	}
 
 	/**
@@ -183,7 +183,7 @@ public class Request extends ServiceRequest {
 	 *            dealing with the ServiceResponse
 	 */
 	public void put(Path branch, Output leaf) {
-		put(branch.path, leaf);
+		put(branch.getPath(), leaf);
 	}
 
 	/**
@@ -217,7 +217,7 @@ public class Request extends ServiceRequest {
 	 *            branch
 	 */
 	public void put(Path branch, Add leaf) {
-		put(branch.path, leaf);
+		put(branch.getPath(), leaf);
 	}
 
 	/**
@@ -253,7 +253,7 @@ public class Request extends ServiceRequest {
 	 *            the branch
 	 */
 	public void put(Path branch, Remove leaf) {
-		put(branch.path, leaf);
+		put(branch.getPath(), leaf);
 	}
 
 	/**
@@ -287,7 +287,7 @@ public class Request extends ServiceRequest {
 	 *            the branch
 	 */
 	public void put(Path branch, Change leaf) {
-		put(branch.path, leaf);
+		put(branch.getPath(), leaf);
 	}
 
 	/**
@@ -312,6 +312,9 @@ public class Request extends ServiceRequest {
 	 * Request) and you want to get an array containing all the outputs
 	 * returned.
 	 * <p/>
+	 * To get them typed, without the intermediate array, and with the reason
+	 * when they cannot be got, use the methods of Outputs instead.
+	 * <p/>
 	 *
 	 * @param sr
 	 *            The ServiceResponse returned by the .call method
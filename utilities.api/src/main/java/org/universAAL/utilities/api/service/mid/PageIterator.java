@@ -0,0 +1,268 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.mid;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import org.universAAL.middleware.rdf.Resource;
+import org.universAAL.middleware.service.CallStatus;
+import org.universAAL.middleware.service.ServiceCaller;
+import org.universAAL.middleware.service.ServiceResponse;
+import org.universAAL.utilities.api.service.low.Profile;
+
+/**
+ * Goes through all the Resources managed by an editor service, calling its
+ * paged GET service (see <code>UtilEditor.getPagedServiceProfiles</code>)
+ * one page at a time. While the Resources of a page are being processed, the
+ * next page is already requested in the background, so that it is usually
+ * ready when needed. At most two pages are kept in memory at any time, no
+ * matter how many Resources there are.
+ * <p/>
+ * The iteration ends when a page has less Resources than the page size. If a
+ * call fails, the iteration ends too, and <code>getFailure</code> tells why.
+ * <p/>
+ * Example: <code>
+ * <p/>PageIterator it = new PageIterator(caller, ontologyURI, path, 100);
+ * <p/>while (it.hasNext()) {
+ * <p/>	Profilable p = (Profilable) it.next();
+ * <p/>	...
+ * <p/>}
+ * </code>
+ * <p/>
+ * It must be used from a single thread.
+ *
+ * @author alfiva
+ *
+ */
+public class PageIterator implements Iterator<Resource> {
+
+	/**
+	 * URI of the output with the page in the requests.
+	 */
+	private static final String OUT_PAGE = Profile.MY_NAMESPACE + "pageIteratorOutput";
+
+	/**
+	 * Pool where pages are requested, created when first needed.
+	 */
+	private static ExecutorService pool;
+
+	/**
+	 * The caller used for the requests.
+	 */
+	private ServiceCaller caller;
+
+	/**
+	 * The prepared paged GET request.
+	 */
+	private RequestTemplate template;
+
+	/**
+	 * Maximum number of Resources per page.
+	 */
+	private int pageSize;
+
+	/**
+	 * The page being iterated.
+	 */
+	private List<?> page = Collections.emptyList();
+
+	/**
+	 * Position of the next Resource in the page.
+	 */
+	private int index;
+
+	/**
+	 * Offset of the next page.
+	 */
+	private int offset;
+
+	/**
+	 * The request of the next page, or null if there are no more pages.
+	 */
+	private FutureTask<List<?>> next;
+
+	/**
+	 * Status of the call that failed, if any.
+	 */
+	private CallStatus failure;
+
+	/**
+	 * Create an iterator over the Resources of an editor. The first page is
+	 * requested right away.
+	 *
+	 * @param caller
+	 *            The ServiceCaller used to call the editor
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @param pageSize
+	 *            The maximum number of Resources requested in each call
+	 */
+	public PageIterator(ServiceCaller caller, String ontologyURI, String[] path, int pageSize) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("The page size must be at least 1");
+		}
+		this.caller = caller;
+		this.template = UtilEditor.prepareGetPage(ontologyURI, path);
+		this.pageSize = pageSize;
+		fetch();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.Iterator#hasNext()
+	 */
+	public boolean hasNext() {
+		while (index >= page.size()) {
+			if (next == null) {
+				return false;
+			}
+			page = waitFor(next);
+			index = 0;
+			if (page.size() < pageSize) {
+				next = null; // Last page
+			} else {
+				fetch();
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.Iterator#next()
+	 */
+	public Resource next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return (Resource) page.get(index++);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.Iterator#remove()
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException("Use the editor REMOVE service instead");
+	}
+
+	/**
+	 * Get the status of the call that ended the iteration because it failed.
+	 *
+	 * @return The status of the failed call, or <code>null</code> if none
+	 *         failed.
+	 */
+	public CallStatus getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Request the next page in the background.
+	 */
+	private void fetch() {
+		final int from = offset;
+		offset += pageSize;
+		next = new FutureTask<List<?>>(new Callable<List<?>>() {
+			public List<?> call() {
+				ServiceResponse sr = caller.call(template.bind(Integer.valueOf(from), Integer.valueOf(pageSize), OUT_PAGE));
+				if (sr.getCallStatus() != CallStatus.succeeded) {
+					failure = sr.getCallStatus();
+					return null;
+				}
+				List<?> outs = sr.getOutput(OUT_PAGE, true);
+				if (outs == null) {
+					return Collections.emptyList();
+				}
+				return outs;
+			}
+		});
+		getPool().execute(next);
+	}
+
+	/**
+	 * Wait for a requested page.
+	 *
+	 * @param future
+	 *            The request of the page
+	 * @return The page, empty if it could not be got
+	 */
+	private List<?> waitFor(FutureTask<List<?>> future) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					List<?> result = future.get();
+					if (result == null) {
+						next = null; // Failed, stop here
+						return Collections.emptyList();
+					}
+					return result;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			failure = CallStatus.serviceSpecificFailure;
+			next = null;
+			return Collections.emptyList();
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Get the pool where pages are requested, creating it if needed.
+	 *
+	 * @return The pool.
+	 */
+	private static synchronized ExecutorService getPool() {
+		if (pool == null) {
+			pool = Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "PageIterator fetch");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return pool;
+	}
+
+}
@@ -0,0 +1,689 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.mid;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import org.universAAL.middleware.service.owls.profile.ServiceProfile;
+import org.universAAL.ontology.device.Actuator;
+import org.universAAL.ontology.device.Sensor;
+import org.universAAL.ontology.phThing.DeviceService;
+
+/**
+ * Keeps the service profiles generated by {@link UtilEditor},
+ * {@link UtilActuator} and {@link UtilSensor}, so that they are built only
+ * once for the same parameters. Editor profiles are identified by namespace,
+ * Service class, path and edited class. Actuator and sensor profiles are
+ * identified by namespace, Service class, and the URI and class of the device,
+ * or the class of the devices for group and family profiles.
+ * If the same profiles are requested concurrently, they are built only once
+ * and the others wait for them.
+ * <p>
+ * When many callees are going to be created, their profiles can be
+ * prefetched: they are built in parallel in the background, and the callees
+ * later get them without waiting, or waiting only for the ones still being
+ * built.
+ * <p>
+ * The profiles of a single actuator or sensor are kept until its callee is
+ * closed, which forgets them with <code>releaseActuatorProfiles</code> and
+ * <code>releaseSensorProfiles</code>, so they are bounded by the devices in
+ * use, however many they are. The profiles shared by many callees, of editors,
+ * groups and families, are kept up to MAX_PROFILES sets. Beyond that, they are
+ * built on every call, as without the cache.
+ * <p>
+ * Each call returns a new array, but the profiles in it are shared, so they
+ * must not be modified.
+ *
+ * @author alfiva
+ *
+ */
+public class ProfileCache {
+
+	/**
+	 * The 4 typical editor profiles.
+	 */
+	private static final char TYPICAL = 'E';
+
+	/**
+	 * The bulk editor profiles.
+	 */
+	private static final char BULK = 'B';
+
+	/**
+	 * The paged editor profile.
+	 */
+	private static final char PAGED = 'P';
+
+	/**
+	 * Maximum number of sets of shared profiles kept.
+	 */
+	private static final int MAX_PROFILES = 1024;
+
+	/**
+	 * Shared profiles, being built or already built, by key.
+	 */
+	private static final ConcurrentHashMap<String, FutureTask<ServiceProfile[]>> PROFILES = new ConcurrentHashMap<String, FutureTask<ServiceProfile[]>>();
+
+	/**
+	 * Profiles of single devices, being built or already built, by key. Not
+	 * bounded, since they are released when their callees are closed.
+	 */
+	private static final ConcurrentHashMap<String, FutureTask<ServiceProfile[]>> DEVICES = new ConcurrentHashMap<String, FutureTask<ServiceProfile[]>>();
+
+	/**
+	 * Pool used to prefetch, created when first needed.
+	 */
+	private static ExecutorService pool;
+
+	/**
+	 * Not to be instantiated.
+	 */
+	private ProfileCache() {
+	}
+
+	/**
+	 * Get the 4 editor profiles, as given by
+	 * <code>UtilEditor.getServiceProfiles</code>.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you are going to
+	 *            implement
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @param editedURI
+	 *            The MY_URI of the class of the concept ontology that you want
+	 *            to manage, which is at the end of the property path
+	 * @return An array with the 4 typical service profiles
+	 */
+	public static ServiceProfile[] getEditorProfiles(String namespace, String ontologyURI, String[] path,
+			String editedURI) {
+		try {
+			return get(editor(namespace, ontologyURI, path, editedURI, TYPICAL));
+		} catch (InvalidOntologyUtilException e) {
+			throw new IllegalStateException(e); // Editors do not throw it
+		}
+	}
+
+	/**
+	 * Get the 3 bulk editor profiles, as given by
+	 * <code>UtilEditor.getBulkServiceProfiles</code>.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you are going to
+	 *            implement
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @param editedURI
+	 *            The MY_URI of the class of the concept ontology that you want
+	 *            to manage, which is at the end of the property path
+	 * @return An array with the 3 bulk service profiles
+	 */
+	public static ServiceProfile[] getEditorBulkProfiles(String namespace, String ontologyURI, String[] path,
+			String editedURI) {
+		try {
+			return get(editor(namespace, ontologyURI, path, editedURI, BULK));
+		} catch (InvalidOntologyUtilException e) {
+			throw new IllegalStateException(e); // Editors do not throw it
+		}
+	}
+
+	/**
+	 * Get the paged GET editor profile, as given by
+	 * <code>UtilEditor.getPagedServiceProfiles</code>.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you are going to
+	 *            implement
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @param editedURI
+	 *            The MY_URI of the class of the concept ontology that you want
+	 *            to manage, which is at the end of the property path
+	 * @return An array with the paged GET service profile
+	 */
+	public static ServiceProfile[] getEditorPagedProfiles(String namespace, String ontologyURI, String[] path,
+			String editedURI) {
+		try {
+			return get(editor(namespace, ontologyURI, path, editedURI, PAGED));
+		} catch (InvalidOntologyUtilException e) {
+			throw new IllegalStateException(e); // Editors do not throw it
+		}
+	}
+
+	/**
+	 * Get the 3 actuator profiles, as given by
+	 * <code>UtilActuator.getServiceProfiles</code>.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of DeviceService ontology you are
+	 *            going to implement
+	 * @param actuator
+	 *            The ontology instance of the actuator you are controlling
+	 * @return An array with the 3 typical service profiles
+	 * @throws InvalidOntologyUtilException
+	 *             when an actuator is passed that is does not have StatusValue
+	 *             as type restriction of its HAS_VALUE property
+	 */
+	public static ServiceProfile[] getActuatorProfiles(String namespace, String ontologyURI, Actuator actuator)
+			throws InvalidOntologyUtilException {
+		return get(actuator(namespace, ontologyURI, actuator));
+	}
+
+	/**
+	 * Get the 3 actuator profiles, over DeviceService.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param actuator
+	 *            The ontology instance of the actuator you are controlling
+	 * @return An array with the 3 typical service profiles
+	 * @throws InvalidOntologyUtilException
+	 *             when an actuator is passed that is does not have StatusValue
+	 *             as type restriction of its HAS_VALUE property
+	 */
+	public static ServiceProfile[] getActuatorProfiles(String namespace, Actuator actuator)
+			throws InvalidOntologyUtilException {
+		return getActuatorProfiles(namespace, DeviceService.MY_URI, actuator);
+	}
+
+	/**
+	 * Get the 4 group actuator profiles, as given by
+	 * <code>UtilActuator.getGroupServiceProfiles</code>.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of DeviceService ontology you are
+	 *            going to implement
+	 * @param typeURI
+	 *            The MY_URI of the class of the actuators you are controlling
+	 * @return An array with the 4 group service profiles
+	 */
+	public static ServiceProfile[] getActuatorGroupProfiles(final String namespace, final String ontologyURI,
+			final String typeURI) {
+		Task t = new Task() {
+			public ServiceProfile[] call() {
+				return UtilActuator.getGroupServiceProfiles(namespace, ontologyURI, typeURI);
+			}
+		};
+		t.key = "G " + namespace + ' ' + ontologyURI + ' ' + typeURI;
+		try {
+			return get(t);
+		} catch (InvalidOntologyUtilException e) {
+			throw new IllegalStateException(e); // Groups do not throw it
+		}
+	}
+
+	/**
+	 * Get the 3 family actuator profiles, as given by
+	 * <code>UtilActuator.getFamilyServiceProfiles</code>.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of DeviceService ontology you are
+	 *            going to implement
+	 * @param typeURI
+	 *            The MY_URI of the class of the actuators you are controlling
+	 * @return An array with the 3 typical service profiles
+	 */
+	public static ServiceProfile[] getActuatorFamilyProfiles(final String namespace, final String ontologyURI,
+			final String typeURI) {
+		Task t = new Task() {
+			public ServiceProfile[] call() {
+				return UtilActuator.getFamilyServiceProfiles(namespace, ontologyURI, typeURI);
+			}
+		};
+		t.key = "AF " + namespace + ' ' + ontologyURI + ' ' + typeURI;
+		try {
+			return get(t);
+		} catch (InvalidOntologyUtilException e) {
+			throw new IllegalStateException(e); // Families do not throw it
+		}
+	}
+
+	/**
+	 * Get the sensor profile, as given by
+	 * <code>UtilSensor.getServiceProfiles</code>.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of DeviceService ontology you are
+	 *            going to implement
+	 * @param sensor
+	 *            The ontology instance of the sensor you are controlling
+	 * @return An array with the typical service profile
+	 * @throws InvalidOntologyUtilException
+	 *             when a sensor is passed that is does not have StatusValue as
+	 *             type restriction of its HAS_VALUE property
+	 */
+	public static ServiceProfile[] getSensorProfiles(String namespace, String ontologyURI, Sensor sensor)
+			throws InvalidOntologyUtilException {
+		return get(sensor(namespace, ontologyURI, sensor));
+	}
+
+	/**
+	 * Get the sensor profile, over DeviceService.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param sensor
+	 *            The ontology instance of the sensor you are controlling
+	 * @return An array with the typical service profile
+	 * @throws InvalidOntologyUtilException
+	 *             when a sensor is passed that is does not have StatusValue as
+	 *             type restriction of its HAS_VALUE property
+	 */
+	public static ServiceProfile[] getSensorProfiles(String namespace, Sensor sensor)
+			throws InvalidOntologyUtilException {
+		return getSensorProfiles(namespace, DeviceService.MY_URI, sensor);
+	}
+
+	/**
+	 * Get the family sensor profile, as given by
+	 * <code>UtilSensor.getFamilyServiceProfiles</code>.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of DeviceService ontology you are
+	 *            going to implement
+	 * @param typeURI
+	 *            The MY_URI of the class of the sensors you are controlling
+	 * @return An array with the typical service profile
+	 */
+	public static ServiceProfile[] getSensorFamilyProfiles(final String namespace, final String ontologyURI,
+			final String typeURI) {
+		Task t = new Task() {
+			public ServiceProfile[] call() {
+				return UtilSensor.getFamilyServiceProfiles(namespace, ontologyURI, typeURI);
+			}
+		};
+		t.key = "SF " + namespace + ' ' + ontologyURI + ' ' + typeURI;
+		try {
+			return get(t);
+		} catch (InvalidOntologyUtilException e) {
+			throw new IllegalStateException(e); // Families do not throw it
+		}
+	}
+
+	/**
+	 * Start building in the background the editor profiles, if they are not
+	 * already built.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology
+	 * @param path
+	 *            The property path to the managed concept
+	 * @param editedURI
+	 *            The MY_URI of the class of the managed concept
+	 */
+	public static void prefetchEditor(String namespace, String ontologyURI, String[] path, String editedURI) {
+		prefetch(editor(namespace, ontologyURI, path, editedURI, TYPICAL));
+	}
+
+	/**
+	 * Start building in the background the actuator profiles, if they are not
+	 * already built.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of DeviceService ontology
+	 * @param actuator
+	 *            The ontology instance of the actuator
+	 */
+	public static void prefetchActuator(String namespace, String ontologyURI, Actuator actuator) {
+		prefetch(actuator(namespace, ontologyURI, actuator));
+	}
+
+	/**
+	 * Start building in the background the sensor profile, if it is not
+	 * already built.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of DeviceService ontology
+	 * @param sensor
+	 *            The ontology instance of the sensor
+	 */
+	public static void prefetchSensor(String namespace, String ontologyURI, Sensor sensor) {
+		prefetch(sensor(namespace, ontologyURI, sensor));
+	}
+
+	/**
+	 * Forget the actuator profiles, if kept. Used when the callee of the
+	 * actuator is closed.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of DeviceService ontology
+	 * @param actuator
+	 *            The ontology instance of the actuator
+	 */
+	public static void releaseActuatorProfiles(String namespace, String ontologyURI, Actuator actuator) {
+		DEVICES.remove(actuatorKey(namespace, ontologyURI, actuator));
+	}
+
+	/**
+	 * Forget the actuator profiles over DeviceService, if kept.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param actuator
+	 *            The ontology instance of the actuator
+	 */
+	public static void releaseActuatorProfiles(String namespace, Actuator actuator) {
+		releaseActuatorProfiles(namespace, DeviceService.MY_URI, actuator);
+	}
+
+	/**
+	 * Forget the sensor profile, if kept. Used when the callee of the sensor
+	 * is closed.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of DeviceService ontology
+	 * @param sensor
+	 *            The ontology instance of the sensor
+	 */
+	public static void releaseSensorProfiles(String namespace, String ontologyURI, Sensor sensor) {
+		DEVICES.remove(sensorKey(namespace, ontologyURI, sensor));
+	}
+
+	/**
+	 * Forget the sensor profile over DeviceService, if kept.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param sensor
+	 *            The ontology instance of the sensor
+	 */
+	public static void releaseSensorProfiles(String namespace, Sensor sensor) {
+		releaseSensorProfiles(namespace, DeviceService.MY_URI, sensor);
+	}
+
+	/**
+	 * Forget all the profiles kept.
+	 */
+	public static void clear() {
+		PROFILES.clear();
+		DEVICES.clear();
+	}
+
+	/**
+	 * Get the number of sets of profiles kept.
+	 *
+	 * @return The number of sets of profiles.
+	 */
+	public static int size() {
+		return PROFILES.size() + DEVICES.size();
+	}
+
+	/**
+	 * Get built profiles, building them in this thread if no one else has
+	 * started. If they are shared and there are already MAX_PROFILES shared
+	 * ones kept, they are built and not kept.
+	 *
+	 * @param task
+	 *            The task that builds them, with its key.
+	 * @return A copy of the array of profiles.
+	 * @throws InvalidOntologyUtilException
+	 *             if they could not be built.
+	 */
+	private static ServiceProfile[] get(Task task) throws InvalidOntologyUtilException {
+		ConcurrentHashMap<String, FutureTask<ServiceProfile[]>> cache = task.device ? DEVICES : PROFILES;
+		FutureTask<ServiceProfile[]> future = cache.get(task.key);
+		if (future == null) {
+			if (!task.device && PROFILES.size() >= MAX_PROFILES) {
+				return task.call();
+			}
+			FutureTask<ServiceProfile[]> created = new FutureTask<ServiceProfile[]>(task);
+			future = cache.putIfAbsent(task.key, created);
+			if (future == null) {
+				future = created;
+			}
+		}
+		// Build it here if no one started yet, even if queued for prefetch
+		future.run();
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					ServiceProfile[] profiles = future.get();
+					ServiceProfile[] copy = new ServiceProfile[profiles.length];
+					System.arraycopy(profiles, 0, copy, 0, profiles.length);
+					return copy;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			cache.remove(task.key, future); // Do not keep failures
+			Throwable cause = e.getCause();
+			if (cause instanceof InvalidOntologyUtilException) {
+				throw (InvalidOntologyUtilException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Build profiles in the pool, if no one else is. Shared profiles are not
+	 * prefetched if there are already MAX_PROFILES shared ones kept, since
+	 * they would not be kept.
+	 *
+	 * @param task
+	 *            The task that builds them, with its key.
+	 */
+	private static void prefetch(Task task) {
+		ConcurrentHashMap<String, FutureTask<ServiceProfile[]>> cache = task.device ? DEVICES : PROFILES;
+		if (cache.containsKey(task.key) || (!task.device && PROFILES.size() >= MAX_PROFILES)) {
+			return;
+		}
+		FutureTask<ServiceProfile[]> created = new FutureTask<ServiceProfile[]>(task);
+		if (cache.putIfAbsent(task.key, created) == null) {
+			getPool().execute(created);
+		}
+	}
+
+	/**
+	 * Get the pool used to prefetch, creating it if needed.
+	 *
+	 * @return The pool.
+	 */
+	private static synchronized ExecutorService getPool() {
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "ProfileCache prefetch");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return pool;
+	}
+
+	/**
+	 * The building of a set of profiles, with its key.
+	 */
+	private abstract static class Task implements Callable<ServiceProfile[]> {
+		/**
+		 * The key of the profiles.
+		 */
+		String key;
+		/**
+		 * Whether they are the profiles of a single device.
+		 */
+		boolean device;
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public abstract ServiceProfile[] call() throws InvalidOntologyUtilException;
+	}
+
+	/**
+	 * Create the task that builds editor profiles.
+	 *
+	 * @param namespace
+	 *            The namespace.
+	 * @param ontologyURI
+	 *            The Service class.
+	 * @param path
+	 *            The path to the managed concept.
+	 * @param editedURI
+	 *            The class of the managed concept.
+	 * @param kind
+	 *            Which of the editor profiles to build.
+	 * @return The task.
+	 */
+	private static Task editor(final String namespace, final String ontologyURI, final String[] path,
+			final String editedURI, final char kind) {
+		Task t = new Task() {
+			public ServiceProfile[] call() {
+				switch (kind) {
+				case BULK:
+					return UtilEditor.getBulkServiceProfiles(namespace, ontologyURI, path, editedURI);
+				case PAGED:
+					return UtilEditor.getPagedServiceProfiles(namespace, ontologyURI, path, editedURI);
+				default:
+					return UtilEditor.getServiceProfiles(namespace, ontologyURI, path, editedURI);
+				}
+			}
+		};
+		StringBuilder key = new StringBuilder().append(kind).append(' ').append(namespace).append(' ').append(ontologyURI);
+		for (int i = 0; i < path.length; i++) {
+			key.append(' ').append(path[i]);
+		}
+		t.key = key.append(' ').append(editedURI).toString();
+		return t;
+	}
+
+	/**
+	 * Create the task that builds actuator profiles.
+	 *
+	 * @param namespace
+	 *            The namespace.
+	 * @param ontologyURI
+	 *            The Service class.
+	 * @param actuator
+	 *            The actuator.
+	 * @return The task.
+	 */
+	private static Task actuator(final String namespace, final String ontologyURI, final Actuator actuator) {
+		Task t = new Task() {
+			public ServiceProfile[] call() throws InvalidOntologyUtilException {
+				return UtilActuator.getServiceProfiles(namespace, ontologyURI, actuator);
+			}
+		};
+		t.key = actuatorKey(namespace, ontologyURI, actuator);
+		t.device = true;
+		return t;
+	}
+
+	/**
+	 * Get the key of actuator profiles.
+	 *
+	 * @param namespace
+	 *            The namespace.
+	 * @param ontologyURI
+	 *            The Service class.
+	 * @param actuator
+	 *            The actuator.
+	 * @return The key.
+	 */
+	private static String actuatorKey(String namespace, String ontologyURI, Actuator actuator) {
+		return "A " + namespace + ' ' + ontologyURI + ' ' + actuator.getURI() + ' ' + actuator.getClassURI();
+	}
+
+	/**
+	 * Create the task that builds sensor profiles.
+	 *
+	 * @param namespace
+	 *            The namespace.
+	 * @param ontologyURI
+	 *            The Service class.
+	 * @param sensor
+	 *            The sensor.
+	 * @return The task.
+	 */
+	private static Task sensor(final String namespace, final String ontologyURI, final Sensor sensor) {
+		Task t = new Task() {
+			public ServiceProfile[] call() throws InvalidOntologyUtilException {
+				return UtilSensor.getServiceProfiles(namespace, ontologyURI, sensor);
+			}
+		};
+		t.key = sensorKey(namespace, ontologyURI, sensor);
+		t.device = true;
+		return t;
+	}
+
+	/**
+	 * Get the key of sensor profiles.
+	 *
+	 * @param namespace
+	 *            The namespace.
+	 * @param ontologyURI
+	 *            The Service class.
+	 * @param sensor
+	 *            The sensor.
+	 * @return The key.
+	 */
+	private static String sensorKey(String namespace, String ontologyURI, Sensor sensor) {
+		return "S " + namespace + ' ' + ontologyURI + ' ' + sensor.getURI() + ' ' + sensor.getClassURI();
+	}
+
+}
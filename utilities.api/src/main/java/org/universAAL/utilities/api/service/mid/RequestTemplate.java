@@ -0,0 +1,377 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.mid;
+
+import org.universAAL.middleware.owl.MergedRestriction;
+import org.universAAL.middleware.owl.OntologyManagement;
+import org.universAAL.middleware.service.ServiceRequest;
+import org.universAAL.middleware.service.owl.Service;
+import org.universAAL.utilities.api.service.Path;
+import org.universAAL.utilities.api.service.low.Request;
+
+/**
+ * A prepared Service Request: the structure of the request (the Service class,
+ * the property paths and what is done at each of them) is given once, and
+ * then requests are built by only binding the values that change from call to
+ * call. This saves creating the paths and arguments, and resolving their
+ * types, on every call. A new ServiceRequest is still built on each
+ * <code>bind</code>, since requests are modified when sent.
+ * <p/>
+ * Each of the definition methods adds a step to the template. The steps
+ * defined without a value are bound, in the order they were defined, to the
+ * values passed to <code>bind</code>.
+ * <p/>
+ * Example: A template that turns on a given actuator, built once and used for
+ * every call.
+ * <code>
+ * <p/>RequestTemplate turnOn = new RequestTemplate(DeviceService.MY_URI)
+ * <p/>		.in(new String[] { DeviceService.PROP_CONTROLS })
+ * <p/>		.change(new String[] { DeviceService.PROP_CONTROLS, Actuator.PROP_HAS_VALUE }, StatusValue.Activated);
+ * <p/>caller.call(turnOn.bind(actuator));
+ * </code>
+ * <p/>
+ * Templates must be fully defined before being shared between threads. After
+ * that, <code>bind</code> can be called concurrently. The templates returned
+ * by the prepare methods of UtilEditor, UtilActuator and UtilSensor are kept
+ * and shared: defining more steps on them gives a new template, and the kept
+ * one is left as it was.
+ *
+ * @author alfiva
+ *
+ */
+public class RequestTemplate {
+
+	/**
+	 * Step that passes a value as input.
+	 */
+	private static final int IN = 0;
+	/**
+	 * Step that requires an output.
+	 */
+	private static final int OUT = 1;
+	/**
+	 * Step that restricts the type of a property.
+	 */
+	private static final int TYPE = 2;
+	/**
+	 * Step that adds a value.
+	 */
+	private static final int ADD = 3;
+	/**
+	 * Step that changes a value.
+	 */
+	private static final int CHANGE = 4;
+	/**
+	 * Step that removes a value.
+	 */
+	private static final int REMOVE = 5;
+
+	/**
+	 * A step of the template.
+	 */
+	private static final class Step {
+		/**
+		 * What is done.
+		 */
+		int kind;
+		/**
+		 * The property path.
+		 */
+		String[] path;
+		/**
+		 * The fixed value, if not bound.
+		 */
+		Object value;
+		/**
+		 * The index of the bound value, or -1 if fixed.
+		 */
+		int slot;
+	}
+
+	/**
+	 * The MY_URI of the Service class to call.
+	 */
+	private String ontologyURI;
+
+	/**
+	 * The steps, in order.
+	 */
+	private Step[] steps = new Step[0];
+
+	/**
+	 * Number of values to bind.
+	 */
+	private int slots;
+
+	/**
+	 * Whether it is kept and shared, so that it must not be modified anymore.
+	 */
+	private volatile boolean shared;
+
+	/**
+	 * Start a template for requests to a Service class.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 */
+	public RequestTemplate(String ontologyURI) {
+		this.ontologyURI = ontologyURI;
+	}
+
+	/**
+	 * Pass a value, given on each bind, as input at a path. Like
+	 * <code>Variable</code> in a Request.
+	 *
+	 * @param path
+	 *            The property path from the root of the Service.
+	 * @return This template.
+	 */
+	public RequestTemplate in(String[] path) {
+		return step(IN, path, null, true);
+	}
+
+	/**
+	 * Pass a fixed value as input at a path.
+	 *
+	 * @param path
+	 *            The property path from the root of the Service.
+	 * @param value
+	 *            The value.
+	 * @return This template.
+	 */
+	public RequestTemplate in(String[] path, Object value) {
+		return step(IN, path, value, false);
+	}
+
+	/**
+	 * Require the output at a path, under a URI given on each bind. Like
+	 * <code>Output</code> in a Request.
+	 *
+	 * @param path
+	 *            The property path from the root of the Service.
+	 * @return This template.
+	 */
+	public RequestTemplate out(String[] path) {
+		return step(OUT, path, null, true);
+	}
+
+	/**
+	 * Require the output at a path, under a fixed URI.
+	 *
+	 * @param path
+	 *            The property path from the root of the Service.
+	 * @param outputURI
+	 *            The URI under which the output is returned.
+	 * @return This template.
+	 */
+	public RequestTemplate out(String[] path, String outputURI) {
+		return step(OUT, path, outputURI, false);
+	}
+
+	/**
+	 * Restrict the type of the value at a path. Like <code>Typematch</code>
+	 * in a Request.
+	 *
+	 * @param path
+	 *            The property path from the root of the Service.
+	 * @param typeURI
+	 *            The MY_URI of the type.
+	 * @return This template.
+	 */
+	public RequestTemplate type(String[] path, String typeURI) {
+		return step(TYPE, path, typeURI, false);
+	}
+
+	/**
+	 * Add a value, given on each bind, at a path. Like <code>Add</code> in a
+	 * Request.
+	 *
+	 * @param path
+	 *            The property path from the root of the Service.
+	 * @return This template.
+	 */
+	public RequestTemplate add(String[] path) {
+		return step(ADD, path, null, true);
+	}
+
+	/**
+	 * Change to a value, given on each bind, the value at a path. Like
+	 * <code>Change</code> in a Request.
+	 *
+	 * @param path
+	 *            The property path from the root of the Service.
+	 * @return This template.
+	 */
+	public RequestTemplate change(String[] path) {
+		return step(CHANGE, path, null, true);
+	}
+
+	/**
+	 * Change to a fixed value the value at a path.
+	 *
+	 * @param path
+	 *            The property path from the root of the Service.
+	 * @param value
+	 *            The new value.
+	 * @return This template.
+	 */
+	public RequestTemplate change(String[] path, Object value) {
+		return step(CHANGE, path, value, false);
+	}
+
+	/**
+	 * Remove a value, given on each bind, from a path. Like
+	 * <code>Remove</code> in a Request.
+	 *
+	 * @param path
+	 *            The property path from the root of the Service.
+	 * @return This template.
+	 */
+	public RequestTemplate remove(String[] path) {
+		return step(REMOVE, path, null, true);
+	}
+
+	/**
+	 * Equivalent to in(String[] path).
+	 *
+	 * @param path
+	 *            The property path from the root of the Service.
+	 * @return This template.
+	 */
+	public RequestTemplate in(Path path) {
+		return in(path.getPath());
+	}
+
+	/**
+	 * Equivalent to out(String[] path).
+	 *
+	 * @param path
+	 *            The property path from the root of the Service.
+	 * @return This template.
+	 */
+	public RequestTemplate out(Path path) {
+		return out(path.getPath());
+	}
+
+	/**
+	 * Build a request with the given values.
+	 *
+	 * @param values
+	 *            The values of the steps defined without one, in the order
+	 *            they were defined. For outputs, the URI under which they are
+	 *            returned.
+	 * @return The request, ready to be called.
+	 * @throws IllegalArgumentException
+	 *             if the number of values is not the number of steps without
+	 *             one.
+	 */
+	public ServiceRequest bind(Object... values) {
+		if (values.length != slots) {
+			throw new IllegalArgumentException("Expected " + slots + " values, got " + values.length);
+		}
+		Step[] all = steps;
+		Request req = new Request((Service) OntologyManagement.getInstance().getResource(ontologyURI, null));
+		for (int i = 0; i < all.length; i++) {
+			Step s = all[i];
+			Object value = s.slot < 0 ? s.value : values[s.slot];
+			switch (s.kind) {
+			case IN:
+				req.addValueFilter(s.path, value);
+				break;
+			case OUT:
+				req.addRequiredOutput((String) value, s.path);
+				break;
+			case TYPE:
+				req.addTypeFilter(s.path, (String) value);
+				break;
+			case ADD:
+				req.addAddEffect(s.path, value);
+				break;
+			case CHANGE:
+				req.addChangeEffect(s.path, value);
+				break;
+			case REMOVE:
+				req.getRequestedService().addInstanceLevelRestriction(
+						MergedRestriction.getFixedValueRestriction(s.path[s.path.length - 1], value), s.path);
+				req.addRemoveEffect(s.path);
+				break;
+			default:
+				break;
+			}
+		}
+		return req;
+	}
+
+	/**
+	 * Get how many values must be passed to <code>bind</code>.
+	 *
+	 * @return The number of values.
+	 */
+	public int getBindCount() {
+		return slots;
+	}
+
+	/**
+	 * Mark this template as kept and shared. From now on, defining more steps
+	 * gives a new template instead of modifying this one.
+	 *
+	 * @return This template.
+	 */
+	RequestTemplate share() {
+		shared = true;
+		return this;
+	}
+
+	/**
+	 * Add a step.
+	 *
+	 * @param kind
+	 *            What is done.
+	 * @param path
+	 *            The property path, which is copied.
+	 * @param value
+	 *            The fixed value, if not bound.
+	 * @param bound
+	 *            Whether the value is given on each bind.
+	 * @return This template.
+	 */
+	private RequestTemplate step(int kind, String[] path, Object value, boolean bound) {
+		if (shared) {
+			RequestTemplate copy = new RequestTemplate(ontologyURI);
+			copy.steps = steps;
+			copy.slots = slots;
+			return copy.step(kind, path, value, bound);
+		}
+		Step s = new Step();
+		s.kind = kind;
+		s.path = new String[path.length];
+		System.arraycopy(path, 0, s.path, 0, path.length);
+		s.value = value;
+		s.slot = bound ? slots++ : -1;
+		Step[] more = new Step[steps.length + 1];
+		System.arraycopy(steps, 0, more, 0, steps.length);
+		more[steps.length] = s;
+		steps = more;
+		return this;
+	}
+
+}
@@ -21,9 +21,11 @@
  */
 package org.universAAL.utilities.api.service.mid;
 
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.universAAL.middleware.owl.MergedRestriction;
 import org.universAAL.middleware.owl.OntologyManagement;
-import org.universAAL.middleware.rdf.PropertyPath;
 import org.universAAL.middleware.service.ServiceRequest;
 import org.universAAL.middleware.service.owl.Service;
 import org.universAAL.middleware.service.owls.process.ProcessInput;
@@ -31,12 +33,13 @@ import org.universAAL.middleware.service.owls.process.ProcessOutput;
 import org.universAAL.middleware.service.owls.profile.ServiceProfile;
 import org.universAAL.ontology.device.Actuator;
 import org.universAAL.ontology.device.StatusValue;
+import org.universAAL.ontology.location.Location;
 import org.universAAL.ontology.phThing.DeviceService;
+import org.universAAL.ontology.phThing.PhysicalThing;
 import org.universAAL.utilities.api.service.Arg;
 import org.universAAL.utilities.api.service.Output;
 import org.universAAL.utilities.api.service.Path;
 import org.universAAL.utilities.api.service.Variable;
-import org.universAAL.utilities.api.service.low.Request;
 
 /**
  * This is a helper class for those who want to use the typical services of an
@@ -71,6 +74,63 @@ public class UtilActuator {
 	 * Argument suffix.
 	 */
 	public static final String IN_DEVICE = "inputActuatorAll";
+	/**
+	 * Service suffix.
+	 */
+	public static final String SERVICE_GROUP_ON = "servActuatorGroupOn";
+	/**
+	 * Service suffix.
+	 */
+	public static final String SERVICE_GROUP_OFF = "servActuatorGroupOff";
+	/**
+	 * Service suffix.
+	 */
+	public static final String SERVICE_ZONE_ON = "servActuatorZoneOn";
+	/**
+	 * Service suffix.
+	 */
+	public static final String SERVICE_ZONE_OFF = "servActuatorZoneOff";
+	/**
+	 * Argument suffix.
+	 */
+	public static final String IN_GROUP = "inputActuatorGroup";
+	/**
+	 * Argument suffix.
+	 */
+	public static final String IN_ZONE = "inputActuatorZone";
+	/**
+	 * Argument suffix.
+	 */
+	public static final String OUT_FAILED = "outputActuatorFailed";
+	/**
+	 * Path to the controlled device.
+	 */
+	private static final Path PATH_DEVICE = Path.at(DeviceService.PROP_CONTROLS);
+	/**
+	 * Path to the status of the controlled device.
+	 */
+	private static final Path PATH_STATUS = PATH_DEVICE.to(Actuator.PROP_HAS_VALUE);
+	/**
+	 * Path to the location of the controlled device.
+	 */
+	private static final Path PATH_LOCATION = PATH_DEVICE.to(PhysicalThing.PROP_PHYSICAL_LOCATION);
+	/**
+	 * Prepared GET STATUS requests, by Service class.
+	 */
+	private static final ConcurrentHashMap<String, RequestTemplate> GET_TEMPLATES = new ConcurrentHashMap<String, RequestTemplate>();
+	/**
+	 * Prepared SET ON requests, by Service class.
+	 */
+	private static final ConcurrentHashMap<String, RequestTemplate> ON_TEMPLATES = new ConcurrentHashMap<String, RequestTemplate>();
+	/**
+	 * Prepared SET OFF requests, by Service class.
+	 */
+	private static final ConcurrentHashMap<String, RequestTemplate> OFF_TEMPLATES = new ConcurrentHashMap<String, RequestTemplate>();
+	/**
+	 * Prepared group and zone requests, by kind, Service class and actuator
+	 * class.
+	 */
+	private static final ConcurrentHashMap<String, RequestTemplate> GROUP_TEMPLATES = new ConcurrentHashMap<String, RequestTemplate>();
 
 	/**
 	 * Gives you the 3 typical service profiles of an on/off actuator service:
@@ -119,8 +179,7 @@ public class UtilActuator {
 
 		ServiceProfile[] profiles = new ServiceProfile[3];
 
-		PropertyPath ppath = new PropertyPath(null, true,
-				new String[] { DeviceService.PROP_CONTROLS, Actuator.PROP_HAS_VALUE });
+		String[] status = PATH_STATUS.getPath();
 
 		ProcessInput input = new ProcessInput(namespace + IN_DEVICE);
 		input.setParameterType(actuator.getClassURI());
@@ -134,21 +193,21 @@ public class UtilActuator {
 		ProcessOutput output = new ProcessOutput(namespace + OUT_GET_ON_OFF);
 		output.setCardinality(1, 1);
 		profiles[0].addOutput(output);
-		profiles[0].addSimpleOutputBinding(output, ppath.getThePath());
+		profiles[0].addSimpleOutputBinding(output, status);
 		profiles[0].addInput(input);
 		profiles[0].getTheService().addInstanceLevelRestriction(r, new String[] { DeviceService.PROP_CONTROLS });
 
 		Service turnOff = (Service) OntologyManagement.getInstance().getResource(ontologyURI,
 				namespace + SERVICE_TURN_OFF);
 		profiles[1] = turnOff.getProfile();
-		profiles[1].addChangeEffect(ppath.getThePath(), StatusValue.NotActivated);
+		profiles[1].addChangeEffect(status, StatusValue.NotActivated);
 		profiles[1].addInput(input);
 		profiles[1].getTheService().addInstanceLevelRestriction(r, new String[] { DeviceService.PROP_CONTROLS });
 
 		Service turnOn = (Service) OntologyManagement.getInstance().getResource(ontologyURI,
 				namespace + SERVICE_TURN_ON);
 		profiles[2] = turnOn.getProfile();
-		profiles[2].addChangeEffect(ppath.getThePath(), StatusValue.Activated);
+		profiles[2].addChangeEffect(status, StatusValue.Activated);
 		profiles[2].addInput(input);
 		profiles[2].getTheService().addInstanceLevelRestriction(r, new String[] { DeviceService.PROP_CONTROLS });
 
@@ -183,6 +242,123 @@ public class UtilActuator {
 		return getServiceProfiles(namespace, DeviceService.MY_URI, actuator);
 	}
 
+	/**
+	 * Gives you the 3 typical service profiles of an on/off actuator service
+	 * for a whole family of actuators: Get status, Set On, and Set Off. Unlike
+	 * the profiles of getServiceProfiles, which are restricted to a single
+	 * actuator, these are restricted to the actuator given in the input
+	 * <code>namespace</code> + IN_DEVICE, so a Callee that controls many
+	 * actuators of the same type registers them only once and tells which one
+	 * is called by that input. They match the same requests.
+	 * <p>
+	 * BE CAREFUL: This will only work with actuators that have StatusValue as
+	 * HAS_VALUE property. Use a namespace different from the one of the
+	 * profiles of single actuators.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #. You
+	 *            can optionally add some prefix after the # if you use
+	 *            UtilActuator more than once in the same Callee.
+	 * @param ontologyURI
+	 *            The MY_URI of the class of DeviceService ontology you are
+	 *            going to implement. It MUST be a subclass of DeviceService.
+	 * @param typeURI
+	 *            The MY_URI of the class of the actuators you are controlling
+	 * @return An array with the 3 typical service profiles
+	 */
+	public static ServiceProfile[] getFamilyServiceProfiles(String namespace, String ontologyURI, String typeURI) {
+		ServiceProfile[] profiles = new ServiceProfile[3];
+		String[] status = PATH_STATUS.getPath();
+		String[] device = PATH_DEVICE.getPath();
+
+		ProcessInput input = new ProcessInput(namespace + IN_DEVICE);
+		input.setParameterType(typeURI);
+		input.setCardinality(1, 1);
+		MergedRestriction r = MergedRestriction.getFixedValueRestriction(DeviceService.PROP_CONTROLS,
+				input.asVariableReference());
+
+		String[] suffixes = new String[] { SERVICE_GET_ON_OFF, SERVICE_TURN_OFF, SERVICE_TURN_ON };
+		for (int i = 0; i < 3; i++) {
+			Service service = (Service) OntologyManagement.getInstance().getResource(ontologyURI,
+					namespace + suffixes[i]);
+			profiles[i] = service.getProfile();
+			profiles[i].addInput(input);
+			profiles[i].getTheService().addInstanceLevelRestriction(r, device);
+		}
+		ProcessOutput output = new ProcessOutput(namespace + OUT_GET_ON_OFF);
+		output.setCardinality(1, 1);
+		profiles[0].addOutput(output);
+		profiles[0].addSimpleOutputBinding(output, status);
+		profiles[1].addChangeEffect(status, StatusValue.NotActivated);
+		profiles[2].addChangeEffect(status, StatusValue.Activated);
+		return profiles;
+	}
+
+	/**
+	 * Gives you the 4 group service profiles of on/off actuators: Set On and
+	 * Set Off for a given set of actuators, and Set On and Set Off for all the
+	 * actuators in a location. They are meant for a Callee that controls many
+	 * actuators, to switch any number of them in a single call. The actuators
+	 * that could not be switched are returned in the output
+	 * <code>namespace</code> + OUT_FAILED.
+	 * <p>
+	 * BE CAREFUL: This will only work with actuators that have StatusValue as
+	 * HAS_VALUE property.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #. You
+	 *            can optionally add some prefix after the # if you use
+	 *            UtilActuator more than once in the same Callee.
+	 * @param ontologyURI
+	 *            The MY_URI of the class of DeviceService ontology you are
+	 *            going to implement. It MUST be a subclass of DeviceService.
+	 * @param typeURI
+	 *            The MY_URI of the class of the actuators you are controlling.
+	 *            The zone profiles only match requests for this type.
+	 * @return An array with the 4 group service profiles
+	 */
+	public static ServiceProfile[] getGroupServiceProfiles(String namespace, String ontologyURI, String typeURI) {
+		ServiceProfile[] profiles = new ServiceProfile[4];
+		String[] status = PATH_STATUS.getPath();
+		String[] device = PATH_DEVICE.getPath();
+		String[] location = PATH_LOCATION.getPath();
+
+		ProcessInput group = new ProcessInput(namespace + IN_GROUP);
+		group.setParameterType(typeURI);
+		group.setCardinality(-1, 1);
+		MergedRestriction inGroup = MergedRestriction.getFixedValueRestriction(DeviceService.PROP_CONTROLS,
+				group.asVariableReference());
+
+		ProcessInput zone = new ProcessInput(namespace + IN_ZONE);
+		zone.setParameterType(Location.MY_URI);
+		zone.setCardinality(1, 1);
+		MergedRestriction inZone = MergedRestriction.getFixedValueRestriction(PhysicalThing.PROP_PHYSICAL_LOCATION,
+				zone.asVariableReference());
+		MergedRestriction ofType = MergedRestriction.getAllValuesRestriction(DeviceService.PROP_CONTROLS, typeURI);
+
+		String[] suffixes = new String[] { SERVICE_GROUP_ON, SERVICE_GROUP_OFF, SERVICE_ZONE_ON, SERVICE_ZONE_OFF };
+		for (int i = 0; i < 4; i++) {
+			Service service = (Service) OntologyManagement.getInstance().getResource(ontologyURI,
+					namespace + suffixes[i]);
+			profiles[i] = service.getProfile();
+			profiles[i].addChangeEffect(status, i % 2 == 0 ? StatusValue.Activated : StatusValue.NotActivated);
+			if (i < 2) {
+				profiles[i].addInput(group);
+				profiles[i].getTheService().addInstanceLevelRestriction(inGroup, device);
+			} else {
+				profiles[i].addInput(zone);
+				profiles[i].getTheService().addInstanceLevelRestriction(ofType, device);
+				profiles[i].getTheService().addInstanceLevelRestriction(inZone, location);
+			}
+			ProcessOutput failed = new ProcessOutput(namespace + OUT_FAILED);
+			failed.setParameterType(typeURI);
+			failed.setCardinality(-1, 0);
+			profiles[i].addOutput(failed);
+			profiles[i].addSimpleOutputBinding(failed, device);
+		}
+		return profiles;
+	}
+
 	/**
 	 * Gives you the typical GET STATUS service request for actuator services.
 	 * If the editor service also used UtilActuator the match is guaranteed.
@@ -201,10 +377,7 @@ public class UtilActuator {
 	 *         of an actuator
 	 */
 	public static ServiceRequest requestGetOnOff(String ontologyURI, Variable argIn, Output argOut) {
-		Request req = new Request((Service) OntologyManagement.getInstance().getResource(ontologyURI, null));
-		req.put(Path.at(DeviceService.PROP_CONTROLS), argIn);
-		req.put(Path.at(DeviceService.PROP_CONTROLS).to(Actuator.PROP_HAS_VALUE), argOut);
-		return req;
+		return prepareGetOnOff(ontologyURI).bind(argIn.getObject(), argOut.getURI());
 	}
 
 	/**
@@ -259,10 +432,7 @@ public class UtilActuator {
 	 *         an actuator
 	 */
 	public static ServiceRequest requestSetOn(String ontologyURI, Variable argIn) {
-		Request req = new Request((Service) OntologyManagement.getInstance().getResource(ontologyURI, null));
-		req.put(Path.at(DeviceService.PROP_CONTROLS), argIn);
-		req.put(Path.at(DeviceService.PROP_CONTROLS).to(Actuator.PROP_HAS_VALUE), Arg.change(StatusValue.Activated));
-		return req;
+		return prepareSetOn(ontologyURI).bind(argIn.getObject());
 	}
 
 	/**
@@ -307,10 +477,7 @@ public class UtilActuator {
 	 *         an actuator
 	 */
 	public static ServiceRequest requestSetOff(String ontologyURI, Variable argIn) {
-		Request req = new Request((Service) OntologyManagement.getInstance().getResource(ontologyURI, null));
-		req.put(Path.at(DeviceService.PROP_CONTROLS), argIn);
-		req.put(Path.at(DeviceService.PROP_CONTROLS).to(Actuator.PROP_HAS_VALUE), Arg.change(StatusValue.NotActivated));
-		return req;
+		return prepareSetOff(ontologyURI).bind(argIn.getObject());
 	}
 
 	/**
@@ -341,4 +508,177 @@ public class UtilActuator {
 		return requestSetOff(DeviceService.MY_URI, actuator);
 	}
 
+	/**
+	 * Gives you the prepared GET STATUS service request for actuator services,
+	 * to be bound to the actuator and the output URI. Templates are kept, so
+	 * the same one is returned for the same Service class.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @return The template, to be bound to the actuator and the output URI
+	 */
+	public static RequestTemplate prepareGetOnOff(String ontologyURI) {
+		RequestTemplate t = GET_TEMPLATES.get(ontologyURI);
+		if (t == null) {
+			t = new RequestTemplate(ontologyURI).in(PATH_DEVICE).out(PATH_STATUS).share();
+			GET_TEMPLATES.putIfAbsent(ontologyURI, t);
+		}
+		return t;
+	}
+
+	/**
+	 * Gives you the prepared SET ON service request for actuator services, to
+	 * be bound to the actuator. Templates are kept, so the same one is
+	 * returned for the same Service class.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @return The template, to be bound to the actuator
+	 */
+	public static RequestTemplate prepareSetOn(String ontologyURI) {
+		RequestTemplate t = ON_TEMPLATES.get(ontologyURI);
+		if (t == null) {
+			t = new RequestTemplate(ontologyURI).in(PATH_DEVICE).change(PATH_STATUS.getPath(), StatusValue.Activated).share();
+			ON_TEMPLATES.putIfAbsent(ontologyURI, t);
+		}
+		return t;
+	}
+
+	/**
+	 * Gives you the prepared SET OFF service request for actuator services, to
+	 * be bound to the actuator. Templates are kept, so the same one is
+	 * returned for the same Service class.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @return The template, to be bound to the actuator
+	 */
+	public static RequestTemplate prepareSetOff(String ontologyURI) {
+		RequestTemplate t = OFF_TEMPLATES.get(ontologyURI);
+		if (t == null) {
+			t = new RequestTemplate(ontologyURI).in(PATH_DEVICE).change(PATH_STATUS.getPath(), StatusValue.NotActivated).share();
+			OFF_TEMPLATES.putIfAbsent(ontologyURI, t);
+		}
+		return t;
+	}
+
+	/**
+	 * Gives you the group SET ON service request for actuator services, which
+	 * sets on all the given actuators in a single call. If the service also
+	 * used UtilActuator group profiles the match is guaranteed.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param actuators
+	 *            The ontology instances of the actuators you want to set on
+	 * @param failed
+	 *            The actuators that could not be set on will be placed in this
+	 *            URI. Look for them there in the response.
+	 * @return The ServiceRequest that will call the matching group SET ON
+	 *         service
+	 */
+	public static ServiceRequest requestSetOnAll(String ontologyURI, List<? extends Actuator> actuators,
+			String failed) {
+		return prepareGroup(SERVICE_GROUP_ON, ontologyURI, null).bind(actuators, failed);
+	}
+
+	/**
+	 * Gives you the group SET OFF service request for actuator services, which
+	 * sets off all the given actuators in a single call. If the service also
+	 * used UtilActuator group profiles the match is guaranteed.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param actuators
+	 *            The ontology instances of the actuators you want to set off
+	 * @param failed
+	 *            The actuators that could not be set off will be placed in
+	 *            this URI. Look for them there in the response.
+	 * @return The ServiceRequest that will call the matching group SET OFF
+	 *         service
+	 */
+	public static ServiceRequest requestSetOffAll(String ontologyURI, List<? extends Actuator> actuators,
+			String failed) {
+		return prepareGroup(SERVICE_GROUP_OFF, ontologyURI, null).bind(actuators, failed);
+	}
+
+	/**
+	 * Gives you the zone SET ON service request for actuator services, which
+	 * sets on all the actuators of a type in a location in a single call. If
+	 * the service also used UtilActuator group profiles the match is
+	 * guaranteed.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param typeURI
+	 *            The MY_URI of the class of the actuators you want to set on
+	 * @param location
+	 *            The location of the actuators
+	 * @param failed
+	 *            The actuators that could not be set on will be placed in this
+	 *            URI. Look for them there in the response.
+	 * @return The ServiceRequest that will call the matching zone SET ON
+	 *         service
+	 */
+	public static ServiceRequest requestSetOnIn(String ontologyURI, String typeURI, Location location,
+			String failed) {
+		return prepareGroup(SERVICE_ZONE_ON, ontologyURI, typeURI).bind(location, failed);
+	}
+
+	/**
+	 * Gives you the zone SET OFF service request for actuator services, which
+	 * sets off all the actuators of a type in a location in a single call. If
+	 * the service also used UtilActuator group profiles the match is
+	 * guaranteed.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param typeURI
+	 *            The MY_URI of the class of the actuators you want to set off
+	 * @param location
+	 *            The location of the actuators
+	 * @param failed
+	 *            The actuators that could not be set off will be placed in
+	 *            this URI. Look for them there in the response.
+	 * @return The ServiceRequest that will call the matching zone SET OFF
+	 *         service
+	 */
+	public static ServiceRequest requestSetOffIn(String ontologyURI, String typeURI, Location location,
+			String failed) {
+		return prepareGroup(SERVICE_ZONE_OFF, ontologyURI, typeURI).bind(location, failed);
+	}
+
+	/**
+	 * Get the prepared group or zone request, building it if needed.
+	 *
+	 * @param kind
+	 *            One of the group or zone service suffixes
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology
+	 * @param typeURI
+	 *            The MY_URI of the class of the actuators, for zones
+	 * @return The template, to be bound to the actuators or the location, and
+	 *         the output URI
+	 */
+	private static RequestTemplate prepareGroup(String kind, String ontologyURI, String typeURI) {
+		String key = kind + ' ' + ontologyURI + ' ' + typeURI;
+		RequestTemplate t = GROUP_TEMPLATES.get(key);
+		if (t == null) {
+			t = new RequestTemplate(ontologyURI);
+			if (typeURI == null) {
+				t.in(PATH_DEVICE);
+			} else {
+				t.type(PATH_DEVICE.getPath(), typeURI).in(PATH_LOCATION);
+			}
+			boolean on = SERVICE_GROUP_ON.equals(kind) || SERVICE_ZONE_ON.equals(kind);
+			t.change(PATH_STATUS.getPath(), on ? StatusValue.Activated : StatusValue.NotActivated).out(PATH_DEVICE);
+			t.share();
+			RequestTemplate existing = GROUP_TEMPLATES.putIfAbsent(key, t);
+			if (existing != null) {
+				t = existing;
+			}
+		}
+		return t;
+	}
+
 }
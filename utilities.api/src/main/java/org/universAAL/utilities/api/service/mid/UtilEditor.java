@@ -21,8 +21,12 @@
  */
 package org.universAAL.utilities.api.service.mid;
 
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.universAAL.middleware.owl.MergedRestriction;
 import org.universAAL.middleware.owl.OntologyManagement;
+import org.universAAL.middleware.rdf.TypeMapper;
 import org.universAAL.middleware.service.ServiceRequest;
 import org.universAAL.middleware.service.owl.Service;
 import org.universAAL.middleware.service.owls.process.ProcessInput;
@@ -35,7 +39,6 @@ import org.universAAL.utilities.api.service.Output;
 import org.universAAL.utilities.api.service.Remove;
 import org.universAAL.utilities.api.service.Variable;
 import org.universAAL.utilities.api.service.low.Profile;
-import org.universAAL.utilities.api.service.low.Request;
 
 /**
  * This is a helper class for those who want to use the typical services of an
@@ -88,6 +91,96 @@ public class UtilEditor {
 	 * Argument suffix.
 	 */
 	public static final String IN_REMOVE = "inputEditorRemove";
+	/**
+	 * Service suffix.
+	 */
+	public static final String SERVICE_ADD_ALL = "servEditorAddAll";
+	/**
+	 * Service suffix.
+	 */
+	public static final String SERVICE_CHANGE_ALL = "servEditorChangeAll";
+	/**
+	 * Service suffix.
+	 */
+	public static final String SERVICE_REMOVE_ALL = "servEditorRemoveAll";
+	/**
+	 * Argument suffix.
+	 */
+	public static final String IN_ADD_ALL = "inputEditorAddAll";
+	/**
+	 * Argument suffix.
+	 */
+	public static final String IN_CHANGE_ALL = "inputEditorChangeAll";
+	/**
+	 * Argument suffix.
+	 */
+	public static final String IN_REMOVE_ALL = "inputEditorRemoveAll";
+	/**
+	 * Argument suffix.
+	 */
+	public static final String OUT_FAILED = "outputEditorFailed";
+	/**
+	 * Argument suffix.
+	 */
+	public static final String IN_BULK = "inputEditorBulk";
+	/**
+	 * Property of the Service marking bulk requests. Bulk profiles require it
+	 * as input, so that requests for a single Resource, which do not pass it,
+	 * never match them.
+	 */
+	public static final String PROP_BULK = Profile.MY_NAMESPACE + "bulk";
+	/**
+	 * Service suffix.
+	 */
+	public static final String SERVICE_GET_PAGE = "servEditorGetPage";
+	/**
+	 * Argument suffix.
+	 */
+	public static final String IN_OFFSET = "inputEditorOffset";
+	/**
+	 * Argument suffix.
+	 */
+	public static final String IN_LIMIT = "inputEditorLimit";
+	/**
+	 * Argument suffix.
+	 */
+	public static final String OUT_PAGE = "outputEditorPage";
+	/**
+	 * Property of the Service holding the position of the first Resource of a
+	 * page.
+	 */
+	public static final String PROP_PAGE_OFFSET = Profile.MY_NAMESPACE + "pageOffset";
+	/**
+	 * Property of the Service holding the maximum number of Resources of a
+	 * page.
+	 */
+	public static final String PROP_PAGE_LIMIT = Profile.MY_NAMESPACE + "pageLimit";
+	/**
+	 * Predicate of the context events published by editor callees when a
+	 * Resource changes. The subject is the Resource, and the object one of the
+	 * CHANGE_ constants.
+	 */
+	public static final String PROP_EDITOR_CHANGE = Profile.MY_NAMESPACE + "editorChange";
+	/**
+	 * Object of the event of a Resource added.
+	 */
+	public static final String CHANGE_ADDED = "added";
+	/**
+	 * Object of the event of a Resource changed.
+	 */
+	public static final String CHANGE_CHANGED = "changed";
+	/**
+	 * Object of the event of a Resource removed.
+	 */
+	public static final String CHANGE_REMOVED = "removed";
+	/**
+	 * Maximum number of prepared requests kept.
+	 */
+	private static final int MAX_TEMPLATES = 1024;
+	/**
+	 * Prepared requests, by kind, Service class and path.
+	 */
+	private static final ConcurrentHashMap<String, RequestTemplate> TEMPLATES = new ConcurrentHashMap<String, RequestTemplate>();
 
 	/**
 	 * Gives you the 4 typical service profiles of an editor service: Get, Add,
@@ -98,7 +191,7 @@ public class UtilEditor {
 	 * Example:
 	 * <p>
 	 * <code>
-	 * new SCallee(context, getServiceProfiles("http://ontology.universAAL.org/ProfilingServer.owl#", ProfilingService.MY_URI, Path.start(ProfilingService.PROP_CONTROLS).path, Profilable.MY_URI))
+	 * new SCallee(context, getServiceProfiles("http://ontology.universAAL.org/ProfilingServer.owl#", ProfilingService.MY_URI, Path.at(ProfilingService.PROP_CONTROLS).getPath(), Profilable.MY_URI))
 	 * </code>
 	 * <p>
 	 *
@@ -183,6 +276,174 @@ public class UtilEditor {
 		return profiles;
 	}
 
+	/**
+	 * Gives you the 3 bulk service profiles of an editor service: Add All,
+	 * Change All and Remove All. They are like Add, Change and Remove, but
+	 * take a list of Resources in one call instead of only one, and return the
+	 * ones that could not be processed. They also require the input
+	 * <code>IN_BULK</code>, which only bulk requests pass, so that they are
+	 * never matched by the single Add, Change or Remove requests. When handling
+	 * requests in you Callee, you can use the references to services and
+	 * arguments URIs prepending <code>namespace</code> to UtilEditor
+	 * constants.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #. You
+	 *            can optionally add some prefix after the # if you use
+	 *            UtilEditor more than once in the same Callee.
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you are going to
+	 *            implement
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @param editedURI
+	 *            The MY_URI of the class of the concept ontology that you want
+	 *            to manage, which is at the end of the property path
+	 * @return An array with the 3 bulk service profiles
+	 */
+	public static ServiceProfile[] getBulkServiceProfiles(String namespace, String ontologyURI, String[] path,
+			String editedURI) {
+
+		ServiceProfile[] profiles = new ServiceProfile[3];
+
+		// Add All
+		Profile prof1 = new Profile(
+				(Service) OntologyManagement.getInstance().getResource(ontologyURI, namespace + SERVICE_ADD_ALL));
+		ProcessInput input1 = new ProcessInput(namespace + IN_ADD_ALL);
+		input1.setParameterType(editedURI);
+		input1.setCardinality(-1, 1);
+		prof1.service.getProfile().addInput(input1);
+		prof1.service.getProfile().addAddEffect(path, input1.asVariableReference());
+		addBulkInput(prof1, namespace);
+		addFailedOutput(prof1, namespace, path, editedURI);
+		profiles[0] = prof1.getTheProfile();
+
+		// Change All
+		Profile prof2 = new Profile(
+				(Service) OntologyManagement.getInstance().getResource(ontologyURI, namespace + SERVICE_CHANGE_ALL));
+		ProcessInput input2 = new ProcessInput(namespace + IN_CHANGE_ALL);
+		input2.setParameterType(editedURI);
+		input2.setCardinality(-1, 1);
+		prof2.service.getProfile().addInput(input2);
+		prof2.service.getProfile().addChangeEffect(path, input2.asVariableReference());
+		addBulkInput(prof2, namespace);
+		addFailedOutput(prof2, namespace, path, editedURI);
+		profiles[1] = prof2.getTheProfile();
+
+		// Remove All
+		Profile prof3 = new Profile(
+				(Service) OntologyManagement.getInstance().getResource(ontologyURI, namespace + SERVICE_REMOVE_ALL));
+		ProcessInput input3 = new ProcessInput(namespace + IN_REMOVE_ALL);
+		input3.setParameterType(editedURI);
+		input3.setCardinality(-1, 1);
+		prof3.service.getProfile().addInput(input3);
+		MergedRestriction restr3 = MergedRestriction.getFixedValueRestriction(path[path.length - 1],
+				input3.asVariableReference());
+		prof3.service.addInstanceLevelRestriction(restr3, path);
+		prof3.service.getProfile().addRemoveEffect(path);
+		addBulkInput(prof3, namespace);
+		addFailedOutput(prof3, namespace, path, editedURI);
+		profiles[2] = prof3.getTheProfile();
+
+		return profiles;
+	}
+
+	/**
+	 * Gives you the paged GET service profile of an editor service. Instead of
+	 * a single Resource by its URI, it returns a page of the Resources managed
+	 * by the editor: at most <code>limit</code> of them, starting at
+	 * <code>offset</code>, so that large collections can be retrieved in
+	 * parts. When handling requests in you Callee, you can use the references
+	 * to services and arguments URIs prepending <code>namespace</code> to
+	 * UtilEditor constants.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #. You
+	 *            can optionally add some prefix after the # if you use
+	 *            UtilEditor more than once in the same Callee.
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you are going to
+	 *            implement
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @param editedURI
+	 *            The MY_URI of the class of the concept ontology that you want
+	 *            to manage, which is at the end of the property path
+	 * @return An array with the paged GET service profile
+	 */
+	public static ServiceProfile[] getPagedServiceProfiles(String namespace, String ontologyURI, String[] path,
+			String editedURI) {
+		Profile prof = new Profile(
+				(Service) OntologyManagement.getInstance().getResource(ontologyURI, namespace + SERVICE_GET_PAGE));
+		addPageInput(prof, namespace + IN_OFFSET, PROP_PAGE_OFFSET);
+		addPageInput(prof, namespace + IN_LIMIT, PROP_PAGE_LIMIT);
+		ProcessOutput output = new ProcessOutput(namespace + OUT_PAGE);
+		output.setParameterType(editedURI);
+		output.setCardinality(-1, 0);
+		prof.service.getProfile().addOutput(output);
+		prof.service.getProfile().addSimpleOutputBinding(output, path);
+		return new ServiceProfile[] { prof.getTheProfile() };
+	}
+
+	/**
+	 * Add to the paged profile one of its integer inputs.
+	 *
+	 * @param prof
+	 *            The paged profile
+	 * @param inputURI
+	 *            The URI of the input
+	 * @param property
+	 *            The property of the Service where it is passed
+	 */
+	private static void addPageInput(Profile prof, String inputURI, String property) {
+		ProcessInput input = new ProcessInput(inputURI);
+		input.setParameterType(TypeMapper.getDatatypeURI(Integer.class));
+		input.setCardinality(1, 1);
+		MergedRestriction restr = MergedRestriction.getFixedValueRestriction(property, input.asVariableReference());
+		prof.service.addInstanceLevelRestriction(restr, new String[] { property });
+		prof.service.getProfile().addInput(input);
+	}
+
+	/**
+	 * Add to a bulk profile the input that single requests do not pass.
+	 *
+	 * @param prof
+	 *            The bulk profile
+	 * @param namespace
+	 *            The namespace of the server
+	 */
+	private static void addBulkInput(Profile prof, String namespace) {
+		ProcessInput input = new ProcessInput(namespace + IN_BULK);
+		input.setParameterType(TypeMapper.getDatatypeURI(Boolean.class));
+		input.setCardinality(1, 1);
+		MergedRestriction restr = MergedRestriction.getFixedValueRestriction(PROP_BULK, input.asVariableReference());
+		prof.service.addInstanceLevelRestriction(restr, new String[] { PROP_BULK });
+		prof.service.getProfile().addInput(input);
+	}
+
+	/**
+	 * Add to a bulk profile the output with the Resources that could not be
+	 * processed.
+	 *
+	 * @param prof
+	 *            The bulk profile
+	 * @param namespace
+	 *            The namespace of the server
+	 * @param path
+	 *            The property path to the managed concept
+	 * @param editedURI
+	 *            The MY_URI of the class of the managed concept
+	 */
+	private static void addFailedOutput(Profile prof, String namespace, String[] path, String editedURI) {
+		ProcessOutput output = new ProcessOutput(namespace + OUT_FAILED);
+		output.setParameterType(editedURI);
+		output.setCardinality(-1, 0);
+		prof.service.getProfile().addOutput(output);
+		prof.service.getProfile().addSimpleOutputBinding(output, path);
+	}
+
 	/**
 	 * Gives you the typical GET service request for editor services. If the
 	 * editor service also used UtilEditor the match is guaranteed.
@@ -204,10 +465,7 @@ public class UtilEditor {
 	 *         editor
 	 */
 	public static ServiceRequest requestGet(String ontologyURI, String[] path, Variable argIn, Output argOut) {
-		Request req = new Request((Service) OntologyManagement.getInstance().getResource(ontologyURI, null));
-		req.put(path, argIn);
-		req.put(path, argOut);
-		return req;
+		return prepareGet(ontologyURI, path).bind(argIn.getObject(), argOut.getURI());
 	}
 
 	/**
@@ -230,10 +488,7 @@ public class UtilEditor {
 	 *         editor
 	 */
 	public static ServiceRequest requestGet(String ontologyURI, String[] path, Object in, String out) {
-		Request req = new Request((Service) OntologyManagement.getInstance().getResource(ontologyURI, null));
-		req.put(path, Arg.in(in));
-		req.put(path, Arg.out(out));
-		return req;
+		return prepareGet(ontologyURI, path).bind(in, out);
 	}
 
 	/**
@@ -253,9 +508,7 @@ public class UtilEditor {
 	 *         editor
 	 */
 	public static ServiceRequest requestAdd(String ontologyURI, String[] path, Add argAdd) {
-		Request req = new Request((Service) OntologyManagement.getInstance().getResource(ontologyURI, null));
-		req.put(path, argAdd);
-		return req;
+		return prepareAdd(ontologyURI, path).bind(argAdd.getObject());
 	}
 
 	/**
@@ -275,9 +528,7 @@ public class UtilEditor {
 	 *         editor
 	 */
 	public static ServiceRequest requestAdd(String ontologyURI, String[] path, Object add) {
-		Request req = new Request((Service) OntologyManagement.getInstance().getResource(ontologyURI, null));
-		req.put(path, Arg.add(add));
-		return req;
+		return prepareAdd(ontologyURI, path).bind(add);
 	}
 
 	/**
@@ -297,9 +548,7 @@ public class UtilEditor {
 	 *         an editor
 	 */
 	public static ServiceRequest requestChange(String ontologyURI, String[] path, Change argChange) {
-		Request req = new Request((Service) OntologyManagement.getInstance().getResource(ontologyURI, null));
-		req.put(path, argChange);
-		return req;
+		return prepareChange(ontologyURI, path).bind(argChange.getObject());
 	}
 
 	/**
@@ -319,9 +568,7 @@ public class UtilEditor {
 	 *         an editor
 	 */
 	public static ServiceRequest requestChange(String ontologyURI, String[] path, Object change) {
-		Request req = new Request((Service) OntologyManagement.getInstance().getResource(ontologyURI, null));
-		req.put(path, Arg.change(change));
-		return req;
+		return prepareChange(ontologyURI, path).bind(change);
 	}
 
 	/**
@@ -341,9 +588,7 @@ public class UtilEditor {
 	 *         an editor
 	 */
 	public static ServiceRequest requestRemove(String ontologyURI, String[] path, Remove argRemove) {
-		Request req = new Request((Service) OntologyManagement.getInstance().getResource(ontologyURI, null));
-		req.put(path, argRemove);
-		return req;
+		return prepareRemove(ontologyURI, path).bind(argRemove.getObject());
 	}
 
 	/**
@@ -363,9 +608,286 @@ public class UtilEditor {
 	 *         an editor
 	 */
 	public static ServiceRequest requestRemove(String ontologyURI, String[] path, Object remove) {
-		Request req = new Request((Service) OntologyManagement.getInstance().getResource(ontologyURI, null));
-		req.put(path, Arg.remove(remove));
-		return req;
+		return prepareRemove(ontologyURI, path).bind(remove);
+	}
+
+	/**
+	 * Gives you a prepared GET service request for editor services, which can
+	 * be kept and used for every call, binding the input and the output URI.
+	 * Requests built with it are the same as with <code>requestGet</code>.
+	 * <p/>
+	 * Example: <code>
+	 * <p/>RequestTemplate get = UtilEditor.prepareGet(ontologyURI, path);
+	 * <p/>caller.call(get.bind(in, out));
+	 * </code>
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @return The template, to be bound to the input and the output URI
+	 */
+	public static RequestTemplate prepareGet(String ontologyURI, String[] path) {
+		return prepare(SERVICE_GET, ontologyURI, path);
+	}
+
+	/**
+	 * Gives you a prepared ADD service request for editor services, which can
+	 * be kept and used for every call, binding the value to add. Requests
+	 * built with it are the same as with <code>requestAdd</code>.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @return The template, to be bound to the value to add
+	 */
+	public static RequestTemplate prepareAdd(String ontologyURI, String[] path) {
+		return prepare(SERVICE_ADD, ontologyURI, path);
+	}
+
+	/**
+	 * Gives you a prepared CHANGE service request for editor services, which
+	 * can be kept and used for every call, binding the new value. Requests
+	 * built with it are the same as with <code>requestChange</code>.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @return The template, to be bound to the new value
+	 */
+	public static RequestTemplate prepareChange(String ontologyURI, String[] path) {
+		return prepare(SERVICE_CHANGE, ontologyURI, path);
+	}
+
+	/**
+	 * Gives you a prepared REMOVE service request for editor services, which
+	 * can be kept and used for every call, binding the value to remove.
+	 * Requests built with it are the same as with <code>requestRemove</code>.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @return The template, to be bound to the value to remove
+	 */
+	public static RequestTemplate prepareRemove(String ontologyURI, String[] path) {
+		return prepare(SERVICE_REMOVE, ontologyURI, path);
+	}
+
+	/**
+	 * Gives you the ADD ALL service request for editor services, which adds
+	 * many Resources in a single call. If the editor service also used
+	 * UtilEditor bulk profiles the match is guaranteed.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @param add
+	 *            The list of Resources to add
+	 * @param failed
+	 *            The Resources that could not be added will be placed in this
+	 *            URI. Look for them there in the response.
+	 * @return The ServiceRequest that will call the matching ADD ALL service
+	 *         of an editor
+	 */
+	public static ServiceRequest requestAddAll(String ontologyURI, String[] path, List<?> add, String failed) {
+		return prepareAddAll(ontologyURI, path).bind(add, failed);
+	}
+
+	/**
+	 * Gives you the CHANGE ALL service request for editor services, which
+	 * changes many Resources in a single call. If the editor service also used
+	 * UtilEditor bulk profiles the match is guaranteed.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @param change
+	 *            The list of new values of the Resources to change
+	 * @param failed
+	 *            The Resources that could not be changed will be placed in
+	 *            this URI. Look for them there in the response.
+	 * @return The ServiceRequest that will call the matching CHANGE ALL
+	 *         service of an editor
+	 */
+	public static ServiceRequest requestChangeAll(String ontologyURI, String[] path, List<?> change,
+			String failed) {
+		return prepareChangeAll(ontologyURI, path).bind(change, failed);
+	}
+
+	/**
+	 * Gives you the REMOVE ALL service request for editor services, which
+	 * removes many Resources in a single call. If the editor service also used
+	 * UtilEditor bulk profiles the match is guaranteed.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @param remove
+	 *            The list of Resources to remove
+	 * @param failed
+	 *            The Resources that could not be removed will be placed in
+	 *            this URI. Look for them there in the response.
+	 * @return The ServiceRequest that will call the matching REMOVE ALL
+	 *         service of an editor
+	 */
+	public static ServiceRequest requestRemoveAll(String ontologyURI, String[] path, List<?> remove,
+			String failed) {
+		return prepareRemoveAll(ontologyURI, path).bind(remove, failed);
+	}
+
+	/**
+	 * Gives you a prepared ADD ALL service request for editor services, to be
+	 * bound to the list of Resources to add and the URI of the output with the
+	 * ones that failed.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @return The template, to be bound to the list and the output URI
+	 */
+	public static RequestTemplate prepareAddAll(String ontologyURI, String[] path) {
+		return prepare(SERVICE_ADD_ALL, ontologyURI, path);
+	}
+
+	/**
+	 * Gives you a prepared CHANGE ALL service request for editor services, to
+	 * be bound to the list of new values and the URI of the output with the
+	 * ones that failed.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @return The template, to be bound to the list and the output URI
+	 */
+	public static RequestTemplate prepareChangeAll(String ontologyURI, String[] path) {
+		return prepare(SERVICE_CHANGE_ALL, ontologyURI, path);
+	}
+
+	/**
+	 * Gives you a prepared REMOVE ALL service request for editor services, to
+	 * be bound to the list of Resources to remove and the URI of the output
+	 * with the ones that failed.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @return The template, to be bound to the list and the output URI
+	 */
+	public static RequestTemplate prepareRemoveAll(String ontologyURI, String[] path) {
+		return prepare(SERVICE_REMOVE_ALL, ontologyURI, path);
+	}
+
+	/**
+	 * Gives you the paged GET service request for editor services. If the
+	 * editor service also used UtilEditor paged profile the match is
+	 * guaranteed. To go through all the pages, <code>PageIterator</code> can
+	 * be used instead.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @param offset
+	 *            The position of the first Resource of the page, starting at 0
+	 * @param limit
+	 *            The maximum number of Resources of the page
+	 * @param out
+	 *            The Resources of the page will be placed in this URI. Look for
+	 *            them there in the response.
+	 * @return The ServiceRequest that will call the matching paged GET service
+	 *         of an editor
+	 */
+	public static ServiceRequest requestGetPage(String ontologyURI, String[] path, int offset, int limit,
+			String out) {
+		return prepareGetPage(ontologyURI, path).bind(Integer.valueOf(offset), Integer.valueOf(limit), out);
+	}
+
+	/**
+	 * Gives you a prepared paged GET service request for editor services, to
+	 * be bound to the offset, the limit and the URI of the output with the
+	 * page.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @return The template, to be bound to the offset, the limit and the output
+	 *         URI
+	 */
+	public static RequestTemplate prepareGetPage(String ontologyURI, String[] path) {
+		return prepare(SERVICE_GET_PAGE, ontologyURI, path);
+	}
+
+	/**
+	 * Get the prepared request of a kind for a Service class and path, or
+	 * prepare it. Up to MAX_TEMPLATES of them are kept, so that requests to
+	 * the same editor do not prepare it again on every call.
+	 *
+	 * @param kind
+	 *            One of the service suffixes
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @return The template, shared
+	 */
+	private static RequestTemplate prepare(String kind, String ontologyURI, String[] path) {
+		StringBuilder b = new StringBuilder(kind).append(' ').append(ontologyURI);
+		for (int i = 0; i < path.length; i++) {
+			b.append(' ').append(path[i]);
+		}
+		String key = b.toString();
+		RequestTemplate t = TEMPLATES.get(key);
+		if (t == null) {
+			t = new RequestTemplate(ontologyURI);
+			if (SERVICE_GET.equals(kind)) {
+				t.in(path).out(path);
+			} else if (SERVICE_ADD.equals(kind)) {
+				t.add(path);
+			} else if (SERVICE_CHANGE.equals(kind)) {
+				t.change(path);
+			} else if (SERVICE_REMOVE.equals(kind)) {
+				t.remove(path);
+			} else if (SERVICE_ADD_ALL.equals(kind)) {
+				t.in(new String[] { PROP_BULK }, Boolean.TRUE).add(path).out(path);
+			} else if (SERVICE_CHANGE_ALL.equals(kind)) {
+				t.in(new String[] { PROP_BULK }, Boolean.TRUE).change(path).out(path);
+			} else if (SERVICE_REMOVE_ALL.equals(kind)) {
+				t.in(new String[] { PROP_BULK }, Boolean.TRUE).remove(path).out(path);
+			} else {
+				t.in(new String[] { PROP_PAGE_OFFSET }).in(new String[] { PROP_PAGE_LIMIT }).out(path);
+			}
+			t.share();
+			if (TEMPLATES.size() < MAX_TEMPLATES) {
+				RequestTemplate existing = TEMPLATES.putIfAbsent(key, t);
+				if (existing != null) {
+					t = existing;
+				}
+			}
+		}
+		return t;
 	}
 
 }
@@ -21,9 +21,10 @@
  */
 package org.universAAL.utilities.api.service.mid;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.universAAL.middleware.owl.MergedRestriction;
 import org.universAAL.middleware.owl.OntologyManagement;
-import org.universAAL.middleware.rdf.PropertyPath;
 import org.universAAL.middleware.service.ServiceRequest;
 import org.universAAL.middleware.service.owl.Service;
 import org.universAAL.middleware.service.owls.process.ProcessInput;
@@ -36,7 +37,6 @@ import org.universAAL.utilities.api.service.Arg;
 import org.universAAL.utilities.api.service.Output;
 import org.universAAL.utilities.api.service.Path;
 import org.universAAL.utilities.api.service.Variable;
-import org.universAAL.utilities.api.service.low.Request;
 
 /**
  * This is a helper class for those who want to use the typical services of an
@@ -61,6 +61,18 @@ public class UtilSensor {
 	 * Argument suffix.
 	 */
 	public static final String IN_DEVICE = "inputSensorAll";
+	/**
+	 * Path to the controlled device.
+	 */
+	private static final Path PATH_DEVICE = Path.at(DeviceService.PROP_CONTROLS);
+	/**
+	 * Path to the status of the controlled device.
+	 */
+	private static final Path PATH_STATUS = PATH_DEVICE.to(Sensor.PROP_HAS_VALUE);
+	/**
+	 * Prepared GET STATUS requests, by Service class.
+	 */
+	private static final ConcurrentHashMap<String, RequestTemplate> GET_TEMPLATES = new ConcurrentHashMap<String, RequestTemplate>();
 
 	/**
 	 * Gives you the typical service profile of an on/off sensor service: Get
@@ -107,8 +119,7 @@ public class UtilSensor {
 		}
 		ServiceProfile[] profiles = new ServiceProfile[1];
 
-		PropertyPath ppath = new PropertyPath(null, true,
-				new String[] { DeviceService.PROP_CONTROLS, Sensor.PROP_HAS_VALUE });
+		String[] status = PATH_STATUS.getPath();
 
 		ProcessInput input = new ProcessInput(namespace + IN_DEVICE);
 		input.setParameterType(sensor.getClassURI());
@@ -122,7 +133,7 @@ public class UtilSensor {
 		ProcessOutput output = new ProcessOutput(namespace + OUT_GET_ON_OFF);
 		output.setCardinality(1, 1);
 		profiles[0].addOutput(output);
-		profiles[0].addSimpleOutputBinding(output, ppath.getThePath());
+		profiles[0].addSimpleOutputBinding(output, status);
 		profiles[0].addInput(input);
 		profiles[0].getTheService().addInstanceLevelRestriction(r, new String[] { DeviceService.PROP_CONTROLS });
 
@@ -155,6 +166,52 @@ public class UtilSensor {
 		return getServiceProfiles(namespace, DeviceService.MY_URI, sensor);
 	}
 
+	/**
+	 * Gives you the typical service profile of an on/off sensor service for a
+	 * whole family of sensors: Get status. Unlike the profile of
+	 * getServiceProfiles, which is restricted to a single sensor, this is
+	 * restricted to the sensor given in the input <code>namespace</code> +
+	 * IN_DEVICE, so a Callee that controls many sensors of the same type
+	 * registers it only once and tells which one is called by that input. It
+	 * matches the same requests.
+	 * <p>
+	 * BE CAREFUL: This will only work with sensors that have StatusValue as
+	 * HAS_VALUE property. Use a namespace different from the one of the
+	 * profiles of single sensors.
+	 *
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #. You
+	 *            can optionally add some prefix after the # if you use
+	 *            UtilSensor more than once in the same Callee.
+	 * @param ontologyURI
+	 *            The MY_URI of the class of DeviceService ontology you are
+	 *            going to implement. It MUST be a subclass of DeviceService.
+	 * @param typeURI
+	 *            The MY_URI of the class of the sensors you are controlling
+	 * @return An array with the 1 typical service profiles
+	 */
+	public static ServiceProfile[] getFamilyServiceProfiles(String namespace, String ontologyURI, String typeURI) {
+		ServiceProfile[] profiles = new ServiceProfile[1];
+
+		ProcessInput input = new ProcessInput(namespace + IN_DEVICE);
+		input.setParameterType(typeURI);
+		input.setCardinality(1, 1);
+		MergedRestriction r = MergedRestriction.getFixedValueRestriction(DeviceService.PROP_CONTROLS,
+				input.asVariableReference());
+
+		Service getOnOff = (Service) OntologyManagement.getInstance().getResource(ontologyURI,
+				namespace + SERVICE_GET_ON_OFF);
+		profiles[0] = getOnOff.getProfile();
+		ProcessOutput output = new ProcessOutput(namespace + OUT_GET_ON_OFF);
+		output.setCardinality(1, 1);
+		profiles[0].addOutput(output);
+		profiles[0].addSimpleOutputBinding(output, PATH_STATUS.getPath());
+		profiles[0].addInput(input);
+		profiles[0].getTheService().addInstanceLevelRestriction(r, PATH_DEVICE.getPath());
+
+		return profiles;
+	}
+
 	/**
 	 * Gives you the typical GET STATUS service request for sensor services. If
 	 * the editor service also used UtilSensor the match is guaranteed.
@@ -173,10 +230,7 @@ public class UtilSensor {
 	 *         of an sensor
 	 */
 	public static ServiceRequest requestGetOnOff(String ontologyURI, Variable argIn, Output argOut) {
-		Request req = new Request((Service) OntologyManagement.getInstance().getResource(ontologyURI, null));
-		req.put(Path.at(DeviceService.PROP_CONTROLS), argIn);
-		req.put(Path.at(DeviceService.PROP_CONTROLS).to(Sensor.PROP_HAS_VALUE), argOut);
-		return req;
+		return prepareGetOnOff(ontologyURI).bind(argIn.getObject(), argOut.getURI());
 	}
 
 	/**
@@ -196,10 +250,7 @@ public class UtilSensor {
 	 *         of an sensor
 	 */
 	public static ServiceRequest requestGetOnOff(String ontologyURI, Object in, String out) {
-		Request req = new Request((Service) OntologyManagement.getInstance().getResource(ontologyURI, null));
-		req.put(Path.at(DeviceService.PROP_CONTROLS), Arg.in(in));
-		req.put(Path.at(DeviceService.PROP_CONTROLS).to(Sensor.PROP_HAS_VALUE), Arg.out(out));
-		return req;
+		return prepareGetOnOff(ontologyURI).bind(in, out);
 	}
 
 	/**
@@ -278,4 +329,22 @@ public class UtilSensor {
 		return requestGetOnOff(DeviceService.MY_URI, sensor, out);
 	}
 
+	/**
+	 * Gives you the prepared GET STATUS service request for sensor services,
+	 * to be bound to the sensor and the output URI. Templates are kept, so the
+	 * same one is returned for the same Service class.
+	 *
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you want to call
+	 * @return The template, to be bound to the sensor and the output URI
+	 */
+	public static RequestTemplate prepareGetOnOff(String ontologyURI) {
+		RequestTemplate t = GET_TEMPLATES.get(ontologyURI);
+		if (t == null) {
+			t = new RequestTemplate(ontologyURI).in(PATH_DEVICE).out(PATH_STATUS).share();
+			GET_TEMPLATES.putIfAbsent(ontologyURI, t);
+		}
+		return t;
+	}
+
 }
@@ -0,0 +1,222 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.top;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.universAAL.middleware.container.ModuleContext;
+import org.universAAL.middleware.context.ContextEvent;
+import org.universAAL.middleware.context.owl.ContextProviderType;
+import org.universAAL.utilities.api.context.mid.UtilPublisher;
+import org.universAAL.utilities.api.service.mid.UtilEditor;
+
+/**
+ * Publishes the changes made by an editor callee as context events. The
+ * changes of the same Resource made within the same window of time are
+ * published as a single event. Used by UtilEditorCallee.
+ *
+ * @author alfiva
+ *
+ */
+class EditorNotifier {
+
+	/**
+	 * The publisher of the events.
+	 */
+	private UtilPublisher publisher;
+
+	/**
+	 * The MY_URI of the class of the edited Resources.
+	 */
+	private String editedURI;
+
+	/**
+	 * Milliseconds the changes are held to be coalesced.
+	 */
+	private long window;
+
+	/**
+	 * Changes not yet published, by Resource URI.
+	 */
+	private Map<String, String> pending = new LinkedHashMap<String, String>();
+
+	/**
+	 * Runs the publication of the held changes, or null if not coalesced.
+	 */
+	private ScheduledExecutorService timer;
+
+	/**
+	 * Whether a publication of the held changes is scheduled.
+	 */
+	private boolean scheduled;
+
+	/**
+	 * Whether the notifier was closed. Set holding the lock, before the timer
+	 * is shut down, so no publication is scheduled after that.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Create a notifier.
+	 *
+	 * @param context
+	 *            The universAAL module context.
+	 * @param providerURI
+	 *            The URI of the context provider of the events.
+	 * @param editedURI
+	 *            The MY_URI of the class of the edited Resources.
+	 * @param window
+	 *            Milliseconds the changes are held to be coalesced. If 0,
+	 *            each change is published right away.
+	 */
+	EditorNotifier(ModuleContext context, String providerURI, String editedURI, long window) {
+		this.publisher = new UtilPublisher(context, providerURI, ContextProviderType.controller, editedURI,
+				UtilEditor.PROP_EDITOR_CHANGE, null);
+		this.editedURI = editedURI;
+		this.window = window;
+		if (window > 0) {
+			timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "UtilEditorCallee notifications");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Notify a change in a Resource. Changes notified after the notifier is
+	 * closed are ignored.
+	 *
+	 * @param uri
+	 *            The URI of the Resource.
+	 * @param change
+	 *            One of the CHANGE_ constants of UtilEditor.
+	 */
+	void changed(String uri, String change) {
+		if (timer == null) {
+			if (!closed) {
+				publish(uri, change);
+			}
+			return;
+		}
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			String previous = pending.remove(uri);
+			String merged = merge(previous, change);
+			if (merged != null) {
+				pending.put(uri, merged);
+			}
+			if (!scheduled && !pending.isEmpty()) {
+				scheduled = true;
+				timer.schedule(new Runnable() {
+					public void run() {
+						flush();
+					}
+				}, window, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/**
+	 * Publish the held changes now.
+	 */
+	void flush() {
+		Map<String, String> toPublish;
+		synchronized (this) {
+			scheduled = false;
+			if (pending.isEmpty()) {
+				return;
+			}
+			toPublish = pending;
+			pending = new LinkedHashMap<String, String>();
+		}
+		for (Map.Entry<String, String> entry : toPublish.entrySet()) {
+			publish(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Publish the held changes and stop publishing.
+	 */
+	void close() {
+		synchronized (this) {
+			closed = true;
+		}
+		if (timer != null) {
+			timer.shutdown();
+		}
+		flush();
+		publisher.close();
+	}
+
+	/**
+	 * Publish the event of a change.
+	 *
+	 * @param uri
+	 *            The URI of the Resource.
+	 * @param change
+	 *            One of the CHANGE_ constants of UtilEditor.
+	 */
+	private void publish(String uri, String change) {
+		try {
+			publisher.publish(
+					ContextEvent.constructSimpleEvent(uri, editedURI, UtilEditor.PROP_EDITOR_CHANGE, change));
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Combine a held change with a new one of the same Resource.
+	 *
+	 * @param previous
+	 *            The held change, or null.
+	 * @param change
+	 *            The new change.
+	 * @return The change to hold, or null if they cancel each other.
+	 */
+	private static String merge(String previous, String change) {
+		if (previous == null) {
+			return change;
+		}
+		if (UtilEditor.CHANGE_ADDED.equals(previous)) {
+			if (UtilEditor.CHANGE_REMOVED.equals(change)) {
+				return null; // Never seen by anyone
+			}
+			return UtilEditor.CHANGE_ADDED;
+		}
+		if (UtilEditor.CHANGE_REMOVED.equals(previous) && UtilEditor.CHANGE_ADDED.equals(change)) {
+			return UtilEditor.CHANGE_CHANGED;
+		}
+		return change;
+	}
+
+}
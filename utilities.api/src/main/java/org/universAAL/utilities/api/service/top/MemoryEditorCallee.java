@@ -0,0 +1,290 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.top;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.universAAL.middleware.container.ModuleContext;
+import org.universAAL.middleware.rdf.Resource;
+
+/**
+ * A ready to use editor callee that keeps the managed Resources in memory. It
+ * handles the 4 typical editor services, and the bulk services, over a
+ * concurrent map by Resource URI: GETs never wait, and changes to different
+ * Resources do not wait for each other.
+ * <p/>
+ * ADD fails if a Resource with the same URI is already there, and CHANGE and
+ * REMOVE fail if it is not. Resources are copied when stored and when
+ * returned, so neither the callers nor the callee can modify the stored ones.
+ * <p/>
+ * Some properties can be indexed when constructing it, to find the Resources
+ * with a given value in them with <code>find</code>.
+ * <p/>
+ * Example: <code>
+ * <p/>callee = new MemoryEditorCallee(context, NAMESPACE, ProfilingService.MY_URI,
+ * <p/>		new String[] { ProfilingService.PROP_CONTROLS }, User.MY_URI,
+ * <p/>		new String[] { Profilable.PROP_HAS_PROFILE });
+ * </code>
+ *
+ * @author alfiva
+ *
+ */
+public class MemoryEditorCallee extends UtilEditorCallee {
+
+	/**
+	 * Number of locks among which changes are distributed.
+	 */
+	private static final int STRIPES = 64;
+
+	/**
+	 * The stored Resources, by URI.
+	 */
+	private final ConcurrentHashMap<String, Resource> store = new ConcurrentHashMap<String, Resource>();
+
+	/**
+	 * Locks for the changes, a Resource uses the one of its URI hash.
+	 */
+	private final Object[] locks = new Object[STRIPES];
+
+	/**
+	 * Indexes, by indexed property.
+	 */
+	private final ConcurrentHashMap<String, PropertyIndex> indexes = new ConcurrentHashMap<String, PropertyIndex>();
+
+	/**
+	 * Constructor of the callee.
+	 *
+	 * @param context
+	 *            The Module Context of universAAL
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you are going to
+	 *            implement
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @param editedURI
+	 *            The MY_URI of the class of the concept ontology that you want
+	 *            to manage, which is at the end of the property path
+	 * @param indexed
+	 *            The properties of the managed Resources to index, or null for
+	 *            none
+	 */
+	public MemoryEditorCallee(ModuleContext context, String namespace, String ontologyURI, String[] path,
+			String editedURI, String[] indexed) {
+		super(context, namespace, ontologyURI, path, editedURI, true);
+		for (int i = 0; i < STRIPES; i++) {
+			locks[i] = new Object();
+		}
+		if (indexed != null) {
+			for (int i = 0; i < indexed.length; i++) {
+				indexes.put(indexed[i], new PropertyIndex(indexed[i]));
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.service.ServiceCallee#
+	 * communicationChannelBroken()
+	 */
+	@Override
+	public void communicationChannelBroken() {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.utilities.api.service.top.UtilEditorCallee#executeGet(
+	 * org.universAAL.middleware.rdf.Resource)
+	 */
+	@Override
+	public Resource executeGet(Resource input) {
+		Resource stored = store.get(input.getURI());
+		return stored == null ? null : stored.deepCopy();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.utilities.api.service.top.UtilEditorCallee#executeAdd(
+	 * org.universAAL.middleware.rdf.Resource)
+	 */
+	@Override
+	public boolean executeAdd(Resource input) {
+		String uri = input.getURI();
+		Resource copy = input.deepCopy();
+		synchronized (lockOf(uri)) {
+			if (store.putIfAbsent(uri, copy) != null) {
+				return false;
+			}
+			index(uri, null, copy);
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.utilities.api.service.top.UtilEditorCallee#executeChange(
+	 * org.universAAL.middleware.rdf.Resource)
+	 */
+	@Override
+	public boolean executeChange(Resource input) {
+		String uri = input.getURI();
+		Resource copy = input.deepCopy();
+		synchronized (lockOf(uri)) {
+			Resource old = store.replace(uri, copy);
+			if (old == null) {
+				return false;
+			}
+			index(uri, old, copy);
+		}
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.utilities.api.service.top.UtilEditorCallee#executeRemove(
+	 * org.universAAL.middleware.rdf.Resource)
+	 */
+	@Override
+	public boolean executeRemove(Resource input) {
+		String uri = input.getURI();
+		synchronized (lockOf(uri)) {
+			Resource old = store.remove(uri);
+			if (old == null) {
+				return false;
+			}
+			index(uri, old, null);
+		}
+		return true;
+	}
+
+	/**
+	 * Get copies of the stored Resources that have a value in an indexed
+	 * property.
+	 *
+	 * @param property
+	 *            The indexed property
+	 * @param value
+	 *            The value it must have, or contain if it has many
+	 * @return Copies of the matching Resources, in no particular order
+	 * @throws IllegalArgumentException
+	 *             if the property was not indexed in the constructor
+	 */
+	public List<Resource> find(String property, Object value) {
+		PropertyIndex index = indexes.get(property);
+		if (index == null) {
+			throw new IllegalArgumentException("The property " + property + " is not indexed");
+		}
+		List<Resource> result = new ArrayList<Resource>();
+		for (String uri : index.get(value)) {
+			Resource stored = store.get(uri);
+			if (stored != null && contains(stored.getProperty(property), value)) {
+				result.add(stored.deepCopy());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get copies of all the stored Resources, as they are at the moment.
+	 *
+	 * @return Copies of the Resources, in no particular order
+	 */
+	public List<Resource> getAll() {
+		List<Resource> result = new ArrayList<Resource>(store.size());
+		for (Resource stored : store.values()) {
+			result.add(stored.deepCopy());
+		}
+		return result;
+	}
+
+	/**
+	 * Get the number of stored Resources.
+	 *
+	 * @return The number of Resources
+	 */
+	public int size() {
+		return store.size();
+	}
+
+	/**
+	 * Get the lock of a URI.
+	 *
+	 * @param uri
+	 *            The URI of the Resource
+	 * @return The lock
+	 */
+	private Object lockOf(String uri) {
+		int h = uri.hashCode();
+		h ^= (h >>> 16);
+		return locks[h & (STRIPES - 1)];
+	}
+
+	/**
+	 * Update the indexes after a Resource changed. Must be called holding the
+	 * lock of its URI.
+	 *
+	 * @param uri
+	 *            The URI of the Resource
+	 * @param old
+	 *            The previous Resource, or null if added
+	 * @param current
+	 *            The new Resource, or null if removed
+	 */
+	private void index(String uri, Resource old, Resource current) {
+		for (PropertyIndex index : indexes.values()) {
+			if (old != null) {
+				index.remove(uri, old.getProperty(index.getProperty()));
+			}
+			if (current != null) {
+				index.add(uri, current.getProperty(index.getProperty()));
+			}
+		}
+	}
+
+	/**
+	 * Check if a property value is or contains a value.
+	 *
+	 * @param stored
+	 *            The property value, maybe a List
+	 * @param value
+	 *            The value
+	 * @return <code>true</code> if it is or contains it
+	 */
+	private static boolean contains(Object stored, Object value) {
+		if (stored instanceof List) {
+			return ((List<?>) stored).contains(value);
+		}
+		return stored != null && stored.equals(value);
+	}
+
+}
@@ -0,0 +1,942 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.top;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.universAAL.middleware.container.ModuleContext;
+import org.universAAL.middleware.rdf.Resource;
+import org.universAAL.middleware.serialization.MessageContentSerializer;
+
+/**
+ * A ready to use editor callee that keeps the managed Resources on disk, so
+ * that they are kept when the callee is restarted. It handles the 4 typical
+ * editor services, and the bulk services, with the same rules as
+ * <code>MemoryEditorCallee</code>.
+ * <p/>
+ * Resources are serialized and compressed, and appended as records to
+ * segment files of fixed size in the given directory, which are mapped in
+ * memory. Only the position of the last record of each Resource is kept in
+ * memory. When a segment is full, the positions of the Resources in it are
+ * written at its end, after a zero length that ends the records, so that on
+ * restart they are read from there instead of reading all the records. Segments with mostly old records, or mostly empty,
+ * are compacted in the background: their current records are copied to the
+ * newest segment and the file is deleted.
+ * <p/>
+ * Records are written in memory-mapped files, so they are not lost if the
+ * process ends, but they may be if the whole system does before the files
+ * are written by the operating system. Segments are forced to disk when they
+ * are full and on <code>close</code>. The directory must not be used by more
+ * than one callee at a time.
+ *
+ * @author alfiva
+ *
+ */
+public class PersistentEditorCallee extends UtilEditorCallee {
+
+	/**
+	 * Default size of the segment files.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * Record of a Resource.
+	 */
+	private static final byte PUT = 1;
+
+	/**
+	 * Record of a removed Resource.
+	 */
+	private static final byte DEL = 2;
+
+	/**
+	 * Marks a segment with the positions written at its end.
+	 */
+	private static final long MAGIC = 0x55414c5345474d31L;
+
+	/**
+	 * Size of the trailer of a full segment: end of the records and magic.
+	 */
+	private static final int TRAILER = 12;
+
+	/**
+	 * Size of the zero length written after the last record, before the
+	 * footer.
+	 */
+	private static final int END = 4;
+
+	/**
+	 * Seconds between checks for segments to compact.
+	 */
+	private static final int COMPACT_PERIOD = 60;
+
+	/**
+	 * Name prefix of the segment files.
+	 */
+	private static final String PREFIX = "segment-";
+
+	/**
+	 * Name suffix of the segment files.
+	 */
+	private static final String SUFFIX = ".dat";
+
+	/**
+	 * The directory of the segments.
+	 */
+	private final File directory;
+
+	/**
+	 * Size of each segment file.
+	 */
+	private final int segmentSize;
+
+	/**
+	 * Segments, by number.
+	 */
+	private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<Integer, Segment>();
+
+	/**
+	 * Position of the last record of each Resource, by URI. The segment number
+	 * is in the high half, the offset in the low half.
+	 */
+	private final ConcurrentHashMap<String, Long> index = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * Lock for appending records and updating the positions.
+	 */
+	private final Object writeLock = new Object();
+
+	/**
+	 * Segment where records are appended, or <code>null</code> until the
+	 * callee is constructed and after it is closed. The callee is registered
+	 * before its fields are set, so calls are answered only when it is set.
+	 */
+	private volatile Segment active;
+
+	/**
+	 * Serializer of the Resources, fetched when first needed.
+	 */
+	private MessageContentSerializer serializer;
+
+	/**
+	 * Runs the compaction in the background.
+	 */
+	private ScheduledExecutorService compactor;
+
+	/**
+	 * The module context, to fetch the serializer.
+	 */
+	private ModuleContext moduleContext;
+
+	/**
+	 * Constructor of the callee, with segments of the default size. The
+	 * Resources already stored in the directory are available right away.
+	 *
+	 * @param context
+	 *            The Module Context of universAAL
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you are going to
+	 *            implement
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @param editedURI
+	 *            The MY_URI of the class of the concept ontology that you want
+	 *            to manage, which is at the end of the property path
+	 * @param directory
+	 *            The directory where the Resources are stored. It is created
+	 *            if it does not exist.
+	 * @throws IOException
+	 *             if the stored Resources could not be read
+	 */
+	public PersistentEditorCallee(ModuleContext context, String namespace, String ontologyURI, String[] path,
+			String editedURI, File directory) throws IOException {
+		this(context, namespace, ontologyURI, path, editedURI, directory, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Constructor of the callee. The Resources already stored in the
+	 * directory are available right away.
+	 *
+	 * @param context
+	 *            The Module Context of universAAL
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you are going to
+	 *            implement
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @param editedURI
+	 *            The MY_URI of the class of the concept ontology that you want
+	 *            to manage, which is at the end of the property path
+	 * @param directory
+	 *            The directory where the Resources are stored. It is created
+	 *            if it does not exist.
+	 * @param segmentSize
+	 *            The size in bytes of each segment file. A Resource bigger
+	 *            than this, once serialized and compressed, cannot be stored.
+	 * @throws IOException
+	 *             if the stored Resources could not be read
+	 */
+	public PersistentEditorCallee(ModuleContext context, String namespace, String ontologyURI, String[] path,
+			String editedURI, File directory, int segmentSize) throws IOException {
+		super(context, namespace, ontologyURI, path, editedURI, true);
+		this.moduleContext = context;
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		boolean opened = false;
+		try {
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("Could not create the directory " + directory);
+			}
+			synchronized (writeLock) {
+				recover();
+				active = openSegment(segments.isEmpty() ? 0 : segments.lastKey().intValue() + 1, true);
+			}
+			opened = true;
+		} finally {
+			if (!opened) {
+				super.close(); // Already registered by super()
+			}
+		}
+		compactor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "PersistentEditorCallee compaction");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		compactor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					compact();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}, COMPACT_PERIOD, COMPACT_PERIOD, TimeUnit.SECONDS);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.service.ServiceCallee#
+	 * communicationChannelBroken()
+	 */
+	@Override
+	public void communicationChannelBroken() {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.utilities.api.service.top.UtilEditorCallee#executeGet(
+	 * org.universAAL.middleware.rdf.Resource)
+	 */
+	@Override
+	public Resource executeGet(Resource input) {
+		if (active == null) {
+			return null;
+		}
+		String uri = input.getURI();
+		for (int attempt = 0; attempt < 3; attempt++) {
+			Long location = index.get(uri);
+			if (location == null) {
+				return null;
+			}
+			Segment seg = segments.get(Integer.valueOf(segmentOf(location.longValue())));
+			if (seg != null) { // Else it was just compacted, look again
+				ByteBuffer b = seg.buffer.duplicate();
+				b.position(offsetOf(location.longValue()) + 4 + 1);
+				short keyLength = b.getShort();
+				b.position(b.position() + keyLength);
+				byte[] data = new byte[b.getInt()];
+				b.get(data);
+				return (Resource) getSerializer().deserialize(inflate(data));
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.utilities.api.service.top.UtilEditorCallee#executeAdd(
+	 * org.universAAL.middleware.rdf.Resource)
+	 */
+	@Override
+	public boolean executeAdd(Resource input) {
+		return put(input, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.utilities.api.service.top.UtilEditorCallee#executeChange(
+	 * org.universAAL.middleware.rdf.Resource)
+	 */
+	@Override
+	public boolean executeChange(Resource input) {
+		return put(input, true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.utilities.api.service.top.UtilEditorCallee#executeRemove(
+	 * org.universAAL.middleware.rdf.Resource)
+	 */
+	@Override
+	public boolean executeRemove(Resource input) {
+		if (active == null) {
+			return false;
+		}
+		byte[] uri = utf8(input.getURI());
+		synchronized (writeLock) {
+			if (active == null || !index.containsKey(input.getURI())) {
+				return false;
+			}
+			try {
+				append(DEL, input.getURI(), uri, new byte[0]);
+			} catch (IOException e) {
+				e.printStackTrace();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the number of stored Resources.
+	 *
+	 * @return The number of Resources
+	 */
+	public int size() {
+		return active == null ? 0 : index.size();
+	}
+
+	/**
+	 * Get the number of segment files in use.
+	 *
+	 * @return The number of segments
+	 */
+	public int getSegmentCount() {
+		return segments.size();
+	}
+
+	/**
+	 * Compact now the segments with more old records than current ones, and
+	 * the ones mostly empty, left by restarts, instead of waiting for the
+	 * background compaction.
+	 *
+	 * @throws IOException
+	 *             if a segment could not be compacted
+	 */
+	public void compact() throws IOException {
+		for (Segment seg : segments.values()) {
+			if (seg.sealed && (seg.garbage * 2 > seg.used || seg.used * 4L < segmentSize)) {
+				synchronized (writeLock) {
+					if (active == null) {
+						return; // Closed
+					}
+					compact(seg);
+				}
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.service.ServiceCallee#close()
+	 */
+	@Override
+	public void close() {
+		super.close();
+		compactor.shutdown();
+		synchronized (writeLock) {
+			if (active != null) {
+				seal(active);
+				active = null;
+			}
+		}
+	}
+
+	/**
+	 * Store a Resource.
+	 *
+	 * @param input
+	 *            The Resource
+	 * @param exists
+	 *            Whether it must already be stored (change) or not (add)
+	 * @return <code>true</code> if it was stored
+	 */
+	private boolean put(Resource input, boolean exists) {
+		if (active == null) {
+			return false;
+		}
+		String uri = input.getURI();
+		byte[] data = deflate(getSerializer().serialize(input));
+		byte[] key = utf8(uri);
+		synchronized (writeLock) {
+			if (active == null || index.containsKey(uri) != exists) {
+				return false;
+			}
+			try {
+				append(PUT, uri, key, data);
+			} catch (IOException e) {
+				e.printStackTrace();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Append a record to the active segment and update the positions. Must be
+	 * called holding the write lock.
+	 *
+	 * @param kind
+	 *            PUT or DEL
+	 * @param uri
+	 *            The URI of the Resource
+	 * @param key
+	 *            The URI in UTF-8
+	 * @param data
+	 *            The compressed serialized Resource, empty for DEL
+	 * @throws IOException
+	 *             if a new segment was needed and could not be created
+	 */
+	private void append(byte kind, String uri, byte[] key, byte[] data) throws IOException {
+		int length = 4 + 1 + 2 + key.length + 4 + data.length;
+		if (!active.fits(length, key.length)) {
+			seal(active);
+			active = openSegment(active.number + 1, true);
+			if (!active.fits(length, key.length)) {
+				throw new IOException("The Resource " + uri + " is too big for the segment size");
+			}
+		}
+		int offset = active.used;
+		ByteBuffer w = active.writer;
+		w.position(offset + 4);
+		w.put(kind);
+		w.putShort((short) key.length);
+		w.put(key);
+		w.putInt(data.length);
+		w.put(data);
+		w.putInt(offset, length); // Length last, so partial records are not read
+		active.used += length;
+		active.track(uri, key.length, kind == PUT ? offset : -1);
+		Long previous;
+		if (kind == PUT) {
+			previous = index.put(uri, Long.valueOf(location(active.number, offset)));
+		} else {
+			previous = index.remove(uri);
+			active.garbage += length;
+		}
+		if (previous != null) {
+			discard(previous.longValue());
+		}
+	}
+
+	/**
+	 * Count a record as old in its segment.
+	 *
+	 * @param location
+	 *            The position of the record
+	 */
+	private void discard(long location) {
+		Segment seg = segments.get(Integer.valueOf(segmentOf(location)));
+		if (seg != null) {
+			seg.garbage += seg.buffer.getInt(offsetOf(location));
+		}
+	}
+
+	/**
+	 * Copy the current records of a segment to the active one, and delete it.
+	 * Must be called holding the write lock.
+	 *
+	 * @param seg
+	 *            A full segment
+	 * @throws IOException
+	 *             if a new segment was needed and could not be created
+	 */
+	private void compact(Segment seg) throws IOException {
+		boolean oldest = segments.firstKey().intValue() == seg.number;
+		for (Map.Entry<String, Integer> entry : seg.readFooter().entrySet()) {
+			String uri = entry.getKey();
+			int offset = entry.getValue().intValue();
+			if (offset >= 0) {
+				Long current = index.get(uri);
+				if (current != null && current.longValue() == location(seg.number, offset)) {
+					ByteBuffer b = seg.buffer.duplicate();
+					b.position(offset + 4 + 1);
+					byte[] key = new byte[b.getShort()];
+					b.get(key);
+					byte[] data = new byte[b.getInt()];
+					b.get(data);
+					append(PUT, uri, key, data);
+				}
+			} else if (!oldest && !index.containsKey(uri)) {
+				// Older segments may still have records of it
+				append(DEL, uri, utf8(uri), new byte[0]);
+			}
+		}
+		segments.remove(Integer.valueOf(seg.number));
+		if (!seg.file.delete()) {
+			seg.file.deleteOnExit();
+		}
+	}
+
+	/**
+	 * Write the end of the records and the footer of a segment, and force it
+	 * to disk. Must be called holding the write lock. The zero length is
+	 * written first, so that if the process ends before the trailer is
+	 * written, scan stops there instead of reading the footer as records.
+	 *
+	 * @param seg
+	 *            The segment
+	 */
+	private void seal(Segment seg) {
+		ByteBuffer w = seg.writer;
+		w.putInt(seg.used, 0);
+		w.position(seg.used + END);
+		for (Map.Entry<String, Integer> entry : seg.entries.entrySet()) {
+			byte[] key = utf8(entry.getKey());
+			w.putShort((short) key.length);
+			w.put(key);
+			w.putInt(entry.getValue().intValue());
+		}
+		w.putInt(segmentSize - TRAILER, seg.used);
+		w.putLong(segmentSize - 8, MAGIC);
+		seg.buffer.force();
+		seg.sealed = true;
+		seg.entries = null;
+	}
+
+	/**
+	 * Rebuild the positions from the segments in the directory. Segments that
+	 * were not full are sealed.
+	 *
+	 * @throws IOException
+	 *             if a segment could not be read
+	 */
+	private void recover() throws IOException {
+		File[] files = directory.listFiles();
+		int[] numbers = new int[files == null ? 0 : files.length];
+		int count = 0;
+		for (int i = 0; i < numbers.length; i++) {
+			String name = files[i].getName();
+			if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+				try {
+					numbers[count++] = Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+				} catch (NumberFormatException e) {
+					count--;
+				}
+			}
+		}
+		numbers = Arrays.copyOf(numbers, count);
+		Arrays.sort(numbers);
+		for (int i = 0; i < numbers.length; i++) {
+			Segment seg = openSegment(numbers[i], false);
+			Map<String, Integer> entries;
+			if (seg.buffer.getLong(segmentSize - 8) == MAGIC) {
+				seg.used = seg.buffer.getInt(segmentSize - TRAILER);
+				entries = seg.readFooter();
+				seg.sealed = true;
+			} else {
+				entries = seg.scan();
+			}
+			for (Map.Entry<String, Integer> entry : entries.entrySet()) {
+				int offset = entry.getValue().intValue();
+				Long previous;
+				if (offset >= 0) {
+					previous = index.put(entry.getKey(), Long.valueOf(location(seg.number, offset)));
+				} else {
+					previous = index.remove(entry.getKey());
+				}
+				if (previous != null) {
+					discard(previous.longValue());
+				}
+			}
+			if (!seg.sealed) {
+				seg.entries = new LinkedHashMap<String, Integer>(entries);
+				seal(seg);
+			}
+		}
+		// Count the old records inside each segment, not in its footer
+		Map<Integer, Long> live = new HashMap<Integer, Long>();
+		for (Long location : index.values()) {
+			Integer number = Integer.valueOf(segmentOf(location.longValue()));
+			Segment seg = segments.get(number);
+			Long sum = live.get(number);
+			live.put(number, Long.valueOf((sum == null ? 0 : sum.longValue())
+					+ seg.buffer.getInt(offsetOf(location.longValue()))));
+		}
+		for (Segment seg : segments.values()) {
+			Long sum = live.get(Integer.valueOf(seg.number));
+			seg.garbage = seg.used - (sum == null ? 0 : sum.longValue());
+		}
+	}
+
+	/**
+	 * Open or create a segment file and map it.
+	 *
+	 * @param number
+	 *            The number of the segment
+	 * @param create
+	 *            Whether it is a new segment
+	 * @return The segment
+	 * @throws IOException
+	 *             if it could not be opened, or it was written with another
+	 *             segment size
+	 */
+	private Segment openSegment(int number, boolean create) throws IOException {
+		File file = new File(directory, PREFIX + number + SUFFIX);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			long length = raf.length();
+			if (create || length == 0) { // Empty if the process ended creating it
+				raf.setLength(segmentSize);
+			} else if (length != segmentSize) {
+				throw new IOException("The segment " + file + " has " + length + " bytes instead of " + segmentSize
+						+ ", it was written with another segment size");
+			}
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			Segment seg = new Segment(number, file, buffer);
+			segments.put(Integer.valueOf(number), seg);
+			return seg;
+		} finally {
+			raf.close(); // The mapping stays valid
+		}
+	}
+
+	/**
+	 * Get the serializer, fetching it if needed.
+	 *
+	 * @return The serializer
+	 */
+	private MessageContentSerializer getSerializer() {
+		MessageContentSerializer s = serializer;
+		if (s == null) {
+			Object o = moduleContext.getContainer().fetchSharedObject(moduleContext,
+					new Object[] { MessageContentSerializer.class.getName() });
+			if (o instanceof Object[]) {
+				o = ((Object[]) o).length > 0 ? ((Object[]) o)[0] : null;
+			}
+			if (!(o instanceof MessageContentSerializer)) {
+				throw new IllegalStateException("The MessageContentSerializer is not available");
+			}
+			s = (MessageContentSerializer) o;
+			serializer = s;
+		}
+		return s;
+	}
+
+	/**
+	 * Build a position.
+	 *
+	 * @param segment
+	 *            The segment number
+	 * @param offset
+	 *            The offset in the segment
+	 * @return The position
+	 */
+	private static long location(int segment, int offset) {
+		return ((long) segment << 32) | (offset & 0xffffffffL);
+	}
+
+	/**
+	 * Get the segment number of a position.
+	 *
+	 * @param location
+	 *            The position
+	 * @return The segment number
+	 */
+	private static int segmentOf(long location) {
+		return (int) (location >>> 32);
+	}
+
+	/**
+	 * Get the offset of a position.
+	 *
+	 * @param location
+	 *            The position
+	 * @return The offset in the segment
+	 */
+	private static int offsetOf(long location) {
+		return (int) location;
+	}
+
+	/**
+	 * Encode a String in UTF-8.
+	 *
+	 * @param s
+	 *            The String
+	 * @return The bytes
+	 */
+	private static byte[] utf8(String s) {
+		try {
+			return s.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e); // Always supported
+		}
+	}
+
+	/**
+	 * Decode a String in UTF-8.
+	 *
+	 * @param b
+	 *            The bytes
+	 * @return The String
+	 */
+	private static String utf8(byte[] b) {
+		try {
+			return new String(b, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e); // Always supported
+		}
+	}
+
+	/**
+	 * Compress a serialized Resource.
+	 *
+	 * @param s
+	 *            The serialized Resource
+	 * @return The compressed bytes
+	 */
+	private static byte[] deflate(String s) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(utf8(s));
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] chunk = new byte[4096];
+			while (!deflater.finished()) {
+				out.write(chunk, 0, deflater.deflate(chunk));
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Uncompress a serialized Resource.
+	 *
+	 * @param data
+	 *            The compressed bytes
+	 * @return The serialized Resource
+	 */
+	private static String inflate(byte[] data) {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+			byte[] chunk = new byte[4096];
+			while (!inflater.finished()) {
+				int n = inflater.inflate(chunk);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break; // Truncated
+				}
+				out.write(chunk, 0, n);
+			}
+			return utf8(out.toByteArray());
+		} catch (DataFormatException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * A segment file.
+	 */
+	private final class Segment {
+		/**
+		 * The number of the segment, its order.
+		 */
+		private final int number;
+		/**
+		 * The file.
+		 */
+		private final File file;
+		/**
+		 * The mapped file. Its position is never changed, so it can be
+		 * duplicated to read from any thread.
+		 */
+		private final MappedByteBuffer buffer;
+		/**
+		 * The view used to write.
+		 */
+		private final ByteBuffer writer;
+		/**
+		 * Bytes used by records. Guarded by the write lock.
+		 */
+		private int used;
+		/**
+		 * Bytes used by old records. Guarded by the write lock.
+		 */
+		private volatile long garbage;
+		/**
+		 * Whether it is full and has its footer.
+		 */
+		private volatile boolean sealed;
+		/**
+		 * Offset of the last record of each URI, -1 if removed, while it is
+		 * being written.
+		 */
+		private LinkedHashMap<String, Integer> entries = new LinkedHashMap<String, Integer>();
+		/**
+		 * Bytes the footer will need.
+		 */
+		private int footer;
+
+		/**
+		 * Create a segment.
+		 *
+		 * @param number
+		 *            The number
+		 * @param file
+		 *            The file
+		 * @param buffer
+		 *            The mapped file
+		 */
+		Segment(int number, File file, MappedByteBuffer buffer) {
+			this.number = number;
+			this.file = file;
+			this.buffer = buffer;
+			this.writer = buffer.duplicate();
+		}
+
+		/**
+		 * Check if a record fits with the footer.
+		 *
+		 * @param length
+		 *            Length of the record
+		 * @param keyLength
+		 *            Length of the URI in UTF-8
+		 * @return <code>true</code> if it fits
+		 */
+		boolean fits(int length, int keyLength) {
+			return used + length + END + footer + 2 + keyLength + 4 + TRAILER <= segmentSize;
+		}
+
+		/**
+		 * Remember the last record of a URI, for the footer.
+		 *
+		 * @param uri
+		 *            The URI
+		 * @param keyLength
+		 *            Length of the URI in UTF-8
+		 * @param offset
+		 *            The offset of the record, -1 if removed
+		 */
+		void track(String uri, int keyLength, int offset) {
+			if (entries.put(uri, Integer.valueOf(offset)) == null) {
+				footer += 2 + keyLength + 4;
+			}
+		}
+
+		/**
+		 * Read the footer of a full segment.
+		 *
+		 * @return The offset of the last record of each URI, -1 if removed
+		 */
+		Map<String, Integer> readFooter() {
+			Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+			ByteBuffer b = buffer.duplicate();
+			b.position(buffer.getInt(segmentSize - TRAILER) + END);
+			while (b.position() < segmentSize - TRAILER) {
+				int keyLength = b.getShort();
+				if (keyLength <= 0) {
+					break; // End of the footer
+				}
+				byte[] key = new byte[keyLength];
+				b.get(key);
+				result.put(utf8(key), Integer.valueOf(b.getInt()));
+			}
+			return result;
+		}
+
+		/**
+		 * Read all the records of a segment that was not full, and set the
+		 * bytes used. It stops at the zero length after the last record, or
+		 * at the first record that is not consistent.
+		 *
+		 * @return The offset of the last record of each URI, -1 if removed
+		 */
+		Map<String, Integer> scan() {
+			Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+			ByteBuffer b = buffer.duplicate();
+			int offset = 0;
+			while (offset + 4 + 1 + 2 + 4 <= segmentSize - TRAILER) {
+				int length = b.getInt(offset);
+				if (length <= 0 || offset + length > segmentSize - TRAILER) {
+					break; // End of the records, or a partial one
+				}
+				b.position(offset + 4);
+				byte kind = b.get();
+				int keyLength = b.getShort();
+				if ((kind != PUT && kind != DEL) || keyLength <= 0 || 4 + 1 + 2 + keyLength + 4 > length
+						|| b.getInt(offset + 4 + 1 + 2 + keyLength) != length - (4 + 1 + 2 + keyLength + 4)) {
+					break; // Not a record
+				}
+				byte[] key = new byte[keyLength];
+				b.get(key);
+				String uri = utf8(key);
+				result.remove(uri); // Keep the order of the last records
+				result.put(uri, Integer.valueOf(kind == PUT ? offset : -1));
+				offset += length;
+			}
+			used = offset;
+			return result;
+		}
+	}
+
+}
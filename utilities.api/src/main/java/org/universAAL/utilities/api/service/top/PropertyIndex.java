@@ -0,0 +1,162 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.top;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The URIs of the Resources with each value of a property, as kept by
+ * MemoryEditorCallee. Reads do not lock. Changes lock only the value they
+ * change, among a fixed number of locks, so that changes to different values
+ * do not wait for each other.
+ *
+ * @author alfiva
+ *
+ */
+final class PropertyIndex {
+
+	/**
+	 * Number of locks among which changes are distributed.
+	 */
+	private static final int STRIPES = 64;
+
+	/**
+	 * The indexed property.
+	 */
+	private final String property;
+
+	/**
+	 * The URIs, by value. Read without locking.
+	 */
+	private final ConcurrentHashMap<Object, Set<String>> uris = new ConcurrentHashMap<Object, Set<String>>();
+
+	/**
+	 * Locks for the changes, a value uses the one of its hash.
+	 */
+	private final Object[] locks = new Object[STRIPES];
+
+	/**
+	 * Create an index.
+	 *
+	 * @param property
+	 *            The indexed property
+	 */
+	PropertyIndex(String property) {
+		this.property = property;
+		for (int i = 0; i < STRIPES; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * Get the indexed property.
+	 *
+	 * @return The property
+	 */
+	String getProperty() {
+		return property;
+	}
+
+	/**
+	 * Get the URIs with a value.
+	 *
+	 * @param value
+	 *            The value
+	 * @return The URIs, which may change while iterated
+	 */
+	Set<String> get(Object value) {
+		Set<String> set = uris.get(value);
+		if (set == null) {
+			return Collections.emptySet();
+		}
+		return set;
+	}
+
+	/**
+	 * Add a URI with the value or values of its property.
+	 *
+	 * @param uri
+	 *            The URI
+	 * @param value
+	 *            The value, a List of them, or null
+	 */
+	void add(String uri, Object value) {
+		if (value instanceof List) {
+			for (Object v : (List<?>) value) {
+				add(uri, v);
+			}
+		} else if (value != null) {
+			synchronized (lockOf(value)) {
+				Set<String> set = uris.get(value);
+				if (set == null) {
+					set = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+					uris.put(value, set);
+				}
+				set.add(uri);
+			}
+		}
+	}
+
+	/**
+	 * Remove a URI from the value or values of its property.
+	 *
+	 * @param uri
+	 *            The URI
+	 * @param value
+	 *            The value, a List of them, or null
+	 */
+	void remove(String uri, Object value) {
+		if (value instanceof List) {
+			for (Object v : (List<?>) value) {
+				remove(uri, v);
+			}
+		} else if (value != null) {
+			synchronized (lockOf(value)) {
+				Set<String> set = uris.get(value);
+				if (set != null) {
+					set.remove(uri);
+					if (set.isEmpty()) {
+						uris.remove(value);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the lock of a value. A set is only created or dropped holding it, so
+	 * that a URI is never added to a set already dropped.
+	 *
+	 * @param value
+	 *            The value
+	 * @return The lock
+	 */
+	private Object lockOf(Object value) {
+		int h = value.hashCode();
+		h ^= (h >>> 16);
+		return locks[h & (STRIPES - 1)];
+	}
+
+}
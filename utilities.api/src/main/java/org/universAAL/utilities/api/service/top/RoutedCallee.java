@@ -0,0 +1,251 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.top;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.universAAL.middleware.container.ModuleContext;
+import org.universAAL.middleware.service.CallStatus;
+import org.universAAL.middleware.service.ServiceCall;
+import org.universAAL.middleware.service.ServiceCallee;
+import org.universAAL.middleware.service.ServiceResponse;
+import org.universAAL.middleware.service.owls.process.ProcessOutput;
+import org.universAAL.middleware.service.owls.profile.ServiceProfile;
+
+/**
+ * This is an abstract class for ServiceCallees that handle several services
+ * and need to know which one has been called. Instead of comparing the process
+ * URI of each call with the URIs of the services, the operations are
+ * identified by the position of their service URI in the array passed to the
+ * constructor, and the calls are delivered to handleCall with that number, so
+ * the implementation can use a switch.
+ * <p/>
+ * The process URI of each profile is resolved when the callee is built, so
+ * finding the operation of a call is a single lookup.
+ * <p/>
+ * Example: A callee that handles two services.
+ * <code>
+ * <p/>super(context, profiles, new String[] { NAMESPACE + "getX", NAMESPACE + "setX" });
+ * <p/>...
+ * <p/>protected ServiceResponse handleCall(int operation, ServiceCall call) {
+ * <p/>	switch (operation) {
+ * <p/>	case 0: ... //getX
+ * <p/>	case 1: ... //setX
+ * <p/>	default: ...
+ * </code>
+ * <p/>
+ *
+ * @author alfiva
+ *
+ */
+public abstract class RoutedCallee extends ServiceCallee {
+
+	/**
+	 * Operation number passed to handleCall when the called service is none of
+	 * the ones handled by the callee.
+	 */
+	public static final int UNKNOWN = -1;
+
+	/**
+	 * URIs of the services, by operation number. Process URIs start with them.
+	 */
+	private String[] services;
+
+	/**
+	 * Operation numbers, by process URI.
+	 */
+	private ConcurrentHashMap<String, Integer> routes;
+
+	/**
+	 * Response of success without outputs.
+	 */
+	private ServiceResponse succeeded;
+
+	/**
+	 * Response of failure without outputs.
+	 */
+	private ServiceResponse failed;
+
+	/**
+	 * Response to calls to services not handled.
+	 */
+	private ServiceResponse notImplemented;
+
+	/**
+	 * Default constructor of the class.
+	 *
+	 * @param context
+	 *            The Module Context of universAAL
+	 * @param profiles
+	 *            The Service Profiles handled by the callee
+	 * @param services
+	 *            The URIs of the services handled by the callee. The position
+	 *            of each in the array is the operation number that handleCall
+	 *            will receive when it is called. The URI of the process of a
+	 *            profile must start with the URI of its service.
+	 */
+	protected RoutedCallee(ModuleContext context, ServiceProfile[] profiles, String[] services) {
+		super(context, profiles);
+		this.succeeded = new ServiceResponse(CallStatus.succeeded);
+		this.failed = new ServiceResponse(CallStatus.serviceSpecificFailure);
+		this.notImplemented = new ServiceResponse(CallStatus.serviceSpecificFailure);
+		this.notImplemented.addOutput(new ProcessOutput(ServiceResponse.PROP_SERVICE_SPECIFIC_ERROR,
+				"The service requested has not been implemented in this callee"));
+		this.services = services.clone();
+		this.routes = new ConcurrentHashMap<String, Integer>();
+		addRoutes(profiles);
+	}
+
+	/**
+	 * Add more Service Profiles to the callee, and to the routing of calls.
+	 * The URIs of their processes must start with any of the service URIs
+	 * passed in the constructor.
+	 *
+	 * @param profiles
+	 *            The Service Profiles to add
+	 */
+	protected void addRoutedProfiles(ServiceProfile[] profiles) {
+		addRoutes(profiles);
+		addNewServiceProfiles(profiles);
+	}
+
+	/**
+	 * Get the operation number of a called process.
+	 *
+	 * @param processURI
+	 *            The URI of the process
+	 * @return The position of its service in the array passed to the
+	 *         constructor, or UNKNOWN
+	 */
+	protected int getOperation(String processURI) {
+		Integer operation = routes.get(processURI);
+		if (operation != null) {
+			return operation.intValue();
+		}
+		int found = match(processURI);
+		if (found != UNKNOWN) {
+			routes.put(processURI, Integer.valueOf(found));
+		}
+		return found;
+	}
+
+	/**
+	 * Get the response of success without outputs of this callee. The same
+	 * response is returned every time, so it must not be modified.
+	 *
+	 * @return The response
+	 */
+	protected ServiceResponse succeeded() {
+		return succeeded;
+	}
+
+	/**
+	 * Get the response of failure without outputs of this callee. The same
+	 * response is returned every time, so it must not be modified.
+	 *
+	 * @return The response
+	 */
+	protected ServiceResponse failed() {
+		return failed;
+	}
+
+	/**
+	 * Get the response of this callee to calls to services it does not
+	 * handle. The same response is returned every time, so it must not be
+	 * modified.
+	 *
+	 * @return The response
+	 */
+	protected ServiceResponse notImplemented() {
+		return notImplemented;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.middleware.service.ServiceCallee#handleCall(org.universAAL
+	 * .middleware.service.ServiceCall)
+	 */
+	@Override
+	public ServiceResponse handleCall(ServiceCall call) {
+		if (call == null) {
+			return null;
+		}
+		String operation = call.getProcessURI();
+		if (operation == null || routes == null) {
+			return null;
+		}
+		return handleCall(getOperation(operation), call);
+	}
+
+	/**
+	 * When a service request is received, this method is called automatically
+	 * with the operation that was called.
+	 *
+	 * @param operation
+	 *            The position of the called service in the array passed to the
+	 *            constructor, or UNKNOWN if it is none of them
+	 * @param call
+	 *            The call, to get its inputs
+	 * @return The response to the call
+	 */
+	protected abstract ServiceResponse handleCall(int operation, ServiceCall call);
+
+	/**
+	 * Resolve the operation of the process of each profile.
+	 *
+	 * @param profiles
+	 *            The Service Profiles
+	 */
+	private void addRoutes(ServiceProfile[] profiles) {
+		for (int i = 0; i < profiles.length; i++) {
+			String process = profiles[i].getProcessURI();
+			if (process != null) {
+				int found = match(process);
+				if (found != UNKNOWN) {
+					routes.put(process, Integer.valueOf(found));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find the service a process URI starts with. If several match, the
+	 * longest is used.
+	 *
+	 * @param processURI
+	 *            The URI of the process
+	 * @return The position of the service, or UNKNOWN
+	 */
+	private int match(String processURI) {
+		int found = UNKNOWN;
+		for (int i = 0; i < services.length; i++) {
+			if (processURI.startsWith(services[i])
+					&& (found == UNKNOWN || services[i].length() > services[found].length())) {
+				found = i;
+			}
+		}
+		return found;
+	}
+
+}
@@ -21,15 +21,21 @@
  */
 package org.universAAL.utilities.api.service.top;
 
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.universAAL.middleware.container.ModuleContext;
 import org.universAAL.middleware.service.CallStatus;
 import org.universAAL.middleware.service.ServiceCall;
-import org.universAAL.middleware.service.ServiceCallee;
 import org.universAAL.middleware.service.ServiceResponse;
 import org.universAAL.middleware.service.owls.process.ProcessOutput;
 import org.universAAL.ontology.device.Actuator;
 import org.universAAL.ontology.device.StatusValue;
 import org.universAAL.utilities.api.service.mid.InvalidOntologyUtilException;
+import org.universAAL.utilities.api.service.mid.ProfileCache;
 import org.universAAL.utilities.api.service.mid.UtilActuator;
 
 /**
@@ -39,21 +45,119 @@ import org.universAAL.utilities.api.service.mid.UtilActuator;
  * default these 3 services. Those considering using UtilActuator could take
  * advantage of this class if they want only to handle those 3 typical services
  * profiles and no more.
+ * <p/>
+ * Actuators receiving bursts of commands can call reconcile to apply only the
+ * last requested state.
  *
  * @author alfiva
  *
  */
-public abstract class UtilActuatorCallee extends ServiceCallee {
+public abstract class UtilActuatorCallee extends RoutedCallee {
+
+	/**
+	 * Operation number of the GET STATUS service.
+	 */
+	private static final int GET = 0;
+
+	/**
+	 * Operation number of the SET OFF service.
+	 */
+	private static final int OFF = 1;
 
 	/**
-	 * Namespace for auxiliary URIs used in this class.
+	 * Operation number of the SET ON service.
+	 */
+	private static final int ON = 2;
+
+	/**
+	 * The namespace of the server.
 	 */
 	private String calleeNamespace;
 
 	/**
-	 * Default error response.
+	 * The actuator controlled.
+	 */
+	private Actuator actuator;
+
+	/**
+	 * Response of the GET STATUS service when activated.
+	 */
+	private ServiceResponse activated;
+
+	/**
+	 * Response of the GET STATUS service when not activated.
+	 */
+	private ServiceResponse notActivated;
+
+	/**
+	 * Worker applying the desired state, or <code>null</code> if commands are
+	 * executed as they arrive.
+	 */
+	private volatile ScheduledThreadPoolExecutor worker;
+
+	/**
+	 * Milliseconds to wait before trying again a state that failed.
+	 */
+	private long retryDelay;
+
+	/**
+	 * Last state requested by SET ON or SET OFF, or <code>null</code> if none
+	 * yet, in which case the actuator is left as it is. Written holding the
+	 * command lock.
+	 */
+	private volatile Boolean desired;
+
+	/**
+	 * Last state known of the actuator, or <code>null</code> if not known.
+	 */
+	private volatile Boolean reported;
+
+	/**
+	 * Whether the worker is already going to apply the desired state.
+	 */
+	private final AtomicBoolean pending = new AtomicBoolean(false);
+
+	/**
+	 * Whether the last command has yet to be picked up by the worker. Guarded
+	 * by the command lock, together with the desired state.
 	 */
-	private ServiceResponse errorResponse = new ServiceResponse(CallStatus.serviceSpecificFailure);
+	private boolean unapplied;
+
+	/**
+	 * Lock for setting the desired state and picking it up, so that each
+	 * command replaced before being picked up is counted once.
+	 */
+	private final Object commandLock = new Object();
+
+	/**
+	 * Whether the worker is going to try again a state that failed.
+	 */
+	private final AtomicBoolean retrying = new AtomicBoolean(false);
+
+	/**
+	 * Number of commands replaced by a later one before being applied.
+	 */
+	private final AtomicLong collapsed = new AtomicLong();
+
+	/**
+	 * Applies the desired state after a command or a report.
+	 */
+	private final Runnable reconcile = new Runnable() {
+		public void run() {
+			pending.set(false);
+			apply();
+		}
+	};
+
+	/**
+	 * Applies the desired state again after it failed.
+	 */
+	private final Runnable retry = new Runnable() {
+		public void run() {
+			retrying.set(false);
+			apply();
+		}
+	};
 
 	/**
 	 * Default constructor of the class. Takes the same parameters needed by a
@@ -75,54 +179,216 @@ public abstract class UtilActuatorCallee extends ServiceCallee {
 	 */
 	public UtilActuatorCallee(ModuleContext context, String namespace, Actuator actuator)
 			throws InvalidOntologyUtilException {
-		super(context, UtilActuator.getServiceProfiles(namespace, actuator));
+		super(context, ProfileCache.getActuatorProfiles(namespace, actuator),
+				new String[] { namespace + UtilActuator.SERVICE_GET_ON_OFF, namespace + UtilActuator.SERVICE_TURN_OFF,
+						namespace + UtilActuator.SERVICE_TURN_ON });
 		this.calleeNamespace = namespace;
+		this.actuator = actuator;
+		this.activated = statusResponse(namespace, StatusValue.Activated);
+		this.notActivated = statusResponse(namespace, StatusValue.NotActivated);
+	}
+
+	/**
+	 * Build a response of the GET STATUS service.
+	 *
+	 * @param namespace
+	 *            The namespace of the server
+	 * @param status
+	 *            The status returned
+	 * @return The response
+	 */
+	private static ServiceResponse statusResponse(String namespace, StatusValue status) {
+		ServiceResponse response = new ServiceResponse(CallStatus.succeeded);
+		response.addOutput(new ProcessOutput(namespace + UtilActuator.OUT_GET_ON_OFF, status));
+		return response;
 	}
 
 	/*
 	 * (non-Javadoc)
 	 *
 	 * @see
-	 * org.universAAL.middleware.service.ServiceCallee#handleCall(org.universAAL
-	 * .middleware.service.ServiceCall)
+	 * org.universAAL.utilities.api.service.top.RoutedCallee#handleCall(int,
+	 * org.universAAL.middleware.service.ServiceCall)
 	 */
 	@Override
-	public ServiceResponse handleCall(ServiceCall call) {
-		if (call == null) {
-			return null;
+	protected ServiceResponse handleCall(int operation, ServiceCall call) {
+		switch (operation) {
+		case GET:
+			return getStatus() ? activated : notActivated;
+		case OFF:
+			if (worker != null) {
+				command(false);
+				return succeeded();
+			} else if (executeOff()) {
+				return succeeded();
+			} else {
+				return failed();
+			}
+		case ON:
+			if (worker != null) {
+				command(true);
+				return succeeded();
+			} else if (executeOn()) {
+				return succeeded();
+			} else {
+				return failed();
+			}
+		default:
+			return notImplemented();
 		}
-		String operation = call.getProcessURI();
-		if (operation == null) {
-			return null;
+	}
+
+	/**
+	 * Start reconciling the actuator with the last requested state, instead of
+	 * executing each command as it arrives. SET ON and SET OFF calls only set
+	 * the desired state and succeed right away. A worker of this callee then
+	 * calls executeOn or executeOff, one at a time, whenever the desired state
+	 * differs from the reported one, so that a burst of commands reaches the
+	 * actuator as its final state only. If that fails, it is tried again
+	 * after the given delay, unless a later command makes it unnecessary.
+	 * <p/>
+	 * GET STATUS calls are answered with the reported state, which is the
+	 * last one applied, or the one given to <code>reportState</code>.
+	 * executeGet is only called while it is not known.
+	 *
+	 * @param retryDelay
+	 *            Milliseconds to wait before trying again a state that could
+	 *            not be applied.
+	 */
+	public synchronized void reconcile(long retryDelay) {
+		this.retryDelay = retryDelay;
+		if (worker == null) {
+			ScheduledThreadPoolExecutor w = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "UtilActuatorCallee reconcile");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			w.setKeepAliveTime(30, TimeUnit.SECONDS);
+			w.allowCoreThreadTimeOut(true);
+			worker = w;
 		}
-		if (operation.startsWith(calleeNamespace + UtilActuator.SERVICE_GET_ON_OFF)) {
-			boolean result = executeGet();
-			ServiceResponse response = new ServiceResponse(CallStatus.succeeded);
-			response.addOutput(new ProcessOutput(calleeNamespace + UtilActuator.OUT_GET_ON_OFF,
-					result ? StatusValue.Activated : StatusValue.NotActivated));
-			return response;
+	}
+
+	/**
+	 * Tell the state the actuator actually has, when it changes by other means
+	 * than this callee. If reconciling, and SET ON or SET OFF was already
+	 * called, the desired state is applied again if it differs.
+	 *
+	 * @param status
+	 *            The Boolean value representing the status property of the
+	 *            actuator.
+	 */
+	public void reportState(boolean status) {
+		reported = Boolean.valueOf(status);
+		ScheduledThreadPoolExecutor w = worker;
+		Boolean target = desired;
+		if (w != null && target != null && status != target.booleanValue() && !pending.getAndSet(true)) {
+			w.execute(reconcile);
 		}
+	}
 
-		if (operation.startsWith(calleeNamespace + UtilActuator.SERVICE_TURN_OFF)) {
-			if (executeOff()) {
-				return new ServiceResponse(CallStatus.succeeded);
-			} else {
-				return errorResponse;
-			}
+	/**
+	 * Get how many SET ON and SET OFF commands were replaced by a later one
+	 * before the worker picked them up, while reconciling. Commands that were
+	 * tried and are waiting to be tried again are not counted.
+	 *
+	 * @return The number of collapsed commands.
+	 */
+	public long getCollapsedCommands() {
+		return collapsed.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.service.ServiceCallee#close()
+	 */
+	@Override
+	public void close() {
+		super.close();
+		ProfileCache.releaseActuatorProfiles(calleeNamespace, actuator);
+		ScheduledThreadPoolExecutor w = worker;
+		if (w != null) {
+			worker = null;
+			w.shutdownNow();
+		}
+	}
 
+	/**
+	 * Set the desired state and wake up the worker if it is not already going
+	 * to apply it.
+	 *
+	 * @param status
+	 *            The state requested.
+	 */
+	private void command(boolean status) {
+		synchronized (commandLock) {
+			if (unapplied) {
+				collapsed.incrementAndGet();
+			}
+			desired = Boolean.valueOf(status);
+			unapplied = true;
+		}
+		if (!pending.getAndSet(true)) {
+			ScheduledThreadPoolExecutor w = worker;
+			if (w != null) {
+				w.execute(reconcile);
+			}
 		}
+	}
 
-		if (operation.startsWith(calleeNamespace + UtilActuator.SERVICE_TURN_ON)) {
-			if (executeOn()) {
-				return new ServiceResponse(CallStatus.succeeded);
-			} else {
-				return errorResponse;
+	/**
+	 * Apply the desired state if it differs from the reported one, and
+	 * schedule a retry if it fails. Called only by the worker.
+	 */
+	private void apply() {
+		Boolean target;
+		synchronized (commandLock) {
+			unapplied = false;
+			target = desired;
+		}
+		if (target == null) {
+			return; // No command yet
+		}
+		Boolean current = reported;
+		if (current != null && current.booleanValue() == target.booleanValue()) {
+			return;
+		}
+		boolean ok;
+		try {
+			ok = target.booleanValue() ? executeOn() : executeOff();
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			ok = false;
+		}
+		if (ok) {
+			reported = target;
+		} else if (!retrying.getAndSet(true)) {
+			ScheduledThreadPoolExecutor w = worker;
+			if (w != null) {
+				w.schedule(retry, retryDelay, TimeUnit.MILLISECONDS);
 			}
 		}
+	}
 
-		errorResponse.addOutput(new ProcessOutput(ServiceResponse.PROP_SERVICE_SPECIFIC_ERROR,
-				"The service requested has not been implemented in this simple editor callee"));
-		return errorResponse;
+	/**
+	 * Get the status to answer a GET STATUS call with.
+	 *
+	 * @return The Boolean value representing the status property of the
+	 *         actuator.
+	 */
+	private boolean getStatus() {
+		if (worker == null) {
+			return executeGet();
+		}
+		Boolean current = reported;
+		if (current == null) {
+			current = Boolean.valueOf(executeGet());
+			reported = current;
+		}
+		return current.booleanValue();
 	}
 
 	/**
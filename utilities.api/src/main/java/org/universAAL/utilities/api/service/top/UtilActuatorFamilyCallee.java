@@ -0,0 +1,245 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.top;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.universAAL.middleware.container.ModuleContext;
+import org.universAAL.middleware.rdf.Resource;
+import org.universAAL.middleware.service.CallStatus;
+import org.universAAL.middleware.service.ServiceCall;
+import org.universAAL.middleware.service.ServiceResponse;
+import org.universAAL.middleware.service.owls.process.ProcessOutput;
+import org.universAAL.ontology.device.Actuator;
+import org.universAAL.ontology.device.StatusValue;
+import org.universAAL.utilities.api.service.mid.ProfileCache;
+import org.universAAL.utilities.api.service.mid.UtilActuator;
+
+/**
+ * This is an abstract class for those who control a whole family of on/off
+ * actuators of the same type with the typical services of an actuator (get
+ * status, set on, set off). Unlike UtilActuatorCallee, which registers the 3
+ * profiles for each actuator, this registers them only once for the type of
+ * the actuators, whatever their number, and the called actuator is looked up
+ * in the actuators added to this callee. The requests are the same.
+ * <p/>
+ * Calls for actuators not added to this callee are answered with a service
+ * specific failure whose PROP_SERVICE_SPECIFIC_ERROR output is UNKNOWN_DEVICE,
+ * so that callers can tell them apart from failures of the actuators. Since
+ * every family callee of a type registers the same profiles, and the bus may
+ * give a call to any of them, each type of actuators must be handled by only
+ * one family callee, which adds all the actuators of that type.
+ * <p/>
+ * Example: A gateway controlling all its light sources. <code>
+ * <p/>callee = new FamilyExample(context, NAMESPACE, DeviceService.MY_URI,
+ * <p/>		LightActuator.MY_URI);
+ * <p/>callee.addDevice(new LightActuator(LIGHT_URI));
+ * </code>
+ *
+ * @author alfiva
+ *
+ */
+public abstract class UtilActuatorFamilyCallee extends RoutedCallee {
+
+	/**
+	 * Message of the error returned for calls to actuators not added to this
+	 * callee.
+	 */
+	public static final String UNKNOWN_DEVICE = "The device requested is not controlled by this callee";
+
+	/**
+	 * Operation number of the GET STATUS service.
+	 */
+	private static final int GET = 0;
+
+	/**
+	 * Operation number of the SET OFF service.
+	 */
+	private static final int OFF = 1;
+
+	/**
+	 * Operation number of the SET ON service.
+	 */
+	private static final int ON = 2;
+
+	/**
+	 * URI of the input parameter with the actuator.
+	 */
+	private String inputDevice;
+
+	/**
+	 * Response to calls to actuators not added to this callee.
+	 */
+	private ServiceResponse unknownDevice;
+
+	/**
+	 * Response of the GET STATUS service when activated.
+	 */
+	private ServiceResponse activated;
+
+	/**
+	 * Response of the GET STATUS service when not activated.
+	 */
+	private ServiceResponse notActivated;
+
+	/**
+	 * The actuators controlled by this callee, by URI.
+	 */
+	private ConcurrentHashMap<String, Actuator> devices = new ConcurrentHashMap<String, Actuator>();
+
+	/**
+	 * Default constructor of the class. Takes the same parameters needed by
+	 * the UtilActuator family profiles method, in addition to the
+	 * ModuleContext.
+	 *
+	 * @param context
+	 *            The Module Context of universAAL
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of DeviceService ontology you are
+	 *            going to implement
+	 * @param typeURI
+	 *            The MY_URI of the class of the actuators you are controlling
+	 */
+	public UtilActuatorFamilyCallee(ModuleContext context, String namespace, String ontologyURI, String typeURI) {
+		super(context, ProfileCache.getActuatorFamilyProfiles(namespace, ontologyURI, typeURI),
+				new String[] { namespace + UtilActuator.SERVICE_GET_ON_OFF, namespace + UtilActuator.SERVICE_TURN_OFF,
+						namespace + UtilActuator.SERVICE_TURN_ON });
+		this.inputDevice = namespace + UtilActuator.IN_DEVICE;
+		this.activated = statusResponse(namespace, StatusValue.Activated);
+		this.notActivated = statusResponse(namespace, StatusValue.NotActivated);
+		this.unknownDevice = new ServiceResponse(CallStatus.serviceSpecificFailure);
+		this.unknownDevice.addOutput(new ProcessOutput(ServiceResponse.PROP_SERVICE_SPECIFIC_ERROR, UNKNOWN_DEVICE));
+	}
+
+	/**
+	 * Build a response of the GET STATUS service.
+	 *
+	 * @param namespace
+	 *            The namespace of the server
+	 * @param status
+	 *            The status returned
+	 * @return The response
+	 */
+	private static ServiceResponse statusResponse(String namespace, StatusValue status) {
+		ServiceResponse response = new ServiceResponse(CallStatus.succeeded);
+		response.addOutput(new ProcessOutput(namespace + UtilActuator.OUT_GET_ON_OFF, status));
+		return response;
+	}
+
+	/**
+	 * Start controlling an actuator. Calls for it are handled from now on,
+	 * without registering anything.
+	 *
+	 * @param actuator
+	 *            The ontology instance of the actuator, which is given to the
+	 *            execute methods.
+	 */
+	public void addDevice(Actuator actuator) {
+		devices.put(actuator.getURI(), actuator);
+	}
+
+	/**
+	 * Stop controlling an actuator. Calls for it are answered with
+	 * UNKNOWN_DEVICE from now on.
+	 *
+	 * @param uri
+	 *            The URI of the actuator.
+	 * @return The actuator, or <code>null</code> if it was not controlled.
+	 */
+	public Actuator removeDevice(String uri) {
+		return devices.remove(uri);
+	}
+
+	/**
+	 * Get an actuator controlled by this callee.
+	 *
+	 * @param uri
+	 *            The URI of the actuator.
+	 * @return The actuator, or <code>null</code> if it is not controlled.
+	 */
+	public Actuator getDevice(String uri) {
+		return devices.get(uri);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.utilities.api.service.top.RoutedCallee#handleCall(int,
+	 * org.universAAL.middleware.service.ServiceCall)
+	 */
+	@Override
+	protected ServiceResponse handleCall(int operation, ServiceCall call) {
+		if (operation == UNKNOWN) {
+			return notImplemented();
+		}
+		Object input = call.getInputValue(inputDevice);
+		Actuator actuator = input instanceof Resource ? devices.get(((Resource) input).getURI()) : null;
+		if (actuator == null) {
+			return unknownDevice;
+		}
+		switch (operation) {
+		case GET:
+			return executeGet(actuator) ? activated : notActivated;
+		case OFF:
+			return executeOff(actuator) ? succeeded() : failed();
+		case ON:
+			return executeOn(actuator) ? succeeded() : failed();
+		default:
+			return notImplemented();
+		}
+	}
+
+	/**
+	 * When a SET ON service request is received for one of the actuators,
+	 * this method is called automatically.
+	 *
+	 * @param actuator
+	 *            The actuator to set on, as it was added.
+	 * @return <code>true</code> if the actuator could be set to ON
+	 */
+	public abstract boolean executeOn(Actuator actuator);
+
+	/**
+	 * When a SET OFF service request is received for one of the actuators,
+	 * this method is called automatically.
+	 *
+	 * @param actuator
+	 *            The actuator to set off, as it was added.
+	 * @return <code>true</code> if the actuator could be set to OFF
+	 */
+	public abstract boolean executeOff(Actuator actuator);
+
+	/**
+	 * When a GET STATUS service request is received for one of the actuators,
+	 * this method is called automatically.
+	 *
+	 * @param actuator
+	 *            The actuator to get, as it was added.
+	 * @return The Boolean value representing the status property of the
+	 *         actuator.
+	 */
+	public abstract boolean executeGet(Actuator actuator);
+
+}
@@ -0,0 +1,442 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.top;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import org.universAAL.middleware.container.ModuleContext;
+import org.universAAL.middleware.service.CallStatus;
+import org.universAAL.middleware.service.ServiceCall;
+import org.universAAL.middleware.service.ServiceResponse;
+import org.universAAL.middleware.service.owls.process.ProcessOutput;
+import org.universAAL.ontology.device.Actuator;
+import org.universAAL.ontology.location.Location;
+import org.universAAL.utilities.api.service.mid.ProfileCache;
+import org.universAAL.utilities.api.service.mid.UtilActuator;
+
+/**
+ * This is an abstract class for those who control many on/off actuators of
+ * the same type and want to switch any number of them in a single call, with
+ * the group services of UtilActuator (set on and set off a set of actuators,
+ * or all the actuators in a location). Classes extending this abstract class
+ * will be ServiceCallees which handle these 4 services.
+ * <p/>
+ * Each actuator is switched with executeOn or executeOff, and those of the
+ * same call are switched in parallel. Override executeOnAll and executeOffAll
+ * to switch them in a different way, for instance with a single command to
+ * the underlying system. The actuators that could not be switched are
+ * returned to the caller, and the errors thrown while switching them, if any,
+ * in the service specific error output.
+ * <p/>
+ * The pool where actuators are switched is shared by all the instances, and
+ * shut down when the last one is closed.
+ *
+ * @author alfiva
+ *
+ */
+public abstract class UtilActuatorGroupCallee extends RoutedCallee {
+
+	/**
+	 * Operation number of the group SET ON service.
+	 */
+	private static final int GROUP_ON = 0;
+
+	/**
+	 * Operation number of the group SET OFF service.
+	 */
+	private static final int GROUP_OFF = 1;
+
+	/**
+	 * Operation number of the zone SET ON service.
+	 */
+	private static final int ZONE_ON = 2;
+
+	/**
+	 * Operation number of the zone SET OFF service.
+	 */
+	private static final int ZONE_OFF = 3;
+
+	/**
+	 * Pool where actuators are switched in parallel, created when first
+	 * needed. Guarded by the class lock.
+	 */
+	private static ExecutorService pool;
+
+	/**
+	 * Number of instances not closed, which use the pool. Guarded by the class
+	 * lock.
+	 */
+	private static int users;
+
+	/**
+	 * Whether this instance was closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * The MY_URI of the class of the actuators controlled.
+	 */
+	private String typeURI;
+
+	/**
+	 * URI of the input parameter with the actuators.
+	 */
+	private String inputGroup;
+
+	/**
+	 * URI of the input parameter with the location.
+	 */
+	private String inputZone;
+
+	/**
+	 * URI of the output parameter with the actuators that failed.
+	 */
+	private String outputFailed;
+
+	/**
+	 * Default constructor of the class. Takes the same parameters needed by
+	 * the UtilActuator group profiles method, in addition to the
+	 * ModuleContext.
+	 *
+	 * @param context
+	 *            The Module Context of universAAL
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of DeviceService ontology you are
+	 *            going to implement
+	 * @param typeURI
+	 *            The MY_URI of the class of the actuators you are controlling
+	 */
+	public UtilActuatorGroupCallee(ModuleContext context, String namespace, String ontologyURI, String typeURI) {
+		super(context, ProfileCache.getActuatorGroupProfiles(namespace, ontologyURI, typeURI),
+				new String[] { namespace + UtilActuator.SERVICE_GROUP_ON, namespace + UtilActuator.SERVICE_GROUP_OFF,
+						namespace + UtilActuator.SERVICE_ZONE_ON, namespace + UtilActuator.SERVICE_ZONE_OFF });
+		this.typeURI = typeURI;
+		this.inputGroup = namespace + UtilActuator.IN_GROUP;
+		this.inputZone = namespace + UtilActuator.IN_ZONE;
+		this.outputFailed = namespace + UtilActuator.OUT_FAILED;
+		synchronized (UtilActuatorGroupCallee.class) {
+			users++;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.service.ServiceCallee#close()
+	 */
+	@Override
+	public void close() {
+		super.close();
+		ExecutorService unused = null;
+		synchronized (UtilActuatorGroupCallee.class) {
+			if (!closed) {
+				closed = true;
+				if (--users == 0) {
+					unused = pool;
+					pool = null;
+				}
+			}
+		}
+		if (unused != null) {
+			unused.shutdown();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.utilities.api.service.top.RoutedCallee#handleCall(int,
+	 * org.universAAL.middleware.service.ServiceCall)
+	 */
+	@Override
+	protected ServiceResponse handleCall(int operation, ServiceCall call) {
+		if (operation == UNKNOWN) {
+			return notImplemented();
+		}
+		List<Actuator> actuators = new ArrayList<Actuator>();
+		if (operation == GROUP_ON || operation == GROUP_OFF) {
+			Object input = call.getInputValue(inputGroup);
+			if (input instanceof List) {
+				for (Object item : (List<?>) input) {
+					actuators.add((Actuator) item);
+				}
+			} else if (input instanceof Actuator) {
+				actuators.add((Actuator) input);
+			} else {
+				return failed();
+			}
+		} else {
+			Object input = call.getInputValue(inputZone);
+			if (!(input instanceof Location)) {
+				return failed();
+			}
+			List<Actuator> found = getActuatorsIn((Location) input, typeURI);
+			if (found == null) {
+				return failed();
+			}
+			actuators.addAll(found);
+		}
+		boolean on = operation == GROUP_ON || operation == ZONE_ON;
+		Result result = on ? executeOnAll(actuators) : executeOffAll(actuators);
+		List<Actuator> failed = new ArrayList<Actuator>();
+		StringBuilder message = null;
+		for (int i = 0; i < actuators.size(); i++) {
+			if (result == null || !result.isSwitched(i)) {
+				failed.add(actuators.get(i));
+				Throwable error = result == null ? null : result.getError(i);
+				if (error != null) {
+					message = message == null ? new StringBuilder() : message.append('\n');
+					message.append(actuators.get(i).getURI()).append(": ").append(error);
+				}
+			}
+		}
+		if (failed.isEmpty()) {
+			return succeeded();
+		}
+		ServiceResponse response = new ServiceResponse(CallStatus.succeeded);
+		response.addOutput(new ProcessOutput(outputFailed, failed));
+		if (message != null) {
+			response.addOutput(new ProcessOutput(ServiceResponse.PROP_SERVICE_SPECIFIC_ERROR, message.toString()));
+		}
+		return response;
+	}
+
+	/**
+	 * When a group or zone SET ON service request is received, this method is
+	 * called automatically. By default it calls executeOn for each actuator,
+	 * in parallel, and waits for all of them.
+	 *
+	 * @param actuators
+	 *            The actuators to set on.
+	 * @return The result of each actuator, by its index in the list.
+	 */
+	public Result executeOnAll(List<Actuator> actuators) {
+		return executeAll(actuators, true);
+	}
+
+	/**
+	 * When a group or zone SET OFF service request is received, this method is
+	 * called automatically. By default it calls executeOff for each actuator,
+	 * in parallel, and waits for all of them.
+	 *
+	 * @param actuators
+	 *            The actuators to set off.
+	 * @return The result of each actuator, by its index in the list.
+	 */
+	public Result executeOffAll(List<Actuator> actuators) {
+		return executeAll(actuators, false);
+	}
+
+	/**
+	 * Set on one of the actuators controlled by this callee.
+	 *
+	 * @param actuator
+	 *            The actuator to set on.
+	 * @return <code>true</code> if the actuator could be set to ON
+	 */
+	public abstract boolean executeOn(Actuator actuator);
+
+	/**
+	 * Set off one of the actuators controlled by this callee.
+	 *
+	 * @param actuator
+	 *            The actuator to set off.
+	 * @return <code>true</code> if the actuator could be set to OFF
+	 */
+	public abstract boolean executeOff(Actuator actuator);
+
+	/**
+	 * When a zone service request is received, this method is called
+	 * automatically to know which actuators to switch.
+	 *
+	 * @param location
+	 *            The location requested.
+	 * @param typeURI
+	 *            The MY_URI of the class of the actuators requested, the one
+	 *            given in the constructor.
+	 * @return The actuators of the type controlled by this callee that are in
+	 *         the location, or <code>null</code> if it is not known.
+	 */
+	public abstract List<Actuator> getActuatorsIn(Location location, String typeURI);
+
+	/**
+	 * Switch actuators in parallel, one by one. The errors thrown by each are
+	 * kept in the result.
+	 *
+	 * @param actuators
+	 *            The actuators to switch.
+	 * @param on
+	 *            Whether to set them on or off.
+	 * @return The result of each actuator, by its index in the list.
+	 */
+	private Result executeAll(List<Actuator> actuators, final boolean on) {
+		Result result = new Result(actuators.size());
+		ExecutorService p = actuators.size() > 1 ? getPool() : null;
+		if (p != null) {
+			List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(actuators.size());
+			for (final Actuator actuator : actuators) {
+				tasks.add(new Callable<Boolean>() {
+					public Boolean call() {
+						return Boolean.valueOf(on ? executeOn(actuator) : executeOff(actuator));
+					}
+				});
+			}
+			try {
+				List<Future<Boolean>> futures = p.invokeAll(tasks);
+				for (int i = 0; i < futures.size(); i++) {
+					try {
+						result.setSwitched(i, futures.get(i).get().booleanValue());
+					} catch (ExecutionException e) {
+						result.setError(i, e.getCause());
+					}
+				}
+				return result;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return result;
+			} catch (RejectedExecutionException e) {
+				// Closed meanwhile, switch them here
+			}
+		}
+		for (int i = 0; i < actuators.size(); i++) {
+			try {
+				result.setSwitched(i, on ? executeOn(actuators.get(i)) : executeOff(actuators.get(i)));
+			} catch (RuntimeException e) {
+				result.setError(i, e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get the pool where actuators are switched, creating it if needed.
+	 *
+	 * @return The pool, or <code>null</code> if all the instances were
+	 *         closed.
+	 */
+	private static synchronized ExecutorService getPool() {
+		if (pool == null && users > 0) {
+			pool = Executors.newFixedThreadPool(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()),
+					new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "UtilActuatorGroupCallee switch");
+							t.setDaemon(true);
+							return t;
+						}
+					});
+		}
+		return pool;
+	}
+
+	/**
+	 * The result of switching the actuators of a call: whether each one was
+	 * switched, and the error it threw, if any. Actuators are identified by
+	 * their index in the list given to executeOnAll or executeOffAll. Those
+	 * not set are not switched.
+	 *
+	 * @author alfiva
+	 *
+	 */
+	public static class Result {
+
+		/**
+		 * Whether each actuator was switched.
+		 */
+		private boolean[] switched;
+
+		/**
+		 * The error thrown by each actuator, or null.
+		 */
+		private Throwable[] errors;
+
+		/**
+		 * Create a result where no actuator is switched yet.
+		 *
+		 * @param size
+		 *            The number of actuators
+		 */
+		public Result(int size) {
+			switched = new boolean[size];
+			errors = new Throwable[size];
+		}
+
+		/**
+		 * Set whether an actuator was switched.
+		 *
+		 * @param index
+		 *            The index of the actuator
+		 * @param done
+		 *            <code>true</code> if it was switched
+		 */
+		public void setSwitched(int index, boolean done) {
+			switched[index] = done;
+		}
+
+		/**
+		 * Set the error thrown by an actuator that was not switched. It is
+		 * returned to the caller in the service specific error output.
+		 *
+		 * @param index
+		 *            The index of the actuator
+		 * @param error
+		 *            The error
+		 */
+		public void setError(int index, Throwable error) {
+			errors[index] = error;
+		}
+
+		/**
+		 * Get whether an actuator was switched.
+		 *
+		 * @param index
+		 *            The index of the actuator
+		 * @return <code>true</code> if it was switched
+		 */
+		public boolean isSwitched(int index) {
+			return index < switched.length && switched[index];
+		}
+
+		/**
+		 * Get the error thrown by an actuator.
+		 *
+		 * @param index
+		 *            The index of the actuator
+		 * @return The error, or <code>null</code>
+		 */
+		public Throwable getError(int index) {
+			return index < errors.length ? errors[index] : null;
+		}
+
+	}
+
+}
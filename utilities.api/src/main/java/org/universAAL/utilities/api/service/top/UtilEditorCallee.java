@@ -21,13 +21,23 @@
  */
 package org.universAAL.utilities.api.service.top;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.universAAL.middleware.container.ModuleContext;
 import org.universAAL.middleware.rdf.Resource;
 import org.universAAL.middleware.service.CallStatus;
 import org.universAAL.middleware.service.ServiceCall;
-import org.universAAL.middleware.service.ServiceCallee;
 import org.universAAL.middleware.service.ServiceResponse;
 import org.universAAL.middleware.service.owls.process.ProcessOutput;
+import org.universAAL.middleware.service.owls.profile.ServiceProfile;
+import org.universAAL.utilities.api.service.mid.ProfileCache;
 import org.universAAL.utilities.api.service.mid.UtilEditor;
 
 /**
@@ -41,17 +51,123 @@ import org.universAAL.utilities.api.service.mid.UtilEditor;
  * @author alfiva
  *
  */
-public abstract class UtilEditorCallee extends ServiceCallee {
+public abstract class UtilEditorCallee extends RoutedCallee {
+
+	/**
+	 * Operation number of the GET service.
+	 */
+	private static final int GET = 0;
+
+	/**
+	 * Operation number of the ADD service.
+	 */
+	private static final int ADD = 1;
+
+	/**
+	 * Operation number of the CHANGE service.
+	 */
+	private static final int CHANGE = 2;
+
+	/**
+	 * Operation number of the REMOVE service.
+	 */
+	private static final int REMOVE = 3;
+
+	/**
+	 * Operation number of the ADD ALL service.
+	 */
+	private static final int ADD_ALL = 4;
+
+	/**
+	 * Operation number of the CHANGE ALL service.
+	 */
+	private static final int CHANGE_ALL = 5;
+
+	/**
+	 * Operation number of the REMOVE ALL service.
+	 */
+	private static final int REMOVE_ALL = 6;
+
+	/**
+	 * Operation number of the paged GET service.
+	 */
+	private static final int GET_PAGE = 7;
+
+	/**
+	 * URIs of the input parameters, by operation number.
+	 */
+	private String[] inputs;
+
+	/**
+	 * URI of the output parameter of the GET service.
+	 */
+	private String outputGet;
+
+	/**
+	 * URI of the output parameter of the bulk services.
+	 */
+	private String outputFailed;
+
+	/**
+	 * The change published for each operation number, if any.
+	 */
+	private static final String[] CHANGES = new String[] { null, UtilEditor.CHANGE_ADDED, UtilEditor.CHANGE_CHANGED,
+			UtilEditor.CHANGE_REMOVED, UtilEditor.CHANGE_ADDED, UtilEditor.CHANGE_CHANGED, UtilEditor.CHANGE_REMOVED };
 
 	/**
-	 * Namespace for auxiliary URIs used in this class.
+	 * Suffix of the URI of the context provider of the change events.
+	 */
+	private static final String PROVIDER = "editorChangeProvider";
+
+	/**
+	 * The Module Context, to publish changes.
+	 */
+	private ModuleContext moduleContext;
+
+	/**
+	 * Namespace of the server.
 	 */
 	private String calleeNamespace;
 
 	/**
-	 * Default error response when an input parameter does not match.
+	 * The MY_URI of the class of the managed Resources.
+	 */
+	private String editedURI;
+
+	/**
+	 * Publishes the changes, if enabled.
+	 */
+	private volatile EditorNotifier notifier;
+
+	/**
+	 * Milliseconds GET results are kept, or 0 if they are not.
+	 */
+	private volatile long cacheTTL;
+
+	/**
+	 * GET results, being got or already got, by input URI.
+	 */
+	private final ConcurrentHashMap<String, CachedGet> getCache = new ConcurrentHashMap<String, CachedGet>();
+
+	/**
+	 * GET results got since expired ones were last removed.
+	 */
+	private final AtomicInteger cacheMisses = new AtomicInteger();
+
+	/**
+	 * URI of the offset input parameter of the paged GET service.
 	 */
-	private static final ServiceResponse ERROR_INPUT = new ServiceResponse(CallStatus.serviceSpecificFailure);
+	private String inputOffset;
+
+	/**
+	 * URI of the limit input parameter of the paged GET service.
+	 */
+	private String inputLimit;
+
+	/**
+	 * URI of the output parameter of the paged GET service.
+	 */
+	private String outputPage;
 
 	/**
 	 * Default constructor of the class. Takes the same parameters needed by a
@@ -73,76 +189,426 @@ public abstract class UtilEditorCallee extends ServiceCallee {
 	 */
 	public UtilEditorCallee(ModuleContext context, String namespace, String ontologyURI, String[] path,
 			String editedURI) {
-		super(context, UtilEditor.getServiceProfiles(namespace, ontologyURI, path, editedURI));
+		this(context, namespace, ontologyURI, path, editedURI, false);
+	}
+
+	/**
+	 * Constructor of the class that can also handle the bulk services, which
+	 * add, change or remove many Resources in a single call. These are handled
+	 * by executeAddAll, executeChangeAll and executeRemoveAll, which by default
+	 * call the single Resource methods for each Resource, but can be
+	 * overridden to process all of them at once.
+	 *
+	 * @param context
+	 *            The Module Context of universAAL
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you are going to
+	 *            implement
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @param editedURI
+	 *            The MY_URI of the class of the concept ontology that you want
+	 *            to manage, which is at the end of the property path
+	 * @param bulk
+	 *            Whether to also register the bulk service profiles, as given
+	 *            by <code>UtilEditor.getBulkServiceProfiles</code>
+	 */
+	public UtilEditorCallee(ModuleContext context, String namespace, String ontologyURI, String[] path,
+			String editedURI, boolean bulk) {
+		this(context, namespace, ontologyURI, path, editedURI, bulk, false);
+	}
+
+	/**
+	 * Constructor of the class that can also handle the bulk services and the
+	 * paged GET service, which returns the managed Resources in pages of a
+	 * given size. This is handled by executeGetPage, which must be overridden
+	 * for the service to succeed.
+	 *
+	 * @param context
+	 *            The Module Context of universAAL
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology you are going to
+	 *            implement
+	 * @param path
+	 *            The property path from the root of the Service ontology
+	 *            concept to the exact concept you want to manage
+	 * @param editedURI
+	 *            The MY_URI of the class of the concept ontology that you want
+	 *            to manage, which is at the end of the property path
+	 * @param bulk
+	 *            Whether to also register the bulk service profiles, as given
+	 *            by <code>UtilEditor.getBulkServiceProfiles</code>
+	 * @param paged
+	 *            Whether to also register the paged GET service profile, as
+	 *            given by <code>UtilEditor.getPagedServiceProfiles</code>
+	 */
+	public UtilEditorCallee(ModuleContext context, String namespace, String ontologyURI, String[] path,
+			String editedURI, boolean bulk, boolean paged) {
+		super(context, profiles(namespace, ontologyURI, path, editedURI, bulk, paged),
+				new String[] { namespace + UtilEditor.SERVICE_GET, namespace + UtilEditor.SERVICE_ADD,
+						namespace + UtilEditor.SERVICE_CHANGE, namespace + UtilEditor.SERVICE_REMOVE,
+						namespace + UtilEditor.SERVICE_ADD_ALL, namespace + UtilEditor.SERVICE_CHANGE_ALL,
+						namespace + UtilEditor.SERVICE_REMOVE_ALL, namespace + UtilEditor.SERVICE_GET_PAGE });
+		this.inputs = new String[] { namespace + UtilEditor.IN_GET, namespace + UtilEditor.IN_ADD,
+				namespace + UtilEditor.IN_CHANGE, namespace + UtilEditor.IN_REMOVE, namespace + UtilEditor.IN_ADD_ALL,
+				namespace + UtilEditor.IN_CHANGE_ALL, namespace + UtilEditor.IN_REMOVE_ALL };
+		this.outputGet = namespace + UtilEditor.OUT_GET;
+		this.outputFailed = namespace + UtilEditor.OUT_FAILED;
+		this.inputOffset = namespace + UtilEditor.IN_OFFSET;
+		this.inputLimit = namespace + UtilEditor.IN_LIMIT;
+		this.outputPage = namespace + UtilEditor.OUT_PAGE;
+		this.moduleContext = context;
 		this.calleeNamespace = namespace;
+		this.editedURI = editedURI;
+	}
+
+	/**
+	 * Start publishing a context event each time a Resource is successfully
+	 * added, changed or removed through this callee, so that clients can
+	 * subscribe to the changes instead of asking for the Resources again and
+	 * again. The subject of the events is the Resource, of the class managed
+	 * by this callee, the predicate is <code>UtilEditor.PROP_EDITOR_CHANGE</code>
+	 * and the object one of the <code>UtilEditor.CHANGE_</code> constants.
+	 * <p/>
+	 * Changes of the same Resource within the given window are published as a
+	 * single event: for instance, several changes are published as one, and
+	 * an addition followed by a removal is not published at all.
+	 * <p/>
+	 * Example: A client subscribing to the changes. <code>
+	 * <p/>new Pattern(User.MY_URI, UtilEditor.PROP_EDITOR_CHANGE, (String) null)
+	 * </code>
+	 *
+	 * @param window
+	 *            Milliseconds that the changes of a Resource are held to be
+	 *            published together. If 0, each change is published right
+	 *            away.
+	 */
+	public synchronized void publishChanges(long window) {
+		if (notifier == null) {
+			notifier = new EditorNotifier(moduleContext, calleeNamespace + PROVIDER, editedURI, window);
+		}
 	}
 
 	/*
 	 * (non-Javadoc)
 	 *
-	 * @see
-	 * org.universAAL.middleware.service.ServiceCallee#handleCall(org.universAAL
-	 * .middleware.service.ServiceCall)
+	 * @see org.universAAL.middleware.service.ServiceCallee#close()
 	 */
 	@Override
-	public ServiceResponse handleCall(ServiceCall call) {
-		if (call == null) {
-			return null;
-		}
-		String operation = call.getProcessURI();
-		if (operation == null) {
-			return null;
-		}
-		if (operation.startsWith(calleeNamespace + UtilEditor.SERVICE_GET)) {
-			Object input = call.getInputValue(calleeNamespace + UtilEditor.IN_GET);
-			if (input == null) {
-				return ERROR_INPUT;
-			}
-			Resource result = executeGet((Resource) input);
-			ServiceResponse response = new ServiceResponse(CallStatus.succeeded);
-			response.addOutput(new ProcessOutput(calleeNamespace + UtilEditor.OUT_GET, result));
-			return response;
+	public void close() {
+		super.close();
+		EditorNotifier n = notifier;
+		if (n != null) {
+			n.close();
+		}
+	}
+
+	/**
+	 * Start keeping the results of executeGet, so that GET calls for the same
+	 * Resource do not call it again while the result is valid. A result is
+	 * valid for the given time, or until the Resource is added, changed or
+	 * removed through this callee. If several GET calls for the same Resource
+	 * arrive when there is no valid result, executeGet is called only once
+	 * and all of them get its result.
+	 * <p/>
+	 * If the Resources can be changed by other means than this callee, use a
+	 * time as short as the delay those changes can be seen with, or call
+	 * <code>invalidate</code> when they happen.
+	 *
+	 * @param ttl
+	 *            Milliseconds the results are valid. If 0, results are no
+	 *            longer kept.
+	 */
+	public void setGetCache(long ttl) {
+		cacheTTL = ttl;
+		if (ttl <= 0) {
+			getCache.clear();
 		}
+	}
 
-		if (operation.startsWith(calleeNamespace + UtilEditor.SERVICE_ADD)) {
-			Object input = call.getInputValue(calleeNamespace + UtilEditor.IN_ADD);
-			if (input == null) {
-				return ERROR_INPUT;
+	/**
+	 * Discard the kept result of executeGet for a Resource, because it was
+	 * changed by other means than this callee.
+	 *
+	 * @param uri
+	 *            The URI of the Resource
+	 */
+	public void invalidate(String uri) {
+		getCache.remove(uri);
+	}
+
+	/**
+	 * Discard all the kept results of executeGet.
+	 */
+	public void invalidateAll() {
+		getCache.clear();
+	}
+
+	/**
+	 * Get a Resource from the kept results, or from executeGet if there is no
+	 * valid one.
+	 *
+	 * @param input
+	 *            The Resource with the URI to get
+	 * @param ttl
+	 *            Milliseconds the results are valid
+	 * @return A copy of the result
+	 */
+	private Resource cachedGet(final Resource input, long ttl) {
+		String uri = input.getURI();
+		if (uri == null) {
+			return executeGet(input);
+		}
+		long now = System.currentTimeMillis();
+		CachedGet cached = getCache.get(uri);
+		if (cached == null || cached.expires < now) {
+			if (cached != null) {
+				getCache.remove(uri, cached);
 			}
-			ServiceResponse response = new ServiceResponse(CallStatus.serviceSpecificFailure);
-			if (executeAdd((Resource) input)) {
-				response = new ServiceResponse(CallStatus.succeeded);
+			CachedGet created = new CachedGet(new FutureTask<Resource>(new Callable<Resource>() {
+				public Resource call() {
+					return executeGet(input);
+				}
+			}), now + ttl);
+			cached = getCache.putIfAbsent(uri, created);
+			if (cached == null) {
+				cached = created;
+				if ((cacheMisses.incrementAndGet() & 1023) == 0) {
+					removeExpired(now);
+				}
 			}
-			return response;
 		}
-
-		if (operation.startsWith(calleeNamespace + UtilEditor.SERVICE_CHANGE)) {
-			Object input = call.getInputValue(calleeNamespace + UtilEditor.IN_CHANGE);
-			if (input == null) {
-				return ERROR_INPUT;
+		cached.task.run(); // Only the first run calls executeGet
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					Resource result = cached.task.get();
+					return result == null ? null : result.deepCopy();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
 			}
-			ServiceResponse response = new ServiceResponse(CallStatus.serviceSpecificFailure);
-			if (executeChange((Resource) input)) {
-				response = new ServiceResponse(CallStatus.succeeded);
+		} catch (ExecutionException e) {
+			getCache.remove(uri, cached); // Do not keep failures
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
 			}
-			return response;
 		}
+	}
 
-		if (operation.startsWith(calleeNamespace + UtilEditor.SERVICE_REMOVE)) {
-			Object input = call.getInputValue(calleeNamespace + UtilEditor.IN_REMOVE);
-			if (input == null) {
-				return ERROR_INPUT;
-			}
-			ServiceResponse response = new ServiceResponse(CallStatus.serviceSpecificFailure);
-			if (executeRemove((Resource) input)) {
-				response = new ServiceResponse(CallStatus.succeeded);
+	/**
+	 * Remove the kept results that are no longer valid.
+	 *
+	 * @param now
+	 *            The current time
+	 */
+	private void removeExpired(long now) {
+		for (Iterator<CachedGet> it = getCache.values().iterator(); it.hasNext();) {
+			if (it.next().expires < now) {
+				it.remove();
 			}
+		}
+	}
+
+	/**
+	 * Discard the kept result, and publish the change if enabled, after an
+	 * operation succeeded.
+	 *
+	 * @param operation
+	 *            The operation that succeeded
+	 * @param input
+	 *            The Resource changed
+	 */
+	private void changed(int operation, Resource input) {
+		String uri = input.getURI();
+		if (uri == null) {
+			return;
+		}
+		getCache.remove(uri);
+		EditorNotifier n = notifier;
+		if (n != null) {
+			n.changed(uri, CHANGES[operation]);
+		}
+	}
+
+	/**
+	 * Get the profiles to register.
+	 *
+	 * @param namespace
+	 *            The namespace of the server
+	 * @param ontologyURI
+	 *            The MY_URI of the class of Service ontology
+	 * @param path
+	 *            The property path to the managed concept
+	 * @param editedURI
+	 *            The MY_URI of the class of the managed concept
+	 * @param bulk
+	 *            Whether to add the bulk profiles
+	 * @param paged
+	 *            Whether to add the paged GET profile
+	 * @return The profiles
+	 */
+	private static ServiceProfile[] profiles(String namespace, String ontologyURI, String[] path, String editedURI,
+			boolean bulk, boolean paged) {
+		ServiceProfile[] result = ProfileCache.getEditorProfiles(namespace, ontologyURI, path, editedURI);
+		if (bulk) {
+			result = concat(result, ProfileCache.getEditorBulkProfiles(namespace, ontologyURI, path, editedURI));
+		}
+		if (paged) {
+			result = concat(result, ProfileCache.getEditorPagedProfiles(namespace, ontologyURI, path, editedURI));
+		}
+		return result;
+	}
+
+	/**
+	 * Join two arrays of profiles.
+	 *
+	 * @param first
+	 *            The first profiles
+	 * @param second
+	 *            The profiles to put after them
+	 * @return An array with both
+	 */
+	private static ServiceProfile[] concat(ServiceProfile[] first, ServiceProfile[] second) {
+		ServiceProfile[] both = new ServiceProfile[first.length + second.length];
+		System.arraycopy(first, 0, both, 0, first.length);
+		System.arraycopy(second, 0, both, first.length, second.length);
+		return both;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.utilities.api.service.top.RoutedCallee#handleCall(int,
+	 * org.universAAL.middleware.service.ServiceCall)
+	 */
+	@Override
+	protected ServiceResponse handleCall(int operation, ServiceCall call) {
+		if (operation == UNKNOWN || inputs == null) {
+			return notImplemented();
+		}
+		if (operation == GET_PAGE) {
+			return handlePage(call);
+		}
+		Object input = call.getInputValue(inputs[operation]);
+		if (input == null) {
+			return failed();
+		}
+		if (operation >= ADD_ALL) {
+			return handleBulk(operation, input);
+		}
+		boolean success;
+		switch (operation) {
+		case GET:
+			long ttl = cacheTTL;
+			Resource result = ttl > 0 ? cachedGet((Resource) input, ttl) : executeGet((Resource) input);
+			ServiceResponse response = new ServiceResponse(CallStatus.succeeded);
+			response.addOutput(new ProcessOutput(outputGet, result));
 			return response;
+		case ADD:
+			success = executeAdd((Resource) input);
+			break;
+		case CHANGE:
+			success = executeChange((Resource) input);
+			break;
+		case REMOVE:
+			success = executeRemove((Resource) input);
+			break;
+		default:
+			success = false;
+		}
+		if (success) {
+			changed(operation, (Resource) input);
 		}
+		return success ? succeeded() : failed();
+	}
 
-		ServiceResponse response = new ServiceResponse(CallStatus.serviceSpecificFailure);
-		response.addOutput(new ProcessOutput(ServiceResponse.PROP_SERVICE_SPECIFIC_ERROR,
-				"The service requested has not been implemented in this simple editor callee"));
+	/**
+	 * Handle a call to the paged GET service.
+	 *
+	 * @param call
+	 *            The call, with the offset and the limit
+	 * @return The response, with the Resources of the page
+	 */
+	private ServiceResponse handlePage(ServiceCall call) {
+		Object offset = call.getInputValue(inputOffset);
+		Object limit = call.getInputValue(inputLimit);
+		if (!(offset instanceof Integer) || !(limit instanceof Integer)) {
+			return failed();
+		}
+		List<Resource> result = executeGetPage(((Integer) offset).intValue(), ((Integer) limit).intValue());
+		if (result == null) {
+			return failed();
+		}
+		ServiceResponse response = new ServiceResponse(CallStatus.succeeded);
+		if (!result.isEmpty()) {
+			response.addOutput(new ProcessOutput(outputPage, result));
+		}
+		return response;
+	}
+
+	/**
+	 * Handle a call to a bulk service.
+	 *
+	 * @param operation
+	 *            The operation number
+	 * @param input
+	 *            The input, a list of Resources or a single one
+	 * @return The response, with the Resources that failed, if any, or a
+	 *         failure if the input is not made of Resources
+	 */
+	private ServiceResponse handleBulk(int operation, Object input) {
+		List<Resource> items = new ArrayList<Resource>();
+		if (input instanceof List) {
+			for (Object item : (List<?>) input) {
+				if (!(item instanceof Resource)) {
+					return failed();
+				}
+				items.add((Resource) item);
+			}
+		} else if (input instanceof Resource) {
+			items.add((Resource) input);
+		} else {
+			return failed();
+		}
+		boolean[] results;
+		switch (operation) {
+		case ADD_ALL:
+			results = executeAddAll(items);
+			break;
+		case CHANGE_ALL:
+			results = executeChangeAll(items);
+			break;
+		default:
+			results = executeRemoveAll(items);
+			break;
+		}
+		List<Resource> failed = new ArrayList<Resource>();
+		for (int i = 0; i < items.size(); i++) {
+			if (results == null || i >= results.length || !results[i]) {
+				failed.add(items.get(i));
+			} else {
+				changed(operation, items.get(i));
+			}
+		}
+		if (failed.isEmpty()) {
+			return succeeded();
+		}
+		ServiceResponse response = new ServiceResponse(CallStatus.succeeded);
+		response.addOutput(new ProcessOutput(outputFailed, failed));
 		return response;
 	}
 
@@ -202,4 +668,105 @@ public abstract class UtilEditorCallee extends ServiceCallee {
 	 */
 	public abstract boolean executeRemove(Resource input);
 
+	/**
+	 * When an ADD ALL service request is received, this method is called
+	 * automatically. By default it calls executeAdd for each Resource.
+	 * Override it to add all of them at once.
+	 *
+	 * @param inputs
+	 *            The Resource objects to add.
+	 * @return The result of each addition, in the same order. Resources
+	 *         without a <code>true</code> result are returned to the caller as
+	 *         failed.
+	 */
+	public boolean[] executeAddAll(List<Resource> inputs) {
+		boolean[] results = new boolean[inputs.size()];
+		for (int i = 0; i < results.length; i++) {
+			results[i] = executeAdd(inputs.get(i));
+		}
+		return results;
+	}
+
+	/**
+	 * When a CHANGE ALL service request is received, this method is called
+	 * automatically. By default it calls executeChange for each Resource.
+	 * Override it to change all of them at once.
+	 *
+	 * @param inputs
+	 *            The Resource objects to change.
+	 * @return The result of each change, in the same order. Resources without
+	 *         a <code>true</code> result are returned to the caller as failed.
+	 */
+	public boolean[] executeChangeAll(List<Resource> inputs) {
+		boolean[] results = new boolean[inputs.size()];
+		for (int i = 0; i < results.length; i++) {
+			results[i] = executeChange(inputs.get(i));
+		}
+		return results;
+	}
+
+	/**
+	 * When a REMOVE ALL service request is received, this method is called
+	 * automatically. By default it calls executeRemove for each Resource.
+	 * Override it to remove all of them at once.
+	 *
+	 * @param inputs
+	 *            The Resource objects to remove.
+	 * @return The result of each removal, in the same order. Resources without
+	 *         a <code>true</code> result are returned to the caller as failed.
+	 */
+	public boolean[] executeRemoveAll(List<Resource> inputs) {
+		boolean[] results = new boolean[inputs.size()];
+		for (int i = 0; i < results.length; i++) {
+			results[i] = executeRemove(inputs.get(i));
+		}
+		return results;
+	}
+
+	/**
+	 * When a paged GET service request is received, this method is called
+	 * automatically. It must return at most <code>limit</code> of the managed
+	 * Resources, skipping the first <code>offset</code> ones, always in the
+	 * same order, so that consecutive pages do not repeat or miss any. A page
+	 * with less than <code>limit</code> Resources is taken as the last one. By
+	 * default it returns <code>null</code>, which makes the call fail.
+	 *
+	 * @param offset
+	 *            The number of Resources to skip.
+	 * @param limit
+	 *            The maximum number of Resources to return.
+	 * @return The Resources of the page, or <code>null</code> if it could not
+	 *         be got.
+	 */
+	public List<Resource> executeGetPage(int offset, int limit) {
+		return null;
+	}
+
+	/**
+	 * A result of executeGet, being got or already got.
+	 */
+	private static final class CachedGet {
+		/**
+		 * Gets the result.
+		 */
+		private final FutureTask<Resource> task;
+		/**
+		 * When it is no longer valid.
+		 */
+		private final long expires;
+
+		/**
+		 * Create a result.
+		 *
+		 * @param task
+		 *            Gets the result
+		 * @param expires
+		 *            When it is no longer valid
+		 */
+		CachedGet(FutureTask<Resource> task, long expires) {
+			this.task = task;
+			this.expires = expires;
+		}
+	}
+
 }
@@ -21,15 +21,20 @@
  */
 package org.universAAL.utilities.api.service.top;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.universAAL.middleware.container.ModuleContext;
 import org.universAAL.middleware.service.CallStatus;
 import org.universAAL.middleware.service.ServiceCall;
-import org.universAAL.middleware.service.ServiceCallee;
 import org.universAAL.middleware.service.ServiceResponse;
 import org.universAAL.middleware.service.owls.process.ProcessOutput;
 import org.universAAL.ontology.device.Sensor;
 import org.universAAL.ontology.device.StatusValue;
 import org.universAAL.utilities.api.service.mid.InvalidOntologyUtilException;
+import org.universAAL.utilities.api.service.mid.ProfileCache;
 import org.universAAL.utilities.api.service.mid.UtilSensor;
 
 /**
@@ -39,21 +44,54 @@ import org.universAAL.utilities.api.service.mid.UtilSensor;
  * services. Those considering using UtilSensor could take advantage of this
  * class if they want only to handle those 1 typical services profiles and no
  * more.
+ * <p/>
+ * Sensors that are read more often than the hardware can answer can call
+ * setMaxAge to answer from the last reading while it is recent enough.
  *
  * @author alfiva
  *
  */
-public abstract class UtilSensorCallee extends ServiceCallee {
+public abstract class UtilSensorCallee extends RoutedCallee {
+
+	/**
+	 * Operation number of the GET STATUS service.
+	 */
+	private static final int GET = 0;
 
 	/**
-	 * Namespace for auxiliary URIs used in this class.
+	 * The namespace of the server.
 	 */
 	private String calleeNamespace;
 
 	/**
-	 * Default error response.
+	 * The sensor read.
+	 */
+	private Sensor sensor;
+
+	/**
+	 * Response of the GET STATUS service when activated.
+	 */
+	private ServiceResponse activated;
+
+	/**
+	 * Response of the GET STATUS service when not activated.
+	 */
+	private ServiceResponse notActivated;
+
+	/**
+	 * Milliseconds a reading is used to answer, or 0 if it is not.
+	 */
+	private volatile long maxAge;
+
+	/**
+	 * Last reading of the sensor, or <code>null</code> if none yet.
 	 */
-	private ServiceResponse errorResponse = new ServiceResponse(CallStatus.serviceSpecificFailure);
+	private volatile Reading last;
+
+	/**
+	 * Refresh of the reading in progress, if any.
+	 */
+	private final AtomicReference<FutureTask<Boolean>> refresh = new AtomicReference<FutureTask<Boolean>>();
 
 	/**
 	 * Default constructor of the class. Takes the same parameters needed by a
@@ -75,37 +113,126 @@ public abstract class UtilSensorCallee extends ServiceCallee {
 	 */
 	public UtilSensorCallee(ModuleContext context, String namespace, Sensor sensor)
 			throws InvalidOntologyUtilException {
-		super(context, UtilSensor.getServiceProfiles(namespace, sensor));
+		super(context, ProfileCache.getSensorProfiles(namespace, sensor),
+				new String[] { namespace + UtilSensor.SERVICE_GET_ON_OFF });
 		this.calleeNamespace = namespace;
+		this.sensor = sensor;
+		this.activated = statusResponse(namespace, StatusValue.Activated);
+		this.notActivated = statusResponse(namespace, StatusValue.NotActivated);
+	}
+
+	/**
+	 * Build a response of the GET STATUS service.
+	 *
+	 * @param namespace
+	 *            The namespace of the server
+	 * @param status
+	 *            The status returned
+	 * @return The response
+	 */
+	private static ServiceResponse statusResponse(String namespace, StatusValue status) {
+		ServiceResponse response = new ServiceResponse(CallStatus.succeeded);
+		response.addOutput(new ProcessOutput(namespace + UtilSensor.OUT_GET_ON_OFF, status));
+		return response;
 	}
 
 	/*
 	 * (non-Javadoc)
 	 *
 	 * @see
-	 * org.universAAL.middleware.service.ServiceCallee#handleCall(org.universAAL
-	 * .middleware.service.ServiceCall)
+	 * org.universAAL.utilities.api.service.top.RoutedCallee#handleCall(int,
+	 * org.universAAL.middleware.service.ServiceCall)
+	 */
+	@Override
+	protected ServiceResponse handleCall(int operation, ServiceCall call) {
+		if (operation == GET) {
+			return (maxAge > 0 ? cachedGet() : executeGet()) ? activated : notActivated;
+		}
+
+		return notImplemented();
+	}
+
+	/**
+	 * Start answering GET STATUS calls with the last reading of the sensor
+	 * while it is younger than the given age. When it is older, executeGet is
+	 * called once to refresh it, and all the calls arriving meanwhile get the
+	 * same result. Readings can also be given with pushReading, for instance
+	 * by drivers that are notified of the changes.
+	 *
+	 * @param maxAge
+	 *            Milliseconds a reading is valid. If 0, executeGet is called
+	 *            for every call again.
+	 */
+	public void setMaxAge(long maxAge) {
+		this.maxAge = maxAge;
+	}
+
+	/**
+	 * Give a fresh reading of the sensor, which is used to answer GET STATUS
+	 * calls as if executeGet had just returned it.
+	 *
+	 * @param status
+	 *            The Boolean value representing the measured value property
+	 *            of the sensor.
+	 */
+	public void pushReading(boolean status) {
+		last = new Reading(status, System.currentTimeMillis());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.service.ServiceCallee#close()
 	 */
 	@Override
-	public ServiceResponse handleCall(ServiceCall call) {
-		if (call == null) {
-			return null;
+	public void close() {
+		super.close();
+		ProfileCache.releaseSensorProfiles(calleeNamespace, sensor);
+	}
+
+	/**
+	 * Get the last reading if it is recent enough, or refresh it otherwise,
+	 * joining the refresh in progress if there is one.
+	 *
+	 * @return The Boolean value representing the measured value property of
+	 *         the sensor.
+	 */
+	private boolean cachedGet() {
+		Reading reading = last;
+		if (reading != null && System.currentTimeMillis() - reading.time <= maxAge) {
+			return reading.status;
 		}
-		String operation = call.getProcessURI();
-		if (operation == null) {
-			return null;
+		FutureTask<Boolean> task = refresh.get();
+		if (task == null) {
+			Refresh callable = new Refresh();
+			FutureTask<Boolean> created = new FutureTask<Boolean>(callable);
+			callable.task = created;
+			task = refresh.compareAndSet(null, created) ? created : refresh.get();
+			if (task == null) {
+				task = created; // Finished in between, refresh again
+			}
 		}
-		if (operation.startsWith(calleeNamespace + UtilSensor.SERVICE_GET_ON_OFF)) {
-			boolean result = executeGet();
-			ServiceResponse response = new ServiceResponse(CallStatus.succeeded);
-			response.addOutput(new ProcessOutput(calleeNamespace + UtilSensor.OUT_GET_ON_OFF,
-					result ? StatusValue.Activated : StatusValue.NotActivated));
-			return response;
+		task.run(); // Only the first run calls executeGet
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return task.get().booleanValue();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
 		}
-
-		errorResponse.addOutput(new ProcessOutput(ServiceResponse.PROP_SERVICE_SPECIFIC_ERROR,
-				"The service requested has not been implemented in this simple editor callee"));
-		return errorResponse;
 	}
 
 	/**
@@ -117,4 +244,58 @@ public abstract class UtilSensorCallee extends ServiceCallee {
 	 */
 	public abstract boolean executeGet();
 
+	/**
+	 * A refresh of the reading. It stops being the refresh in progress as soon
+	 * as executeGet returns, before the callers waiting for it are released,
+	 * so that later calls do not join it once it is finished.
+	 */
+	private final class Refresh implements Callable<Boolean> {
+		/**
+		 * The task running it.
+		 */
+		private FutureTask<Boolean> task;
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.concurrent.Callable#call()
+		 */
+		public Boolean call() {
+			try {
+				boolean status = executeGet();
+				pushReading(status);
+				return Boolean.valueOf(status);
+			} finally {
+				refresh.compareAndSet(task, null);
+			}
+		}
+	}
+
+	/**
+	 * A reading of the sensor and when it was taken.
+	 */
+	private static final class Reading {
+		/**
+		 * The value read.
+		 */
+		private final boolean status;
+		/**
+		 * When it was read.
+		 */
+		private final long time;
+
+		/**
+		 * Create a reading.
+		 *
+		 * @param status
+		 *            The value read
+		 * @param time
+		 *            When it was read
+		 */
+		Reading(boolean status, long time) {
+			this.status = status;
+			this.time = time;
+		}
+	}
+
 }
@@ -0,0 +1,199 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.top;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.universAAL.middleware.container.ModuleContext;
+import org.universAAL.middleware.rdf.Resource;
+import org.universAAL.middleware.service.CallStatus;
+import org.universAAL.middleware.service.ServiceCall;
+import org.universAAL.middleware.service.ServiceResponse;
+import org.universAAL.middleware.service.owls.process.ProcessOutput;
+import org.universAAL.ontology.device.Sensor;
+import org.universAAL.ontology.device.StatusValue;
+import org.universAAL.utilities.api.service.mid.ProfileCache;
+import org.universAAL.utilities.api.service.mid.UtilSensor;
+
+/**
+ * This is an abstract class for those who control a whole family of on/off
+ * sensors of the same type with the typical services of a sensor (get
+ * status). Unlike UtilSensorCallee, which registers the profile for each
+ * sensor, this registers it only once for the type of the sensors, whatever
+ * their number, and the called sensor is looked up in the sensors added to
+ * this callee. The requests are the same.
+ * <p/>
+ * Calls for sensors not added to this callee are answered with a service
+ * specific failure whose PROP_SERVICE_SPECIFIC_ERROR output is UNKNOWN_DEVICE,
+ * so that callers can tell them apart from failures of the sensors. Since
+ * every family callee of a type registers the same profiles, and the bus may
+ * give a call to any of them, each type of sensors must be handled by only
+ * one family callee, which adds all the sensors of that type.
+ *
+ * @author alfiva
+ *
+ */
+public abstract class UtilSensorFamilyCallee extends RoutedCallee {
+
+	/**
+	 * Message of the error returned for calls to sensors not added to this
+	 * callee.
+	 */
+	public static final String UNKNOWN_DEVICE = "The device requested is not controlled by this callee";
+
+	/**
+	 * Operation number of the GET STATUS service.
+	 */
+	private static final int GET = 0;
+
+	/**
+	 * URI of the input parameter with the sensor.
+	 */
+	private String inputDevice;
+
+	/**
+	 * Response to calls to sensors not added to this callee.
+	 */
+	private ServiceResponse unknownDevice;
+
+	/**
+	 * Response of the GET STATUS service when activated.
+	 */
+	private ServiceResponse activated;
+
+	/**
+	 * Response of the GET STATUS service when not activated.
+	 */
+	private ServiceResponse notActivated;
+
+	/**
+	 * The sensors controlled by this callee, by URI.
+	 */
+	private ConcurrentHashMap<String, Sensor> devices = new ConcurrentHashMap<String, Sensor>();
+
+	/**
+	 * Default constructor of the class. Takes the same parameters needed by
+	 * the UtilSensor family profiles method, in addition to the
+	 * ModuleContext.
+	 *
+	 * @param context
+	 *            The Module Context of universAAL
+	 * @param namespace
+	 *            The namespace of your server, ending with the character #
+	 * @param ontologyURI
+	 *            The MY_URI of the class of DeviceService ontology you are
+	 *            going to implement
+	 * @param typeURI
+	 *            The MY_URI of the class of the sensors you are controlling
+	 */
+	public UtilSensorFamilyCallee(ModuleContext context, String namespace, String ontologyURI, String typeURI) {
+		super(context, ProfileCache.getSensorFamilyProfiles(namespace, ontologyURI, typeURI),
+				new String[] { namespace + UtilSensor.SERVICE_GET_ON_OFF });
+		this.inputDevice = namespace + UtilSensor.IN_DEVICE;
+		this.activated = statusResponse(namespace, StatusValue.Activated);
+		this.notActivated = statusResponse(namespace, StatusValue.NotActivated);
+		this.unknownDevice = new ServiceResponse(CallStatus.serviceSpecificFailure);
+		this.unknownDevice.addOutput(new ProcessOutput(ServiceResponse.PROP_SERVICE_SPECIFIC_ERROR, UNKNOWN_DEVICE));
+	}
+
+	/**
+	 * Build a response of the GET STATUS service.
+	 *
+	 * @param namespace
+	 *            The namespace of the server
+	 * @param status
+	 *            The status returned
+	 * @return The response
+	 */
+	private static ServiceResponse statusResponse(String namespace, StatusValue status) {
+		ServiceResponse response = new ServiceResponse(CallStatus.succeeded);
+		response.addOutput(new ProcessOutput(namespace + UtilSensor.OUT_GET_ON_OFF, status));
+		return response;
+	}
+
+	/**
+	 * Start controlling a sensor. Calls for it are handled from now on,
+	 * without registering anything.
+	 *
+	 * @param sensor
+	 *            The ontology instance of the sensor, which is given to
+	 *            executeGet.
+	 */
+	public void addDevice(Sensor sensor) {
+		devices.put(sensor.getURI(), sensor);
+	}
+
+	/**
+	 * Stop controlling a sensor. Calls for it are answered with
+	 * UNKNOWN_DEVICE from now on.
+	 *
+	 * @param uri
+	 *            The URI of the sensor.
+	 * @return The sensor, or <code>null</code> if it was not controlled.
+	 */
+	public Sensor removeDevice(String uri) {
+		return devices.remove(uri);
+	}
+
+	/**
+	 * Get a sensor controlled by this callee.
+	 *
+	 * @param uri
+	 *            The URI of the sensor.
+	 * @return The sensor, or <code>null</code> if it is not controlled.
+	 */
+	public Sensor getDevice(String uri) {
+		return devices.get(uri);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.universAAL.utilities.api.service.top.RoutedCallee#handleCall(int,
+	 * org.universAAL.middleware.service.ServiceCall)
+	 */
+	@Override
+	protected ServiceResponse handleCall(int operation, ServiceCall call) {
+		if (operation != GET) {
+			return notImplemented();
+		}
+		Object input = call.getInputValue(inputDevice);
+		Sensor sensor = input instanceof Resource ? devices.get(((Resource) input).getURI()) : null;
+		if (sensor == null) {
+			return unknownDevice;
+		}
+		return executeGet(sensor) ? activated : notActivated;
+	}
+
+	/**
+	 * When a GET STATUS service request is received for one of the sensors,
+	 * this method is called automatically.
+	 *
+	 * @param sensor
+	 *            The sensor to get, as it was added.
+	 * @return The Boolean value representing the measured value property of the
+	 *         sensor.
+	 */
+	public abstract boolean executeGet(Sensor sensor);
+
+}
@@ -138,7 +138,7 @@ public class SubmitCmd extends Control {
 		}
 		if (h != null) {
 			Path hiddenPath = Path.parse(ref.getThePath());
-			sub.getFormObject().getData().setPropertyPath(hiddenPath.to(HIDDENREF).path, h, true);
+			sub.getFormObject().getData().setPropertyPath(hiddenPath.to(HIDDENREF).getPath(), h, true);
 		}
 		return ref.getThePath();
 	}
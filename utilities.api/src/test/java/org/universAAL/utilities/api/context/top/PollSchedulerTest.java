@@ -0,0 +1,305 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import junit.framework.TestCase;
+
+/**
+ * Polls many items, as the SensorPoller does with sensors, and checks that
+ * all of them are polled on time, that the polls of an item never overlap,
+ * and that the limits of a driver hold while it is resized.
+ *
+ * @author alfiva
+ *
+ */
+public class PollSchedulerTest extends TestCase {
+
+	/**
+	 * Number of items of the slow driver, which are the last ones.
+	 */
+	private static final int SLOW = 20;
+
+	/**
+	 * Limit of the slow driver.
+	 */
+	private static final int SLOW_LIMIT = 2;
+
+	/**
+	 * Number of items.
+	 */
+	private int items;
+
+	/**
+	 * Milliseconds between polls of each item.
+	 */
+	private long interval;
+
+	/**
+	 * Polls of each item.
+	 */
+	private AtomicIntegerArray polls;
+
+	/**
+	 * Polls in progress of each item.
+	 */
+	private AtomicIntegerArray busy;
+
+	/**
+	 * Whether the polls of an item overlapped.
+	 */
+	private AtomicBoolean overlap = new AtomicBoolean();
+
+	/**
+	 * Polls of the slow driver in progress.
+	 */
+	private AtomicInteger slowBusy = new AtomicInteger();
+
+	/**
+	 * Most polls of the slow driver in progress at the same time.
+	 */
+	private AtomicInteger slowMax = new AtomicInteger();
+
+	/**
+	 * Counted down when a poll of the slow driver starts, if set.
+	 */
+	private volatile CountDownLatch slowStarted;
+
+	/**
+	 * The scheduler.
+	 */
+	private PollScheduler<Integer> scheduler;
+
+	/**
+	 * Get the number of items to poll.
+	 *
+	 * @return The number of items
+	 */
+	protected int getItems() {
+		return 2000;
+	}
+
+	/**
+	 * Get the milliseconds between polls of each item.
+	 *
+	 * @return The interval
+	 */
+	protected long getInterval() {
+		return 200;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception {
+		items = getItems();
+		interval = getInterval();
+		polls = new AtomicIntegerArray(items);
+		busy = new AtomicIntegerArray(items);
+		scheduler = new PollScheduler<Integer>(8, 10) {
+			void poll(Integer item) {
+				int i = item.intValue();
+				if (busy.getAndIncrement(i) != 0) {
+					overlap.set(true);
+				}
+				if (i >= items - SLOW) {
+					int now = slowBusy.incrementAndGet();
+					int max = slowMax.get();
+					while (now > max && !slowMax.compareAndSet(max, now)) {
+						max = slowMax.get();
+					}
+					CountDownLatch started = slowStarted;
+					if (started != null) {
+						started.countDown();
+					}
+					try {
+						Thread.sleep(1);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					slowBusy.decrementAndGet();
+				}
+				polls.incrementAndGet(i);
+				busy.decrementAndGet(i);
+			}
+		};
+		scheduler.setDriverLimit("fast", 1000);
+		scheduler.setDriverLimit("slow", SLOW_LIMIT);
+		for (int i = 0; i < items; i++) {
+			String driver = i >= items - SLOW ? "slow" : (i % 2 == 0 ? "fast" : null);
+			scheduler.add("item" + i, Integer.valueOf(i), driver, interval);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception {
+		scheduler.close();
+	}
+
+	/**
+	 * Every item is polled within its interval, and then again.
+	 *
+	 * @throws InterruptedException
+	 */
+	public void testAllPolled() throws InterruptedException {
+		assertEquals(items, scheduler.size());
+		assertTrue("Not all items were polled", awaitPolls(1, interval * 3));
+		assertTrue("Not all items were polled again", awaitPolls(2, interval * 3));
+		assertFalse("Polls of the same item overlapped", overlap.get());
+		assertTrue(slowMax.get() <= SLOW_LIMIT);
+	}
+
+	/**
+	 * The limit of a driver holds when it is reduced and raised while its
+	 * polls are in progress, and its items keep being polled.
+	 *
+	 * @throws InterruptedException
+	 */
+	public void testResize() throws InterruptedException {
+		assertTrue(awaitPolls(1, interval * 3));
+		scheduler.setDriverLimit("slow", 1);
+		// At most SLOW_LIMIT polls admitted under the old limit start after
+		// the resize, and no new one is admitted until all of them finish
+		CountDownLatch started = new CountDownLatch(SLOW_LIMIT + 1);
+		slowStarted = started;
+		assertTrue(started.await(interval * 3, TimeUnit.MILLISECONDS));
+		slowStarted = null;
+		slowMax.set(slowBusy.get());
+		assertTrue(awaitPolls(polled() + 2, interval * 4));
+		assertTrue("Reduced limit exceeded: " + slowMax.get(), slowMax.get() <= 1);
+
+		scheduler.setDriverLimit("slow", 3);
+		slowMax.set(0);
+		assertTrue(awaitPolls(polled() + 1, interval * 3));
+		assertTrue("Raised limit exceeded: " + slowMax.get(), slowMax.get() <= 3);
+
+		scheduler.setDriverLimit("slow", 0);
+		assertTrue(awaitPolls(polled() + 1, interval * 3));
+		assertFalse("Polls of the same item overlapped", overlap.get());
+	}
+
+	/**
+	 * Removed items are no longer polled, except for a poll that had already
+	 * started.
+	 *
+	 * @throws InterruptedException
+	 */
+	public void testRemove() throws InterruptedException {
+		assertTrue(awaitPolls(1, interval * 3));
+		for (int i = 0; i < items; i += 2) {
+			scheduler.remove("item" + i);
+		}
+		assertEquals(items / 2, scheduler.size());
+		int[] before = new int[items];
+		for (int i = 0; i < items; i += 2) {
+			before[i] = polls.get(i);
+		}
+		// Twice more is over a full interval, when all were due again
+		int kept = polled(1, 2) + 2;
+		assertTrue("Items not polled", awaitPolls(1, 2, kept, interval * 4));
+		for (int i = 0; i < items; i += 2) {
+			assertTrue("Removed item polled", polls.get(i) <= before[i] + 1);
+		}
+	}
+
+	/**
+	 * Get the fewest polls of any item.
+	 *
+	 * @return The number of polls
+	 */
+	private int polled() {
+		return polled(0, 1);
+	}
+
+	/**
+	 * Get the fewest polls of some items.
+	 *
+	 * @param from
+	 *            The first item
+	 * @param step
+	 *            The distance between the items
+	 * @return The number of polls
+	 */
+	private int polled(int from, int step) {
+		int min = Integer.MAX_VALUE;
+		for (int i = from; i < items; i += step) {
+			min = Math.min(min, polls.get(i));
+		}
+		return min;
+	}
+
+	/**
+	 * Wait until every item has been polled a number of times.
+	 *
+	 * @param count
+	 *            The number of polls.
+	 * @param timeout
+	 *            Milliseconds to wait at most.
+	 * @return Whether all items got there in time.
+	 * @throws InterruptedException
+	 */
+	private boolean awaitPolls(int count, long timeout) throws InterruptedException {
+		return awaitPolls(0, 1, count, timeout);
+	}
+
+	/**
+	 * Wait until some items have been polled a number of times.
+	 *
+	 * @param from
+	 *            The first item
+	 * @param step
+	 *            The distance between the items
+	 * @param count
+	 *            The number of polls.
+	 * @param timeout
+	 *            Milliseconds to wait at most.
+	 * @return Whether all the items got there in time.
+	 * @throws InterruptedException
+	 */
+	private boolean awaitPolls(int from, int step, int count, long timeout) throws InterruptedException {
+		long end = System.currentTimeMillis() + timeout;
+		while (true) {
+			while (from < items && polls.get(from) >= count) {
+				from += step;
+			}
+			if (from >= items) {
+				return true;
+			}
+			if (System.currentTimeMillis() > end) {
+				return false;
+			}
+			Thread.sleep(10);
+		}
+	}
+
+}
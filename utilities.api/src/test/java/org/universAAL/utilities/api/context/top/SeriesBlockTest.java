@@ -0,0 +1,189 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that the samples appended to a SeriesBlock are decoded exactly as
+ * they were given, for every encoding of timestamps and values.
+ *
+ * @author alfiva
+ *
+ */
+public class SeriesBlockTest extends TestCase {
+
+	/**
+	 * Regular sampling, where every timestamp is a single bit.
+	 */
+	public void testRegular() {
+		long[] times = new long[1000];
+		double[] values = new double[times.length];
+		for (int i = 0; i < times.length; i++) {
+			times[i] = 1500000000000L + i * 1000L;
+			values[i] = 21.5;
+		}
+		roundTrip(times, values);
+	}
+
+	/**
+	 * Each range of delta-of-delta, including the limits of each one.
+	 */
+	public void testDeltaOfDelta() {
+		long[] dods = new long[] { 0, 1, -1, 63, 64, -63, -64, 65, 255, 256, -255, -256, 257, 2047, 2048, -2047,
+				-2048, 2049, -2049, 100000, 1L << 40 };
+		long[] times = new long[dods.length * 2 + 2];
+		double[] values = new double[times.length];
+		long delta = 5000;
+		times[0] = 0;
+		times[1] = delta;
+		int n = 2;
+		for (int i = 0; i < dods.length; i++) {
+			// Up and back down, so that deltas stay positive
+			delta += dods[i] >= 0 ? dods[i] : 0;
+			times[n] = times[n - 1] + delta;
+			n++;
+			delta += dods[i] < 0 ? dods[i] : -dods[i];
+			if (delta < 0) {
+				delta = 0;
+			}
+			times[n] = times[n - 1] + delta;
+			n++;
+		}
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i;
+		}
+		roundTrip(times, values);
+	}
+
+	/**
+	 * Samples at the same time, where the delta is zero.
+	 */
+	public void testSameTime() {
+		roundTrip(new long[] { 10, 10, 10, 20, 20 }, new double[] { 1, 2, 3, 4, 5 });
+	}
+
+	/**
+	 * Values that reuse the previous window of meaningful bits, and others that
+	 * need a new one, including those with many leading zeros.
+	 */
+	public void testXorWindows() {
+		double[] values = new double[] { 0.0, 1.0, 1.0, 1.5, 1.25, -1.25, 1e300, 1e-300, Double.MIN_VALUE,
+				Double.MAX_VALUE, -0.0, 0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.longBitsToDouble(1L), Double.longBitsToDouble(0x8000000000000001L),
+				Double.longBitsToDouble(-1L), 3.0, 3.0000000000000004 };
+		long[] times = new long[values.length];
+		for (int i = 0; i < times.length; i++) {
+			times[i] = i * 60000L;
+		}
+		roundTrip(times, values);
+	}
+
+	/**
+	 * Random walks of values and jittered times, long enough to grow the
+	 * buffer several times.
+	 */
+	public void testRandom() {
+		Random random = new Random(42);
+		for (int run = 0; run < 20; run++) {
+			long[] times = new long[5000];
+			double[] values = new double[times.length];
+			long time = random.nextLong() >>> 20;
+			double value = random.nextGaussian() * 100;
+			for (int i = 0; i < times.length; i++) {
+				time += random.nextInt(10) == 0 ? random.nextInt(100000) : 1000 + random.nextInt(3) - 1;
+				value += random.nextInt(4) == 0 ? 0 : random.nextGaussian();
+				times[i] = time;
+				values[i] = random.nextInt(50) == 0 ? Double.longBitsToDouble(random.nextLong()) : value;
+			}
+			roundTrip(times, values);
+		}
+	}
+
+	/**
+	 * Only the samples in the range are decoded, with its limits included.
+	 */
+	public void testRange() {
+		SeriesBlock block = new SeriesBlock(100, 1.0);
+		for (int i = 1; i < 10; i++) {
+			block.append(100 + i * 10, 1.0 + i);
+		}
+		Samples samples = new Samples();
+		block.scan(130, 160, samples);
+		assertEquals(4, samples.size());
+		assertEquals(130, samples.getTime(0));
+		assertEquals(160, samples.getTime(3));
+		assertEquals(4.0, samples.getValue(0), 0);
+		samples = new Samples();
+		block.scan(191, 300, samples);
+		assertEquals(0, samples.size());
+		samples = new Samples();
+		block.scan(0, 99, samples);
+		assertEquals(0, samples.size());
+	}
+
+	/**
+	 * Append the samples to a block, and check that they are decoded exactly,
+	 * before and after sealing it.
+	 *
+	 * @param times
+	 *            Times of the samples, in increasing order.
+	 * @param values
+	 *            Values of the samples.
+	 */
+	private static void roundTrip(long[] times, double[] values) {
+		SeriesBlock block = new SeriesBlock(times[0], values[0]);
+		for (int i = 1; i < times.length; i++) {
+			block.append(times[i], values[i]);
+		}
+		assertEquals(times.length, block.getCount());
+		assertEquals(times[0], block.getStart());
+		assertEquals(times[times.length - 1], block.getLast());
+		check(block, times, values);
+		block.seal();
+		check(block, times, values);
+	}
+
+	/**
+	 * Check that a block decodes the given samples.
+	 *
+	 * @param block
+	 *            The block.
+	 * @param times
+	 *            Expected times.
+	 * @param values
+	 *            Expected values.
+	 */
+	private static void check(SeriesBlock block, long[] times, double[] values) {
+		Samples samples = new Samples();
+		block.scan(Long.MIN_VALUE, Long.MAX_VALUE, samples);
+		assertEquals(times.length, samples.size());
+		for (int i = 0; i < times.length; i++) {
+			assertEquals("Time of sample " + i, times[i], samples.getTime(i));
+			assertEquals("Value of sample " + i, Double.doubleToRawLongBits(values[i]),
+					Double.doubleToRawLongBits(samples.getValue(i)));
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.context.top;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that purging a TimeSeriesStore does not lose the samples added at the
+ * same time.
+ *
+ * @author alfiva
+ *
+ */
+public class TimeSeriesStoreTest extends TestCase {
+
+	/**
+	 * A series emptied by purge is created again by the next sample.
+	 */
+	public void testAddAfterPurge() {
+		TimeSeriesStore store = new TimeSeriesStore(1000, 100);
+		store.add("s", "p", 0, 1.0);
+		store.purge(5000);
+		assertEquals(0, store.getSeriesCount());
+		assertTrue(store.add("s", "p", 5000, 2.0));
+		Samples samples = store.query("s", "p", 0, 10000);
+		assertEquals(1, samples.size());
+		assertEquals(2.0, samples.getValue(0), 0);
+	}
+
+	/**
+	 * Samples added while another thread keeps purging are all kept.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the purging thread
+	 */
+	public void testConcurrentPurge() throws InterruptedException {
+		final TimeSeriesStore store = new TimeSeriesStore(1000, 100);
+		final int rounds = 200000;
+		final boolean[] done = new boolean[1];
+		Thread purger = new Thread() {
+			public void run() {
+				while (true) {
+					synchronized (done) {
+						if (done[0]) {
+							return;
+						}
+					}
+					store.purge(Long.MAX_VALUE / 2);
+				}
+			}
+		};
+		purger.start();
+		int lost = 0;
+		for (int i = 0; i < rounds; i++) {
+			// A new series each time, which is empty until the sample is in
+			long time = Long.MAX_VALUE / 2 + i;
+			store.add("s" + i, "p", time, i);
+			if (store.query("s" + i, "p", time, time).size() != 1) {
+				lost++;
+			}
+		}
+		synchronized (done) {
+			done[0] = true;
+		}
+		purger.join();
+		assertEquals(0, lost);
+	}
+
+}
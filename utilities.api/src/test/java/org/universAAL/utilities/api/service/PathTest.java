@@ -0,0 +1,63 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that the arrays given by a Path do not let its users modify it.
+ *
+ * @author alfiva
+ *
+ */
+public class PathTest extends TestCase {
+
+	/**
+	 * Namespace of the properties.
+	 */
+	private static final String NS = "http://ontology.universAAL.org/Test.owl#";
+
+	/**
+	 * Modifying the array returned does not modify the Path.
+	 */
+	public void testGetPathCopy() {
+		Path path = Path.at(NS + "controls").to(NS + "name");
+		String[] first = path.getPath();
+		first[1] = NS + "other";
+		String[] second = path.getPath();
+		assertNotSame(first, second);
+		assertEquals(NS + "name", second[1]);
+		assertEquals(NS + "name", path.last());
+		assertEquals(Path.at(NS + "controls").to(NS + "name"), path);
+	}
+
+	/**
+	 * Modifying the array given to the constructor does not modify the Path.
+	 */
+	public void testConstructorCopy() {
+		String[] steps = new String[] { NS + "controls", NS + "name" };
+		Path path = new Path(steps);
+		steps[0] = NS + "other";
+		assertEquals(NS + "controls", path.getPath()[0]);
+	}
+
+}
@@ -0,0 +1,208 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.low;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.universAAL.middleware.service.CallStatus;
+import org.universAAL.middleware.service.ServiceResponse;
+import org.universAAL.middleware.service.owls.process.ProcessOutput;
+
+/**
+ * Checks that the values of single and list outputs are extracted in order,
+ * skipping those of other classes and stopping when asked, and that missing
+ * responses, outputs and failed calls are told apart instead of throwing.
+ *
+ * @author alfiva
+ *
+ */
+public class OutputsTest extends TestCase {
+
+	/**
+	 * URI of the output.
+	 */
+	private static final String OUT = "http://ontology.universAAL.org/Test.owl#out";
+
+	/**
+	 * URI of another output.
+	 */
+	private static final String OTHER = "http://ontology.universAAL.org/Test.owl#other";
+
+	/**
+	 * The single value methods return the given default, and firstOf tells
+	 * why.
+	 */
+	public void testFirstWithoutResponse() {
+		assertNull(Outputs.first(null, OUT, String.class));
+		assertEquals(7, Outputs.firstInt(null, OUT, 7));
+		assertEquals(7L, Outputs.firstLong(null, OUT, 7L));
+		assertEquals(7.5, Outputs.firstDouble(null, OUT, 7.5), 0);
+		assertTrue(Outputs.firstBoolean(null, OUT, true));
+		Outputs.Result res = Outputs.firstOf(null, OUT, String.class);
+		assertFalse(res.isOk());
+		assertEquals(Outputs.CALL_FAILED, res.getCode());
+		assertNull(res.getCallStatus());
+		assertNull(res.getFirst(String.class));
+		assertNotNull(res.getReason());
+	}
+
+	/**
+	 * The multiple value methods give no values and report the failed call.
+	 */
+	public void testManyWithoutResponse() {
+		List<String> values = new ArrayList<String>();
+		Outputs.Result res = Outputs.into(null, OUT, String.class, values);
+		assertEquals(Outputs.CALL_FAILED, res.getCode());
+		assertTrue(values.isEmpty());
+		res = Outputs.forEach(null, OUT, String.class, new Outputs.Handler<String>() {
+			public boolean handle(String value) {
+				fail("No values expected");
+				return false;
+			}
+		});
+		assertEquals(Outputs.CALL_FAILED, res.getCode());
+		assertEquals(0, res.getCount());
+	}
+
+	/**
+	 * A single value is returned by the single value methods, and a value of
+	 * another class is skipped.
+	 */
+	public void testSingleValue() {
+		ServiceResponse sr = response(new ProcessOutput(OUT, Integer.valueOf(3)));
+		assertEquals(Integer.valueOf(3), Outputs.first(sr, OUT, Integer.class));
+		assertEquals(3, Outputs.firstInt(sr, OUT, 7));
+		assertEquals(3L, Outputs.firstLong(sr, OUT, 7L));
+		assertEquals(3.0, Outputs.firstDouble(sr, OUT, 7.5), 0);
+		assertTrue(Outputs.firstBoolean(sr, OUT, true));
+		Outputs.Result res = Outputs.firstOf(sr, OUT, String.class);
+		assertTrue(res.isOk());
+		assertNull(res.getReason());
+		assertSame(CallStatus.succeeded, res.getCallStatus());
+		assertEquals(0, res.getCount());
+		assertEquals(1, res.getSkipped());
+		assertNull(res.getFirst(String.class));
+	}
+
+	/**
+	 * The values of list outputs are walked in order, through all the outputs
+	 * with the URI, and those of another class are skipped.
+	 */
+	public void testListValues() {
+		ServiceResponse sr = response(new ProcessOutput(OUT, list("a", Integer.valueOf(1), "b")),
+				new ProcessOutput(OTHER, "x"), new ProcessOutput(OUT, "c"));
+		List<String> values = new ArrayList<String>();
+		Outputs.Result res = Outputs.into(sr, OUT, String.class, values);
+		assertTrue(res.isOk());
+		assertEquals(list("a", "b", "c"), values);
+		assertEquals(3, res.getCount());
+		assertEquals(1, res.getSkipped());
+		assertEquals("a", res.getFirst(String.class));
+		assertEquals(1, Outputs.firstInt(sr, OUT, 7));
+	}
+
+	/**
+	 * forEach stops at the value where the handler returns false, and firstOf
+	 * at the first value of the class.
+	 */
+	public void testEarlyStop() {
+		ServiceResponse sr = response(new ProcessOutput(OUT, list("a", "b", "c")), new ProcessOutput(OUT, "d"));
+		final List<String> values = new ArrayList<String>();
+		Outputs.Result res = Outputs.forEach(sr, OUT, String.class, new Outputs.Handler<String>() {
+			public boolean handle(String value) {
+				values.add(value);
+				return values.size() < 2;
+			}
+		});
+		assertTrue(res.isOk());
+		assertEquals(list("a", "b"), values);
+		assertEquals(2, res.getCount());
+		res = Outputs.firstOf(sr, OUT, String.class);
+		assertEquals(1, res.getCount());
+		assertEquals("a", res.getFirst(String.class));
+	}
+
+	/**
+	 * A response without outputs and a response without the requested one
+	 * are told apart, and neither gives values.
+	 */
+	public void testMissingOutputs() {
+		Outputs.Result res = Outputs.firstOf(response(), OUT, String.class);
+		assertFalse(res.isOk());
+		assertEquals(Outputs.NO_OUTPUTS, res.getCode());
+		String none = res.getReason();
+		res = Outputs.firstOf(response(new ProcessOutput(OTHER, "x")), OUT, String.class);
+		assertFalse(res.isOk());
+		assertEquals(Outputs.NO_SUCH_OUTPUT, res.getCode());
+		assertNotNull(res.getReason());
+		assertFalse(res.getReason().equals(none));
+		assertEquals(0, res.getCount());
+		assertEquals(0, res.getSkipped());
+		assertEquals(7, Outputs.firstInt(response(new ProcessOutput(OTHER, Integer.valueOf(3))), OUT, 7));
+	}
+
+	/**
+	 * The outputs of a failed call are not read.
+	 */
+	public void testFailedCall() {
+		ServiceResponse sr = new ServiceResponse(CallStatus.serviceSpecificFailure);
+		sr.addOutput(new ProcessOutput(OUT, "a"));
+		Outputs.Result res = Outputs.firstOf(sr, OUT, String.class);
+		assertEquals(Outputs.CALL_FAILED, res.getCode());
+		assertSame(CallStatus.serviceSpecificFailure, res.getCallStatus());
+		assertNull(res.getFirst(String.class));
+	}
+
+	/**
+	 * Build a successful response.
+	 *
+	 * @param outputs
+	 *            Its outputs
+	 * @return The response
+	 */
+	private static ServiceResponse response(ProcessOutput... outputs) {
+		ServiceResponse sr = new ServiceResponse(CallStatus.succeeded);
+		for (int i = 0; i < outputs.length; i++) {
+			sr.addOutput(outputs[i]);
+		}
+		return sr;
+	}
+
+	/**
+	 * Build a list of values.
+	 *
+	 * @param values
+	 *            The values
+	 * @return The list
+	 */
+	private static List<Object> list(Object... values) {
+		List<Object> l = new ArrayList<Object>();
+		for (int i = 0; i < values.length; i++) {
+			l.add(values[i]);
+		}
+		return l;
+	}
+
+}
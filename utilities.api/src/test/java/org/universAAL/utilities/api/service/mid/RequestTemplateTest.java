@@ -0,0 +1,69 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.mid;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that the prepared requests of UtilEditor are kept, and that the kept
+ * ones are not modified by their users.
+ *
+ * @author alfiva
+ *
+ */
+public class RequestTemplateTest extends TestCase {
+
+	/**
+	 * Namespace of the Service class and properties.
+	 */
+	private static final String NS = "http://ontology.universAAL.org/Test.owl#";
+
+	/**
+	 * The same request to the same editor gives the same template.
+	 */
+	public void testKept() {
+		String[] path = new String[] { NS + "controls" };
+		RequestTemplate get = UtilEditor.prepareGet(NS + "Service", path);
+		assertSame(get, UtilEditor.prepareGet(NS + "Service", new String[] { NS + "controls" }));
+		assertNotSame(get, UtilEditor.prepareGet(NS + "Other", path));
+		assertNotSame(get, UtilEditor.prepareAdd(NS + "Service", path));
+		assertNotSame(get, UtilEditor.prepareGet(NS + "Service", new String[] { NS + "controls", NS + "name" }));
+		assertSame(UtilEditor.prepareGetPage(NS + "Service", path), UtilEditor.prepareGetPage(NS + "Service", path));
+	}
+
+	/**
+	 * Defining more steps on a kept template gives a new one.
+	 */
+	public void testShared() {
+		String[] path = new String[] { NS + "controls" };
+		RequestTemplate get = UtilEditor.prepareGet(NS + "Service", path);
+		assertEquals(2, get.getBindCount());
+		RequestTemplate more = get.in(new String[] { NS + "other" });
+		assertNotSame(get, more);
+		assertEquals(3, more.getBindCount());
+		assertEquals(2, get.getBindCount());
+		assertEquals(2, UtilEditor.prepareGet(NS + "Service", path).getBindCount());
+		RequestTemplate own = new RequestTemplate(NS + "Service");
+		assertSame(own, own.in(path));
+	}
+
+}
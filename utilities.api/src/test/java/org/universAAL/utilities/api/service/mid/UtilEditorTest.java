@@ -0,0 +1,194 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.mid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.universAAL.middleware.bus.junit.BusTestCase;
+import org.universAAL.middleware.owl.OntologyManagement;
+import org.universAAL.middleware.rdf.Resource;
+import org.universAAL.middleware.service.CallStatus;
+import org.universAAL.middleware.service.DefaultServiceCaller;
+import org.universAAL.middleware.service.ServiceCaller;
+import org.universAAL.middleware.service.ServiceRequest;
+import org.universAAL.middleware.service.ServiceResponse;
+import org.universAAL.middleware.service.owls.profile.ServiceProfile;
+import org.universAAL.ontology.location.LocationOntology;
+import org.universAAL.ontology.phThing.Device;
+import org.universAAL.ontology.phThing.DeviceService;
+import org.universAAL.ontology.phThing.PhThingOntology;
+import org.universAAL.ontology.shape.ShapeOntology;
+import org.universAAL.utilities.api.service.top.UtilEditorCallee;
+
+/**
+ * Checks that the requests for a single Resource cannot match the bulk
+ * profiles of an editor, while the bulk requests can, both in the profiles and
+ * in calls through the bus to an editor registering both.
+ *
+ * @author alfiva
+ *
+ */
+public class UtilEditorTest extends BusTestCase {
+
+	/**
+	 * Namespace of the editor.
+	 */
+	private static final String NS = "http://ontology.universAAL.org/EditorTest.owl#";
+
+	/**
+	 * Path to the edited devices.
+	 */
+	private static final String[] PATH = new String[] { DeviceService.PROP_CONTROLS };
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.bus.junit.BusTestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		OntologyManagement.getInstance().register(mc, new LocationOntology());
+		OntologyManagement.getInstance().register(mc, new ShapeOntology());
+		OntologyManagement.getInstance().register(mc, new PhThingOntology());
+	}
+
+	/**
+	 * Every bulk profile requires the bulk input, which the single requests
+	 * do not pass and the bulk requests do.
+	 */
+	public void testSingleDoesNotMatchBulk() {
+		ServiceProfile[] single = UtilEditor.getServiceProfiles(NS, DeviceService.MY_URI, PATH, Device.MY_URI);
+		ServiceProfile[] bulk = UtilEditor.getBulkServiceProfiles(NS, DeviceService.MY_URI, PATH, Device.MY_URI);
+		for (int i = 0; i < single.length; i++) {
+			assertNull(single[i].getTheService().getInstanceLevelRestrictionOnProp(UtilEditor.PROP_BULK));
+		}
+		for (int i = 0; i < bulk.length; i++) {
+			assertNotNull(bulk[i].getTheService().getInstanceLevelRestrictionOnProp(UtilEditor.PROP_BULK));
+		}
+
+		Device device = new Device(NS + "device");
+		ServiceRequest[] singles = new ServiceRequest[] {
+				UtilEditor.requestAdd(DeviceService.MY_URI, PATH, device),
+				UtilEditor.requestChange(DeviceService.MY_URI, PATH, device),
+				UtilEditor.requestRemove(DeviceService.MY_URI, PATH, device) };
+		for (int i = 0; i < singles.length; i++) {
+			assertNull(singles[i].getRequestedService().getInstanceLevelRestrictionOnProp(UtilEditor.PROP_BULK));
+		}
+
+		List<Device> devices = new ArrayList<Device>();
+		devices.add(device);
+		ServiceRequest[] bulks = new ServiceRequest[] {
+				UtilEditor.requestAddAll(DeviceService.MY_URI, PATH, devices, NS + "failed"),
+				UtilEditor.requestChangeAll(DeviceService.MY_URI, PATH, devices, NS + "failed"),
+				UtilEditor.requestRemoveAll(DeviceService.MY_URI, PATH, devices, NS + "failed") };
+		for (int i = 0; i < bulks.length; i++) {
+			assertNotNull(bulks[i].getRequestedService().getInstanceLevelRestrictionOnProp(UtilEditor.PROP_BULK));
+		}
+	}
+
+	/**
+	 * With both sets of profiles registered, single calls reach ADD only and
+	 * bulk calls reach ADD ALL only.
+	 */
+	public void testCallsReachTheirService() {
+		Editor callee = new Editor();
+		ServiceCaller caller = new DefaultServiceCaller(mc);
+		try {
+			Device device = new Device(NS + "device");
+			ServiceResponse sr = caller.call(UtilEditor.requestAdd(DeviceService.MY_URI, PATH, device));
+			assertEquals(CallStatus.succeeded, sr.getCallStatus());
+			assertEquals(1, callee.adds);
+			assertEquals(0, callee.bulkAdds);
+
+			List<Device> devices = new ArrayList<Device>();
+			devices.add(new Device(NS + "device1"));
+			devices.add(new Device(NS + "device2"));
+			sr = caller.call(UtilEditor.requestAddAll(DeviceService.MY_URI, PATH, devices, NS + "failed"));
+			assertEquals(CallStatus.succeeded, sr.getCallStatus());
+			assertEquals(1, callee.adds);
+			assertEquals(1, callee.bulkAdds);
+		} finally {
+			caller.close();
+			callee.close();
+		}
+	}
+
+	/**
+	 * An editor of devices with the bulk profiles, which counts the calls.
+	 */
+	private static final class Editor extends UtilEditorCallee {
+		/**
+		 * Number of calls to ADD.
+		 */
+		private int adds;
+		/**
+		 * Number of calls to ADD ALL.
+		 */
+		private int bulkAdds;
+
+		/**
+		 * Register the editor.
+		 */
+		Editor() {
+			super(mc, NS, DeviceService.MY_URI, PATH, Device.MY_URI, true);
+		}
+
+		@Override
+		public Resource executeGet(Resource input) {
+			return input;
+		}
+
+		@Override
+		public boolean executeAdd(Resource input) {
+			adds++;
+			return true;
+		}
+
+		@Override
+		public boolean executeChange(Resource input) {
+			return true;
+		}
+
+		@Override
+		public boolean executeRemove(Resource input) {
+			return true;
+		}
+
+		@Override
+		public boolean[] executeAddAll(List<Resource> inputs) {
+			bulkAdds++;
+			boolean[] results = new boolean[inputs.size()];
+			for (int i = 0; i < results.length; i++) {
+				results[i] = true;
+			}
+			return results;
+		}
+
+		@Override
+		public void communicationChannelBroken() {
+			// Nothing to do
+		}
+	}
+
+}
@@ -0,0 +1,330 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.top;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import org.universAAL.middleware.bus.junit.BusTestCase;
+import org.universAAL.middleware.owl.OntologyManagement;
+import org.universAAL.middleware.rdf.Resource;
+import org.universAAL.ontology.location.LocationOntology;
+import org.universAAL.ontology.phThing.Device;
+import org.universAAL.ontology.phThing.DeviceService;
+import org.universAAL.ontology.phThing.PhThingOntology;
+import org.universAAL.ontology.shape.ShapeOntology;
+
+/**
+ * Checks that PersistentEditorCallee keeps the Resources across restarts and
+ * compactions, and recovers a segment left by a process that ended while
+ * writing its footer.
+ *
+ * @author alfiva
+ *
+ */
+public class PersistentEditorCalleeTest extends BusTestCase {
+
+	/**
+	 * Namespace of the editor.
+	 */
+	private static final String NS = "http://ontology.universAAL.org/PersistentTest.owl#";
+
+	/**
+	 * Size of the segments.
+	 */
+	private static final int SIZE = 4096;
+
+	/**
+	 * Property that tells the versions of a Resource apart.
+	 */
+	private static final String VALUE = NS + "value";
+
+	/**
+	 * Number of Resources of the compaction test, enough for several
+	 * segments.
+	 */
+	private static final int COUNT = 40;
+
+	/**
+	 * Directory of the segments.
+	 */
+	private File directory;
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.bus.junit.BusTestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		OntologyManagement.getInstance().register(mc, new LocationOntology());
+		OntologyManagement.getInstance().register(mc, new ShapeOntology());
+		OntologyManagement.getInstance().register(mc, new PhThingOntology());
+		directory = File.createTempFile("segments", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	@Override
+	protected void tearDown() throws Exception {
+		File[] files = directory.listFiles();
+		for (int i = 0; files != null && i < files.length; i++) {
+			files[i].delete();
+		}
+		directory.delete();
+		super.tearDown();
+	}
+
+	/**
+	 * A Resource added before closing the callee is there when it is opened
+	 * again.
+	 *
+	 * @throws IOException
+	 *             if the segments could not be written or read
+	 */
+	public void testAddCloseReopen() throws IOException {
+		PersistentEditorCallee callee = open();
+		try {
+			assertTrue(callee.executeAdd(device("a", 0)));
+		} finally {
+			callee.close();
+		}
+		callee = open();
+		try {
+			assertEquals(1, callee.size());
+			assertEquals(Integer.valueOf(0), callee.executeGet(new Device(NS + "a")).getProperty(VALUE));
+		} finally {
+			callee.close();
+		}
+	}
+
+	/**
+	 * A Resource removed in a later run than the one that added it does not
+	 * come back after compacting both segments and restarting.
+	 *
+	 * @throws IOException
+	 *             if the segments could not be written or read
+	 */
+	public void testRemoveCompactRestart() throws IOException {
+		PersistentEditorCallee callee = open();
+		try {
+			assertTrue(callee.executeAdd(device("a", 0)));
+			assertTrue(callee.executeAdd(device("b", 0)));
+		} finally {
+			callee.close();
+		}
+		callee = open();
+		try {
+			assertTrue(callee.executeRemove(new Device(NS + "a")));
+		} finally {
+			callee.close();
+		}
+		callee = open();
+		try {
+			int before = callee.getSegmentCount();
+			callee.compact(); // Both are mostly empty
+			assertTrue(callee.getSegmentCount() < before);
+		} finally {
+			callee.close();
+		}
+		callee = open();
+		try {
+			assertEquals(1, callee.size());
+			assertNull(callee.executeGet(new Device(NS + "a")));
+			assertNotNull(callee.executeGet(new Device(NS + "b")));
+		} finally {
+			callee.close();
+		}
+	}
+
+	/**
+	 * After changing every Resource, compaction deletes the segments of the
+	 * old versions, and the new ones are read before and after a restart.
+	 *
+	 * @throws IOException
+	 *             if the segments could not be written or read
+	 */
+	public void testCompactionRoundTrip() throws IOException {
+		PersistentEditorCallee callee = open();
+		try {
+			for (int i = 0; i < COUNT; i++) {
+				assertTrue(callee.executeAdd(device("d" + i, 0)));
+			}
+			for (int i = 0; i < COUNT; i++) {
+				assertTrue(callee.executeChange(device("d" + i, 1)));
+			}
+			int before = callee.getSegmentCount();
+			assertTrue(before > 2);
+			callee.compact();
+			assertTrue(callee.getSegmentCount() < before);
+			assertValues(callee, 1);
+		} finally {
+			callee.close();
+		}
+		callee = open();
+		try {
+			assertValues(callee, 1);
+		} finally {
+			callee.close();
+		}
+	}
+
+	/**
+	 * Segments written with another size are rejected instead of being
+	 * resized.
+	 *
+	 * @throws IOException
+	 *             if the segments could not be written
+	 */
+	public void testOtherSegmentSize() throws IOException {
+		PersistentEditorCallee callee = open();
+		try {
+			assertTrue(callee.executeAdd(device("a", 0)));
+		} finally {
+			callee.close();
+		}
+		try {
+			new PersistentEditorCallee(mc, NS, DeviceService.MY_URI, new String[] { DeviceService.PROP_CONTROLS },
+					Device.MY_URI, directory, SIZE * 2).close();
+			fail("Segments of another size were opened");
+		} catch (IOException e) {
+			// Expected
+		}
+		assertEquals(SIZE, new File(directory, "segment-0.dat").length());
+	}
+
+	/**
+	 * The records are followed by the zero length and part of the footer, but
+	 * not by the trailer. Only the records are read.
+	 *
+	 * @throws IOException
+	 *             if the segment could not be written or read
+	 */
+	public void testFooterWithoutTrailer() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(new File(directory, "segment-0.dat"), "rw");
+		try {
+			raf.setLength(SIZE);
+			ByteBuffer b = ByteBuffer.allocate(SIZE);
+			int second = record(b, 0, NS + "a");
+			int used = second + record(b, second, NS + "b");
+			b.putInt(used, 0);
+			b.position(used + 4);
+			for (int i = 0; i < 2; i++) {
+				byte[] key = (NS + (char) ('a' + i)).getBytes("UTF-8");
+				b.putShort((short) key.length);
+				b.put(key);
+				b.putInt(i == 0 ? 0 : second);
+			}
+			raf.write(b.array());
+		} finally {
+			raf.close();
+		}
+		PersistentEditorCallee callee = new PersistentEditorCallee(mc, NS, DeviceService.MY_URI,
+				new String[] { DeviceService.PROP_CONTROLS }, Device.MY_URI, directory, SIZE);
+		try {
+			assertEquals(2, callee.size());
+		} finally {
+			callee.close();
+		}
+	}
+
+	/**
+	 * Open a callee on the test directory.
+	 *
+	 * @return The callee
+	 * @throws IOException
+	 *             if the segments could not be read
+	 */
+	private PersistentEditorCallee open() throws IOException {
+		return new PersistentEditorCallee(mc, NS, DeviceService.MY_URI, new String[] { DeviceService.PROP_CONTROLS },
+				Device.MY_URI, directory, SIZE);
+	}
+
+	/**
+	 * Check that all the Resources of the compaction test are stored with a
+	 * value.
+	 *
+	 * @param callee
+	 *            The callee
+	 * @param value
+	 *            The expected value
+	 */
+	private static void assertValues(PersistentEditorCallee callee, int value) {
+		assertEquals(COUNT, callee.size());
+		for (int i = 0; i < COUNT; i++) {
+			Resource r = callee.executeGet(new Device(NS + "d" + i));
+			assertNotNull(r);
+			assertEquals(Integer.valueOf(value), r.getProperty(VALUE));
+		}
+	}
+
+	/**
+	 * Build a version of a device.
+	 *
+	 * @param name
+	 *            The local name of the device
+	 * @param value
+	 *            The value that tells the version
+	 * @return The device
+	 */
+	private static Device device(String name, int value) {
+		Device d = new Device(NS + name);
+		d.setProperty(VALUE, Integer.valueOf(value));
+		return d;
+	}
+
+	/**
+	 * Write a record of a Resource.
+	 *
+	 * @param b
+	 *            The segment
+	 * @param offset
+	 *            Where to write it
+	 * @param uri
+	 *            The URI of the Resource
+	 * @return The length of the record
+	 * @throws IOException
+	 *             never, UTF-8 is always supported
+	 */
+	private static int record(ByteBuffer b, int offset, String uri) throws IOException {
+		byte[] key = uri.getBytes("UTF-8");
+		byte[] data = new byte[] { 1, 2, 3 };
+		int length = 4 + 1 + 2 + key.length + 4 + data.length;
+		b.position(offset);
+		b.putInt(length);
+		b.put((byte) 1);
+		b.putShort((short) key.length);
+		b.put(key);
+		b.putInt(data.length);
+		b.put(data);
+		return length;
+	}
+
+}
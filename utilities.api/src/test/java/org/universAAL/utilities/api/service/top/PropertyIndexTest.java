@@ -0,0 +1,82 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.top;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that concurrent changes to the same value of a PropertyIndex do not
+ * lose URIs.
+ *
+ * @author alfiva
+ *
+ */
+public class PropertyIndexTest extends TestCase {
+
+	/**
+	 * Number of threads changing the index.
+	 */
+	private static final int THREADS = 8;
+
+	/**
+	 * Number of times each thread moves its URI.
+	 */
+	private static final int ROUNDS = 100000;
+
+	/**
+	 * Threads move their own URI in and out of a shared value, and finally
+	 * leave it there. All of them must be found.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the threads
+	 */
+	public void testConcurrentSameValue() throws InterruptedException {
+		final PropertyIndex index = new PropertyIndex("p");
+		final Integer shared = Integer.valueOf(0);
+		Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			final String uri = "u" + t;
+			final Integer own = Integer.valueOf(t + 1);
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < ROUNDS; i++) {
+						index.add(uri, shared);
+						index.remove(uri, shared);
+						index.add(uri, own);
+						index.remove(uri, own);
+					}
+					index.add(uri, shared);
+				}
+			};
+			threads[t].start();
+		}
+		for (int t = 0; t < THREADS; t++) {
+			threads[t].join();
+		}
+		assertEquals(THREADS, index.get(shared).size());
+		for (int t = 0; t < THREADS; t++) {
+			assertTrue(index.get(shared).contains("u" + t));
+			assertTrue(index.get(Integer.valueOf(t + 1)).isEmpty());
+		}
+	}
+
+}
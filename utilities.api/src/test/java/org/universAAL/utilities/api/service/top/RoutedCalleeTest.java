@@ -0,0 +1,91 @@
+/*
+	Copyright 2008 ITACA-SABIEN, http://www.sabien.upv.es
+	Instituto Tecnologico de Aplicaciones de Comunicacion
+	Avanzadas - Grupo Tecnologias para la Salud y el
+	Bienestar (TSB)
+
+	See the NOTICE file distributed with this work for additional
+	information regarding copyright ownership
+
+	Licensed under the Apache License, Version 2.0 (the "License");
+	you may not use this file except in compliance with the License.
+	You may obtain a copy of the License at
+
+	  http://www.apache.org/licenses/LICENSE-2.0
+
+	Unless required by applicable law or agreed to in writing, software
+	distributed under the License is distributed on an "AS IS" BASIS,
+	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+	See the License for the specific language governing permissions and
+	limitations under the License.
+ */
+package org.universAAL.utilities.api.service.top;
+
+import org.universAAL.middleware.bus.junit.BusTestCase;
+import org.universAAL.middleware.owl.OntologyManagement;
+import org.universAAL.middleware.service.CallStatus;
+import org.universAAL.middleware.service.ServiceCall;
+import org.universAAL.middleware.service.ServiceResponse;
+import org.universAAL.ontology.location.LocationOntology;
+import org.universAAL.ontology.phThing.Device;
+import org.universAAL.ontology.phThing.DeviceService;
+import org.universAAL.ontology.phThing.PhThingOntology;
+import org.universAAL.ontology.shape.ShapeOntology;
+
+/**
+ * Checks that the responses of a RoutedCallee are not modified by the calls
+ * it answers.
+ *
+ * @author alfiva
+ *
+ */
+public class RoutedCalleeTest extends BusTestCase {
+
+	/**
+	 * Namespace of the callee.
+	 */
+	private static final String NS = "http://ontology.universAAL.org/RoutedTest.owl#";
+
+	/**
+	 * Number of calls.
+	 */
+	private static final int CALLS = 100000;
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.universAAL.middleware.bus.junit.BusTestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		OntologyManagement.getInstance().register(mc, new LocationOntology());
+		OntologyManagement.getInstance().register(mc, new ShapeOntology());
+		OntologyManagement.getInstance().register(mc, new PhThingOntology());
+	}
+
+	/**
+	 * Calls to a service the callee does not handle get the same
+	 * not-implemented response, with the same single error output, however
+	 * many are answered.
+	 */
+	public void testNotImplementedSoak() {
+		MemoryEditorCallee callee = new MemoryEditorCallee(mc, NS, DeviceService.MY_URI,
+				new String[] { DeviceService.PROP_CONTROLS }, Device.MY_URI, null);
+		try {
+			ServiceCall call = new ServiceCall(NS + "unknownProcess");
+			ServiceResponse first = callee.handleCall(call);
+			assertEquals(CallStatus.serviceSpecificFailure, first.getCallStatus());
+			int outputs = first.getOutputs().size();
+			assertEquals(1, outputs);
+			for (int i = 0; i < CALLS; i++) {
+				ServiceResponse response = callee.handleCall(call);
+				assertSame(first, response);
+				assertEquals(outputs, response.getOutputs().size());
+			}
+		} finally {
+			callee.close();
+		}
+	}
+
+}